@@ -35,7 +35,7 @@ public class CorsConfig {
         ));
 
         configuration.setExposedHeaders(Arrays.asList(
-                "Authorization", "Content-Type", "x-tenant-id"
+                "Authorization", "Content-Type", "x-tenant-id", "Retry-After"
         ));
 
         configuration.setAllowCredentials(true);
@@ -0,0 +1,104 @@
+package com.peluqueria.recepcionista_virtual.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * DataSource que enruta las transacciones @Transactional(readOnly = true) a la réplica
+ * y el resto al primario.
+ *
+ * Debe envolverse en un LazyConnectionDataSourceProxy: la conexión física solo se pide
+ * cuando ya se conoce el flag readOnly de la transacción.
+ * Si la réplica se retrasa más de lo permitido (o no responde), las lecturas vuelven
+ * al primario hasta que se recupere.
+ */
+public class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadReplicaRoutingDataSource.class);
+
+    public enum Destino {
+        PRIMARIO, REPLICA
+    }
+
+    private final DataSource replica;
+    private final String consultaRetraso;
+    private final double maxRetrasoSegundos;
+
+    private volatile boolean replicaSaludable;
+
+    public ReadReplicaRoutingDataSource(DataSource primario, DataSource replica,
+                                        String consultaRetraso, double maxRetrasoSegundos) {
+        this.replica = replica;
+        this.consultaRetraso = consultaRetraso;
+        this.maxRetrasoSegundos = maxRetrasoSegundos;
+        this.replicaSaludable = replica != null;
+
+        Map<Object, Object> destinos = new HashMap<>();
+        destinos.put(Destino.PRIMARIO, primario);
+        if (replica != null) {
+            destinos.put(Destino.REPLICA, replica);
+        }
+        setTargetDataSources(destinos);
+        setDefaultTargetDataSource(primario);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicaSaludable
+                && TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return Destino.REPLICA;
+        }
+        return Destino.PRIMARIO;
+    }
+
+    /**
+     * Comprueba periódicamente el retraso de replicación.
+     * Sin consulta configurada (p.ej. H2 en local) solo se valida la conexión.
+     */
+    @Scheduled(fixedDelayString = "${database.replica.lag-check-ms:10000}")
+    public void verificarRetrasoReplica() {
+        if (replica == null) {
+            return;
+        }
+
+        boolean saludable;
+        try (Connection conn = replica.getConnection()) {
+            if (consultaRetraso == null || consultaRetraso.isBlank()) {
+                saludable = conn.isValid(2);
+            } else {
+                try (Statement st = conn.createStatement();
+                     ResultSet rs = st.executeQuery(consultaRetraso)) {
+                    double retraso = rs.next() ? rs.getDouble(1) : 0.0;
+                    saludable = retraso <= maxRetrasoSegundos;
+                    if (!saludable) {
+                        logger.warn("Réplica con {}s de retraso (máx {}s), lecturas al primario",
+                                retraso, maxRetrasoSegundos);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Réplica no disponible, lecturas al primario: {}", e.getMessage());
+            saludable = false;
+        }
+
+        if (saludable && !replicaSaludable) {
+            logger.info("Réplica recuperada, reanudando lecturas en réplica");
+        }
+        replicaSaludable = saludable;
+    }
+
+    public boolean isReplicaSaludable() {
+        return replicaSaludable;
+    }
+}
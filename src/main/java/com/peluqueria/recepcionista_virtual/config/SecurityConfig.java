@@ -16,6 +16,9 @@ import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.http.HttpMethod;
 import com.peluqueria.recepcionista_virtual.security.JwtRequestFilter;
 import com.peluqueria.recepcionista_virtual.security.JwtAuthenticationEntryPoint;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.peluqueria.recepcionista_virtual.filter.LimiteTenantFilter;
+import com.peluqueria.recepcionista_virtual.service.LimiteTenantService;
 
 @Configuration
 @EnableWebSecurity
@@ -30,6 +33,12 @@ public class SecurityConfig {
     @Autowired
     private CorsConfigurationSource corsConfigurationSource;
 
+    @Autowired
+    private LimiteTenantService limiteTenantService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Bean
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
@@ -60,6 +69,8 @@ public class SecurityConfig {
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS));
 
         http.addFilterBefore(jwtRequestFilter, UsernamePasswordAuthenticationFilter.class);
+        // Límites por tenant: necesita el tenantId que deja el filtro JWT
+        http.addFilterAfter(new LimiteTenantFilter(limiteTenantService, objectMapper), JwtRequestFilter.class);
         return http.build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,86 @@
+package com.peluqueria.recepcionista_virtual.config;
+
+import com.peluqueria.recepcionista_virtual.security.JwtSesionService;
+import com.peluqueria.recepcionista_virtual.security.JwtTokenUtil;
+import com.peluqueria.recepcionista_virtual.security.UsuarioToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * MULTITENANT en WebSocket: el CONNECT debe traer el JWT (cabecera STOMP Authorization)
+ * y solo se permite suscribirse a /topic/tenant/{tenantId}/** del propio tenant.
+ * El token pasa por JwtSesionService igual que en las peticiones HTTP: revocado, de un
+ * usuario desactivado o con rol/tenant cambiados no abre sesión.
+ */
+@Component
+public class StompTenantInterceptor implements ChannelInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(StompTenantInterceptor.class);
+
+    private static final String PREFIJO_TENANT = "/topic/tenant/";
+    private static final String ATRIBUTO_TENANT = "tenantId";
+
+    @Autowired
+    private JwtTokenUtil jwtTokenUtil;
+
+    @Autowired
+    private JwtSesionService jwtSesionService;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        Map<String, Object> sesion = accessor.getSessionAttributes();
+
+        if (StompCommand.CONNECT.equals(accessor.getCommand())) {
+            String authHeader = accessor.getFirstNativeHeader("Authorization");
+            UsuarioToken usuario = null;
+            if (authHeader != null && authHeader.startsWith("Bearer ")) {
+                try {
+                    usuario = UsuarioToken.desde(jwtTokenUtil.parse(authHeader.substring(7)));
+                } catch (Exception e) {
+                    logger.debug("JWT no válido en CONNECT: {}", e.getMessage());
+                }
+            }
+            if (usuario == null || usuario.tenantId() == null || sesion == null) {
+                throw new MessageDeliveryException("Token no válido en conexión WebSocket");
+            }
+            if (!jwtSesionService.permitido(usuario)) {
+                logger.warn("CONNECT rechazado: token revocado o usuario no válido ({})", usuario.email());
+                throw new MessageDeliveryException("Sesión revocada");
+            }
+            sesion.put(ATRIBUTO_TENANT, usuario.tenantId());
+        }
+
+        if (StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+            String destino = accessor.getDestination();
+            String tenantSesion = sesion != null ? (String) sesion.get(ATRIBUTO_TENANT) : null;
+
+            if (destino != null && destino.startsWith(PREFIJO_TENANT)) {
+                String resto = destino.substring(PREFIJO_TENANT.length());
+                String tenantDestino = resto.contains("/") ? resto.substring(0, resto.indexOf('/')) : resto;
+
+                if (tenantSesion == null || !tenantSesion.equals(tenantDestino)) {
+                    logger.warn("Suscripción denegada a {} (tenant de sesión: {})", destino, tenantSesion);
+                    throw new MessageDeliveryException("Acceso denegado al tenant");
+                }
+            }
+        }
+
+        return message;
+    }
+}
@@ -1,15 +1,28 @@
 package com.peluqueria.recepcionista_virtual.config;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Autowired
+    private StompTenantInterceptor stompTenantInterceptor;
+
+    @Value("${dashboard.push.send-time-limit-ms:5000}")
+    private int sendTimeLimitMs;
+
+    @Value("${dashboard.push.send-buffer-limit-bytes:262144}")
+    private int sendBufferLimitBytes;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         config.enableSimpleBroker("/topic");
@@ -34,4 +47,19 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                         "http://localhost:5173"
                 );
     }
-}
\ No newline at end of file
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompTenantInterceptor);
+    }
+
+    /**
+     * Suscriptores lentos: si un envío tarda más del límite o el buffer pendiente
+     * supera el tamaño máximo, se cierra la sesión en lugar de seguir acumulando
+     */
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimitMs);
+        registration.setSendBufferSizeLimit(sendBufferLimitBytes);
+    }
+}
@@ -2,13 +2,16 @@ package com.peluqueria.recepcionista_virtual.controller;
 
 import com.peluqueria.recepcionista_virtual.dto.*;
 import com.peluqueria.recepcionista_virtual.model.*;
+import com.peluqueria.recepcionista_virtual.security.JwtSesionService;
 import com.peluqueria.recepcionista_virtual.security.JwtTokenUtil;
+import com.peluqueria.recepcionista_virtual.security.UsuarioToken;
 import com.peluqueria.recepcionista_virtual.service.*;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.*;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 import jakarta.validation.Valid;
@@ -29,6 +32,9 @@ public class AuthController {
     @Autowired
     private JwtTokenUtil jwtTokenUtil;
 
+    @Autowired
+    private JwtSesionService jwtSesionService;
+
     @Autowired
     private UserService userService;
 
@@ -148,12 +154,12 @@ public class AuthController {
     public ResponseEntity<?> refresh(@RequestHeader("Authorization") String token) {
         String jwtToken = token.substring(7);
         String username = jwtTokenUtil.extractUsername(jwtToken);
-        String tenantId = jwtTokenUtil.extractTenantId(jwtToken);
 
+        // Rol y tenant actuales del usuario: JwtSesionService rechaza los que ya no coinciden
         User user = userService.findByEmail(username);
         String newToken = jwtTokenUtil.generateToken(
                 username,
-                tenantId,
+                user.getTenant().getId(),
                 user.getRole()
         );
 
@@ -175,4 +181,28 @@ public class AuthController {
 
         return ResponseEntity.ok(Map.of("valid", false));
     }
-}
\ No newline at end of file
+
+    /**
+     * Invalida el token con el que se hace la petición
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@AuthenticationPrincipal UsuarioToken usuario) {
+        if (usuario == null) {
+            return ResponseEntity.status(HttpServletResponse.SC_UNAUTHORIZED).body(Map.of("error", "No autenticado"));
+        }
+        jwtSesionService.revocar(usuario);
+        return ResponseEntity.ok(Map.of("success", true));
+    }
+
+    /**
+     * Invalida todos los tokens emitidos hasta ahora para el usuario (todas sus sesiones)
+     */
+    @PostMapping("/logout-todos")
+    public ResponseEntity<?> logoutTodos(@AuthenticationPrincipal UsuarioToken usuario) {
+        if (usuario == null) {
+            return ResponseEntity.status(HttpServletResponse.SC_UNAUTHORIZED).body(Map.of("error", "No autenticado"));
+        }
+        jwtSesionService.revocarTodos(usuario.email());
+        return ResponseEntity.ok(Map.of("success", true));
+    }
+}
@@ -3,6 +3,7 @@ package com.peluqueria.recepcionista_virtual.controller;
 import com.peluqueria.recepcionista_virtual.dto.ClienteDTO;
 import com.peluqueria.recepcionista_virtual.service.ClienteService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -94,7 +95,7 @@ public class ClienteController {
 
         try {
             // SEGURIDAD: Verificar que el cliente existe y pertenece al tenant
-            ClienteDTO clienteExistente = clienteService.getClienteById(id);
+            ClienteDTO clienteExistente = clienteService.getClienteByIdParaEscritura(id);
             if (clienteExistente == null) {
                 return ResponseEntity.notFound().build();
             }
@@ -118,11 +119,15 @@ public class ClienteController {
     @PreAuthorize("hasRole('USER')")
     public ResponseEntity<List<ClienteDTO>> buscarClientes(
             @RequestParam(required = false) String search,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
             @RequestHeader("X-Tenant-ID") String tenantId) {
 
         try {
-            List<ClienteDTO> clientes = clienteService.searchClientesByTenantId(tenantId, search);
-            return ResponseEntity.ok(clientes);
+            Page<ClienteDTO> clientes = clienteService.buscarClientes(tenantId, search, page, size);
+            return ResponseEntity.ok()
+                    .header("X-Total-Count", String.valueOf(clientes.getTotalElements()))
+                    .body(clientes.getContent());
         } catch (Exception e) {
             System.err.println("Error buscando clientes para tenant: " + tenantId + " - " + e.getMessage());
             return ResponseEntity.internalServerError().build();
@@ -200,16 +205,16 @@ public class ClienteController {
             @RequestHeader("X-Tenant-ID") String tenantId) {
 
         try {
-            // Obtener todos los clientes del tenant
-            List<ClienteDTO> todosLosClientes = clienteService.getClientesByTenantId(tenantId);
-            List<ClienteDTO> clientesNuevos = clienteService.getClientesNuevosDelMes(tenantId);
+            // Conteos en BD, sin cargar los clientes
+            long totalClientes = clienteService.countClientesByTenantId(tenantId);
+            long clientesNuevos = clienteService.countClientesNuevosDelMes(tenantId);
 
             // Calcular estadísticas básicas
             Map<String, Object> stats = Map.of(
-                    "totalClientes", todosLosClientes.size(),
-                    "clientesNuevosMes", clientesNuevos.size(),
-                    "crecimientoMensual", todosLosClientes.size() > 0 ?
-                            (double) clientesNuevos.size() / todosLosClientes.size() * 100 : 0.0
+                    "totalClientes", totalClientes,
+                    "clientesNuevosMes", clientesNuevos,
+                    "crecimientoMensual", totalClientes > 0 ?
+                            (double) clientesNuevos / totalClientes * 100 : 0.0
             );
 
             return ResponseEntity.ok(stats);
@@ -9,7 +9,9 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.PageRequest;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
@@ -115,21 +117,18 @@ public class ConversacionIAController {
      */
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getEstadisticas(
+            @RequestParam(required = false) String desde,
+            @RequestParam(required = false) String hasta,
             @RequestAttribute(required = true) String tenantId) {
 
-        Map<String, Object> stats = new HashMap<>();
-
-        stats.put("totalConversaciones", conversacionIAService.getTotalConversaciones(tenantId));
-        stats.put("conversacionesExitosas", conversacionIAService.getConversacionesExitosas(tenantId));
+        try {
+            LocalDate inicio = desde != null ? LocalDate.parse(desde) : null;
+            LocalDate fin = hasta != null ? LocalDate.parse(hasta) : null;
 
-        // Estadísticas por canal
-        Map<String, Long> porCanal = new HashMap<>();
-        for (ConversacionIA.CanalComunicacion canal : ConversacionIA.CanalComunicacion.values()) {
-            porCanal.put(canal.name(), conversacionIAService.getConversacionesPorCanal(tenantId, canal));
+            return ResponseEntity.ok(conversacionIAService.getEstadisticas(tenantId, inicio, fin));
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().build();
         }
-        stats.put("porCanal", porCanal);
-
-        return ResponseEntity.ok(stats);
     }
 
     /**
@@ -147,7 +146,7 @@ public class ConversacionIAController {
 
             List<ConversacionIA> conversaciones = conversacionIAService.getConversacionesByFecha(tenantId, inicio, fin);
             return ResponseEntity.ok(conversaciones);
-        } catch (Exception e) {
+        } catch (DateTimeParseException e) {
             return ResponseEntity.badRequest().build();
         }
     }
@@ -1,13 +1,18 @@
 package com.peluqueria.recepcionista_virtual.controller;
 
 import com.peluqueria.recepcionista_virtual.dto.*;
+import com.peluqueria.recepcionista_virtual.model.EstadoCita;
 import com.peluqueria.recepcionista_virtual.service.*;
-import com.peluqueria.recepcionista_virtual.security.JwtTokenUtil;
+import com.peluqueria.recepcionista_virtual.security.UsuarioToken;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import java.time.LocalDate;
 import java.util.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,9 +23,6 @@ public class DashboardController {
 
     private static final Logger logger = LoggerFactory.getLogger(DashboardController.class);
 
-    @Autowired
-    private JwtTokenUtil jwtTokenUtil;
-
     @Autowired
     private TenantService tenantService;
 
@@ -39,37 +41,29 @@ public class DashboardController {
     @Autowired
     private StatsService statsService;
 
+    @Autowired
+    private DashboardOverviewService dashboardOverviewService;
+
     /**
      * 🔒 SEGURIDAD MEJORADA: Extracción segura de tenantId
+     * JwtRequestFilter ya validó el token y dejó su tenantId en la petición: no se vuelve a leer
      */
     private String extractTenantId(HttpServletRequest request) {
-        try {
-            String authHeader = request.getHeader("Authorization");
-            if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-                throw new RuntimeException("Token de autorización requerido");
-            }
-
-            String token = authHeader.substring(7);
-            String tenantId = jwtTokenUtil.extractTenantId(token);
-
-            if (tenantId == null || tenantId.trim().isEmpty()) {
-                throw new RuntimeException("TenantId no válido en token");
-            }
-
-            return tenantId;
-        } catch (Exception e) {
-            logger.error("Error extrayendo tenantId: {}", e.getMessage());
-            throw new RuntimeException("Token no válido: " + e.getMessage());
+        String tenantId = (String) request.getAttribute("tenantId");
+        if (tenantId == null || tenantId.trim().isEmpty()) {
+            throw new RuntimeException("Token no válido: TenantId no válido en token");
         }
+        return tenantId;
     }
 
     /**
-     * 🔒 VALIDACIÓN: Verificar que el tenant existe y está activo
+     * 🔒 VALIDACIÓN: Verificar que el tenant es el del usuario autenticado
+     * Que el usuario y su tenant siguen activos lo comprueba el filtro JWT (con caché, sin BD)
      */
     private void validateTenantAccess(String tenantId) {
-        try {
-            tenantService.findById(tenantId); // Lanza excepción si no existe
-        } catch (Exception e) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !(auth.getPrincipal() instanceof UsuarioToken usuario)
+                || !tenantId.equals(usuario.tenantId())) {
             logger.warn("Intento de acceso a tenant inválido: {}", tenantId);
             throw new RuntimeException("Acceso denegado al tenant");
         }
@@ -420,26 +414,16 @@ public class DashboardController {
             String tenantId = extractTenantId(request);
             validateTenantAccess(tenantId);
 
-            List<ClienteDTO> clientes;
-            if (search != null && !search.trim().isEmpty()) {
-                clientes = clienteService.searchClientesByTenantId(tenantId, search);
-            } else {
-                clientes = clienteService.getClientesByTenantId(tenantId);
-            }
-
-            // Paginación simple
-            int total = clientes.size();
-            int fromIndex = Math.min(page * size, total);
-            int toIndex = Math.min(fromIndex + size, total);
-            List<ClienteDTO> paginatedClientes = clientes.subList(fromIndex, toIndex);
+            // Paginación y búsqueda en BD
+            Page<ClienteDTO> clientes = clienteService.buscarClientes(tenantId, search, page, size);
 
             return ResponseEntity.ok(Map.of(
                     "success", true,
-                    "data", paginatedClientes,
-                    "count", paginatedClientes.size(),
-                    "total", total,
+                    "data", clientes.getContent(),
+                    "count", clientes.getNumberOfElements(),
+                    "total", clientes.getTotalElements(),
                     "page", page,
-                    "totalPages", (int) Math.ceil((double) total / size)
+                    "totalPages", clientes.getTotalPages()
             ));
         } catch (Exception e) {
             logger.error("Error obteniendo clientes: {}", e.getMessage());
@@ -505,7 +489,7 @@ public class DashboardController {
             validateTenantAccess(tenantId);
 
             // 🔒 VALIDAR QUE EL CLIENTE PERTENECE AL TENANT
-            ClienteDTO existing = clienteService.getClienteById(clienteId);
+            ClienteDTO existing = clienteService.getClienteByIdParaEscritura(clienteId);
             if (!existing.getTenantId().equals(tenantId)) {
                 logger.warn("Intento de modificar cliente de otro tenant. ClienteId: {}, TenantId: {}",
                         clienteId, tenantId);
@@ -543,28 +527,33 @@ public class DashboardController {
             String tenantId = extractTenantId(request);
             validateTenantAccess(tenantId);
 
-            List<CitaDTO> citas;
+            // Filtros y paginación en BD; un filtro no válido se ignora como antes
+            LocalDate dia = null;
             if (fecha != null) {
-                citas = citaService.getCitasByTenantIdAndFecha(tenantId, fecha);
-            } else if (estado != null) {
-                citas = citaService.getCitasByTenantIdAndEstado(tenantId, estado);
-            } else {
-                citas = citaService.getCitasByTenantId(tenantId);
+                try {
+                    dia = LocalDate.parse(fecha);
+                } catch (Exception e) {
+                    logger.warn("Fecha de filtro no válida: {}", fecha);
+                }
+            }
+            EstadoCita estadoCita = null;
+            if (estado != null) {
+                try {
+                    estadoCita = EstadoCita.valueOf(estado.toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    logger.warn("Estado de filtro no válido: {}", estado);
+                }
             }
 
-            // Paginación
-            int total = citas.size();
-            int fromIndex = Math.min(page * size, total);
-            int toIndex = Math.min(fromIndex + size, total);
-            List<CitaDTO> paginatedCitas = citas.subList(fromIndex, toIndex);
+            Page<CitaDTO> citas = citaService.buscarCitas(tenantId, dia, estadoCita, page, size);
 
             return ResponseEntity.ok(Map.of(
                     "success", true,
-                    "data", paginatedCitas,
-                    "count", paginatedCitas.size(),
-                    "total", total,
+                    "data", citas.getContent(),
+                    "count", citas.getNumberOfElements(),
+                    "total", citas.getTotalElements(),
                     "page", page,
-                    "totalPages", (int) Math.ceil((double) total / size)
+                    "totalPages", citas.getTotalPages()
             ));
         } catch (Exception e) {
             logger.error("Error obteniendo citas: {}", e.getMessage());
@@ -630,7 +619,7 @@ public class DashboardController {
             validateTenantAccess(tenantId);
 
             // 🔒 VALIDAR QUE LA CITA PERTENECE AL TENANT
-            CitaDTO existing = citaService.getCitaById(citaId);
+            CitaDTO existing = citaService.getCitaByIdParaEscritura(citaId);
             if (!existing.getTenantId().equals(tenantId)) {
                 logger.warn("Intento de modificar cita de otro tenant. CitaId: {}, TenantId: {}",
                         citaId, tenantId);
@@ -665,7 +654,7 @@ public class DashboardController {
             validateTenantAccess(tenantId);
 
             // 🔒 VALIDAR PROPIEDAD DE LA CITA
-            CitaDTO existing = citaService.getCitaById(citaId);
+            CitaDTO existing = citaService.getCitaByIdParaEscritura(citaId);
             if (!existing.getTenantId().equals(tenantId)) {
                 return ResponseEntity.badRequest().body(Map.of(
                         "success", false,
@@ -718,28 +707,8 @@ public class DashboardController {
             String tenantId = extractTenantId(request);
             validateTenantAccess(tenantId);
 
-            Map<String, Object> overview = new HashMap<>();
-
-            // Configuración del salón
-            TenantDTO salon = TenantDTO.fromTenant(tenantService.findById(tenantId));
-            overview.put("salon", salon);
-
-            // Estadísticas
-            Map<String, Object> stats = statsService.getDashboardStats(tenantId);
-            overview.put("stats", stats);
-
-            // Contadores rápidos
-            List<ServicioDTO> servicios = servicioService.getServiciosByTenantId(tenantId);
-            overview.put("totalServicios", servicios.size());
-
-            List<EmpleadoDTO> empleados = empleadoService.getEmpleadosByTenantId(tenantId);
-            overview.put("totalEmpleados", empleados.size());
-
-            List<ClienteDTO> clientes = clienteService.getClientesByTenantId(tenantId);
-            overview.put("totalClientes", clientes.size());
-
-            List<CitaDTO> citasHoy = citaService.getCitasHoyByTenantId(tenantId);
-            overview.put("citasHoy", citasHoy.size());
+            // Secciones en paralelo con timeout y último valor como respaldo
+            Map<String, Object> overview = dashboardOverviewService.getOverview(tenantId);
 
             return ResponseEntity.ok(Map.of(
                     "success", true,
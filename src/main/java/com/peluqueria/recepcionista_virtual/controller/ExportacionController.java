@@ -0,0 +1,125 @@
+package com.peluqueria.recepcionista_virtual.controller;
+
+import com.peluqueria.recepcionista_virtual.model.EstadoCita;
+import com.peluqueria.recepcionista_virtual.service.ExportacionService;
+import com.peluqueria.recepcionista_virtual.service.ExportacionService.Formato;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * 📤 EXPORTACIÓN DE HISTÓRICO PARA CONTABILIDAD
+ *
+ * GET /api/exportar/{citas|llamadas|conversaciones}?formato=csv|ndjson&desde=&hasta=&estado=
+ * Las fechas son ISO (yyyy-MM-dd, ambas incluidas). La respuesta se escribe en streaming.
+ */
+@RestController
+@RequestMapping("/api/exportar")
+public class ExportacionController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportacionController.class);
+
+    @Autowired
+    private ExportacionService exportacionService;
+
+    @GetMapping("/citas")
+    public void exportarCitas(
+            @RequestParam(required = false) String desde,
+            @RequestParam(required = false) String hasta,
+            @RequestParam(required = false) String estado,
+            @RequestParam(required = false) String formato,
+            @RequestAttribute(required = true) String tenantId,
+            HttpServletResponse response) throws IOException {
+
+        Parametros p = Parametros.leer(desde, hasta, formato, response);
+        if (p == null) {
+            return;
+        }
+
+        EstadoCita estadoCita;
+        try {
+            estadoCita = estado != null ? EstadoCita.valueOf(estado.toUpperCase()) : null;
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Estado de cita no válido: " + estado);
+            return;
+        }
+
+        prepararRespuesta(response, "citas", p.formato());
+        long filas = exportacionService.exportarCitas(
+                tenantId, p.desde(), p.hasta(), estadoCita, p.formato(), response.getOutputStream());
+        logger.info("Exportadas {} citas del tenant {}", filas, tenantId);
+    }
+
+    @GetMapping("/llamadas")
+    public void exportarLlamadas(
+            @RequestParam(required = false) String desde,
+            @RequestParam(required = false) String hasta,
+            @RequestParam(required = false) String estado,
+            @RequestParam(required = false) String formato,
+            @RequestAttribute(required = true) String tenantId,
+            HttpServletResponse response) throws IOException {
+
+        Parametros p = Parametros.leer(desde, hasta, formato, response);
+        if (p == null) {
+            return;
+        }
+
+        prepararRespuesta(response, "llamadas", p.formato());
+        long filas = exportacionService.exportarLlamadas(
+                tenantId, p.desde(), p.hasta(), estado, p.formato(), response.getOutputStream());
+        logger.info("Exportadas {} llamadas del tenant {}", filas, tenantId);
+    }
+
+    @GetMapping("/conversaciones")
+    public void exportarConversaciones(
+            @RequestParam(required = false) String desde,
+            @RequestParam(required = false) String hasta,
+            @RequestParam(required = false) String estado,
+            @RequestParam(required = false) String formato,
+            @RequestAttribute(required = true) String tenantId,
+            HttpServletResponse response) throws IOException {
+
+        Parametros p = Parametros.leer(desde, hasta, formato, response);
+        if (p == null) {
+            return;
+        }
+
+        prepararRespuesta(response, "conversaciones", p.formato());
+        long filas = exportacionService.exportarConversaciones(
+                tenantId, p.desde(), p.hasta(), estado, p.formato(), response.getOutputStream());
+        logger.info("Exportadas {} conversaciones del tenant {}", filas, tenantId);
+    }
+
+    private void prepararRespuesta(HttpServletResponse response, String nombre, Formato formato) {
+        response.setContentType(formato.contentType());
+        response.setHeader("Content-Disposition", String.format(
+                "attachment; filename=\"%s_%s.%s\"", nombre, LocalDate.now(), formato.extension()));
+        // Sin buffer del proxy: el cliente recibe las filas según se escriben
+        response.setHeader("X-Accel-Buffering", "no");
+    }
+
+    private record Parametros(LocalDate desde, LocalDate hasta, Formato formato) {
+
+        /**
+         * Valida fechas y formato; si algo no es válido responde 400 y devuelve null
+         */
+        static Parametros leer(String desde, String hasta, String formato,
+                               HttpServletResponse response) throws IOException {
+            try {
+                return new Parametros(
+                        desde != null ? LocalDate.parse(desde) : null,
+                        hasta != null ? LocalDate.parse(hasta) : null,
+                        Formato.desde(formato));
+            } catch (Exception e) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                        "Parámetros de exportación no válidos (fechas yyyy-MM-dd, formato csv|ndjson)");
+                return null;
+            }
+        }
+    }
+}
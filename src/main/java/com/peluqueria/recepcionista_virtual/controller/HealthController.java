@@ -1,18 +1,62 @@
 package com.peluqueria.recepcionista_virtual.controller;
 
+import com.peluqueria.recepcionista_virtual.service.CacheEstadisticasService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/health")
 public class HealthController {
 
+    private static final String[] REGIONES_CACHE = {"tenants", "servicios", "empleados"};
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CacheEstadisticasService cacheEstadisticasService;
+
     @GetMapping
     public Map<String, String> health() {
         return Map.of("status", "UP");
     }
+
+    /**
+     * Aciertos/fallos de la caché de segundo nivel por región y de la caché de estadísticas
+     */
+    @GetMapping("/cache")
+    public Map<String, Object> cache() {
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        Map<String, Object> regiones = new LinkedHashMap<>();
+        for (String region : REGIONES_CACHE) {
+            CacheRegionStatistics regionStats = stats.getDomainDataRegionStatistics(region);
+            long aciertos = regionStats.getHitCount();
+            long fallos = regionStats.getMissCount();
+
+            Map<String, Object> datos = new LinkedHashMap<>();
+            datos.put("aciertos", aciertos);
+            datos.put("fallos", fallos);
+            datos.put("escrituras", regionStats.getPutCount());
+            datos.put("elementosEnMemoria", regionStats.getElementCountInMemory());
+            datos.put("ratioAciertos", aciertos + fallos > 0 ? (double) aciertos / (aciertos + fallos) : 0.0);
+            regiones.put(region, datos);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("estadisticasActivas", stats.isStatisticsEnabled());
+        response.put("regiones", regiones);
+        response.put("estadisticas", cacheEstadisticasService.getMetricas());
+        return response;
+    }
 }
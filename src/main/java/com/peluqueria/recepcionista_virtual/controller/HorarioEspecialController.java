@@ -4,6 +4,8 @@ import com.peluqueria.recepcionista_virtual.dto.*;
 import com.peluqueria.recepcionista_virtual.model.HorarioEspecial;
 import com.peluqueria.recepcionista_virtual.model.TipoCierre;
 import com.peluqueria.recepcionista_virtual.service.HorarioEspecialService;
+import com.peluqueria.recepcionista_virtual.service.ReprogramacionCierreService;
+import com.peluqueria.recepcionista_virtual.service.VistaPreviaCierreService;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -38,6 +40,12 @@ public class HorarioEspecialController {
     @Autowired
     private HorarioEspecialService horarioEspecialService;
 
+    @Autowired
+    private VistaPreviaCierreService vistaPreviaCierreService;
+
+    @Autowired
+    private ReprogramacionCierreService reprogramacionCierreService;
+
     // ========================================
     // ENDPOINTS CRITICOS - CORREGIDOS
     // ========================================
@@ -45,12 +53,14 @@ public class HorarioEspecialController {
     /**
      * ENDPOINT SUPER CRITICO CORREGIDO: Cierre rapido de emergencia
      * VALIDACION AGREGADA: Fechas futuras + usuarioId
+     * Con reprogramar=true la respuesta incluye una propuesta de huecos para las citas canceladas
      */
     @PostMapping("/cierre-rapido")
     public ResponseEntity<?> cierreRapido(
             @RequestAttribute("tenantId") String tenantId,
             @RequestAttribute(value = "usuarioId", required = false) String usuarioId,
-            @RequestBody CierreRapidoRequest request) {
+            @RequestBody CierreRapidoRequest request,
+            @RequestParam(defaultValue = "false") boolean reprogramar) {
 
         logger.info("🚨 Solicitud de cierre rapido - Tenant: {}, Usuario: {}, Fecha: {}, Motivo: {}",
                 tenantId, usuarioId, request.getFecha(), request.getMotivo());
@@ -78,6 +88,9 @@ public class HorarioEspecialController {
             response.put("cierre", horario);
             response.put("fechaAfectada", request.getFecha());
             response.put("tenantId", tenantId);
+            if (reprogramar) {
+                response.put("reprogramacion", propuestaTrasCierre(tenantId, horario.getId()));
+            }
 
             logger.info("✅ Cierre rapido creado exitosamente: {}", horario.getId());
 
@@ -141,25 +154,85 @@ public class HorarioEspecialController {
         }
     }
 
+    /**
+     * Vista previa del impacto de un cierre: totales por estado, día y empleado, primera
+     * página de citas afectadas y un token para confirmar con crear-cierre?token=
+     */
+    @PostMapping("/vista-previa")
+    public ResponseEntity<?> previsualizarCierre(
+            @RequestAttribute("tenantId") String tenantId,
+            @Valid @RequestBody HorarioEspecialDTO dto) {
+
+        logger.info("Vista previa de cierre - Tenant: {}, Fechas: {} - {}",
+                tenantId, dto.getFechaInicio(), dto.getFechaFin());
+
+        try {
+            return ResponseEntity.ok(horarioEspecialService.previsualizarCierre(tenantId, dto));
+
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", e.getMessage());
+            errorResponse.put("error", "VALIDATION_ERROR");
+            return ResponseEntity.badRequest().body(errorResponse);
+
+        } catch (Exception e) {
+            logger.error("Error en la vista previa del cierre", e);
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Error interno del servidor");
+            errorResponse.put("error", "INTERNAL_ERROR");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+
+    /**
+     * Siguientes páginas de citas afectadas de una vista previa
+     */
+    @GetMapping("/vista-previa/{token}/citas")
+    public ResponseEntity<?> getCitasVistaPrevia(
+            @RequestAttribute("tenantId") String tenantId,
+            @PathVariable String token,
+            @RequestParam(defaultValue = "0") int pagina,
+            @RequestParam(defaultValue = "20") int tamano) {
+
+        List<Map<String, Object>> citas = vistaPreviaCierreService.getPagina(tenantId, token, pagina, tamano);
+        if (citas == null) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Vista previa no encontrada o caducada");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("pagina", pagina);
+        response.put("citas", citas);
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * CORREGIDO: Crear cierre con verificación + usuarioId
+     * Con token (de /vista-previa) confirma el cierre previsualizado
      */
     @PostMapping("/crear-cierre")
     public ResponseEntity<?> crearCierre(
             @RequestAttribute("tenantId") String tenantId,
             @RequestAttribute(value = "usuarioId", required = false) String usuarioId,
             @Valid @RequestBody HorarioEspecialDTO dto,
-            @RequestParam(defaultValue = "false") boolean forzar) {
+            @RequestParam(defaultValue = "false") boolean forzar,
+            @RequestParam(required = false) String token,
+            @RequestParam(defaultValue = "false") boolean reprogramar) {
 
-        logger.info("Creando cierre - Tenant: {}, Usuario: {}, Fechas: {} - {}, Forzar: {}",
-                tenantId, usuarioId, dto.getFechaInicio(), dto.getFechaFin(), forzar);
+        logger.info("Creando cierre - Tenant: {}, Usuario: {}, Fechas: {} - {}, Forzar: {}, Token: {}",
+                tenantId, usuarioId, dto.getFechaInicio(), dto.getFechaFin(), forzar, token);
 
         try {
             // BD COMPATIBLE: Usar usuarioId o fallback
             String usuario = usuarioId != null ? usuarioId : "usuario";
 
             Object resultado = horarioEspecialService.crearCierreConVerificacion(
-                    tenantId, dto, forzar, usuario
+                    tenantId, dto, forzar, usuario, token
             );
 
             // Si el resultado es ResultadoVerificacionCitas, hay citas afectadas
@@ -171,7 +244,8 @@ public class HorarioEspecialController {
                 response.put("citasAfectadas", verificacion.getNumeroCitasAfectadas());
                 response.put("mensaje", verificacion.getMensajeAviso());
                 response.put("citas", verificacion.getCitasAfectadas());
-                response.put("accion", "Para confirmar el cierre, reenvie la peticion con parametro forzar=true");
+                response.put("accion", "Para confirmar el cierre, reenvie la peticion con parametro forzar=true " +
+                        "o con el token de /vista-previa");
 
                 return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
             }
@@ -186,6 +260,9 @@ public class HorarioEspecialController {
                     "Cierre programado exitosamente");
             response.put("cierre", horario);
             response.put("tenantId", tenantId);
+            if (reprogramar) {
+                response.put("reprogramacion", propuestaTrasCierre(tenantId, horario.getId()));
+            }
 
             return ResponseEntity.ok(response);
 
@@ -258,6 +335,99 @@ public class HorarioEspecialController {
         }
     }
 
+    // ========================================
+    // REPROGRAMACIÓN DE CITAS CANCELADAS POR UN CIERRE
+    // ========================================
+
+    /**
+     * Propone un hueco para cada cita futura cancelada por el cierre (la propuesta se
+     * aprueba o descarta con el token devuelto)
+     */
+    @PostMapping("/{cierreId}/reprogramacion")
+    public ResponseEntity<?> proponerReprogramacion(
+            @RequestAttribute("tenantId") String tenantId,
+            @PathVariable String cierreId) {
+
+        try {
+            return ResponseEntity.ok(Map.of("success", true,
+                    "reprogramacion", reprogramacionCierreService.proponer(tenantId, cierreId).resumen()));
+
+        } catch (Exception e) {
+            logger.error("Error proponiendo reprogramación del cierre {}", cierreId, e);
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", e.getMessage());
+            errorResponse.put("error", "REPROGRAMACION_ERROR");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+
+    @GetMapping("/reprogramacion/{token}")
+    public ResponseEntity<?> getReprogramacion(
+            @RequestAttribute("tenantId") String tenantId,
+            @PathVariable String token) {
+
+        ReprogramacionCierreService.Propuesta propuesta = reprogramacionCierreService.getPropuesta(tenantId, token);
+        if (propuesta == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(Map.of("success", true, "reprogramacion", propuesta.resumen()));
+    }
+
+    /**
+     * Aplica la propuesta; con {"citaIds": [...]} solo esas citas, el resto siguen canceladas
+     */
+    @PostMapping("/reprogramacion/{token}/aprobar")
+    public ResponseEntity<?> aprobarReprogramacion(
+            @RequestAttribute("tenantId") String tenantId,
+            @PathVariable String token,
+            @RequestBody(required = false) Map<String, List<String>> body) {
+
+        logger.info("Aprobando reprogramación - Tenant: {}, Token: {}", tenantId, token);
+
+        try {
+            Map<String, Object> resultado = reprogramacionCierreService.aprobar(
+                    tenantId, token, body != null ? body.get("citaIds") : null);
+            if (resultado == null) {
+                return ResponseEntity.notFound().build();
+            }
+            Map<String, Object> response = new HashMap<>(resultado);
+            response.put("success", true);
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            logger.error("Error aprobando reprogramación {}", token, e);
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Error interno del servidor");
+            errorResponse.put("error", "INTERNAL_ERROR");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+
+    @DeleteMapping("/reprogramacion/{token}")
+    public ResponseEntity<?> descartarReprogramacion(
+            @RequestAttribute("tenantId") String tenantId,
+            @PathVariable String token) {
+
+        if (!reprogramacionCierreService.descartar(tenantId, token)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(Map.of("success", true, "message", "Propuesta descartada, las citas siguen canceladas"));
+    }
+
+    /**
+     * El cierre ya está creado: si la propuesta falla se informa sin invalidar el cierre
+     */
+    private Map<String, Object> propuestaTrasCierre(String tenantId, String cierreId) {
+        try {
+            return reprogramacionCierreService.proponer(tenantId, cierreId).resumen();
+        } catch (Exception e) {
+            logger.error("Error proponiendo reprogramación del cierre {}: {}", cierreId, e.getMessage());
+            return Map.of("error", "No se pudo calcular la reprogramación: " + e.getMessage());
+        }
+    }
+
     // ========================================
     // ENDPOINTS PARA DASHBOARD - SIN CAMBIOS
     // ========================================
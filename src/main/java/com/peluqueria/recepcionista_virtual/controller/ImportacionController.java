@@ -0,0 +1,121 @@
+package com.peluqueria.recepcionista_virtual.controller;
+
+import com.peluqueria.recepcionista_virtual.service.ImportacionClientesService;
+import com.peluqueria.recepcionista_virtual.service.ImportacionClientesService.ErrorFila;
+import com.peluqueria.recepcionista_virtual.service.ImportacionClientesService.Formato;
+import com.peluqueria.recepcionista_virtual.service.ImportacionClientesService.Importacion;
+import com.peluqueria.recepcionista_virtual.util.CeldaCsv;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 📥 IMPORTACIÓN MASIVA DE CLIENTES
+ *
+ * POST /api/importar/clientes (multipart, campo "archivo", ?formato=csv|json) → 202 con el id
+ *      (404 si el tenant no existe, 409 si ya hay una en curso, 503 + Retry-After si la cola está llena)
+ * GET  /api/importar/clientes/{id}          → progreso y contadores
+ * GET  /api/importar/clientes/{id}/errores  → informe CSV de filas rechazadas
+ *
+ * CSV con cabecera (nombre, telefono, email, notas; separador ',' o ';').
+ * JSON como array de objetos o NDJSON con las mismas claves.
+ */
+@RestController
+@RequestMapping("/api/importar/clientes")
+public class ImportacionController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportacionController.class);
+
+    // Una importación suele tardar menos de un minuto en liberar su hueco en la cola
+    private static final int REINTENTAR_EN_SEGUNDOS = 60;
+
+    @Autowired
+    private ImportacionClientesService importacionClientesService;
+
+    @PostMapping
+    public ResponseEntity<?> importar(
+            @RequestParam("archivo") MultipartFile archivo,
+            @RequestParam(required = false) String formato,
+            @RequestAttribute(required = true) String tenantId) {
+
+        if (archivo.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "error", "El archivo está vacío"));
+        }
+
+        Formato tipo;
+        try {
+            tipo = Formato.desde(formato, archivo.getOriginalFilename());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "error", "Formato no válido (csv|json)"));
+        }
+
+        try {
+            // El multipart se borra al terminar la petición: el servicio procesa su propia copia
+            Path temporal = Files.createTempFile("importacion-clientes-", "." + tipo.name().toLowerCase());
+            archivo.transferTo(temporal);
+
+            Importacion importacion = importacionClientesService.iniciar(tenantId, temporal, tipo);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(Map.of("success", true, "importacion", importacion.resumen()));
+
+        } catch (IOException e) {
+            logger.error("Error guardando el archivo de importación del tenant {}: {}", tenantId, e.getMessage());
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("success", false, "error", "No se pudo leer el archivo"));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("success", false, "error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("success", false, "error", e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(REINTENTAR_EN_SEGUNDOS))
+                    .body(Map.of("success", false, "error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getProgreso(@PathVariable String id, @RequestAttribute(required = true) String tenantId) {
+        Importacion importacion = importacionClientesService.getImportacion(tenantId, id);
+        if (importacion == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(Map.of("success", true, "importacion", importacion.resumen()));
+    }
+
+    @GetMapping("/{id}/errores")
+    public void getErrores(@PathVariable String id, @RequestAttribute(required = true) String tenantId,
+                           HttpServletResponse response) throws IOException {
+        Importacion importacion = importacionClientesService.getImportacion(tenantId, id);
+        if (importacion == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Importación no encontrada");
+            return;
+        }
+
+        response.setContentType("text/csv; charset=UTF-8");
+        response.setHeader("Content-Disposition",
+                String.format("attachment; filename=\"errores_importacion_%s.csv\"", id));
+
+        PrintWriter writer = response.getWriter();
+        writer.write('\uFEFF'); // BOM: Excel abre el UTF-8 con tildes correctamente
+        writer.write("fila,motivo,valor\r\n");
+        for (ErrorFila error : importacion.getErrores()) {
+            writer.write(error.fila() + "," + CeldaCsv.escribir(error.motivo()) + ","
+                    + CeldaCsv.escribir(error.valor()) + "\r\n");
+        }
+        writer.flush();
+    }
+}
@@ -9,7 +9,9 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.PageRequest;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
@@ -193,23 +195,18 @@ public class LogLlamadaController {
      */
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getEstadisticas(
+            @RequestParam(required = false) String desde,
+            @RequestParam(required = false) String hasta,
             @RequestAttribute(required = true) String tenantId) {
 
-        Map<String, Object> stats = new HashMap<>();
-
-        stats.put("totalLlamadas", logLlamadaService.getTotalLlamadas(tenantId));
-        stats.put("llamadasEntrantes", logLlamadaService.getLlamadasEntrantes(tenantId));
-        stats.put("llamadasSalientes", logLlamadaService.getLlamadasSalientes(tenantId));
-        stats.put("llamadasCompletadas", logLlamadaService.getLlamadasCompletadas(tenantId));
-        stats.put("llamadasConCita", logLlamadaService.getLlamadasConCitaCreada(tenantId));
-
-        BigDecimal costoTotal = logLlamadaService.getCostoTotalLlamadas(tenantId);
-        stats.put("costoTotal", costoTotal != null ? costoTotal : BigDecimal.ZERO);
-
-        Long duracionTotal = logLlamadaService.getDuracionTotalLlamadas(tenantId);
-        stats.put("duracionTotalSegundos", duracionTotal != null ? duracionTotal : 0L);
+        try {
+            LocalDate inicio = desde != null ? LocalDate.parse(desde) : null;
+            LocalDate fin = hasta != null ? LocalDate.parse(hasta) : null;
 
-        return ResponseEntity.ok(stats);
+            return ResponseEntity.ok(logLlamadaService.getEstadisticas(tenantId, inicio, fin));
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     /**
@@ -227,7 +224,7 @@ public class LogLlamadaController {
 
             List<LogLlamada> llamadas = logLlamadaService.getLlamadasByFecha(tenantId, inicio, fin);
             return ResponseEntity.ok(llamadas);
-        } catch (Exception e) {
+        } catch (DateTimeParseException e) {
             return ResponseEntity.badRequest().build();
         }
     }
@@ -184,6 +184,36 @@ public class StatsController {
         }
     }
 
+    /**
+     * 🎯 RIESGO DE NO-SHOW - Puntuaciones precalculadas de las próximas 24h
+     */
+    @GetMapping("/riesgo-no-show")
+    public ResponseEntity<?> getRiesgoNoShow(HttpServletRequest request) {
+        logger.info("Endpoint riesgo de no-show ejecutado");
+
+        try {
+            String tenantId = extractTenantId(request);
+
+            if (tenantId == null) {
+                return ResponseEntity.badRequest().body(
+                        createErrorResponse("TenantId requerido para riesgo de no-show")
+                );
+            }
+
+            Map<String, Object> riesgo = statsService.getRiesgoNoShow(tenantId);
+            Map<String, Object> response = createSuccessResponse(
+                    riesgo,
+                    "Riesgo de no-show de las próximas citas"
+            );
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            logger.error("Error en riesgo de no-show: {}", e.getMessage(), e);
+            return ResponseEntity.ok(createErrorResponse("Error obteniendo riesgo de no-show"));
+        }
+    }
+
     /**
      * 👑 CLIENTES VIP - Análisis de valor y LTV
      */
@@ -2,7 +2,8 @@ package com.peluqueria.recepcionista_virtual.controller;
 
 import com.peluqueria.recepcionista_virtual.dto.OpenAIResponse;
 import com.peluqueria.recepcionista_virtual.service.*;
-import com.peluqueria.recepcionista_virtual.model.Cliente;
+import com.peluqueria.recepcionista_virtual.service.LimiteTenantService.Permiso;
+import com.peluqueria.recepcionista_virtual.service.LimiteTenantService.Recurso;
 import com.peluqueria.recepcionista_virtual.repository.ClienteRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -25,6 +26,9 @@ public class TwilioController {
     @Autowired
     private ClienteRepository clienteRepository; // ✅ AGREGADO: Para mapear teléfono → tenant
 
+    @Autowired
+    private LimiteTenantService limiteTenantService; // Ritmo por minuto de las llamadas (no pasan por LimiteTenantFilter)
+
     @Value("${default.tenant.id:tenant_demo_001}")
     private String defaultTenantId;
 
@@ -53,6 +57,12 @@ public class TwilioController {
             String tenantId = determinarTenantId(from, to);
             log.info("✅ Tenant determinado: {} para llamada desde: {} hacia: {}", tenantId, from, to);
 
+            Permiso ritmo = limiteTenantService.comprobarRitmo(tenantId, Recurso.API);
+            if (!ritmo.isConcedido()) {
+                return ResponseEntity.ok(generarTwiMLEspera(tenantId, callSid, ritmo,
+                        "<Redirect method=\"POST\">/api/twilio/webhook</Redirect>"));
+            }
+
             // ✅ PROCESAR CON OPENAI PERSONALIZADO POR TENANT
             OpenAIResponse respuestaIA = openAIService.procesarMensajeConVerificacionCierres(
                     body != null ? body : "Hola",
@@ -96,14 +106,12 @@ public class TwilioController {
      */
     private String determinarTenantId(String telefonoFrom, String telefonoTo) {
         try {
-            // ESTRATEGIA 1: Buscar cliente existente por teléfono
-            List<Cliente> clientes = clienteRepository.findAll();
-            for (Cliente cliente : clientes) {
-                if (telefonoFrom.equals(cliente.getTelefono())) {
-                    String tenantId = cliente.getTenant().getId();
-                    log.info("👤 Cliente encontrado - Tenant: {} para teléfono: {}", tenantId, telefonoFrom);
-                    return tenantId;
-                }
+            // ESTRATEGIA 1: Buscar cliente existente por teléfono (índice sobre telefono_norm)
+            List<String> tenantIds = clienteRepository.findTenantIdsByTelefono(telefonoFrom);
+            if (!tenantIds.isEmpty()) {
+                String tenantId = tenantIds.get(0);
+                log.info("👤 Cliente encontrado - Tenant: {} para teléfono: {}", tenantId, telefonoFrom);
+                return tenantId;
             }
 
             // ESTRATEGIA 2: Mapeo por número de teléfono destino (futuro)
@@ -136,6 +144,21 @@ public class TwilioController {
                 "</Response>";
     }
 
+    /**
+     * Tenant por encima de su ritmo por minuto: en lugar de colgar, se pide un momento,
+     * se espera lo que falta para el siguiente token (como mucho 5 s) y se continúa con
+     * el paso indicado, sin consultar OpenAI entretanto
+     */
+    private String generarTwiMLEspera(String tenantId, String callSid, Permiso ritmo, String siguiente) {
+        log.warn("Llamada {} en espera para tenant {}: {}", callSid, tenantId, ritmo.getMotivo());
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                "<Response>" +
+                "<Say language=\"es-ES\" voice=\"Polly.Conchita\">Un momento, por favor.</Say>" +
+                "<Pause length=\"" + Math.min(5, ritmo.getReintentarEnSegundos()) + "\"/>" +
+                siguiente +
+                "</Response>";
+    }
+
     /**
      * MÉTODO AUXILIAR - Generar TwiML de error
      */
@@ -158,6 +181,11 @@ public class TwilioController {
 
         // ✅ Determinar tenant para personalizar saludo
         String tenantId = determinarTenantId(from, params.get("To"));
+        Permiso ritmo = limiteTenantService.comprobarRitmo(tenantId, Recurso.API);
+        if (!ritmo.isConcedido()) {
+            return generarTwiMLEspera(tenantId, callSid, ritmo,
+                    "<Redirect method=\"POST\">/api/twilio/voice</Redirect>");
+        }
 
         return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
                 "<Response>" +
@@ -184,6 +212,16 @@ public class TwilioController {
             // ✅ DETERMINAR TENANT DINÁMICAMENTE
             String tenantId = determinarTenantId(from, to);
 
+            // Sin SpeechResult un Redirect perdería lo dicho: se vuelve a preguntar
+            Permiso ritmo = limiteTenantService.comprobarRitmo(tenantId, Recurso.API);
+            if (!ritmo.isConcedido()) {
+                return generarTwiMLEspera(tenantId, callSid, ritmo,
+                        "<Gather input=\"speech\" action=\"/api/twilio/process-speech\" " +
+                        "method=\"POST\" language=\"es-ES\" speechTimeout=\"auto\">" +
+                        "<Say language=\"es-ES\" voice=\"Polly.Conchita\">Disculpe la espera. ¿Puede repetírmelo?</Say>" +
+                        "</Gather>");
+            }
+
             // ✅ USAR OpenAIService PERSONALIZADO POR TENANT
             OpenAIResponse respuestaIA = openAIService.procesarMensajeConVerificacionCierres(
                     speechResult,
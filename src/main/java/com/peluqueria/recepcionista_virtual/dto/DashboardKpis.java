@@ -0,0 +1,31 @@
+package com.peluqueria.recepcionista_virtual.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * KPIs del dashboard calculados en una sola consulta (StatsService.getDashboardKpis).
+ * Ventanas: hoy, últimos 7 días y últimos 30 días (días completos hasta hoy).
+ */
+public record DashboardKpis(
+        long citasHoy,
+        long citasSemana,
+        long citasMes,
+        BigDecimal ingresosDia,
+        BigDecimal ingresosSemana,
+        BigDecimal ingresosMes,
+        long canceladasMes,
+        long clientesNuevosHoy,
+        long clientesNuevosSemana
+) {
+
+    /**
+     * Porcentaje de citas canceladas en los últimos 30 días
+     */
+    public double tasaCancelacion() {
+        return citasMes > 0 ? (canceladasMes * 100.0) / citasMes : 0.0;
+    }
+
+    public static DashboardKpis vacio() {
+        return new DashboardKpis(0, 0, 0, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, 0, 0, 0);
+    }
+}
@@ -0,0 +1,69 @@
+package com.peluqueria.recepcionista_virtual.dto;
+
+import com.peluqueria.recepcionista_virtual.model.Cita;
+import com.peluqueria.recepcionista_virtual.model.EstadoCita;
+import com.peluqueria.recepcionista_virtual.model.HorarioEspecial;
+import com.peluqueria.recepcionista_virtual.model.LogLlamada;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cambio de dominio que se empuja al dashboard por STOMP como delta compacto.
+ * Se publica con ApplicationEventPublisher y DashboardPushService lo envía tras el commit
+ * a /topic/tenant/{tenantId}/{canal}.
+ */
+public record EventoDashboard(
+        String tenantId,
+        String canal,
+        String tipo,
+        String entidadId,
+        Map<String, Object> datos
+) {
+
+    public static final String CANAL_CITAS = "citas";
+    public static final String CANAL_LLAMADAS = "llamadas";
+    public static final String CANAL_CIERRES = "cierres";
+
+    public static EventoDashboard deCita(Cita cita, String tipo) {
+        Map<String, Object> datos = new HashMap<>();
+        datos.put("estado", cita.getEstado() != null ? cita.getEstado().name() : null);
+        datos.put("fechaHora", cita.getFechaHora() != null ? cita.getFechaHora().toString() : null);
+        datos.put("empleadoId", cita.getEmpleado() != null ? cita.getEmpleado().getId() : null);
+        datos.put("servicioId", cita.getServicio() != null ? cita.getServicio().getId() : null);
+        datos.put("precio", cita.getPrecio());
+        datos.put("fechaCreacion", cita.getFechaCreacion() != null ? cita.getFechaCreacion().toString() : null);
+        return new EventoDashboard(cita.getTenant().getId(), CANAL_CITAS, tipo, cita.getId(), datos);
+    }
+
+    /**
+     * Cambio de una cita existente: incluye estado y fecha previos para quien
+     * mantiene agregados incrementales (p. ej. DemandaHorariaService)
+     */
+    public static EventoDashboard deCita(Cita cita, String tipo, EstadoCita estadoAnterior,
+                                         LocalDateTime fechaHoraAnterior) {
+        EventoDashboard evento = deCita(cita, tipo);
+        evento.datos().put("estadoAnterior", estadoAnterior != null ? estadoAnterior.name() : null);
+        evento.datos().put("fechaHoraAnterior", fechaHoraAnterior != null ? fechaHoraAnterior.toString() : null);
+        return evento;
+    }
+
+    public static EventoDashboard deLlamada(LogLlamada llamada, String tipo) {
+        Map<String, Object> datos = new HashMap<>();
+        datos.put("estado", llamada.getEstado());
+        datos.put("numeroOrigen", llamada.getNumeroOrigen());
+        datos.put("duracionSegundos", llamada.getDuracionSegundos());
+        datos.put("citaCreadaId", llamada.getCitaCreadaId());
+        return new EventoDashboard(llamada.getTenantId(), CANAL_LLAMADAS, tipo, llamada.getId(), datos);
+    }
+
+    public static EventoDashboard deCierre(HorarioEspecial cierre, String tipo) {
+        Map<String, Object> datos = new HashMap<>();
+        datos.put("tipoCierre", cierre.getTipoCierre() != null ? cierre.getTipoCierre().name() : null);
+        datos.put("fechaInicio", cierre.getFechaInicio() != null ? cierre.getFechaInicio().toString() : null);
+        datos.put("fechaFin", cierre.getFechaFin() != null ? cierre.getFechaFin().toString() : null);
+        datos.put("motivo", cierre.getMotivo());
+        return new EventoDashboard(cierre.getTenantId(), CANAL_CIERRES, tipo, cierre.getId(), datos);
+    }
+}
@@ -1,5 +1,6 @@
 package com.peluqueria.recepcionista_virtual.dto;
 
+import com.peluqueria.recepcionista_virtual.model.RecurrenciaCierre;
 import com.peluqueria.recepcionista_virtual.model.TipoCierre;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import jakarta.validation.constraints.NotNull;
@@ -48,6 +49,14 @@ public class HorarioEspecialDTO {
 
     private Boolean notificarClientesExistentes = true;
 
+    // Opcional: repetir el cierre (fechaInicio-fechaFin es la primera ocurrencia)
+    private RecurrenciaCierre recurrencia;
+
+    private Integer recurrenciaIntervalo = 1;
+
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate recurrenciaHasta;
+
     private String creadoPor;
 
     // Constructores
@@ -95,6 +104,15 @@ public class HorarioEspecialDTO {
     public Boolean getNotificarClientesExistentes() { return notificarClientesExistentes; }
     public void setNotificarClientesExistentes(Boolean notificarClientesExistentes) { this.notificarClientesExistentes = notificarClientesExistentes; }
 
+    public RecurrenciaCierre getRecurrencia() { return recurrencia; }
+    public void setRecurrencia(RecurrenciaCierre recurrencia) { this.recurrencia = recurrencia; }
+
+    public Integer getRecurrenciaIntervalo() { return recurrenciaIntervalo; }
+    public void setRecurrenciaIntervalo(Integer recurrenciaIntervalo) { this.recurrenciaIntervalo = recurrenciaIntervalo; }
+
+    public LocalDate getRecurrenciaHasta() { return recurrenciaHasta; }
+    public void setRecurrenciaHasta(LocalDate recurrenciaHasta) { this.recurrenciaHasta = recurrenciaHasta; }
+
     public String getCreadoPor() { return creadoPor; }
     public void setCreadoPor(String creadoPor) { this.creadoPor = creadoPor; }
 }
\ No newline at end of file
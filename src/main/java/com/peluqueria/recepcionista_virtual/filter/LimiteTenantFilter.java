@@ -0,0 +1,70 @@
+package com.peluqueria.recepcionista_virtual.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.peluqueria.recepcionista_virtual.service.LimiteTenantService;
+import com.peluqueria.recepcionista_virtual.service.LimiteTenantService.Permiso;
+import com.peluqueria.recepcionista_virtual.service.LimiteTenantService.Recurso;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Aplica los límites por tenant a las peticiones autenticadas de la API (a los webhooks
+ * de Twilio, sin JWT, TwilioController les aplica solo el ritmo por minuto). Va en la
+ * cadena de seguridad justo después de JwtRequestFilter, que deja el tenantId en la
+ * petición; no es @Component para que el contenedor no lo registre además fuera de
+ * la cadena (antes de que exista el tenantId).
+ */
+public class LimiteTenantFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LimiteTenantFilter.class);
+
+    private final LimiteTenantService limiteTenantService;
+
+    private final ObjectMapper objectMapper;
+
+    public LimiteTenantFilter(LimiteTenantService limiteTenantService, ObjectMapper objectMapper) {
+        this.limiteTenantService = limiteTenantService;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain)
+            throws ServletException, IOException {
+
+        String tenantId = (String) request.getAttribute("tenantId");
+        if (tenantId == null || "OPTIONS".equalsIgnoreCase(request.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        try (Permiso permiso = limiteTenantService.adquirir(tenantId, Recurso.API)) {
+            if (!permiso.isConcedido()) {
+                logger.warn("429 para tenant {} en {} {}: {}", tenantId, request.getMethod(),
+                        request.getServletPath(), permiso.getMotivo());
+                response.setStatus(429);
+                response.setHeader("Retry-After", String.valueOf(permiso.getReintentarEnSegundos()));
+                response.setContentType("application/json;charset=UTF-8");
+
+                Map<String, Object> error = new LinkedHashMap<>();
+                error.put("success", false);
+                error.put("error", "RATE_LIMIT");
+                error.put("message", permiso.getMotivo());
+                error.put("reintentarEnSegundos", permiso.getReintentarEnSegundos());
+                objectMapper.writeValue(response.getWriter(), error);
+                return;
+            }
+            chain.doFilter(request, response);
+        }
+    }
+}
@@ -41,7 +41,7 @@ public class SimpleCorsFilter implements Filter {
                         "Access-Control-Request-Method, Access-Control-Request-Headers");
 
         response.setHeader("Access-Control-Allow-Credentials", "true");
-        response.setHeader("Access-Control-Expose-Headers", "Authorization, Content-Type, x-tenant-id");
+        response.setHeader("Access-Control-Expose-Headers", "Authorization, Content-Type, x-tenant-id, Retry-After");
 
         if ("OPTIONS".equalsIgnoreCase(request.getMethod())) {
             response.setStatus(HttpServletResponse.SC_OK);
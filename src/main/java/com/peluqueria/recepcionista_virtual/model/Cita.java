@@ -2,15 +2,22 @@ package com.peluqueria.recepcionista_virtual.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.UpdateTimestamp;
 import java.time.LocalDateTime;
 import java.math.BigDecimal;
 
 @Entity
-@Table(name = "citas")
+@Table(name = "citas", indexes = {
+        @Index(name = "idx_citas_tenant_fecha", columnList = "tenant_id, fecha_hora"),
+        @Index(name = "idx_citas_tenant_estado_fecha", columnList = "tenant_id, estado, fecha_hora"),
+        @Index(name = "idx_citas_cliente_fecha", columnList = "cliente_id, fecha_hora")
+})
 @Data
 public class Cita {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @GeneratedValue(generator = "uuid_v7")
+    @GenericGenerator(name = "uuid_v7", type = UuidV7Generator.class)
     private String id;
 
     @ManyToOne
@@ -43,6 +50,10 @@ public class Cita {
     private OrigenCita origen = OrigenCita.TELEFONO;
 
     private LocalDateTime fechaCreacion = LocalDateTime.now();
+
+    // Último cambio (null en citas no modificadas desde que existe la columna)
+    @UpdateTimestamp
+    private LocalDateTime fechaActualizacion;
 }
 
 
@@ -1,12 +1,15 @@
 package com.peluqueria.recepcionista_virtual.model;
 
+import com.peluqueria.recepcionista_virtual.util.TelefonoNormalizador;
 import jakarta.persistence.*;
 import lombok.Data;
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "clientes")
+@Table(name = "clientes", indexes = {
+        @Index(name = "idx_clientes_tenant_registro", columnList = "tenant_id, fecha_registro")
+})
 @Data
 public class Cliente {
     @Id
@@ -19,6 +22,10 @@ public class Cliente {
 
     private String nombre;
     private String telefono;
+
+    // Teléfono en E.164, clave única por tenant (uk_clientes_telefono_norm_tenant)
+    @Column(name = "telefono_norm")
+    private String telefonoNorm;
     private String email;
     private String notas;
 
@@ -27,4 +34,10 @@ public class Cliente {
 
     @OneToMany(mappedBy = "cliente")
     private List<Cita> historialCitas;
+
+    @PrePersist
+    @PreUpdate
+    void normalizarTelefono() {
+        this.telefonoNorm = TelefonoNormalizador.normalizar(telefono);
+    }
 }
@@ -88,6 +88,13 @@ public class ConfiguracionTenant {
         public static final String MODELO_GPT = "modelo_gpt";
         public static final String TEMPERATURA_IA = "temperatura_ia";
         public static final String PROMPT_SISTEMA = "prompt_sistema";
+        public static final String PLAN = "plan";
+        public static final String RETENCION_MESES = "retencion_meses";
+        public static final String LIMITE_PETICIONES_MINUTO = "limite_peticiones_minuto";
+        public static final String LIMITE_RAFAGA = "limite_rafaga";
+        public static final String LIMITE_CONCURRENTES = "limite_peticiones_concurrentes";
+        public static final String LIMITE_IA_MINUTO = "limite_ia_minuto";
+        public static final String LIMITE_IA_CONCURRENTES = "limite_ia_concurrentes";
     }
 
     // Categorías predefinidas
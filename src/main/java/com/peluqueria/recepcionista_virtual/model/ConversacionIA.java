@@ -93,8 +93,8 @@ public class ConversacionIA {
         this.exitoso = true;
         this.estado = "completado";
         this.modeloIa = "gpt-4";
-        // Generar ID único
-        this.id = java.util.UUID.randomUUID().toString();
+        // Generar ID único ordenado por tiempo
+        this.id = UuidV7Generator.generar();
     }
 
     // Enum para Canal
@@ -0,0 +1,61 @@
+package com.peluqueria.recepcionista_virtual.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.Immutable;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Agregado diario de citas por (tenant, día, empleado, servicio, estado).
+ *
+ * Lo mantiene el trigger trg_citas_estadisticas_diarias dentro de la misma
+ * transacción que modifica la cita (ver MigracionEsquemaService), por eso la
+ * entidad es de solo lectura. Las citas sin empleado usan empleadoId = "".
+ */
+@Entity
+@Table(name = "estadisticas_diarias")
+@IdClass(EstadisticaDiaria.Clave.class)
+@Immutable
+@Data
+public class EstadisticaDiaria {
+
+    @Id
+    @Column(name = "tenant_id")
+    private String tenantId;
+
+    @Id
+    private LocalDate fecha;
+
+    @Id
+    @Column(name = "empleado_id")
+    private String empleadoId;
+
+    @Id
+    @Column(name = "servicio_id")
+    private String servicioId;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    private EstadoCita estado;
+
+    @Column(name = "num_citas", nullable = false)
+    private Long numCitas = 0L;
+
+    @Column(nullable = false)
+    private Long minutos = 0L;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal ingresos = BigDecimal.ZERO;
+
+    @Data
+    public static class Clave implements Serializable {
+        private String tenantId;
+        private LocalDate fecha;
+        private String empleadoId;
+        private String servicioId;
+        private EstadoCita estado;
+    }
+}
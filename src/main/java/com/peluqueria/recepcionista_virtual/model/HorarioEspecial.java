@@ -2,10 +2,14 @@ package com.peluqueria.recepcionista_virtual.model;
 
 import jakarta.persistence.*;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.LocalDateTime;
-import java.util.UUID;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Entidad JPA para manejar horarios especiales y cierres del salón
@@ -15,12 +19,14 @@ import java.util.UUID;
  * OpenAI CEREBRO: Los mensajes se generan dinámicamente o se toman del campo mensaje_personalizado
  */
 @Entity
-@Table(name = "horarios_especiales")
+@Table(name = "horarios_especiales", indexes = {
+        @Index(name = "idx_horarios_especiales_tenant_fechas", columnList = "tenant_id, fecha_inicio, fecha_fin")
+})
 public class HorarioEspecial {
 
     @Id
     @Column(name = "id", columnDefinition = "VARCHAR(255)")
-    private String id = UUID.randomUUID().toString();
+    private String id = UuidV7Generator.generar();
 
     // ========================================
     // MULTITENANT: Campo obligatorio
@@ -60,6 +66,23 @@ public class HorarioEspecial {
     @JsonFormat(pattern = "HH:mm")
     private LocalTime horarioFin;
 
+    // ========================================
+    // RECURRENCIA (solo si aplica)
+    // ========================================
+
+    // Null = cierre puntual; si no, fechaInicio-fechaFin es la primera ocurrencia
+    @Enumerated(EnumType.STRING)
+    @Column(name = "recurrencia")
+    private RecurrenciaCierre recurrencia;
+
+    @Column(name = "recurrencia_intervalo")
+    private Integer recurrenciaIntervalo = 1;
+
+    // Última fecha en la que puede empezar una ocurrencia (null = sin fin)
+    @Column(name = "recurrencia_hasta")
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate recurrenciaHasta;
+
     // ========================================
     // PERSONALIZACIÓN POR TENANT
     // ========================================
@@ -67,12 +90,14 @@ public class HorarioEspecial {
     @Column(name = "mensaje_personalizado", columnDefinition = "TEXT")
     private String mensajePersonalizado;
 
-    // Arrays JSON de empleados/servicios afectados (si aplica)
-    @Column(name = "empleados_afectados", columnDefinition = "TEXT")
-    private String empleadosAfectados; // JSON: ["emp1", "emp2"]
+    // Arrays JSONB de empleados/servicios afectados (si aplica), con índice GIN
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "empleados_afectados", columnDefinition = "jsonb")
+    private List<String> empleadosAfectados; // ["emp1", "emp2"]
 
-    @Column(name = "servicios_afectados", columnDefinition = "TEXT")
-    private String serviciosAfectados; // JSON: ["serv1", "serv2"]
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "servicios_afectados", columnDefinition = "jsonb")
+    private List<String> serviciosAfectados; // ["serv1", "serv2"]
 
     // ========================================
     // CONFIGURACIÓN
@@ -208,6 +233,63 @@ public class HorarioEspecial {
                 tipoCierre == TipoCierre.SERVICIO_NO_DISPONIBLE;
     }
 
+    /**
+     * Verifica si el empleado está en la lista de afectados
+     */
+    public boolean afectaEmpleado(String empleadoId) {
+        return empleadoId != null && empleadosAfectados != null && empleadosAfectados.contains(empleadoId);
+    }
+
+    /**
+     * Verifica si el servicio está en la lista de afectados
+     */
+    public boolean afectaServicio(String servicioId) {
+        return servicioId != null && serviciosAfectados != null && serviciosAfectados.contains(servicioId);
+    }
+
+    public boolean esRecurrente() {
+        return recurrencia != null;
+    }
+
+    public long getDuracionDias() {
+        return ChronoUnit.DAYS.between(fechaInicio, fechaFin);
+    }
+
+    /**
+     * Inicios de las ocurrencias que se solapan con [desde, hasta]; un cierre puntual
+     * tiene como mucho una
+     */
+    public List<LocalDate> iniciosOcurrenciasEntre(LocalDate desde, LocalDate hasta) {
+        if (!esRecurrente()) {
+            return fechaFin.isBefore(desde) || fechaInicio.isAfter(hasta) ? List.of() : List.of(fechaInicio);
+        }
+        return recurrencia.iniciosEntre(fechaInicio, getDuracionDias(),
+                recurrenciaIntervalo != null ? recurrenciaIntervalo : 1, recurrenciaHasta, desde, hasta);
+    }
+
+    /**
+     * Copia sin persistir del cierre con las fechas de la ocurrencia que empieza en inicio
+     * (mismo id: identifica la regla)
+     */
+    public HorarioEspecial ocurrencia(LocalDate inicio) {
+        HorarioEspecial copia = new HorarioEspecial(tenantId, inicio, inicio.plusDays(getDuracionDias()),
+                tipoCierre, motivo);
+        copia.setId(id);
+        copia.setHorarioInicio(horarioInicio);
+        copia.setHorarioFin(horarioFin);
+        copia.setMensajePersonalizado(mensajePersonalizado);
+        copia.setEmpleadosAfectados(empleadosAfectados != null ? new ArrayList<>(empleadosAfectados) : null);
+        copia.setServiciosAfectados(serviciosAfectados != null ? new ArrayList<>(serviciosAfectados) : null);
+        copia.setRecurrencia(recurrencia);
+        copia.setRecurrenciaIntervalo(recurrenciaIntervalo);
+        copia.setRecurrenciaHasta(recurrenciaHasta);
+        copia.setNotificarClientesExistentes(notificarClientesExistentes);
+        copia.setCreadoPor(creadoPor);
+        copia.setFechaCreacion(fechaCreacion);
+        copia.setActivo(activo);
+        return copia;
+    }
+
     // ========================================
     // TRIGGERS JPA
     // ========================================
@@ -293,6 +375,30 @@ public class HorarioEspecial {
         this.horarioFin = horarioFin;
     }
 
+    public RecurrenciaCierre getRecurrencia() {
+        return recurrencia;
+    }
+
+    public void setRecurrencia(RecurrenciaCierre recurrencia) {
+        this.recurrencia = recurrencia;
+    }
+
+    public Integer getRecurrenciaIntervalo() {
+        return recurrenciaIntervalo;
+    }
+
+    public void setRecurrenciaIntervalo(Integer recurrenciaIntervalo) {
+        this.recurrenciaIntervalo = recurrenciaIntervalo;
+    }
+
+    public LocalDate getRecurrenciaHasta() {
+        return recurrenciaHasta;
+    }
+
+    public void setRecurrenciaHasta(LocalDate recurrenciaHasta) {
+        this.recurrenciaHasta = recurrenciaHasta;
+    }
+
     public String getMensajePersonalizado() {
         return mensajePersonalizado;
     }
@@ -301,19 +407,19 @@ public class HorarioEspecial {
         this.mensajePersonalizado = mensajePersonalizado;
     }
 
-    public String getEmpleadosAfectados() {
+    public List<String> getEmpleadosAfectados() {
         return empleadosAfectados;
     }
 
-    public void setEmpleadosAfectados(String empleadosAfectados) {
+    public void setEmpleadosAfectados(List<String> empleadosAfectados) {
         this.empleadosAfectados = empleadosAfectados;
     }
 
-    public String getServiciosAfectados() {
+    public List<String> getServiciosAfectados() {
         return serviciosAfectados;
     }
 
-    public void setServiciosAfectados(String serviciosAfectados) {
+    public void setServiciosAfectados(List<String> serviciosAfectados) {
         this.serviciosAfectados = serviciosAfectados;
     }
 
@@ -94,8 +94,8 @@ public class LogLlamada {
         this.estado = "INICIADA";
         this.direccion = "entrante";
         this.moneda = "EUR";
-        // Generar ID único
-        this.id = java.util.UUID.randomUUID().toString();
+        // Generar ID único ordenado por tiempo
+        this.id = UuidV7Generator.generar();
     }
 
     // Enums para compatibilidad (pero se guardan como String)
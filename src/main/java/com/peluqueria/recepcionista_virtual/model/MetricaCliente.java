@@ -0,0 +1,87 @@
+package com.peluqueria.recepcionista_virtual.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Agregado por cliente de sus visitas (citas COMPLETADA): número, primera y última,
+ * gasto total, recuento por servicio/empleado y los preferidos. También guarda su
+ * última reserva no cancelada, en cualquier estado.
+ *
+ * Lo mantiene el trigger trg_citas_clientes_metricas en la misma transacción que
+ * modifica la cita (ver MigracionEsquemaService), por eso la entidad es de solo lectura.
+ */
+@Entity
+@Table(name = "clientes_metricas", indexes = {
+        @Index(name = "idx_clientes_metricas_tenant_visitas", columnList = "tenant_id, num_visitas")
+})
+@Immutable
+@Data
+public class MetricaCliente {
+
+    @Id
+    @Column(name = "cliente_id")
+    private String clienteId;
+
+    @Column(name = "tenant_id", nullable = false)
+    private String tenantId;
+
+    @Column(name = "num_visitas", nullable = false)
+    private Integer numVisitas = 0;
+
+    @Column(name = "primera_visita")
+    private LocalDateTime primeraVisita;
+
+    @Column(name = "ultima_visita")
+    private LocalDateTime ultimaVisita;
+
+    @Column(name = "gasto_total", nullable = false, precision = 12, scale = 2)
+    private BigDecimal gastoTotal = BigDecimal.ZERO;
+
+    // servicioId -> visitas
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "servicios", columnDefinition = "jsonb")
+    private Map<String, Integer> servicios;
+
+    // empleadoId -> visitas
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "empleados", columnDefinition = "jsonb")
+    private Map<String, Integer> empleados;
+
+    @Column(name = "servicio_preferido_id")
+    private String servicioPreferidoId;
+
+    @Column(name = "empleado_preferido_id")
+    private String empleadoPreferidoId;
+
+    // Última cita no cancelada (pasada o futura)
+    @Column(name = "ultima_reserva")
+    private LocalDateTime ultimaReserva;
+
+    /**
+     * Días medios entre visitas consecutivas, o null con menos de dos visitas
+     */
+    public Double getIntervaloMedioDias() {
+        if (numVisitas == null || numVisitas < 2 || primeraVisita == null || ultimaVisita == null) {
+            return null;
+        }
+        double dias = Duration.between(primeraVisita, ultimaVisita).toMinutes() / (60.0 * 24);
+        return Math.round(dias / (numVisitas - 1) * 10) / 10.0;
+    }
+
+    public BigDecimal getGastoMedio() {
+        if (numVisitas == null || numVisitas == 0 || gastoTotal == null) {
+            return BigDecimal.ZERO;
+        }
+        return gastoTotal.divide(BigDecimal.valueOf(numVisitas), 2, RoundingMode.HALF_UP);
+    }
+}
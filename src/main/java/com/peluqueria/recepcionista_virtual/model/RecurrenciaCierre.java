@@ -0,0 +1,87 @@
+package com.peluqueria.recepcionista_virtual.model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reglas de repetición de un cierre. La primera ocurrencia es fechaInicio-fechaFin del
+ * cierre y las siguientes conservan su duración:
+ *
+ * - SEMANAL: cada intervalo semanas (días libres fijos del personal)
+ * - ANUAL: cada intervalo años en el mismo día y mes (agosto, festivos nacionales)
+ * - DIA_SEMANA_DEL_MES: cada intervalo meses en el mismo "n-ésimo día de la semana"
+ *   que fechaInicio (p. ej. primer lunes); si fechaInicio cae en la quinta semana
+ *   se interpreta como "último"
+ */
+public enum RecurrenciaCierre {
+
+    SEMANAL,
+    ANUAL,
+    DIA_SEMANA_DEL_MES;
+
+    /**
+     * Inicio de la ocurrencia n (0 = la original)
+     */
+    public LocalDate inicioOcurrencia(LocalDate base, long n, int intervalo) {
+        long salto = n * intervalo;
+        return switch (this) {
+            case SEMANAL -> base.plusWeeks(salto);
+            case ANUAL -> base.plusYears(salto); // 29 de febrero -> 28 en años no bisiestos
+            case DIA_SEMANA_DEL_MES -> {
+                YearMonth mes = YearMonth.from(base).plusMonths(salto);
+                DayOfWeek dia = base.getDayOfWeek();
+                int ordinal = (base.getDayOfMonth() - 1) / 7 + 1;
+                yield ordinal >= 5
+                        ? mes.atEndOfMonth().with(TemporalAdjusters.previousOrSame(dia))
+                        : mes.atDay(1).with(TemporalAdjusters.dayOfWeekInMonth(ordinal, dia));
+            }
+        };
+    }
+
+    /**
+     * Inicios de las ocurrencias que se solapan con [desde, hasta], sin pasar de limite
+     * (fin de la recurrencia, puede ser null). Solo se generan las de la ventana pedida.
+     */
+    public List<LocalDate> iniciosEntre(LocalDate base, long duracionDias, int intervalo, LocalDate limite,
+                                        LocalDate desde, LocalDate hasta) {
+        int paso = Math.max(1, intervalo);
+
+        // Primera ocurrencia candidata: salto directo por aritmética, una antes por si
+        // la anterior aún dura dentro de la ventana
+        LocalDate referencia = desde.minusDays(duracionDias);
+        long n = switch (this) {
+            case SEMANAL -> ChronoUnit.WEEKS.between(base, referencia) / paso;
+            case ANUAL -> ChronoUnit.YEARS.between(base, referencia) / paso;
+            case DIA_SEMANA_DEL_MES -> ChronoUnit.MONTHS.between(YearMonth.from(base), YearMonth.from(referencia)) / paso;
+        };
+        n = Math.max(0, n - 1);
+
+        List<LocalDate> inicios = new ArrayList<>();
+        while (true) {
+            LocalDate inicio = inicioOcurrencia(base, n++, paso);
+            if (inicio.isAfter(hasta) || (limite != null && inicio.isAfter(limite))) {
+                return inicios;
+            }
+            if (!inicio.plusDays(duracionDias).isBefore(desde)) {
+                inicios.add(inicio);
+            }
+        }
+    }
+
+    /**
+     * Días entre dos ocurrencias consecutivas como mínimo (para validar que no se solapen)
+     */
+    public long periodoMinimoDias(int intervalo) {
+        int paso = Math.max(1, intervalo);
+        return switch (this) {
+            case SEMANAL -> 7L * paso;
+            case ANUAL -> 365L * paso;
+            case DIA_SEMANA_DEL_MES -> 28L * paso;
+        };
+    }
+}
@@ -0,0 +1,52 @@
+package com.peluqueria.recepcionista_virtual.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Puntuación de riesgo de no-show de una cita próxima (0..1).
+ *
+ * La calcula y guarda por lotes RiesgoNoShowService; el dashboard solo la lee,
+ * por eso la entidad es de solo lectura.
+ */
+@Entity
+@Table(name = "riesgos_no_show", indexes = {
+        @Index(name = "idx_riesgos_no_show_tenant_fecha", columnList = "tenant_id, fecha_hora")
+})
+@Immutable
+@Data
+public class RiesgoNoShow {
+
+    @Id
+    @Column(name = "cita_id")
+    private String citaId;
+
+    @Column(name = "tenant_id", nullable = false)
+    private String tenantId;
+
+    @Column(name = "cliente_id")
+    private String clienteId;
+
+    @Column(name = "cliente_nombre")
+    private String clienteNombre;
+
+    @Column(name = "fecha_hora", nullable = false)
+    private LocalDateTime fechaHora;
+
+    @Column(nullable = false)
+    private Double puntuacion;
+
+    // ALTO / MEDIO / BAJO
+    @Column(nullable = false, length = 10)
+    private String nivel;
+
+    // Resumen legible de los factores que más pesan
+    @Column(length = 500)
+    private String factores;
+
+    @Column(name = "calculado_en", nullable = false)
+    private LocalDateTime calculadoEn;
+}
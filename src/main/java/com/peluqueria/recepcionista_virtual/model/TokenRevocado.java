@@ -0,0 +1,32 @@
+package com.peluqueria.recepcionista_virtual.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * JWT revocado uno a uno (logout) por su jti. Se guarda hasta que el token caduca
+ * para que el logout sobreviva a reinicios y llegue al resto de instancias.
+ */
+@Entity
+@Table(name = "tokens_revocados", indexes = {
+        @Index(name = "idx_tokens_revocados_expira", columnList = "expira")
+})
+@Data
+@NoArgsConstructor
+public class TokenRevocado {
+
+    @Id
+    @Column(length = 64)
+    private String jti;
+
+    @Column(nullable = false)
+    private Instant expira;
+
+    public TokenRevocado(String jti, Instant expira) {
+        this.jti = jti;
+        this.expira = expira;
+    }
+}
@@ -37,6 +37,10 @@ public class User implements UserDetails {
 
     private LocalDateTime ultimoAcceso;
 
+    // Los JWT emitidos antes de este momento dejan de valer ("cerrar todas las sesiones")
+    @Column(name = "tokens_revocados_antes")
+    private LocalDateTime tokensRevocadosAntes;
+
     // UserDetails implementation
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
@@ -0,0 +1,56 @@
+package com.peluqueria.recepcionista_virtual.model;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generador de IDs UUIDv7 (RFC 9562): 48 bits de timestamp en milisegundos,
+ * 12 bits de secuencia monótona dentro del mismo milisegundo y 62 bits aleatorios.
+ *
+ * Los IDs crecen con el tiempo, así que las inserciones van al final del índice
+ * de la PK en lugar de repartirse por todo el B-tree, y en texto (hex en minúsculas,
+ * ancho fijo) el orden lexicográfico coincide con el de creación.
+ */
+public class UuidV7Generator implements IdentifierGenerator {
+
+    /** (milisegundo << 12) | secuencia del último ID emitido */
+    private static final AtomicLong ULTIMO = new AtomicLong();
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        return generar();
+    }
+
+    public static String generar() {
+        return generarUuid().toString();
+    }
+
+    public static UUID generarUuid() {
+        long ahora = System.currentTimeMillis();
+        long anterior;
+        long siguiente;
+
+        do {
+            anterior = ULTIMO.get();
+            if (ahora > (anterior >>> 12)) {
+                // Nuevo milisegundo: secuencia aleatoria dejando margen para incrementos
+                siguiente = (ahora << 12) | ThreadLocalRandom.current().nextInt(1 << 11);
+            } else {
+                // Mismo milisegundo (o reloj atrasado): incrementar, desbordando al ms siguiente
+                siguiente = anterior + 1;
+            }
+        } while (!ULTIMO.compareAndSet(anterior, siguiente));
+
+        long milisegundos = siguiente >>> 12;
+        long secuencia = siguiente & 0xFFFL;
+
+        long msb = (milisegundos << 16) | 0x7000L | secuencia;
+        long lsb = (ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+
+        return new UUID(msb, lsb);
+    }
+}
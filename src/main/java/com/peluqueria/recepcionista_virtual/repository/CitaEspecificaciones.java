@@ -0,0 +1,54 @@
+package com.peluqueria.recepcionista_virtual.repository;
+
+import com.peluqueria.recepcionista_virtual.model.Cita;
+import com.peluqueria.recepcionista_virtual.model.EstadoCita;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 🔎 Predicados de consulta de citas para CitaRepository.findAll(Specification, ...)
+ *
+ * Se combinan con and(); los que reciben null devuelven null y Spring Data los ignora,
+ * así un mismo método sirve para filtros opcionales. Tenant + fecha/estado usan los
+ * índices idx_citas_tenant_fecha e idx_citas_tenant_estado_fecha.
+ */
+public final class CitaEspecificaciones {
+
+    private CitaEspecificaciones() {
+    }
+
+    public static Specification<Cita> delTenant(String tenantId) {
+        return (root, query, cb) -> cb.equal(root.get("tenant").get("id"), tenantId);
+    }
+
+    /**
+     * fechaHora en [desde, hasta)
+     */
+    public static Specification<Cita> entre(LocalDateTime desde, LocalDateTime hasta) {
+        Specification<Cita> spec = Specification.where(null);
+        if (desde != null) {
+            spec = spec.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("fechaHora"), desde));
+        }
+        if (hasta != null) {
+            spec = spec.and((root, query, cb) -> cb.lessThan(root.get("fechaHora"), hasta));
+        }
+        return spec;
+    }
+
+    public static Specification<Cita> delDia(LocalDate dia) {
+        return dia == null ? null : entre(dia.atStartOfDay(), dia.plusDays(1).atStartOfDay());
+    }
+
+    public static Specification<Cita> conEstado(EstadoCita estado) {
+        return estado == null ? null : (root, query, cb) -> cb.equal(root.get("estado"), estado);
+    }
+
+    /**
+     * Filtro habitual del dashboard: tenant y, opcionalmente, día y estado
+     */
+    public static Specification<Cita> filtro(String tenantId, LocalDate dia, EstadoCita estado) {
+        return delTenant(tenantId).and(delDia(dia)).and(conEstado(estado));
+    }
+}
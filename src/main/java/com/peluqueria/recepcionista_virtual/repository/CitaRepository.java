@@ -1,16 +1,36 @@
 package com.peluqueria.recepcionista_virtual.repository;
 
 import com.peluqueria.recepcionista_virtual.model.*;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 import java.util.Optional;
 
-public interface CitaRepository extends JpaRepository<Cita, String> {
+public interface CitaRepository extends JpaRepository<Cita, String>, JpaSpecificationExecutor<Cita> {
+
+    // Consultas por especificación (CitaEspecificaciones) con las relaciones en la misma consulta
+    @Override
+    @EntityGraph(attributePaths = {"cliente", "servicio", "empleado"})
+    List<Cita> findAll(Specification<Cita> spec, Sort sort);
+
+    @Override
+    @EntityGraph(attributePaths = {"cliente", "servicio", "empleado"})
+    Page<Cita> findAll(Specification<Cita> spec, Pageable pageable);
 
     // ===== MÉTODOS EXISTENTES - NO TOCAR =====
 
@@ -84,12 +104,6 @@ public interface CitaRepository extends JpaRepository<Cita, String> {
     @Query("SELECT c.empleado.nombre, COUNT(c) as total FROM Cita c WHERE c.tenant.id = :tenantId AND c.estado = 'COMPLETADA' AND c.empleado IS NOT NULL GROUP BY c.empleado.nombre ORDER BY total DESC")
     List<Object[]> findEmpleadosMasProductivos(@Param("tenantId") String tenantId);
 
-    /**
-     * 📅 OBTENER HORAS PICO DE RESERVAS
-     */
-    @Query("SELECT HOUR(c.fechaHora) as hora, COUNT(c) as total FROM Cita c WHERE c.tenant.id = :tenantId AND c.estado IN ('CONFIRMADA', 'COMPLETADA') GROUP BY HOUR(c.fechaHora) ORDER BY total DESC")
-    List<Object[]> findHorasPicoReservas(@Param("tenantId") String tenantId);
-
     /**
      * 🔄 TASA DE CANCELACIÓN POR TENANT
      */
@@ -108,26 +122,6 @@ public interface CitaRepository extends JpaRepository<Cita, String> {
                                     @Param("inicio") LocalDateTime inicio,
                                     @Param("fin") LocalDateTime fin);
 
-    /**
-     * ⏱️ TIEMPO PROMEDIO ENTRE CITAS DE UN CLIENTE
-     */
-    @Query("SELECT c FROM Cita c WHERE c.cliente.id = :clienteId AND c.estado = 'COMPLETADA' ORDER BY c.fechaHora DESC")
-    List<Cita> findCitasCompletadasByCliente(@Param("clienteId") String clienteId);
-
-    /**
-     * 🎯 PREDICCIÓN IA: Citas con alta probabilidad de cancelación
-     */
-    @Query("SELECT c FROM Cita c WHERE c.tenant.id = :tenantId AND c.estado = 'CONFIRMADA' AND c.fechaHora > CURRENT_TIMESTAMP AND c.fechaHora <= :limite")
-    List<Cita> findCitasEnRiesgoDeNoShow(@Param("tenantId") String tenantId,
-                                         @Param("limite") LocalDateTime limite);
-
-    /**
-     * 💡 IA INSIGHTS: Patrones de reserva por cliente
-     */
-    @Query("SELECT c.cliente.id, c.cliente.nombre, COUNT(c) as totalCitas, AVG(c.precio) as gastoPromedio FROM Cita c WHERE c.tenant.id = :tenantId AND c.estado = 'COMPLETADA' GROUP BY c.cliente.id, c.cliente.nombre HAVING COUNT(c) >= :minCitas ORDER BY totalCitas DESC")
-    List<Object[]> findClientesFrecuentes(@Param("tenantId") String tenantId,
-                                          @Param("minCitas") long minCitas);
-
     /**
      * 📊 INGRESOS POR EMPLEADO Y PERÍODO
      */
@@ -136,12 +130,6 @@ public interface CitaRepository extends JpaRepository<Cita, String> {
                                                @Param("inicio") LocalDateTime inicio,
                                                @Param("fin") LocalDateTime fin);
 
-    /**
-     * 🎯 OPTIMIZACIÓN IA: Slots más demandados por día de semana
-     */
-    @Query("SELECT DAYOFWEEK(c.fechaHora) as diaSemana, HOUR(c.fechaHora) as hora, COUNT(c) as demanda FROM Cita c WHERE c.tenant.id = :tenantId AND c.estado IN ('CONFIRMADA', 'COMPLETADA') GROUP BY DAYOFWEEK(c.fechaHora), HOUR(c.fechaHora) ORDER BY demanda DESC")
-    List<Object[]> findPatronesDemandaPorDiaYHora(@Param("tenantId") String tenantId);
-
     /**
      * NUEVA QUERY: Encontrar citas en rango de fechas
      * CRITICA: Para verificar citas antes de cerrar fechasfin
@@ -153,6 +141,31 @@ public interface CitaRepository extends JpaRepository<Cita, String> {
                                       @Param("fechaInicio") LocalDate fechaInicio,
                                       @Param("fechaFin") LocalDate fechaFin);
 
+    /**
+     * Citas activas en [desde, hasta) con cliente y servicio (para avisarles al cancelar)
+     */
+    @EntityGraph(attributePaths = {"cliente", "servicio"})
+    @Query("SELECT c FROM Cita c WHERE c.tenant.id = :tenantId " +
+            "AND c.fechaHora >= :desde AND c.fechaHora < :hasta " +
+            "AND c.estado IN ('CONFIRMADA', 'EN_PROGRESO', 'PENDIENTE') ORDER BY c.fechaHora")
+    List<Cita> findActivasEnRango(@Param("tenantId") String tenantId,
+                                  @Param("desde") LocalDateTime desde,
+                                  @Param("hasta") LocalDateTime hasta);
+
+    /**
+     * Citas activas del rango creadas o modificadas desde un instante (delta de una vista
+     * previa de cierre: lo reservado o movido al rango después de previsualizar)
+     */
+    @EntityGraph(attributePaths = {"cliente", "servicio"})
+    @Query("SELECT c FROM Cita c WHERE c.tenant.id = :tenantId " +
+            "AND c.fechaHora >= :desde AND c.fechaHora < :hasta " +
+            "AND c.estado IN ('CONFIRMADA', 'EN_PROGRESO', 'PENDIENTE') " +
+            "AND (c.fechaCreacion >= :cambiadasDesde OR c.fechaActualizacion >= :cambiadasDesde)")
+    List<Cita> findActivasEnRangoCambiadasDesde(@Param("tenantId") String tenantId,
+                                                @Param("desde") LocalDateTime desde,
+                                                @Param("hasta") LocalDateTime hasta,
+                                                @Param("cambiadasDesde") LocalDateTime cambiadasDesde);
+
     /**
      * CRÍTICO: Detecta conflictos de empleados para validaciones - CORREGIDO DEFINITIVO
      * Encuentra citas que se solapan con un horario específico
@@ -271,5 +284,55 @@ public interface CitaRepository extends JpaRepository<Cita, String> {
                                        @Param("fechaInicio") LocalDateTime fechaInicio,
                                        @Param("fechaFin") LocalDateTime fechaFin);
 
+    /**
+     * 📤 EXPORTACIÓN: recorre las citas del período sin cargarlas todas en memoria
+     * (cursor con fetch size; quien consume debe limpiar el contexto por lotes)
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT c FROM Cita c JOIN FETCH c.tenant JOIN FETCH c.cliente JOIN FETCH c.servicio " +
+            "LEFT JOIN FETCH c.empleado " +
+            "WHERE c.tenant.id = :tenantId AND c.fechaHora >= :desde AND c.fechaHora < :hasta " +
+            "AND (:estado IS NULL OR c.estado = :estado) ORDER BY c.fechaHora")
+    Stream<Cita> streamParaExportar(@Param("tenantId") String tenantId,
+                                    @Param("desde") LocalDateTime desde,
+                                    @Param("hasta") LocalDateTime hasta,
+                                    @Param("estado") EstadoCita estado);
+
+    /**
+     * Impacto de un cierre: [id, fechaHora, estado, empleadoId, clienteId] de las citas
+     * activas del rango, sin cargar entidades (vista previa de cierres)
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT c.id, c.fechaHora, c.estado, e.id, c.cliente.id FROM Cita c LEFT JOIN c.empleado e " +
+            "WHERE c.tenant.id = :tenantId AND c.fechaHora >= :desde AND c.fechaHora < :hasta " +
+            "AND c.estado IN ('CONFIRMADA', 'EN_PROGRESO', 'PENDIENTE') ORDER BY c.fechaHora")
+    Stream<Object[]> streamImpactoCierre(@Param("tenantId") String tenantId,
+                                         @Param("desde") LocalDateTime desde,
+                                         @Param("hasta") LocalDateTime hasta);
+
+    @EntityGraph(attributePaths = {"cliente", "servicio"})
+    List<Cita> findByIdInOrderByFechaHora(Collection<String> ids);
 
-}
\ No newline at end of file
+    /**
+     * Ocupación de los empleados: [empleadoId, fechaHora, duracionMinutos, duración del
+     * servicio] de las citas activas del rango, sin cargar entidades (reprogramación)
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT e.id, c.fechaHora, c.duracionMinutos, s.duracionMinutos FROM Cita c JOIN c.empleado e " +
+            "LEFT JOIN c.servicio s " +
+            "WHERE c.tenant.id = :tenantId AND c.fechaHora >= :desde AND c.fechaHora < :hasta " +
+            "AND c.estado IN ('CONFIRMADA', 'EN_PROGRESO', 'PENDIENTE')")
+    List<Object[]> findOcupacionEmpleados(@Param("tenantId") String tenantId,
+                                          @Param("desde") LocalDateTime desde,
+                                          @Param("hasta") LocalDateTime hasta);
+}
@@ -0,0 +1,35 @@
+package com.peluqueria.recepcionista_virtual.repository;
+
+import com.peluqueria.recepcionista_virtual.model.Cliente;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+
+/**
+ * 🔎 Predicados de consulta de clientes para ClienteRepository.findAll/count(Specification, ...)
+ *
+ * Tenant + fecha de registro usan el índice idx_clientes_tenant_registro.
+ */
+public final class ClienteEspecificaciones {
+
+    private ClienteEspecificaciones() {
+    }
+
+    public static Specification<Cliente> delTenant(String tenantId) {
+        return (root, query, cb) -> cb.equal(root.get("tenant").get("id"), tenantId);
+    }
+
+    /**
+     * fechaRegistro en [desde, hasta)
+     */
+    public static Specification<Cliente> registradoEntre(LocalDateTime desde, LocalDateTime hasta) {
+        Specification<Cliente> spec = Specification.where(null);
+        if (desde != null) {
+            spec = spec.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("fechaRegistro"), desde));
+        }
+        if (hasta != null) {
+            spec = spec.and((root, query, cb) -> cb.lessThan(root.get("fechaRegistro"), hasta));
+        }
+        return spec;
+    }
+}
@@ -1,25 +1,130 @@
 package com.peluqueria.recepcionista_virtual.repository;
 
 import com.peluqueria.recepcionista_virtual.model.Cliente;
-import com.peluqueria.recepcionista_virtual.model.Tenant;
+import com.peluqueria.recepcionista_virtual.util.TelefonoNormalizador;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface ClienteRepository extends JpaRepository<Cliente, String> {
+public interface ClienteRepository extends JpaRepository<Cliente, String>, JpaSpecificationExecutor<Cliente> {
+
+    Optional<Cliente> findFirstByTenant_IdAndTelefonoNorm(String tenantId, String telefonoNorm);
+
+    // Clientes aún sin telefono_norm (anteriores a la normalización) por su teléfono en crudo;
+    // índice parcial idx_clientes_telefono_sin_norm
+    @Query("SELECT c FROM Cliente c WHERE c.tenant.id = :tenantId AND c.telefonoNorm IS NULL " +
+            "AND c.telefono IN :telefonos ORDER BY c.fechaRegistro")
+    List<Cliente> findSinNormalizarByTelefonos(@Param("tenantId") String tenantId,
+                                               @Param("telefonos") Collection<String> telefonos);
+
+    @Query("SELECT c.tenant.id FROM Cliente c WHERE c.telefonoNorm IS NULL AND c.telefono IN :telefonos " +
+            "ORDER BY c.fechaRegistro DESC")
+    List<String> findTenantIdsSinNormalizarByTelefonos(@Param("telefonos") Collection<String> telefonos);
+
+    /**
+     * Cliente del tenant con ese teléfono en cualquier formato: una búsqueda por la
+     * clave única (telefono_norm, tenant_id). Hasta que la deduplicación rellene
+     * telefono_norm de los clientes antiguos, se buscan también por el teléfono en crudo
+     */
+    default Optional<Cliente> findByTelefonoAndTenantId(String telefono, String tenantId) {
+        String telefonoNorm = TelefonoNormalizador.normalizar(telefono);
+        if (telefonoNorm == null) {
+            return Optional.empty();
+        }
+        Optional<Cliente> cliente = findFirstByTenant_IdAndTelefonoNorm(tenantId, telefonoNorm);
+        if (cliente.isPresent()) {
+            return cliente;
+        }
+        return findSinNormalizarByTelefonos(tenantId, TelefonoNormalizador.variantes(telefono, telefonoNorm))
+                .stream().findFirst();
+    }
+
+    /**
+     * Tenants en los que el teléfono es cliente, con la misma vuelta al teléfono en crudo
+     */
+    default List<String> findTenantIdsByTelefono(String telefono) {
+        String telefonoNorm = TelefonoNormalizador.normalizar(telefono);
+        if (telefonoNorm == null) {
+            return List.of();
+        }
+        List<String> tenantIds = findTenantIdsByTelefonoNorm(telefonoNorm);
+        return !tenantIds.isEmpty() ? tenantIds
+                : findTenantIdsSinNormalizarByTelefonos(TelefonoNormalizador.variantes(telefono, telefonoNorm));
+    }
 
-    // ✅ MÉTODO SEGURO - Maneja duplicados devolviendo el más reciente
-    @Query("SELECT c FROM Cliente c WHERE c.telefono = :telefono AND c.tenant.id = :tenantId ORDER BY c.fechaRegistro DESC")
-    Optional<Cliente> findByTelefonoAndTenantId(@Param("telefono") String telefono,
-                                                @Param("tenantId") String tenantId);
+    /**
+     * Alta de un cliente por teléfono que no falla si otra transacción lo acaba de crear
+     * (dos llamadas a la vez desde el mismo número): devuelve 0 y el llamante lo relee.
+     * ON CONFLICT sin destino para que funcione también antes de que la deduplicación
+     * cree uk_clientes_telefono_norm_tenant.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO clientes (id, tenant_id, nombre, telefono, telefono_norm, fecha_registro) " +
+            "VALUES (:id, :tenantId, :nombre, :telefono, :telefonoNorm, :fechaRegistro) ON CONFLICT DO NOTHING",
+            nativeQuery = true)
+    int insertarSiNoExiste(@Param("id") String id,
+                           @Param("tenantId") String tenantId,
+                           @Param("nombre") String nombre,
+                           @Param("telefono") String telefono,
+                           @Param("telefonoNorm") String telefonoNorm,
+                           @Param("fechaRegistro") LocalDateTime fechaRegistro);
 
-    // ✅ MÉTODO AUXILIAR - Para detectar duplicados (opcional)
-    @Query("SELECT c FROM Cliente c WHERE c.telefono = :telefono AND c.tenant.id = :tenantId ORDER BY c.fechaRegistro DESC")
-    List<Cliente> findAllByTelefonoAndTenantId(@Param("telefono") String telefono,
-                                               @Param("tenantId") String tenantId);
+    // Tenants en los que el teléfono es cliente (normalmente uno)
+    @Query("SELECT c.tenant.id FROM Cliente c WHERE c.telefonoNorm = :telefonoNorm ORDER BY c.fechaRegistro DESC")
+    List<String> findTenantIdsByTelefonoNorm(@Param("telefonoNorm") String telefonoNorm);
 
     @Query("SELECT c FROM Cliente c WHERE c.tenant.id = :tenantId")
     List<Cliente> findByTenantId(@Param("tenantId") String tenantId);
+
+    // Página de clientes (más recientes primero) con el total del tenant
+    @Query(value = "SELECT c FROM Cliente c WHERE c.tenant.id = :tenantId ORDER BY c.fechaRegistro DESC",
+            countQuery = "SELECT COUNT(c) FROM Cliente c WHERE c.tenant.id = :tenantId")
+    Page<Cliente> findPaginaByTenantId(@Param("tenantId") String tenantId, Pageable pageable);
+
+    // Texto de búsqueda normalizado; coincide con la expresión del índice GIN trigram
+    // idx_clientes_busqueda_trgm (ver MigracionEsquemaService)
+    String TEXTO_BUSQUEDA = "lower(f_unaccent(coalesce(c.nombre, '') || ' ' || coalesce(c.email, '') " +
+            "|| ' ' || coalesce(c.telefono, '')))";
+
+    String NOMBRE_NORMALIZADO = "lower(f_unaccent(c.nombre))";
+
+    // Primero los que empiezan por el término, luego los que tienen una palabra que empieza por él
+    String ORDEN_BUSQUEDA = " ORDER BY CASE WHEN " + NOMBRE_NORMALIZADO + " LIKE :prefijo THEN 0 " +
+            "WHEN " + NOMBRE_NORMALIZADO + " LIKE :palabra THEN 1 ELSE 2 END, " +
+            "length(c.nombre), c.nombre, c.id";
+
+    /**
+     * 🔍 Búsqueda por subcadena en nombre, email o teléfono (términos de 3+ caracteres)
+     */
+    @Query(value = "SELECT c.* FROM clientes c WHERE c.tenant_id = :tenantId AND " +
+            TEXTO_BUSQUEDA + " LIKE :patron" + ORDEN_BUSQUEDA,
+            countQuery = "SELECT COUNT(*) FROM clientes c WHERE c.tenant_id = :tenantId AND " +
+                    TEXTO_BUSQUEDA + " LIKE :patron",
+            nativeQuery = true)
+    Page<Cliente> buscarPorTexto(@Param("tenantId") String tenantId,
+                                 @Param("patron") String patron,
+                                 @Param("prefijo") String prefijo,
+                                 @Param("palabra") String palabra,
+                                 Pageable pageable);
+
+    /**
+     * 🔍 Búsqueda por inicio del nombre (términos de 1-2 caracteres, sin trigramas)
+     */
+    @Query(value = "SELECT c.* FROM clientes c WHERE c.tenant_id = :tenantId AND " +
+            NOMBRE_NORMALIZADO + " LIKE :prefijo ORDER BY length(c.nombre), c.nombre, c.id",
+            countQuery = "SELECT COUNT(*) FROM clientes c WHERE c.tenant_id = :tenantId AND " +
+                    NOMBRE_NORMALIZADO + " LIKE :prefijo",
+            nativeQuery = true)
+    Page<Cliente> buscarPorPrefijoNombre(@Param("tenantId") String tenantId,
+                                         @Param("prefijo") String prefijo,
+                                         Pageable pageable);
 }
\ No newline at end of file
@@ -17,6 +17,8 @@ public interface ConfiguracionTenantRepository extends JpaRepository<Configuraci
 
     Optional<ConfiguracionTenant> findByTenantIdAndClave(String tenantId, String clave);
 
+    List<ConfiguracionTenant> findByClave(String clave);
+
     List<ConfiguracionTenant> findByTenantIdAndCategoria(String tenantId, String categoria);
 
     @Query("SELECT c FROM ConfiguracionTenant c WHERE c.tenantId = :tenantId AND c.editable = true")
@@ -1,15 +1,20 @@
 package com.peluqueria.recepcionista_virtual.repository;
 
 import com.peluqueria.recepcionista_virtual.model.ConversacionIA;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface ConversacionIARepository extends JpaRepository<ConversacionIA, String> {  // CORREGIDO: String ID
@@ -184,6 +189,21 @@ public interface ConversacionIARepository extends JpaRepository<ConversacionIA,
             @Param("fechaFin") LocalDateTime fechaFin
     );
 
+    /**
+     * Totales por canal para los días [desde, hasta]: conversaciones, exitosas y tokens,
+     * desde el agregado conversaciones_diarias. El total general es la suma de los canales.
+     */
+    @Query(value = "SELECT canal, COALESCE(SUM(num_conversaciones), 0), " +
+            "COALESCE(SUM(CASE WHEN exitosa THEN num_conversaciones ELSE 0 END), 0), " +
+            "COALESCE(SUM(tokens), 0) " +
+            "FROM conversaciones_diarias WHERE tenant_id = :tenantId AND fecha BETWEEN :desde AND :hasta " +
+            "GROUP BY canal", nativeQuery = true)
+    List<Object[]> agregarEstadisticasPorCanal(
+            @Param("tenantId") String tenantId,
+            @Param("desde") LocalDate desde,
+            @Param("hasta") LocalDate hasta
+    );
+
     // ===== QUERIES PARA DASHBOARD Y ANALÍTICAS =====
 
     /**
@@ -253,4 +273,22 @@ public interface ConversacionIARepository extends JpaRepository<ConversacionIA,
             "AND c.tokensUsados IS NOT NULL " +
             "GROUP BY c.modeloIa")
     List<Object[]> getEstadisticasTokensPorModelo(@Param("tenantId") String tenantId);
-}
\ No newline at end of file
+
+    /**
+     * Exportación: recorre las conversaciones del período con cursor (fetch size)
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT c FROM ConversacionIA c WHERE c.tenantId = :tenantId " +
+            "AND c.timestamp >= :desde AND c.timestamp < :hasta " +
+            "AND (:estado IS NULL OR c.estado = :estado) ORDER BY c.timestamp")
+    Stream<ConversacionIA> streamParaExportar(
+            @Param("tenantId") String tenantId,
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta,
+            @Param("estado") String estado
+    );
+}
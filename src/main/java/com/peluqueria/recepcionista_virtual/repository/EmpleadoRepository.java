@@ -14,4 +14,7 @@ public interface EmpleadoRepository extends JpaRepository<Empleado, String> {
 
     @Query("SELECT e FROM Empleado e WHERE e.tenant.id = :tenantId AND e.activo = true")
     List<Empleado> findByTenantIdAndActivoTrue(@Param("tenantId") String tenantId);
+
+    @Query("SELECT COUNT(e) FROM Empleado e WHERE e.tenant.id = :tenantId AND e.activo = true")
+    Long countActivosByTenantId(@Param("tenantId") String tenantId);
 }
\ No newline at end of file
@@ -70,4 +70,10 @@ public interface EmpleadoServicioRepository extends JpaRepository<EmpleadoServic
     Optional<EmpleadoServicio> findConfiguracionConPrecio(@Param("empleadoId") String empleadoId,
                                                           @Param("servicioId") String servicioId,
                                                           @Param("tenantId") String tenantId);
-}
\ No newline at end of file
+
+    /**
+     * Todas las habilidades disponibles del tenant (reprogramación de citas por cierre)
+     */
+    @Query("SELECT es FROM EmpleadoServicio es WHERE es.tenantId = :tenantId AND es.disponible = true")
+    List<EmpleadoServicio> findDisponiblesByTenant(@Param("tenantId") String tenantId);
+}
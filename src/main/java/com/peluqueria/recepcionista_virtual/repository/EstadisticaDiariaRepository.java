@@ -0,0 +1,48 @@
+package com.peluqueria.recepcionista_virtual.repository;
+
+import com.peluqueria.recepcionista_virtual.model.EstadisticaDiaria;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Consultas sobre el agregado diario de citas: coste proporcional a los días
+ * de la ventana, no al número de citas
+ */
+public interface EstadisticaDiariaRepository extends JpaRepository<EstadisticaDiaria, EstadisticaDiaria.Clave> {
+
+    @Query("SELECT COALESCE(SUM(e.numCitas), 0) FROM EstadisticaDiaria e " +
+            "WHERE e.tenantId = :tenantId AND e.fecha BETWEEN :desde AND :hasta")
+    long sumarCitas(@Param("tenantId") String tenantId,
+                    @Param("desde") LocalDate desde,
+                    @Param("hasta") LocalDate hasta);
+
+    @Query("SELECT COALESCE(SUM(e.ingresos), 0) FROM EstadisticaDiaria e " +
+            "WHERE e.tenantId = :tenantId AND e.estado = 'COMPLETADA' " +
+            "AND e.fecha BETWEEN :desde AND :hasta")
+    Double sumarIngresosCompletadas(@Param("tenantId") String tenantId,
+                                    @Param("desde") LocalDate desde,
+                                    @Param("hasta") LocalDate hasta);
+
+    /**
+     * [canceladas, total] desde una fecha
+     */
+    @Query("SELECT COALESCE(SUM(CASE WHEN e.estado = 'CANCELADA' THEN e.numCitas ELSE 0 END), 0), " +
+            "COALESCE(SUM(e.numCitas), 0) " +
+            "FROM EstadisticaDiaria e WHERE e.tenantId = :tenantId AND e.fecha >= :desde")
+    List<Object[]> calcularTasaCancelacion(@Param("tenantId") String tenantId,
+                                           @Param("desde") LocalDate desde);
+
+    @Query("SELECT s.nombre, SUM(e.numCitas) as total FROM EstadisticaDiaria e, Servicio s " +
+            "WHERE s.id = e.servicioId AND e.tenantId = :tenantId AND e.estado = 'COMPLETADA' " +
+            "GROUP BY s.nombre HAVING SUM(e.numCitas) > 0 ORDER BY total DESC")
+    List<Object[]> findServiciosMasPopulares(@Param("tenantId") String tenantId);
+
+    @Query("SELECT emp.nombre, SUM(e.numCitas) as total FROM EstadisticaDiaria e, Empleado emp " +
+            "WHERE emp.id = e.empleadoId AND e.tenantId = :tenantId AND e.estado = 'COMPLETADA' " +
+            "GROUP BY emp.nombre HAVING SUM(e.numCitas) > 0 ORDER BY total DESC")
+    List<Object[]> findEmpleadosMasProductivos(@Param("tenantId") String tenantId);
+}
@@ -33,17 +33,13 @@ public interface HorarioEspecialRepository extends JpaRepository<HorarioEspecial
     List<HorarioEspecial> findCierresParaFecha(@Param("tenantId") String tenantId,
                                                @Param("fecha") LocalDate fecha);
 
-    @Query("SELECT h FROM HorarioEspecial h WHERE h.tenantId = :tenantId " +
-            "AND h.activo = true " +
-            "AND :fecha BETWEEN h.fechaInicio AND h.fechaFin")
-    List<HorarioEspecial> findActivosByTenantAndFecha(@Param("tenantId") String tenantId,
-                                                      @Param("fecha") LocalDate fecha);
-
     /**
-     * Obtener todos los cierres en un rango de fechas
+     * Obtener todos los cierres puntuales en un rango de fechas (los recurrentes se
+     * expanden aparte con findRecurrentes)
      */
     @Query("SELECT h FROM HorarioEspecial h WHERE h.tenantId = :tenantId " +
             "AND h.activo = true " +
+            "AND h.recurrencia IS NULL " +
             "AND ((h.fechaInicio BETWEEN :inicio AND :fin) OR " +
             "(h.fechaFin BETWEEN :inicio AND :fin) OR " +
             "(h.fechaInicio <= :inicio AND h.fechaFin >= :fin)) " +
@@ -53,10 +49,31 @@ public interface HorarioEspecialRepository extends JpaRepository<HorarioEspecial
                                              @Param("fin") LocalDate fin);
 
     /**
-     * Obtener cierres proximos
+     * Cierres activos que terminan a partir de una fecha, más todas las reglas
+     * recurrentes (para el índice en memoria)
+     */
+    @Query("SELECT h FROM HorarioEspecial h WHERE h.tenantId = :tenantId " +
+            "AND h.activo = true " +
+            "AND (h.fechaFin >= :desde OR h.recurrencia IS NOT NULL)")
+    List<HorarioEspecial> findVigentes(@Param("tenantId") String tenantId,
+                                       @Param("desde") LocalDate desde);
+
+    /**
+     * Cierres recurrentes cuya primera ocurrencia empieza como tarde en una fecha
+     */
+    @Query("SELECT h FROM HorarioEspecial h WHERE h.tenantId = :tenantId " +
+            "AND h.activo = true " +
+            "AND h.recurrencia IS NOT NULL " +
+            "AND h.fechaInicio <= :hasta")
+    List<HorarioEspecial> findRecurrentes(@Param("tenantId") String tenantId,
+                                          @Param("hasta") LocalDate hasta);
+
+    /**
+     * Obtener cierres puntuales proximos
      */
     @Query("SELECT h FROM HorarioEspecial h WHERE h.tenantId = :tenantId " +
             "AND h.activo = true " +
+            "AND h.recurrencia IS NULL " +
             "AND h.fechaInicio >= CURRENT_DATE " +
             "AND h.fechaInicio <= :fechaLimite " +
             "ORDER BY h.fechaInicio")
@@ -66,11 +83,13 @@ public interface HorarioEspecialRepository extends JpaRepository<HorarioEspecial
     /**
      * Verificar disponibilidad de empleado especifico
      */
-    @Query("SELECT h FROM HorarioEspecial h WHERE h.tenantId = :tenantId " +
+    @Query(value = "SELECT h.* FROM horarios_especiales h WHERE h.tenant_id = :tenantId " +
             "AND h.activo = true " +
-            "AND :fecha BETWEEN h.fechaInicio AND h.fechaFin " +
-            "AND (h.tipoCierre = 'EMPLEADO_AUSENTE' OR h.tipoCierre = 'CERRADO_COMPLETO') " +
-            "AND (h.empleadosAfectados IS NULL OR h.empleadosAfectados LIKE %:empleadoId%)")
+            "AND :fecha BETWEEN h.fecha_inicio AND h.fecha_fin " +
+            "AND h.tipo_cierre IN ('EMPLEADO_AUSENTE', 'CERRADO_COMPLETO') " +
+            "AND (h.empleados_afectados IS NULL " +
+            "OR h.empleados_afectados @> jsonb_build_array(CAST(:empleadoId AS text)))",
+            nativeQuery = true)
     List<HorarioEspecial> findCierresParaEmpleado(@Param("tenantId") String tenantId,
                                                   @Param("fecha") LocalDate fecha,
                                                   @Param("empleadoId") String empleadoId);
@@ -78,11 +97,13 @@ public interface HorarioEspecialRepository extends JpaRepository<HorarioEspecial
     /**
      * Verificar disponibilidad de servicio especifico
      */
-    @Query("SELECT h FROM HorarioEspecial h WHERE h.tenantId = :tenantId " +
+    @Query(value = "SELECT h.* FROM horarios_especiales h WHERE h.tenant_id = :tenantId " +
             "AND h.activo = true " +
-            "AND :fecha BETWEEN h.fechaInicio AND h.fechaFin " +
-            "AND (h.tipoCierre = 'SERVICIO_NO_DISPONIBLE' OR h.tipoCierre = 'CERRADO_COMPLETO') " +
-            "AND (h.serviciosAfectados IS NULL OR h.serviciosAfectados LIKE %:servicioId%)")
+            "AND :fecha BETWEEN h.fecha_inicio AND h.fecha_fin " +
+            "AND h.tipo_cierre IN ('SERVICIO_NO_DISPONIBLE', 'CERRADO_COMPLETO') " +
+            "AND (h.servicios_afectados IS NULL " +
+            "OR h.servicios_afectados @> jsonb_build_array(CAST(:servicioId AS text)))",
+            nativeQuery = true)
     List<HorarioEspecial> findCierresParaServicio(@Param("tenantId") String tenantId,
                                                   @Param("fecha") LocalDate fecha,
                                                   @Param("servicioId") String servicioId);
@@ -144,17 +165,6 @@ public interface HorarioEspecialRepository extends JpaRepository<HorarioEspecial
                                             @Param("fin") LocalDate fin,
                                             @Param("excludeId") String excludeId);
 
-    /**
-     * Query optimizada para la IA: verificacion SUPER RAPIDA de disponibilidad
-     */
-    @Query("SELECT CASE WHEN COUNT(h) > 0 THEN false ELSE true END " +
-            "FROM HorarioEspecial h WHERE h.tenantId = :tenantId " +
-            "AND h.activo = true " +
-            "AND :fecha BETWEEN h.fechaInicio AND h.fechaFin " +
-            "AND h.tipoCierre = 'CERRADO_COMPLETO'")
-    Boolean isFechaDisponible(@Param("tenantId") String tenantId,
-                              @Param("fecha") LocalDate fecha);
-
     /**
      * Verificar si hay cierres de emergencia activos HOY
      */
@@ -1,15 +1,20 @@
 package com.peluqueria.recepcionista_virtual.repository;
 
 import com.peluqueria.recepcionista_virtual.model.LogLlamada;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 import java.util.Optional;
 
 @Repository
@@ -27,6 +32,12 @@ public interface LogLlamadaRepository extends JpaRepository<LogLlamada, String>
      */
     LogLlamada findByCallSidAndTenantId(String callSid, String tenantId);
 
+    /**
+     * Buscar llamada reciente por CallSid: el filtro por fecha_inicio permite
+     * a Postgres consultar solo las particiones mensuales recientes
+     */
+    LogLlamada findByCallSidAndTenantIdAndFechaInicioAfter(String callSid, String tenantId, LocalDateTime desde);
+
     /**
      * Buscar llamada por ID y TenantId (seguridad multitenant) - CORREGIDO: String ID
      */
@@ -163,6 +174,27 @@ public interface LogLlamadaRepository extends JpaRepository<LogLlamada, String>
             "WHERE l.tenantId = :tenantId AND l.costo IS NOT NULL")
     java.math.BigDecimal sumCostoByTenantId(@Param("tenantId") String tenantId);
 
+    /**
+     * Todas las estadísticas de /stats para los días [desde, hasta] desde el agregado
+     * llamadas_diarias (una fila por día y combinación, no por llamada; ver
+     * MigracionEsquemaService)
+     */
+    @Query(value = "SELECT COALESCE(SUM(num_llamadas), 0), " +
+            "COALESCE(SUM(CASE WHEN direccion = 'entrante' THEN num_llamadas ELSE 0 END), 0), " +
+            "COALESCE(SUM(CASE WHEN direccion = 'saliente' THEN num_llamadas ELSE 0 END), 0), " +
+            "COALESCE(SUM(CASE WHEN estado = 'COMPLETADA' THEN num_llamadas ELSE 0 END), 0), " +
+            "COALESCE(SUM(CASE WHEN con_cita THEN num_llamadas ELSE 0 END), 0), " +
+            "COALESCE(SUM(costo), 0), " +
+            "COALESCE(SUM(duracion_segundos), 0), " +
+            "SUM(duracion_segundos)::float8 / NULLIF(SUM(num_con_duracion), 0) " +
+            "FROM llamadas_diarias WHERE tenant_id = :tenantId AND fecha BETWEEN :desde AND :hasta",
+            nativeQuery = true)
+    List<Object[]> agregarEstadisticas(
+            @Param("tenantId") String tenantId,
+            @Param("desde") LocalDate desde,
+            @Param("hasta") LocalDate hasta
+    );
+
     // ===== MÉTODOS ADICIONALES ÚTILES =====
 
     /**
@@ -244,4 +276,22 @@ public interface LogLlamadaRepository extends JpaRepository<LogLlamada, String>
             @Param("fechaInicio") LocalDateTime fechaInicio,
             @Param("fechaFin") LocalDateTime fechaFin
     );
-}
\ No newline at end of file
+
+    /**
+     * Exportación: recorre las llamadas del período con cursor (fetch size)
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT l FROM LogLlamada l WHERE l.tenantId = :tenantId " +
+            "AND l.fechaInicio >= :desde AND l.fechaInicio < :hasta " +
+            "AND (:estado IS NULL OR l.estado = :estado) ORDER BY l.fechaInicio")
+    Stream<LogLlamada> streamParaExportar(
+            @Param("tenantId") String tenantId,
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta,
+            @Param("estado") String estado
+    );
+}
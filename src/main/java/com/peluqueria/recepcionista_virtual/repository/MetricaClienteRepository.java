@@ -0,0 +1,24 @@
+package com.peluqueria.recepcionista_virtual.repository;
+
+import com.peluqueria.recepcionista_virtual.model.MetricaCliente;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface MetricaClienteRepository extends JpaRepository<MetricaCliente, String> {
+
+    Optional<MetricaCliente> findByClienteIdAndTenantId(String clienteId, String tenantId);
+
+    /**
+     * 💡 Clientes con al menos minVisitas visitas: id, nombre, visitas, gasto medio
+     */
+    @Query("SELECT m.clienteId, c.nombre, m.numVisitas, m.gastoTotal / m.numVisitas " +
+            "FROM MetricaCliente m JOIN Cliente c ON c.id = m.clienteId " +
+            "WHERE m.tenantId = :tenantId AND m.numVisitas >= :minVisitas " +
+            "ORDER BY m.numVisitas DESC")
+    List<Object[]> findClientesFrecuentes(@Param("tenantId") String tenantId,
+                                          @Param("minVisitas") int minVisitas);
+}
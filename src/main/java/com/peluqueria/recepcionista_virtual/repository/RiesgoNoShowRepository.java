@@ -0,0 +1,17 @@
+package com.peluqueria.recepcionista_virtual.repository;
+
+import com.peluqueria.recepcionista_virtual.model.RiesgoNoShow;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface RiesgoNoShowRepository extends JpaRepository<RiesgoNoShow, String> {
+
+    /**
+     * Citas puntuadas de un período, de mayor a menor riesgo
+     */
+    List<RiesgoNoShow> findByTenantIdAndFechaHoraBetweenOrderByPuntuacionDesc(String tenantId,
+                                                                             LocalDateTime desde,
+                                                                             LocalDateTime hasta);
+}
@@ -1,5 +1,6 @@
 package com.peluqueria.recepcionista_virtual.security;
 
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -7,7 +8,6 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -15,13 +15,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.IOException;
 
+/**
+ * Autenticación sin estado: el token se valida y se lee una sola vez y el principal se
+ * construye con sus claims (email, tenant, rol). El estado del usuario y las
+ * revocaciones se comprueban contra la caché de JwtSesionService, sin consulta por petición.
+ */
 @Component
 public class JwtRequestFilter extends OncePerRequestFilter {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtRequestFilter.class);
 
     @Autowired
-    private JwtUserDetailsService jwtUserDetailsService;
+    private JwtSesionService jwtSesionService;
 
     @Autowired
     private JwtTokenUtil jwtTokenUtil;
@@ -60,44 +65,34 @@ public class JwtRequestFilter extends OncePerRequestFilter {
 
         final String requestTokenHeader = request.getHeader("Authorization");
 
-        String username = null;
-        String jwtToken = null;
-        String tenantId = null;
-
-        if (requestTokenHeader != null && requestTokenHeader.startsWith("Bearer ")) {
-            jwtToken = requestTokenHeader.substring(7);
+        if (requestTokenHeader != null && requestTokenHeader.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            UsuarioToken usuario = null;
             try {
-                username = jwtTokenUtil.extractUsername(jwtToken);
-                tenantId = jwtTokenUtil.extractTenantId(jwtToken);
-
-                logger.debug("TenantId extraído del JWT: {}", tenantId);
-
-            } catch (Exception e) {
-                logger.error("Error procesando JWT: ", e);
+                usuario = UsuarioToken.desde(jwtTokenUtil.parse(requestTokenHeader.substring(7)));
+            } catch (JwtException | IllegalArgumentException e) {
+                logger.debug("Token JWT no válido: {}", e.getMessage());
             }
-        }
-
-        // Validar token y configurar autenticación
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.jwtUserDetailsService.loadUserByUsername(username);
-
-            if (jwtTokenUtil.validateToken(jwtToken, userDetails.getUsername())) {
-                UsernamePasswordAuthenticationToken authToken =
-                        new UsernamePasswordAuthenticationToken(
-                                userDetails, null, userDetails.getAuthorities());
-
-                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(authToken);
 
-                // CORRECCIÓN: Establecer tenantId DESPUÉS de validación exitosa
-                if (tenantId != null) {
-                    request.setAttribute("tenantId", tenantId);
-                    logger.debug("Usuario autenticado: {} para tenant: {} - tenantId establecido en request", username, tenantId);
+            if (usuario != null && usuario.email() != null) {
+                if (jwtSesionService.permitido(usuario)) {
+                    UsernamePasswordAuthenticationToken authToken =
+                            new UsernamePasswordAuthenticationToken(usuario, null, usuario.getAuthorities());
+
+                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    SecurityContextHolder.getContext().setAuthentication(authToken);
+
+                    // CORRECCIÓN: Establecer tenantId DESPUÉS de validación exitosa
+                    if (usuario.tenantId() != null) {
+                        request.setAttribute("tenantId", usuario.tenantId());
+                        logger.debug("Usuario autenticado: {} para tenant: {} - tenantId establecido en request",
+                                usuario.email(), usuario.tenantId());
+                    } else {
+                        logger.warn("Usuario autenticado pero tenantId es null: {}", usuario.email());
+                    }
                 } else {
-                    logger.warn("Usuario autenticado pero tenantId es null: {}", username);
+                    logger.warn("Token revocado o usuario inactivo: {}", usuario.email());
                 }
-            } else {
-                logger.warn("Token inválido para usuario: {}", username);
             }
         }
 
@@ -0,0 +1,172 @@
+package com.peluqueria.recepcionista_virtual.security;
+
+import com.peluqueria.recepcionista_virtual.model.TokenRevocado;
+import com.peluqueria.recepcionista_virtual.model.User;
+import com.peluqueria.recepcionista_virtual.repository.TokenRevocadoRepository;
+import com.peluqueria.recepcionista_virtual.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 🔐 ESTADO DE LAS SESIONES JWT
+ *
+ * El filtro autentica solo con los claims del token; aquí se decide si ese token sigue
+ * valiendo sin ir a la BD en cada petición:
+ *
+ * - Estado del usuario (activo, tenant activo, rol, tenant, "tokens revocados antes de")
+ *   en una caché por email que se refresca como máximo cada spring.security.jwt.estado-ttl-ms.
+ *   El rol y el tenant del token deben seguir coincidiendo con los del usuario: si cambian,
+ *   los tokens emitidos antes dejan de valer y hay que volver a iniciar sesión
+ * - Tokens revocados uno a uno (logout) por su jti, hasta que caducan. Se guardan en
+ *   tokens_revocados y se consultan en memoria: al arrancar se cargan los vigentes, así
+ *   que un reinicio del dyno no vuelve a dar por buenos los tokens cerrados
+ *
+ * "Cerrar todas las sesiones" se guarda en el usuario, así que llega al resto de
+ * instancias en cuanto caduca su caché; el logout de un token es inmediato en la
+ * instancia que lo recibe y el resto lo ve en la siguiente purga (cada 5 minutos).
+ */
+@Service
+public class JwtSesionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwtSesionService.class);
+
+    private record EstadoUsuario(boolean activo, String role, String tenantId, Instant revocadosAntes,
+                                 long cargado) {
+    }
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TokenRevocadoRepository tokenRevocadoRepository;
+
+    @Value("${spring.security.jwt.estado-ttl-ms:60000}")
+    private long estadoTtlMs;
+
+    private final Map<String, EstadoUsuario> estados = new ConcurrentHashMap<>();
+
+    // jti -> caducidad del token revocado
+    private final Map<String, Instant> revocados = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void cargarRevocados() {
+        try {
+            sincronizarRevocados();
+            logger.info("Tokens revocados vigentes cargados: {}", revocados.size());
+        } catch (Exception e) {
+            logger.warn("No se pudieron cargar los tokens revocados: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Si el token autenticado puede usarse: no revocado, usuario y tenant activos, y con
+     * el rol y el tenant actuales del usuario
+     */
+    public boolean permitido(UsuarioToken usuario) {
+        if (usuario.tokenId() != null && revocados.containsKey(usuario.tokenId())) {
+            return false;
+        }
+        EstadoUsuario estado = estado(usuario.email());
+        if (!estado.activo()) {
+            return false;
+        }
+        if (!Objects.equals(estado.role(), usuario.role()) || !Objects.equals(estado.tenantId(), usuario.tenantId())) {
+            return false;
+        }
+        return estado.revocadosAntes() == null || !usuario.emitido().isBefore(estado.revocadosAntes());
+    }
+
+    /**
+     * Logout: invalida solo este token
+     */
+    public void revocar(UsuarioToken usuario) {
+        if (usuario.tokenId() != null) {
+            revocados.put(usuario.tokenId(), usuario.expira());
+            tokenRevocadoRepository.save(new TokenRevocado(usuario.tokenId(), usuario.expira()));
+        } else {
+            // Token anterior a los jti: solo se puede invalidar junto con los demás
+            revocarTodos(usuario.email());
+        }
+    }
+
+    /**
+     * Invalida todos los tokens emitidos hasta ahora para el usuario. El corte va al
+     * segundo porque el iat del token no tiene más precisión: un token emitido en el
+     * mismo segundo, justo después (volver a iniciar sesión), sigue valiendo
+     */
+    public void revocarTodos(String email) {
+        userRepository.findByEmail(email).ifPresent(user -> {
+            user.setTokensRevocadosAntes(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+            userRepository.save(user);
+        });
+        estados.remove(email);
+        logger.info("Sesiones revocadas para el usuario {}", email);
+    }
+
+    /**
+     * Fuerza a releer el estado del usuario en la siguiente petición en esta instancia
+     * (tras desactivarlo o cambiarle el rol); las demás lo ven al caducar su caché
+     */
+    public void invalidar(String email) {
+        estados.remove(email);
+    }
+
+    @Scheduled(fixedDelay = 300000)
+    public void purgar() {
+        Instant ahora = Instant.now();
+        revocados.values().removeIf(expira -> expira.isBefore(ahora));
+        try {
+            tokenRevocadoRepository.borrarCaducados(ahora);
+            sincronizarRevocados();
+        } catch (Exception e) {
+            logger.warn("No se pudieron sincronizar los tokens revocados: {}", e.getMessage());
+        }
+        long limite = System.currentTimeMillis() - estadoTtlMs;
+        estados.values().removeIf(estado -> estado.cargado() < limite);
+    }
+
+    /**
+     * Añade los revocados vigentes de la BD (incluidos los de otras instancias)
+     */
+    private void sincronizarRevocados() {
+        for (TokenRevocado token : tokenRevocadoRepository.findByExpiraAfter(Instant.now())) {
+            revocados.put(token.getJti(), token.getExpira());
+        }
+    }
+
+    private EstadoUsuario estado(String email) {
+        EstadoUsuario actual = estados.get(email);
+        if (actual != null && System.currentTimeMillis() - actual.cargado() < estadoTtlMs) {
+            return actual;
+        }
+        return estados.compute(email, (clave, previo) ->
+                previo != null && previo != actual ? previo : cargar(clave));
+    }
+
+    private EstadoUsuario cargar(String email) {
+        User user = userRepository.findByEmail(email).orElse(null);
+        if (user == null) {
+            return new EstadoUsuario(false, null, null, null, System.currentTimeMillis());
+        }
+        boolean activo = !Boolean.FALSE.equals(user.getActivo())
+                && (user.getTenant() == null || !Boolean.FALSE.equals(user.getTenant().getActivo()));
+        Instant revocadosAntes = user.getTokensRevocadosAntes() != null
+                ? user.getTokensRevocadosAntes().atZone(ZoneId.systemDefault()).toInstant()
+                : null;
+        return new EstadoUsuario(activo, user.getRole(), user.getTenant() != null ? user.getTenant().getId() : null,
+                revocadosAntes, System.currentTimeMillis());
+    }
+}
@@ -1,16 +1,19 @@
 package com.peluqueria.recepcionista_virtual.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import jakarta.annotation.PostConstruct;
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Component
@@ -22,7 +25,18 @@ public class JwtTokenUtil {
     @Value("${spring.security.jwt.expiration:86400000}")
     private Long expiration;
 
-    private SecretKey getSigningKey() {
+    // Clave y parser se construyen una vez: el parser es inmutable y seguro entre hilos
+    private SecretKey signingKey;
+
+    private JwtParser parser;
+
+    @PostConstruct
+    void init() {
+        signingKey = buildSigningKey();
+        parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+    }
+
+    private SecretKey buildSigningKey() {
         // Asegurar que el secret tenga al menos 32 caracteres
         String key = secret;
         while (key.length() < 32) {
@@ -34,6 +48,14 @@ public class JwtTokenUtil {
         return Keys.hmacShaKeyFor(key.getBytes(StandardCharsets.UTF_8));
     }
 
+    /**
+     * Valida firma y caducidad y devuelve los claims en una sola pasada
+     * (lanza JwtException si el token no es válido)
+     */
+    public Claims parse(String token) {
+        return parser.parseClaimsJws(token).getBody();
+    }
+
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
     }
@@ -48,10 +70,7 @@ public class JwtTokenUtil {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .setSigningKey(getSigningKey())
-                .parseClaimsJws(token)
-                .getBody();
+        return parse(token);
     }
 
     private Boolean isTokenExpired(String token) {
@@ -69,9 +88,10 @@ public class JwtTokenUtil {
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(subject)
+                .setId(UUID.randomUUID().toString()) // jti: permite revocar un token concreto
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)  // Usar el método actualizado
+                .signWith(signingKey, SignatureAlgorithm.HS256)  // Usar el método actualizado
                 .compact();
     }
 
@@ -0,0 +1,34 @@
+package com.peluqueria.recepcionista_virtual.security;
+
+import io.jsonwebtoken.Claims;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Usuario autenticado construido solo con los claims del JWT (sin consultar la BD).
+ * Es el principal del SecurityContext en las peticiones con Bearer token.
+ */
+public record UsuarioToken(String email, String tenantId, String role,
+                           String tokenId, Instant emitido, Instant expira) {
+
+    public static UsuarioToken desde(Claims claims) {
+        return new UsuarioToken(
+                claims.getSubject(),
+                claims.get("tenantId", String.class),
+                claims.get("role", String.class),
+                claims.getId(),
+                claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : Instant.EPOCH,
+                claims.getExpiration().toInstant());
+    }
+
+    /**
+     * Mismas autoridades que User.getAuthorities
+     */
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority("ROLE_" + (role != null ? role : "USER")));
+    }
+}
@@ -0,0 +1,263 @@
+package com.peluqueria.recepcionista_virtual.service;
+
+import com.peluqueria.recepcionista_virtual.dto.EventoDashboard;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 🗃️ CACHÉ DE RESULTADOS DE ESTADÍSTICAS POR TENANT Y ENDPOINT
+ *
+ * - TTL corto (stats.cache.ttl-segundos): los datos pueden ir unos segundos por detrás.
+ * - Single-flight: si 20 peticiones piden lo mismo a la vez, solo una calcula y
+ *   el resto espera ese mismo resultado.
+ * - Cualquier cambio de cita del tenant invalida todas sus entradas.
+ * - Límite global de memoria estimada (stats.cache.max-bytes): al superarlo se
+ *   expulsan primero las entradas más próximas a caducar.
+ */
+@Service
+public class CacheEstadisticasService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheEstadisticasService.class);
+
+    @Value("${stats.cache.ttl-segundos:30}")
+    private long ttlSegundos;
+
+    @Value("${stats.cache.max-bytes:16777216}")
+    private long maxBytes;
+
+    /** tenantId -> (endpoint -> entrada) */
+    private final Map<String, Map<String, Entrada>> entradasPorTenant = new ConcurrentHashMap<>();
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong coalescidas = new AtomicLong();
+    private final AtomicLong invalidaciones = new AtomicLong();
+    private final AtomicLong expulsiones = new AtomicLong();
+
+    /**
+     * Devuelve el valor en caché o lo calcula en el hilo llamante. Los errores no se
+     * cachean: se propagan a quien calculaba y a quienes esperaban el mismo resultado.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T obtener(String tenantId, String endpoint, Supplier<T> calculo) {
+        Map<String, Entrada> entradas = entradasPorTenant.computeIfAbsent(tenantId, t -> new ConcurrentHashMap<>());
+        long ahora = System.currentTimeMillis();
+
+        Entrada existente = entradas.get(endpoint);
+        if (existente != null && !existente.caducada(ahora)) {
+            (existente.valor.isDone() ? aciertos : coalescidas).incrementAndGet();
+            return (T) esperar(existente);
+        }
+
+        Entrada nueva = new Entrada(new CompletableFuture<>(), ahora + ttlSegundos * 1000);
+        Entrada ganadora = existente == null
+                ? entradas.putIfAbsent(endpoint, nueva)
+                : (entradas.replace(endpoint, existente, nueva) ? null : entradas.get(endpoint));
+        if (ganadora != null && !ganadora.caducada(ahora)) {
+            // Otro hilo empezó el cálculo justo antes
+            coalescidas.incrementAndGet();
+            return (T) esperar(ganadora);
+        }
+
+        fallos.incrementAndGet();
+        try {
+            T valor = calculo.get();
+            nueva.bytes = estimarBytes(valor);
+            nueva.valor.complete(valor);
+            liberarMemoriaSiHaceFalta();
+            return valor;
+        } catch (RuntimeException e) {
+            entradas.remove(endpoint, nueva);
+            nueva.valor.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public void invalidarTenant(String tenantId) {
+        if (tenantId != null && entradasPorTenant.remove(tenantId) != null) {
+            invalidaciones.incrementAndGet();
+        }
+    }
+
+    // ========================================
+    // INVALIDACIÓN POR EVENTOS DE CITAS
+    // ========================================
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEvento(EventoDashboard evento) {
+        if (EventoDashboard.CANAL_CITAS.equals(evento.canal())) {
+            invalidarTenant(evento.tenantId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCitaCanceladaPorCierre(HorarioEspecialService.CitaCanceladaPorCierreEvent evento) {
+        invalidarTenant(evento.getTenantId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCitaRestaurada(HorarioEspecialService.CitaRestauradaEvent evento) {
+        invalidarTenant(evento.getTenantId());
+    }
+
+    // ========================================
+    // MÉTRICAS
+    // ========================================
+
+    public Map<String, Object> getMetricas() {
+        long hits = aciertos.get() + coalescidas.get();
+        long total = hits + fallos.get();
+        long entradas = 0;
+        long bytes = 0;
+        for (Map<String, Entrada> porEndpoint : entradasPorTenant.values()) {
+            for (Entrada entrada : porEndpoint.values()) {
+                entradas++;
+                bytes += entrada.bytes;
+            }
+        }
+
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("aciertos", aciertos.get());
+        metricas.put("coalescidas", coalescidas.get());
+        metricas.put("fallos", fallos.get());
+        metricas.put("ratioAciertos", total > 0 ? (double) hits / total : 0.0);
+        metricas.put("invalidaciones", invalidaciones.get());
+        metricas.put("expulsiones", expulsiones.get());
+        metricas.put("entradas", entradas);
+        metricas.put("bytesEstimados", bytes);
+        metricas.put("maxBytes", maxBytes);
+        metricas.put("ttlSegundos", ttlSegundos);
+        return metricas;
+    }
+
+    // ========================================
+    // AUXILIARES
+    // ========================================
+
+    private Object esperar(Entrada entrada) {
+        try {
+            return entrada.valor.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Tras cada cálculo: quitar caducadas y, si aún se supera el límite,
+     * expulsar las que antes iban a caducar
+     */
+    private void liberarMemoriaSiHaceFalta() {
+        long ahora = System.currentTimeMillis();
+        long bytes = 0;
+        List<Object[]> candidatas = new ArrayList<>();
+
+        for (Map.Entry<String, Map<String, Entrada>> tenant : entradasPorTenant.entrySet()) {
+            for (Map.Entry<String, Entrada> e : tenant.getValue().entrySet()) {
+                Entrada entrada = e.getValue();
+                if (!entrada.valor.isDone()) {
+                    continue; // en cálculo: hay hilos esperándola
+                }
+                if (entrada.caducada(ahora)) {
+                    tenant.getValue().remove(e.getKey(), entrada);
+                    continue;
+                }
+                bytes += entrada.bytes;
+                candidatas.add(new Object[]{tenant.getValue(), e.getKey(), entrada});
+            }
+        }
+
+        if (bytes <= maxBytes) {
+            return;
+        }
+
+        candidatas.sort((a, b) -> Long.compare(((Entrada) a[2]).expiraEn, ((Entrada) b[2]).expiraEn));
+        for (Object[] candidata : candidatas) {
+            if (bytes <= maxBytes) {
+                break;
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Entrada> entradas = (Map<String, Entrada>) candidata[0];
+            Entrada entrada = (Entrada) candidata[2];
+            if (entradas.remove((String) candidata[1], entrada)) {
+                bytes -= entrada.bytes;
+                expulsiones.incrementAndGet();
+            }
+        }
+        logger.debug("Caché de estadísticas por encima del límite: {} bytes tras expulsar", bytes);
+    }
+
+    /**
+     * Estimación aproximada del tamaño en memoria de un resultado (mapas, listas,
+     * arrays, textos y números), suficiente para acotar el total de la caché
+     */
+    private static long estimarBytes(Object valor) {
+        if (valor == null) {
+            return 0;
+        }
+        if (valor instanceof String texto) {
+            return 40 + 2L * texto.length();
+        }
+        if (valor instanceof Number || valor instanceof Boolean) {
+            return 16;
+        }
+        if (valor instanceof Map<?, ?> mapa) {
+            long bytes = 48;
+            for (Map.Entry<?, ?> e : mapa.entrySet()) {
+                bytes += 32 + estimarBytes(e.getKey()) + estimarBytes(e.getValue());
+            }
+            return bytes;
+        }
+        if (valor instanceof Collection<?> coleccion) {
+            long bytes = 40;
+            for (Object elemento : coleccion) {
+                bytes += 8 + estimarBytes(elemento);
+            }
+            return bytes;
+        }
+        if (valor.getClass().isArray()) {
+            int longitud = Array.getLength(valor);
+            if (valor.getClass().getComponentType().isPrimitive()) {
+                return 16 + 8L * longitud;
+            }
+            long bytes = 16;
+            for (int i = 0; i < longitud; i++) {
+                bytes += 8 + estimarBytes(Array.get(valor, i));
+            }
+            return bytes;
+        }
+        return 128; // records y otros objetos pequeños (p. ej. DashboardKpis)
+    }
+
+    private static final class Entrada {
+        private final CompletableFuture<Object> valor;
+        private final long expiraEn;
+        private volatile long bytes;
+
+        private Entrada(CompletableFuture<Object> valor, long expiraEn) {
+            this.valor = valor;
+            this.expiraEn = expiraEn;
+        }
+
+        private boolean caducada(long ahora) {
+            return ahora >= expiraEn;
+        }
+    }
+}
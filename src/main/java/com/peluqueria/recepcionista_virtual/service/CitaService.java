@@ -6,7 +6,14 @@ import com.peluqueria.recepcionista_virtual.repository.*;
 import com.peluqueria.recepcionista_virtual.dto.DatosCita;
 import com.peluqueria.recepcionista_virtual.dto.CitaDTO;
 import com.peluqueria.recepcionista_virtual.dto.DisponibilidadResult;
+import com.peluqueria.recepcionista_virtual.dto.EventoDashboard;
+import com.peluqueria.recepcionista_virtual.util.TelefonoNormalizador;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -37,6 +44,9 @@ public class CitaService {
 
     private static final Logger logger = LoggerFactory.getLogger(CitaService.class);
 
+    // Una franja en el pico de demanda "cuesta" como alejarse 2 horas del horario preferido
+    private static final double PENALIZACION_FRANJA_PICO_HORAS = 2.0;
+
 
     // ========================================
     // DEPENDENCIAS - INYECCIÓN
@@ -45,9 +55,18 @@ public class CitaService {
     @Autowired
     private CitaRepository citaRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private DemandaHorariaService demandaHorariaService;
+
     @Autowired
     private ClienteRepository clienteRepository;
 
+    @Autowired
+    private MetricaClienteRepository metricaClienteRepository;
+
     @Autowired
     private ServicioRepository servicioRepository;
 
@@ -77,7 +96,7 @@ public class CitaService {
     private UserService.UsuarioService usuarioService;
 
     @Autowired
-    private HorarioEspecialRepository horarioEspecialRepository;
+    private IndiceCierresService indiceCierres;
 
 
     // ========================================================================================
@@ -103,16 +122,7 @@ public class CitaService {
                     .orElseThrow(() -> new RuntimeException("Tenant no encontrado"));
 
             // 2. Buscar o crear cliente
-            Cliente cliente = clienteRepository
-                    .findByTelefonoAndTenantId(telefono, tenantId)
-                    .orElseGet(() -> {
-                        Cliente nuevo = new Cliente();
-                        nuevo.setTenant(tenant);
-                        nuevo.setTelefono(telefono);
-                        nuevo.setNombre(datos.getNombreCliente() != null ?
-                                datos.getNombreCliente() : "Cliente");
-                        return clienteRepository.save(nuevo);
-                    });
+            Cliente cliente = buscarOCrearCliente(tenant, telefono, datos.getNombreCliente());
 
             // 🆘 NUEVA VALIDACIÓN: Intervalo mínimo entre citas del mismo cliente
             validarIntervaloMinimoCliente(tenantId, cliente.getId(), fechaHora);
@@ -167,6 +177,7 @@ public class CitaService {
             }
 
             Cita citaGuardada = citaRepository.save(cita);
+            eventPublisher.publishEvent(EventoDashboard.deCita(citaGuardada, "creada"));
 
             // 6. ✅ ENVIAR SMS DE CONFIRMACIÓN PERSONALIZADO POR TENANT
             enviarConfirmacionPersonalizada(citaGuardada);
@@ -186,6 +197,7 @@ public class CitaService {
     /**
      * 📋 OBTENER CITAS POR TENANT
      */
+    @Transactional(readOnly = true)
     public List<CitaDTO> getCitasByTenantId(String tenantId) {
         List<Cita> citas = citaRepository.findByTenantIdOrderByFechaHoraDesc(tenantId);
         return citas.stream()
@@ -193,19 +205,24 @@ public class CitaService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 🔎 CITAS FILTRADAS Y PAGINADAS EN BD - día y estado opcionales, más recientes primero
+     */
+    @Transactional(readOnly = true)
+    public Page<CitaDTO> buscarCitas(String tenantId, LocalDate dia, EstadoCita estado, int pagina, int tamano) {
+        return citaRepository.findAll(CitaEspecificaciones.filtro(tenantId, dia, estado),
+                        PageRequest.of(pagina, tamano, Sort.by(Sort.Direction.DESC, "fechaHora")))
+                .map(CitaDTO::fromCita);
+    }
+
     /**
      * 📅 OBTENER CITAS POR FECHA
      */
+    @Transactional(readOnly = true)
     public List<CitaDTO> getCitasByTenantIdAndFecha(String tenantId, String fecha) {
         try {
             LocalDate fechaParsed = LocalDate.parse(fecha);
-            LocalDateTime inicio = fechaParsed.atStartOfDay();
-            LocalDateTime fin = fechaParsed.atTime(23, 59, 59);
-
-            List<Cita> citas = citaRepository.findByTenantIdAndFechaHoraBetween(tenantId, inicio, fin);
-            return citas.stream()
-                    .map(CitaDTO::fromCita)
-                    .collect(Collectors.toList());
+            return buscarCitasOrdenadas(CitaEspecificaciones.filtro(tenantId, fechaParsed, null));
         } catch (Exception e) {
             return getCitasByTenantId(tenantId);
         }
@@ -214,13 +231,11 @@ public class CitaService {
     /**
      * 📄 OBTENER CITAS POR ESTADO
      */
+    @Transactional(readOnly = true)
     public List<CitaDTO> getCitasByTenantIdAndEstado(String tenantId, String estado) {
         try {
             EstadoCita estadoCita = EstadoCita.valueOf(estado.toUpperCase());
-            List<Cita> citas = citaRepository.findByTenantIdAndEstado(tenantId, estadoCita);
-            return citas.stream()
-                    .map(CitaDTO::fromCita)
-                    .collect(Collectors.toList());
+            return buscarCitasOrdenadas(CitaEspecificaciones.filtro(tenantId, null, estadoCita));
         } catch (Exception e) {
             return getCitasByTenantId(tenantId);
         }
@@ -229,16 +244,28 @@ public class CitaService {
     /**
      * 📅 OBTENER CITAS DE HOY
      */
+    @Transactional(readOnly = true)
     public List<CitaDTO> getCitasHoyByTenantId(String tenantId) {
-        LocalDateTime inicio = LocalDateTime.now().withHour(0).withMinute(0).withSecond(0);
-        LocalDateTime fin = LocalDateTime.now().withHour(23).withMinute(59).withSecond(59);
+        return buscarCitasOrdenadas(CitaEspecificaciones.filtro(tenantId, LocalDate.now(), null));
+    }
 
-        List<Cita> citas = citaRepository.findByTenantIdAndFechaHoraBetween(tenantId, inicio, fin);
-        return citas.stream()
+    private List<CitaDTO> buscarCitasOrdenadas(Specification<Cita> spec) {
+        return citaRepository.findAll(spec, Sort.by(Sort.Direction.ASC, "fechaHora")).stream()
                 .map(CitaDTO::fromCita)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 📅 CONTAR CITAS DE HOY (sin cargar entidades)
+     */
+    @Transactional(readOnly = true)
+    public long countCitasHoyByTenantId(String tenantId) {
+        LocalDateTime inicio = LocalDateTime.now().withHour(0).withMinute(0).withSecond(0);
+        LocalDateTime fin = LocalDateTime.now().withHour(23).withMinute(59).withSecond(59);
+
+        return citaRepository.countByTenantIdAndFechaHoraBetween(tenantId, inicio, fin);
+    }
+
     /**
      * 📄 MÉTODO CREATECITA ACTUALIZADO - COMPLETAMENTE CORREGIDO
      */
@@ -312,6 +339,7 @@ public class CitaService {
             cita.setNotas(citaDTO.getNotas());
 
             Cita citaGuardada = citaRepository.save(cita);
+            eventPublisher.publishEvent(EventoDashboard.deCita(citaGuardada, "creada"));
 
             // 🤖 IA AUTOMÁTICA: Enviar confirmación inteligente
             enviarConfirmacionPersonalizada(citaGuardada);
@@ -326,12 +354,23 @@ public class CitaService {
     /**
      * 📋 OBTENER CITA POR ID
      */
+    @Transactional(readOnly = true)
     public CitaDTO getCitaById(String citaId) {
         Cita cita = citaRepository.findById(citaId)
                 .orElseThrow(() -> new RuntimeException("Cita no encontrada"));
         return CitaDTO.fromCita(cita);
     }
 
+    /**
+     * Igual que getCitaById pero sin readOnly, así se lee del primario: para comprobar
+     * la cita justo antes de modificarla o borrarla (en la réplica podría no estar aún)
+     */
+    public CitaDTO getCitaByIdParaEscritura(String citaId) {
+        Cita cita = citaRepository.findById(citaId)
+                .orElseThrow(() -> new RuntimeException("Cita no encontrada"));
+        return CitaDTO.fromCita(cita);
+    }
+
     /**
      * ✏️ ACTUALIZAR CITA - CORREGIDO CON VALIDACIONES CRÍTICAS
      */
@@ -345,6 +384,9 @@ public class CitaService {
             // ✅ VALIDACIÓN CRÍTICA DE SEGURIDAD AL INICIO:
             validarCitaPerteneceATenant(citaId, tenantId);
 
+            EstadoCita estadoAnterior = cita.getEstado();
+            LocalDateTime fechaHoraAnterior = cita.getFechaHora();
+
             // Actualizar campos si están presentes
             if (citaDTO.getFechaHora() != null && !citaDTO.getFechaHora().equals(cita.getFechaHora())) {
                 // 🤖 IA AUTOMÁTICA: Optimizar nuevo horario
@@ -397,6 +439,9 @@ public class CitaService {
             }
 
             Cita citaActualizada = citaRepository.save(cita);
+            eventPublisher.publishEvent(EventoDashboard.deCita(citaActualizada,
+                    citaActualizada.getEstado() == EstadoCita.CANCELADA ? "cancelada" : "actualizada",
+                    estadoAnterior, fechaHoraAnterior));
             return CitaDTO.fromCita(citaActualizada);
 
         } catch (Exception e) {
@@ -414,8 +459,10 @@ public class CitaService {
         // ✅ VALIDACIÓN CRÍTICA DE SEGURIDAD:
         validarCitaPerteneceATenant(citaId, cita.getTenant().getId());
 
+        EstadoCita estadoAnterior = cita.getEstado();
         cita.setEstado(EstadoCita.CANCELADA);
         citaRepository.save(cita);
+        eventPublisher.publishEvent(EventoDashboard.deCita(cita, "cancelada", estadoAnterior, cita.getFechaHora()));
 
         // 🤖 IA AUTOMÁTICA: Enviar notificación de cancelación
         enviarNotificacionCancelacion(cita);
@@ -947,6 +994,7 @@ public class CitaService {
         }
     }
 
+    @Transactional(readOnly = true)
     public List<Cita> obtenerCitasDelDia(String tenantId) {
         LocalDateTime inicio = LocalDateTime.now().withHour(0).withMinute(0);
         LocalDateTime fin = LocalDateTime.now().withHour(23).withMinute(59);
@@ -1105,13 +1153,12 @@ public class CitaService {
                 return;
             }
 
-            // Buscar la última cita del cliente
-            List<Cita> citasRecientes = citaRepository.findByClienteIdAndTenantIdOrderByFechaHoraDesc(clienteId, tenantId);
-
-            if (!citasRecientes.isEmpty()) {
-                Cita ultimaCita = citasRecientes.get(0);
-                LocalDateTime ultimaFecha = ultimaCita.getFechaHora();
+            // Última reserva no cancelada del cliente, del agregado por cliente (sin cargar su historial)
+            LocalDateTime ultimaFecha = metricaClienteRepository.findByClienteIdAndTenantId(clienteId, tenantId)
+                    .map(MetricaCliente::getUltimaReserva)
+                    .orElse(null);
 
+            if (ultimaFecha != null) {
                 // Calcular diferencia en minutos
                 long minutosEntre = ChronoUnit.MINUTES.between(ultimaFecha, fechaHoraNueva);
 
@@ -1259,9 +1306,7 @@ public class CitaService {
             Tenant tenant = tenantRepository.findById(tenantId)
                     .orElseThrow(() -> new RuntimeException("Tenant no encontrado"));
 
-            Cliente cliente = clienteRepository
-                    .findByTelefonoAndTenantId(telefono, tenantId)
-                    .orElseGet(() -> crearClienteNuevo(tenant, telefono, datos.getNombreCliente()));
+            Cliente cliente = buscarOCrearCliente(tenant, telefono, datos.getNombreCliente());
 
             Servicio servicio = buscarServicioPorNombre(datos.getServicio(), tenantId);
             Empleado empleado = buscarEmpleadoDisponibleConIA(tenantId, fechaHora, servicio);
@@ -1296,6 +1341,7 @@ public class CitaService {
             }
 
             Cita citaGuardada = citaRepository.save(cita);
+            eventPublisher.publishEvent(EventoDashboard.deCita(citaGuardada, "creada"));
             enviarConfirmacionPersonalizada(citaGuardada);
 
             logger.info("Cita creada exitosamente con validaciones avanzadas: {}",
@@ -1411,12 +1457,32 @@ public class CitaService {
         return resultado;
     }
 
-    private Cliente crearClienteNuevo(Tenant tenant, String telefono, String nombre) {
-        Cliente nuevo = new Cliente();
-        nuevo.setTenant(tenant);
-        nuevo.setTelefono(telefono);
-        nuevo.setNombre(nombre != null ? nombre : "Cliente");
-        return clienteRepository.save(nuevo);
+    /**
+     * Cliente del tenant con ese teléfono, creándolo si no existe. Si otra llamada del
+     * mismo número lo crea a la vez, el INSERT ... ON CONFLICT DO NOTHING espera a que
+     * confirme y no inserta nada; entonces se relee el suyo en lugar de fallar la cita.
+     */
+    private Cliente buscarOCrearCliente(Tenant tenant, String telefono, String nombre) {
+        Optional<Cliente> existente = clienteRepository.findByTelefonoAndTenantId(telefono, tenant.getId());
+        if (existente.isPresent()) {
+            return existente.get();
+        }
+
+        String nombreCliente = nombre != null ? nombre : "Cliente";
+        String telefonoNorm = TelefonoNormalizador.normalizar(telefono);
+        if (telefonoNorm == null) {
+            // Sin teléfono válido no hay clave única con la que chocar
+            Cliente nuevo = new Cliente();
+            nuevo.setTenant(tenant);
+            nuevo.setTelefono(telefono);
+            nuevo.setNombre(nombreCliente);
+            return clienteRepository.save(nuevo);
+        }
+
+        clienteRepository.insertarSiNoExiste(UUID.randomUUID().toString(), tenant.getId(),
+                nombreCliente, telefono, telefonoNorm, LocalDateTime.now());
+        return clienteRepository.findFirstByTenant_IdAndTelefonoNorm(tenant.getId(), telefonoNorm)
+                .orElseThrow(() -> new RuntimeException("No se pudo crear el cliente " + telefono));
     }
 
     private Servicio buscarServicioPorNombre(String nombreServicio, String tenantId) {
@@ -1430,6 +1496,8 @@ public class CitaService {
 
     private CitaDTO aplicarCambiosCita(Cita cita, CitaDTO citaDTO, String tenantId) {
         boolean huboCambios = false;
+        EstadoCita estadoAnterior = cita.getEstado();
+        LocalDateTime fechaHoraAnterior = cita.getFechaHora();
 
         // Aplicar cambios de fecha/hora
         if (citaDTO.getFechaHora() != null && !citaDTO.getFechaHora().equals(cita.getFechaHora())) {
@@ -1476,6 +1544,9 @@ public class CitaService {
 
         if (huboCambios) {
             Cita citaActualizada = citaRepository.save(cita);
+            eventPublisher.publishEvent(EventoDashboard.deCita(citaActualizada,
+                    citaActualizada.getEstado() == EstadoCita.CANCELADA ? "cancelada" : "actualizada",
+                    estadoAnterior, fechaHoraAnterior));
             return CitaDTO.fromCita(citaActualizada);
         }
 
@@ -1594,31 +1665,23 @@ public class CitaService {
                 }
             }
 
-            // 5. CONFLICTOS DE HORARIOS ESPECIALES (cierres) - CORREGIDO
+            // 5. CONFLICTOS DE HORARIOS ESPECIALES (cierres) - índice en memoria del tenant
             try {
-                // Verificar si existe el repositorio antes de usarlo
-                if (horarioEspecialRepository != null) {
-                    List<HorarioEspecial> cierresActivos = horarioEspecialRepository
-                            .findActivosByTenantAndFecha(tenantId, fechaHora.toLocalDate());
-
-                    for (HorarioEspecial cierre : cierresActivos) {
-                        if (cierre.afectaHorario(fechaHora)) {
-                            Map<String, String> detallesCierre = new HashMap<>();
-                            // ✅ CORRECCIÓN: Convertir enum a String
-                            detallesCierre.put("tipoCierre", cierre.getTipoCierre().toString());
-                            detallesCierre.put("fechaInicio", cierre.getFechaInicio().toString());
-                            detallesCierre.put("fechaFin", cierre.getFechaFin().toString());
-
-                            conflictos.add(new CitaConflictoDTO(
-                                    "CIERRE_ESPECIAL",
-                                    "Salón cerrado por horario especial",
-                                    cierre.getMotivo() != null ? cierre.getMotivo() : "Cierre programado",
-                                    fechaHora,
-                                    detallesCierre,
-                                    "ALTA"
-                            ));
-                        }
-                    }
+                for (IndiceCierresService.CierreIndexado cierre :
+                        indiceCierres.bloqueos(tenantId, fechaHora, empleadoId, servicioId)) {
+                    Map<String, String> detallesCierre = new HashMap<>();
+                    detallesCierre.put("tipoCierre", cierre.tipoCierre().toString());
+                    detallesCierre.put("fechaInicio", cierre.fechaInicio().toString());
+                    detallesCierre.put("fechaFin", cierre.fechaFin().toString());
+
+                    conflictos.add(new CitaConflictoDTO(
+                            "CIERRE_ESPECIAL",
+                            "Salón cerrado por horario especial",
+                            cierre.motivo() != null ? cierre.motivo() : "Cierre programado",
+                            fechaHora,
+                            detallesCierre,
+                            "ALTA"
+                    ));
                 }
             } catch (Exception e) {
                 logger.warn("Error verificando horarios especiales: {}", e.getMessage());
@@ -1947,9 +2010,20 @@ public class CitaService {
             return null;
         }
 
-        // Por ahora, seleccionar la más cercana al horario preferido
-        // TODO: Integrar análisis más sofisticado con OpenAI
-        return alternativas.get(0);
+        // Coste = horas de distancia al preferido + penalización por franja muy demandada
+        // (mapa día×hora en memoria), para repartir carga sin alejarse demasiado
+        LocalDateTime mejor = alternativas.get(0);
+        double mejorCoste = Double.MAX_VALUE;
+        for (LocalDateTime alternativa : alternativas) {
+            double horas = Math.abs(ChronoUnit.MINUTES.between(horarioPreferido, alternativa)) / 60.0;
+            double coste = horas + PENALIZACION_FRANJA_PICO_HORAS *
+                    demandaHorariaService.getDemandaRelativa(tenantId, alternativa);
+            if (coste < mejorCoste) {
+                mejorCoste = coste;
+                mejor = alternativa;
+            }
+        }
+        return mejor;
     }
 
     /**
@@ -4,16 +4,26 @@ import com.peluqueria.recepcionista_virtual.model.*;
 import com.peluqueria.recepcionista_virtual.repository.*;
 import com.peluqueria.recepcionista_virtual.dto.ClienteDTO;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.text.Normalizer;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Locale;
 import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class ClienteService {
 
+    // Resultados de la búsqueda sin paginar (autocompletado)
+    private static final int TAMANO_BUSQUEDA = 20;
+
     @Autowired
     private ClienteRepository clienteRepository;
 
@@ -23,6 +33,7 @@ public class ClienteService {
     /**
      * 🔒 MÉTODO SEGURO - Solo clientes del tenant
      */
+    @Transactional(readOnly = true)
     public List<ClienteDTO> getClientesByTenantId(String tenantId) {
         List<Cliente> clientes = clienteRepository.findByTenantId(tenantId);
         return clientes.stream()
@@ -31,26 +42,58 @@ public class ClienteService {
     }
 
     /**
-     * 🔍 BÚSQUEDA DE CLIENTES POR TENANT - NUEVO MÉTODO
+     * 📄 PÁGINA DE CLIENTES - Total del tenant sin cargar todos los clientes
+     */
+    @Transactional(readOnly = true)
+    public Page<ClienteDTO> getClientesPaginados(String tenantId, int pagina, int tamano) {
+        return clienteRepository.findPaginaByTenantId(tenantId, PageRequest.of(pagina, tamano))
+                .map(ClienteDTO::fromCliente);
+    }
+
+    /**
+     * 🔍 BÚSQUEDA DE CLIENTES POR TENANT - Primera página de resultados
      */
+    @Transactional(readOnly = true)
     public List<ClienteDTO> searchClientesByTenantId(String tenantId, String search) {
         if (search == null || search.trim().isEmpty()) {
             return getClientesByTenantId(tenantId);
         }
+        return buscarClientes(tenantId, search, 0, TAMANO_BUSQUEDA).getContent();
+    }
 
-        List<Cliente> clientes = clienteRepository.findByTenantId(tenantId);
+    /**
+     * 🔍 BÚSQUEDA PAGINADA - Indexada en BD, sin distinguir tildes ni mayúsculas.
+     * Ordena primero los nombres que empiezan por el término.
+     */
+    @Transactional(readOnly = true)
+    public Page<ClienteDTO> buscarClientes(String tenantId, String search, int pagina, int tamano) {
+        if (search == null || search.trim().isEmpty()) {
+            return getClientesPaginados(tenantId, pagina, tamano);
+        }
 
-        // Filtrar por nombre, teléfono o email que contenga el término de búsqueda
-        String searchLower = search.toLowerCase().trim();
+        String termino = escaparLike(normalizarBusqueda(search));
+        PageRequest pageRequest = PageRequest.of(pagina, tamano);
 
-        return clientes.stream()
-                .filter(cliente ->
-                        (cliente.getNombre() != null && cliente.getNombre().toLowerCase().contains(searchLower)) ||
-                                (cliente.getTelefono() != null && cliente.getTelefono().contains(searchLower)) ||
-                                (cliente.getEmail() != null && cliente.getEmail().toLowerCase().contains(searchLower))
-                )
-                .map(ClienteDTO::fromCliente)
-                .collect(Collectors.toList());
+        // Con menos de 3 caracteres no hay trigramas: solo inicio del nombre
+        Page<Cliente> clientes = termino.length() < 3
+                ? clienteRepository.buscarPorPrefijoNombre(tenantId, termino + "%", pageRequest)
+                : clienteRepository.buscarPorTexto(tenantId, "%" + termino + "%", termino + "%",
+                "% " + termino + "%", pageRequest);
+
+        return clientes.map(ClienteDTO::fromCliente);
+    }
+
+    /**
+     * Misma normalización que lower(f_unaccent(...)) en BD: sin tildes y en minúsculas
+     */
+    private static String normalizarBusqueda(String texto) {
+        return Normalizer.normalize(texto.trim(), Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    private static String escaparLike(String texto) {
+        return texto.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
     }
 
     /**
@@ -125,15 +168,27 @@ public class ClienteService {
     /**
      * 📋 OBTENER CLIENTE POR ID - MÉTODO EXISTENTE
      */
+    @Transactional(readOnly = true)
     public ClienteDTO getClienteById(String clienteId) {
         Cliente cliente = clienteRepository.findById(clienteId)
                 .orElseThrow(() -> new RuntimeException("Cliente no encontrado"));
         return ClienteDTO.fromCliente(cliente);
     }
 
+    /**
+     * Igual que getClienteById pero sin readOnly, así se lee del primario: para comprobar
+     * el cliente justo antes de modificarlo (en la réplica podría no estar aún)
+     */
+    public ClienteDTO getClienteByIdParaEscritura(String clienteId) {
+        Cliente cliente = clienteRepository.findById(clienteId)
+                .orElseThrow(() -> new RuntimeException("Cliente no encontrado"));
+        return ClienteDTO.fromCliente(cliente);
+    }
+
     /**
      * 📊 MÉTODO ADICIONAL - Estadísticas de cliente
      */
+    @Transactional(readOnly = true)
     public ClienteDTO getClienteConEstadisticas(String clienteId) {
         Cliente cliente = clienteRepository.findById(clienteId)
                 .orElseThrow(() -> new RuntimeException("Cliente no encontrado"));
@@ -151,7 +206,10 @@ public class ClienteService {
 
     /**
      * 🔍 BUSCAR CLIENTE POR TELÉFONO EN TENANT ESPECÍFICO
+     * Sin readOnly: se usa justo antes de crear/actualizar y debe leer del primario
+     * (la réplica puede no tener aún un cliente recién creado)
      */
+    @Transactional
     public ClienteDTO findByTelefonoAndTenant(String telefono, String tenantId) {
         return clienteRepository.findByTelefonoAndTenantId(telefono, tenantId)
                 .map(ClienteDTO::fromCliente)
@@ -161,23 +219,38 @@ public class ClienteService {
     /**
      * 📈 OBTENER CLIENTES NUEVOS DEL MES
      */
+    @Transactional(readOnly = true)
     public List<ClienteDTO> getClientesNuevosDelMes(String tenantId) {
-        LocalDateTime inicioMes = LocalDateTime.now().withDayOfMonth(1).withHour(0).withMinute(0).withSecond(0);
-        LocalDateTime finMes = inicioMes.plusMonths(1).minusSeconds(1);
-
-        List<Cliente> clientes = clienteRepository.findByTenantId(tenantId);
-
-        return clientes.stream()
-                .filter(cliente -> cliente.getFechaRegistro() != null &&
-                        cliente.getFechaRegistro().isAfter(inicioMes) &&
-                        cliente.getFechaRegistro().isBefore(finMes))
+        return clienteRepository.findAll(especificacionNuevosDelMes(tenantId),
+                        Sort.by(Sort.Direction.DESC, "fechaRegistro")).stream()
                 .map(ClienteDTO::fromCliente)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 📈 CONTAR CLIENTES NUEVOS DEL MES (sin cargar entidades)
+     */
+    @Transactional(readOnly = true)
+    public long countClientesNuevosDelMes(String tenantId) {
+        return clienteRepository.count(especificacionNuevosDelMes(tenantId));
+    }
+
+    @Transactional(readOnly = true)
+    public long countClientesByTenantId(String tenantId) {
+        return clienteRepository.count(ClienteEspecificaciones.delTenant(tenantId));
+    }
+
+    private Specification<Cliente> especificacionNuevosDelMes(String tenantId) {
+        LocalDateTime inicioMes = LocalDate.now().withDayOfMonth(1).atStartOfDay();
+        return ClienteEspecificaciones.delTenant(tenantId)
+                .and(ClienteEspecificaciones.registradoEntre(inicioMes, inicioMes.plusMonths(1)));
+    }
+
     /**
      * 📱 VALIDAR TELÉFONO ÚNICO EN TENANT
+     * Sin readOnly: comprobación de unicidad previa a una escritura, contra el primario
      */
+    @Transactional
     public boolean isTelefonoDisponible(String telefono, String tenantId, String excludeClienteId) {
         return clienteRepository.findByTelefonoAndTenantId(telefono, tenantId)
                 .map(cliente -> cliente.getId().equals(excludeClienteId))
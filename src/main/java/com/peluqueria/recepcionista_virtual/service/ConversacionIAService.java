@@ -1,14 +1,19 @@
 package com.peluqueria.recepcionista_virtual.service;
 
 import com.peluqueria.recepcionista_virtual.model.ConversacionIA;
+import com.peluqueria.recepcionista_virtual.model.UuidV7Generator;
 import com.peluqueria.recepcionista_virtual.repository.ConversacionIARepository;
+import com.peluqueria.recepcionista_virtual.util.RangoFechas;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @Transactional
@@ -20,6 +25,7 @@ public class ConversacionIAService {
     /**
      * Obtener todas las conversaciones de un tenant específico
      */
+    @Transactional(readOnly = true)
     public List<ConversacionIA> getConversacionesByTenantId(String tenantId) {
         return conversacionIARepository.findByTenantIdOrderByTimestampDesc(tenantId);
     }
@@ -27,6 +33,7 @@ public class ConversacionIAService {
     /**
      * Obtener conversaciones de un tenant con paginación
      */
+    @Transactional(readOnly = true)
     public Page<ConversacionIA> getConversacionesByTenantId(String tenantId, Pageable pageable) {
         return conversacionIARepository.findByTenantIdOrderByTimestampDesc(tenantId, pageable);
     }
@@ -34,6 +41,7 @@ public class ConversacionIAService {
     /**
      * Obtener conversaciones por CallSid
      */
+    @Transactional(readOnly = true)
     public List<ConversacionIA> getConversacionesByCallSid(String callSid, String tenantId) {
         return conversacionIARepository.findByCallSidAndTenantIdOrderByTimestampAsc(callSid, tenantId);
     }
@@ -41,6 +49,7 @@ public class ConversacionIAService {
     /**
      * Obtener conversaciones por canal de comunicación
      */
+    @Transactional(readOnly = true)
     public List<ConversacionIA> getConversacionesByCanal(
             String tenantId,
             ConversacionIA.CanalComunicacion canal) {
@@ -50,6 +59,7 @@ public class ConversacionIAService {
     /**
      * Obtener conversaciones en un rango de fechas
      */
+    @Transactional(readOnly = true)
     public List<ConversacionIA> getConversacionesByFecha(
             String tenantId,
             LocalDateTime fechaInicio,
@@ -66,7 +76,7 @@ public class ConversacionIAService {
             conversacion.setTimestamp(LocalDateTime.now());
         }
         if (conversacion.getId() == null) {
-            conversacion.setId(java.util.UUID.randomUUID().toString());
+            conversacion.setId(UuidV7Generator.generar());
         }
         return conversacionIARepository.save(conversacion);
     }
@@ -98,14 +108,55 @@ public class ConversacionIAService {
     /**
      * Obtener estadísticas de conversaciones por tenant
      */
+    @Transactional(readOnly = true)
     public Long getTotalConversaciones(String tenantId) {
         return conversacionIARepository.countByTenantId(tenantId);
     }
 
+    @Transactional(readOnly = true)
     public Long getConversacionesExitosas(String tenantId) {
         return conversacionIARepository.countByTenantIdAndExitoso(tenantId, true);
     }
 
+    /**
+     * Estadísticas de /stats para el rango [desde, hasta] (días incluidos), leídas del
+     * agregado diario conversaciones_diarias. Sin fechas cubre todo el histórico.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getEstadisticas(String tenantId, LocalDate desde, LocalDate hasta) {
+        LocalDate inicio = desde != null ? desde : RangoFechas.INICIO_HISTORICO;
+        LocalDate fin = hasta != null ? hasta : LocalDate.now();
+
+        Map<String, Long> porCanal = new HashMap<>();
+        for (ConversacionIA.CanalComunicacion canal : ConversacionIA.CanalComunicacion.values()) {
+            porCanal.put(canal.name(), 0L);
+        }
+
+        long total = 0;
+        long exitosas = 0;
+        long tokens = 0;
+        List<Object[]> filas = conversacionIARepository.agregarEstadisticasPorCanal(tenantId, inicio, fin);
+        for (Object[] fila : filas) {
+            long conversaciones = ((Number) fila[1]).longValue();
+            if (fila[0] != null) {
+                porCanal.put(fila[0].toString(), conversaciones);
+            }
+            total += conversaciones;
+            exitosas += ((Number) fila[2]).longValue();
+            tokens += ((Number) fila[3]).longValue();
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalConversaciones", total);
+        stats.put("conversacionesExitosas", exitosas);
+        stats.put("tokensUsados", tokens);
+        stats.put("porCanal", porCanal);
+        stats.put("desde", inicio.toString());
+        stats.put("hasta", fin.toString());
+        return stats;
+    }
+
+    @Transactional(readOnly = true)
     public Long getConversacionesPorCanal(String tenantId, ConversacionIA.CanalComunicacion canal) {
         return conversacionIARepository.countByTenantIdAndCanal(tenantId, canal);
     }
@@ -113,6 +164,7 @@ public class ConversacionIAService {
     /**
      * Buscar conversación por ID (verificando tenant) - CORREGIDO: String ID
      */
+    @Transactional(readOnly = true)
     public ConversacionIA getConversacionById(String id, String tenantId) {
         return conversacionIARepository.findByIdAndTenantId(id, tenantId);
     }
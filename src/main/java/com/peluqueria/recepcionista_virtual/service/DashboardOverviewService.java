@@ -0,0 +1,234 @@
+package com.peluqueria.recepcionista_virtual.service;
+
+import com.peluqueria.recepcionista_virtual.dto.ClienteDTO;
+import com.peluqueria.recepcionista_virtual.dto.TenantDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 📊 OVERVIEW DEL DASHBOARD EN PARALELO
+ *
+ * Las secciones se reparten en dos tareas, tantas como hilos: "resumen" (salón,
+ * contadores, clientes y citas de hoy, consultas cortas seguidas en una conexión) y
+ * "stats" (la única pesada). Así la latencia es la de la tarea más lenta sin ocupar más
+ * de dos conexiones. El conjunto espera como máximo timeout-total-ms; una sección que
+ * falla o vence devuelve el último valor correcto de ese tenant y se marca en
+ * "seccionesDegradadas".
+ *
+ * El timeout de cada tarea cuenta desde que empieza a ejecutarse, no desde que se
+ * encola. Cancelar el future no corta una consulta JDBC en curso, así que cada tarea
+ * corre en su propia transacción de solo lectura con timeout: Hibernate lo aplica como
+ * timeout de sentencia y la BD aborta la consulta, liberando hilo y conexión.
+ */
+@Service
+public class DashboardOverviewService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DashboardOverviewService.class);
+
+    @Autowired
+    private TenantService tenantService;
+
+    @Autowired
+    private StatsService statsService;
+
+    @Autowired
+    private ServicioService servicioService;
+
+    @Autowired
+    private EmpleadoService empleadoService;
+
+    @Autowired
+    private ClienteService clienteService;
+
+    @Autowired
+    private CitaService citaService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${dashboard.overview.hilos:2}")
+    private int hilos;
+
+    @Value("${dashboard.overview.timeout-total-ms:3000}")
+    private long timeoutTotalMs;
+
+    @Value("${dashboard.overview.timeout-seccion-ms:2000}")
+    private long timeoutSeccionMs;
+
+    @Value("${dashboard.overview.clientes-pagina:10}")
+    private int clientesPorPagina;
+
+    /** Secciones de una tarea y su resultado (solo las que no fallaron) */
+    private record Tarea(Set<String> secciones, CompletableFuture<Map<String, Object>> futuro) {
+    }
+
+    /** Último valor correcto por "tenantId:seccion" */
+    private final Map<String, Object> ultimoValorPorSeccion = new ConcurrentHashMap<>();
+
+    private ExecutorService executor;
+
+    private TransactionTemplate transaccionSeccion;
+
+    @PostConstruct
+    public void init() {
+        transaccionSeccion = new TransactionTemplate(transactionManager);
+        transaccionSeccion.setReadOnly(true);
+        transaccionSeccion.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transaccionSeccion.setTimeout((int) Math.max(1, (timeoutSeccionMs + 999) / 1000));
+
+        // Pool pequeño a propósito: cada tarea ocupa una conexión de Hikari mientras consulta,
+        // y el overview debe dejar siempre conexiones libres al resto de peticiones (pool de 3).
+        // Con 2 hilos las dos tareas del overview corren a la vez
+        AtomicInteger contador = new AtomicInteger();
+        executor = new ThreadPoolExecutor(hilos, hilos, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(100),
+                r -> {
+                    Thread t = new Thread(r, "dashboard-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public Map<String, Object> getOverview(String tenantId) {
+        Map<String, Supplier<Object>> resumen = new LinkedHashMap<>();
+        resumen.put("salon", () -> TenantDTO.fromTenant(tenantService.findById(tenantId)));
+        resumen.put("totalServicios", () -> servicioService.countServiciosActivos(tenantId));
+        resumen.put("totalEmpleados", () -> empleadoService.countEmpleadosActivos(tenantId));
+        resumen.put("citasHoy", () -> citaService.countCitasHoyByTenantId(tenantId));
+        resumen.put("clientes", () -> resumenClientes(tenantId));
+
+        // obtenerDashboardStats propaga los errores para que aquí se use el último valor
+        Map<String, Supplier<Object>> stats = new LinkedHashMap<>();
+        stats.put("stats", () -> statsService.obtenerDashboardStats(tenantId));
+
+        List<Tarea> tareas = List.of(
+                new Tarea(resumen.keySet(), lanzar(tenantId, resumen)),
+                new Tarea(stats.keySet(), lanzar(tenantId, stats)));
+
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutTotalMs);
+        Map<String, Object> overview = new HashMap<>();
+        List<String> degradadas = new ArrayList<>();
+
+        for (Tarea tarea : tareas) {
+            Map<String, Object> valores;
+            String causa;
+            try {
+                long restante = Math.max(0, limite - System.nanoTime());
+                valores = tarea.futuro().get(restante, TimeUnit.NANOSECONDS);
+                causa = "error";
+            } catch (Exception e) {
+                tarea.futuro().cancel(true);
+                valores = Map.of();
+                causa = e.getClass().getSimpleName();
+            }
+
+            for (String seccion : tarea.secciones()) {
+                String clave = tenantId + ":" + seccion;
+                Object valor = valores.get(seccion);
+                if (valor != null) {
+                    ultimoValorPorSeccion.put(clave, valor);
+                } else {
+                    valor = ultimoValorPorSeccion.get(clave);
+                    degradadas.add(seccion);
+                    logger.warn("Overview tenant {}: sección {} no disponible ({}), usando {}",
+                            tenantId, seccion, causa, valor != null ? "último valor" : "vacío");
+                }
+
+                if (valor != null) {
+                    overview.put(seccion, valor);
+                }
+            }
+        }
+
+        // Compatibilidad: el frontend lee totalClientes
+        Object clientes = overview.get("clientes");
+        if (clientes instanceof Map<?, ?> resumenClientes) {
+            overview.put("totalClientes", resumenClientes.get("total"));
+        }
+
+        overview.put("seccionesDegradadas", degradadas);
+        return overview;
+    }
+
+    /**
+     * Total de clientes y primera página, en lugar de la lista completa
+     */
+    private Map<String, Object> resumenClientes(String tenantId) {
+        Page<ClienteDTO> pagina = clienteService.getClientesPaginados(tenantId, 0, clientesPorPagina);
+
+        Map<String, Object> resumen = new HashMap<>();
+        resumen.put("total", pagina.getTotalElements());
+        resumen.put("primeraPagina", pagina.getContent());
+        resumen.put("tamanoPagina", clientesPorPagina);
+        return resumen;
+    }
+
+    /**
+     * Ejecuta las secciones una tras otra en una transacción; las que fallan no aparecen
+     * en el resultado. El timeout empieza cuando un hilo coge la tarea: lo que pasa en
+     * cola solo cuenta para timeout-total-ms
+     */
+    private CompletableFuture<Map<String, Object>> lanzar(String tenantId, Map<String, Supplier<Object>> secciones) {
+        CompletableFuture<Map<String, Object>> resultado = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                if (resultado.isDone()) {
+                    return; // ya vencida o cancelada mientras esperaba
+                }
+                resultado.orTimeout(timeoutSeccionMs, TimeUnit.MILLISECONDS);
+                try {
+                    resultado.complete(transaccionSeccion.execute(estado -> {
+                        Map<String, Object> valores = new HashMap<>();
+                        for (Map.Entry<String, Supplier<Object>> seccion : secciones.entrySet()) {
+                            try {
+                                Object valor = seccion.getValue().get();
+                                if (valor != null) {
+                                    valores.put(seccion.getKey(), valor);
+                                }
+                            } catch (Exception e) {
+                                logger.warn("Overview tenant {}: error en sección {}: {}",
+                                        tenantId, seccion.getKey(), e.getMessage());
+                            }
+                        }
+                        return valores;
+                    }));
+                } catch (Throwable e) {
+                    resultado.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            resultado.completeExceptionally(e);
+        }
+        return resultado;
+    }
+}
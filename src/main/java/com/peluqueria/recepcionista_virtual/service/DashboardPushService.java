@@ -0,0 +1,108 @@
+package com.peluqueria.recepcionista_virtual.service;
+
+import com.peluqueria.recepcionista_virtual.dto.EventoDashboard;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 📡 PUSH EN TIEMPO REAL AL DASHBOARD (STOMP)
+ *
+ * Recoge los EventoDashboard publicados tras cada commit y, cada ventana de 250 ms,
+ * envía por tenant y canal un único mensaje con los deltas acumulados a
+ * /topic/tenant/{tenantId}/{canal}. Varios cambios de la misma entidad dentro de la
+ * ventana se fusionan en el último. Si un tenant acumula demasiados cambios se envía
+ * un aviso de "resync" para que el frontend recargue en vez de procesar cada delta.
+ *
+ * Los suscriptores lentos se desconectan en el transporte (ver WebSocketConfig).
+ */
+@Service
+public class DashboardPushService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DashboardPushService.class);
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Value("${dashboard.push.max-eventos-ventana:200}")
+    private int maxEventosPorVentana;
+
+    /** tenantId -> (canal:entidadId -> último evento de la ventana) */
+    private final Map<String, Map<String, EventoDashboard>> pendientes = new ConcurrentHashMap<>();
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEvento(EventoDashboard evento) {
+        if (evento.tenantId() == null) {
+            return;
+        }
+
+        pendientes.compute(evento.tenantId(), (tenantId, eventos) -> {
+            Map<String, EventoDashboard> acumulados = eventos != null ? eventos : new LinkedHashMap<>();
+            String clave = evento.canal() + ":" + evento.entidadId();
+            acumulados.remove(clave); // reinsertar para conservar el orden del último cambio
+            acumulados.put(clave, evento);
+            return acumulados;
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCitaCanceladaPorCierre(HorarioEspecialService.CitaCanceladaPorCierreEvent evento) {
+        onEvento(EventoDashboard.deCita(evento.getCita(), "cancelada"));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCitaRestaurada(HorarioEspecialService.CitaRestauradaEvent evento) {
+        onEvento(EventoDashboard.deCita(evento.getCita(), "actualizada"));
+    }
+
+    @Scheduled(fixedRateString = "${dashboard.push.ventana-ms:250}")
+    public void enviarPendientes() {
+        for (String tenantId : pendientes.keySet()) {
+            Map<String, EventoDashboard> eventos = pendientes.remove(tenantId);
+            if (eventos == null || eventos.isEmpty()) {
+                continue;
+            }
+
+            try {
+                if (eventos.size() > maxEventosPorVentana) {
+                    enviar(tenantId, "resync", Map.of("tipo", "resync", "cambios", eventos.size()));
+                    continue;
+                }
+
+                Map<String, List<Map<String, Object>>> porCanal = new HashMap<>();
+                for (EventoDashboard evento : eventos.values()) {
+                    Map<String, Object> delta = new HashMap<>(evento.datos());
+                    delta.put("id", evento.entidadId());
+                    delta.put("tipo", evento.tipo());
+                    porCanal.computeIfAbsent(evento.canal(), c -> new ArrayList<>()).add(delta);
+                }
+
+                for (Map.Entry<String, List<Map<String, Object>>> canal : porCanal.entrySet()) {
+                    Map<String, Object> mensaje = new HashMap<>();
+                    mensaje.put("tipo", "delta");
+                    mensaje.put("eventos", canal.getValue());
+                    mensaje.put("timestamp", System.currentTimeMillis());
+                    enviar(tenantId, canal.getKey(), mensaje);
+                }
+            } catch (Exception e) {
+                logger.warn("Error enviando eventos de dashboard al tenant {}: {}", tenantId, e.getMessage());
+            }
+        }
+    }
+
+    private void enviar(String tenantId, String canal, Object mensaje) {
+        messagingTemplate.convertAndSend("/topic/tenant/" + tenantId + "/" + canal, mensaje);
+    }
+}
@@ -0,0 +1,205 @@
+package com.peluqueria.recepcionista_virtual.service;
+
+import com.peluqueria.recepcionista_virtual.util.TelefonoNormalizador;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 🧹 DEDUPLICACIÓN DE CLIENTES POR TELÉFONO NORMALIZADO
+ *
+ * - Rellena telefono_norm (E.164) de los clientes que no lo tienen.
+ * - Fusiona los clientes de un mismo tenant con el mismo teléfono normalizado en el
+ *   más antiguo: completa sus datos vacíos y le pasa citas, llamadas y conversaciones.
+ * - Cuando no quedan duplicados crea el índice único (telefono_norm, tenant_id), que
+ *   a partir de ahí impide que se vuelvan a crear.
+ */
+@Service
+public class DeduplicacionClientesService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeduplicacionClientesService.class);
+
+    private static final String INDICE_UNICO = "uk_clientes_telefono_norm_tenant";
+
+    private static final int LOTE = 1000;
+
+    // Nombre que se pone a los clientes creados desde una llamada sin nombre
+    private static final String NOMBRE_PROVISIONAL = "Cliente";
+
+    // Tablas cuyas filas apuntan al cliente
+    private static final List<String> TABLAS_CON_CLIENTE =
+            List.of("citas", "logs_llamadas", "conversaciones_ia", "riesgos_no_show");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CacheEstadisticasService cacheEstadisticas;
+
+    @Scheduled(fixedDelayString = "${clientes.deduplicacion.intervalo-ms:21600000}",
+            initialDelayString = "${clientes.deduplicacion.retraso-inicial-ms:30000}")
+    public void deduplicar() {
+        try {
+            boolean indiceCreado = existeIndiceUnico();
+            int normalizados = rellenarTelefonosNormalizados(indiceCreado);
+            int fusionados = fusionarDuplicados();
+
+            if (!indiceCreado) {
+                jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS " + INDICE_UNICO +
+                        " ON clientes (telefono_norm, tenant_id)");
+                logger.info("Índice único {} creado", INDICE_UNICO);
+            }
+
+            if (normalizados > 0 || fusionados > 0) {
+                logger.info("Deduplicación de clientes: {} teléfonos normalizados, {} clientes fusionados",
+                        normalizados, fusionados);
+            }
+        } catch (Exception e) {
+            logger.error("Error en la deduplicación de clientes: {}", e.getMessage());
+        }
+    }
+
+    // ========================================
+    // NORMALIZACIÓN
+    // ========================================
+
+    /**
+     * Recorre por lotes (por id) los clientes sin telefono_norm. Sin índice único se
+     * actualiza en bloque y los duplicados se fusionan después; con índice, un cliente
+     * cuyo teléfono ya tiene otro cliente del tenant se fusiona directamente en él.
+     */
+    private int rellenarTelefonosNormalizados(boolean indiceCreado) {
+        int total = 0;
+        String ultimoId = "";
+
+        while (true) {
+            List<Map<String, Object>> filas = jdbcTemplate.queryForList(
+                    "SELECT id, tenant_id, telefono FROM clientes " +
+                            "WHERE telefono_norm IS NULL AND telefono IS NOT NULL AND id > ? " +
+                            "ORDER BY id LIMIT " + LOTE,
+                    ultimoId);
+            if (filas.isEmpty()) {
+                return total;
+            }
+            ultimoId = (String) filas.get(filas.size() - 1).get("id");
+
+            List<Object[]> actualizaciones = new ArrayList<>();
+            for (Map<String, Object> fila : filas) {
+                String id = (String) fila.get("id");
+                String telefonoNorm = TelefonoNormalizador.normalizar((String) fila.get("telefono"));
+                if (telefonoNorm == null) {
+                    continue;
+                }
+
+                if (indiceCreado) {
+                    String tenantId = (String) fila.get("tenant_id");
+                    List<String> existentes = jdbcTemplate.queryForList(
+                            "SELECT id FROM clientes WHERE telefono_norm = ? AND tenant_id = ?",
+                            String.class, telefonoNorm, tenantId);
+                    if (!existentes.isEmpty()) {
+                        fusionar(tenantId, existentes.get(0), List.of(id));
+                        total++;
+                        continue;
+                    }
+                }
+                actualizaciones.add(new Object[]{telefonoNorm, id});
+            }
+
+            if (!actualizaciones.isEmpty()) {
+                jdbcTemplate.batchUpdate("UPDATE clientes SET telefono_norm = ? WHERE id = ?", actualizaciones);
+                total += actualizaciones.size();
+            }
+        }
+    }
+
+    // ========================================
+    // FUSIÓN
+    // ========================================
+
+    private int fusionarDuplicados() {
+        List<Map<String, Object>> grupos = jdbcTemplate.queryForList(
+                "SELECT tenant_id, string_agg(id, ',' ORDER BY fecha_registro NULLS LAST, id) AS ids " +
+                        "FROM clientes WHERE telefono_norm IS NOT NULL " +
+                        "GROUP BY tenant_id, telefono_norm HAVING COUNT(*) > 1");
+
+        int fusionados = 0;
+        for (Map<String, Object> grupo : grupos) {
+            List<String> ids = Arrays.asList(((String) grupo.get("ids")).split(","));
+            try {
+                fusionar((String) grupo.get("tenant_id"), ids.get(0), ids.subList(1, ids.size()));
+                fusionados += ids.size() - 1;
+            } catch (Exception e) {
+                // Se reintenta en la siguiente ejecución
+                logger.warn("No se pudieron fusionar los clientes {}: {}", ids, e.getMessage());
+            }
+        }
+        return fusionados;
+    }
+
+    /**
+     * Fusiona los duplicados en el superviviente dentro de una transacción
+     */
+    private void fusionar(String tenantId, String superviviente, List<String> duplicados) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("superviviente", superviviente)
+                .addValue("duplicados", duplicados)
+                .addValue("provisional", NOMBRE_PROVISIONAL);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // Datos vacíos del superviviente: los del duplicado más reciente que los tenga
+            namedJdbcTemplate.update(
+                    "UPDATE clientes s SET " +
+                            "  nombre = CASE WHEN NULLIF(s.nombre, '') IS NULL OR s.nombre = :provisional " +
+                            "    THEN COALESCE((SELECT d.nombre FROM clientes d WHERE d.id IN (:duplicados) " +
+                            "      AND NULLIF(d.nombre, '') IS NOT NULL AND d.nombre <> :provisional " +
+                            "      ORDER BY d.fecha_registro DESC NULLS LAST LIMIT 1), s.nombre) " +
+                            "    ELSE s.nombre END, " +
+                            "  email = COALESCE(NULLIF(s.email, ''), (SELECT d.email FROM clientes d " +
+                            "    WHERE d.id IN (:duplicados) AND NULLIF(d.email, '') IS NOT NULL " +
+                            "    ORDER BY d.fecha_registro DESC NULLS LAST LIMIT 1)), " +
+                            "  notas = COALESCE(NULLIF(s.notas, ''), (SELECT d.notas FROM clientes d " +
+                            "    WHERE d.id IN (:duplicados) AND NULLIF(d.notas, '') IS NOT NULL " +
+                            "    ORDER BY d.fecha_registro DESC NULLS LAST LIMIT 1)), " +
+                            "  ultima_visita = GREATEST(s.ultima_visita, (SELECT MAX(d.ultima_visita) " +
+                            "    FROM clientes d WHERE d.id IN (:duplicados))) " +
+                            "WHERE s.id = :superviviente",
+                    params);
+
+            for (String tabla : TABLAS_CON_CLIENTE) {
+                namedJdbcTemplate.update("UPDATE " + tabla + " SET cliente_id = :superviviente " +
+                        "WHERE cliente_id IN (:duplicados)", params);
+            }
+
+            // El trigger de clientes_metricas ya ha pasado las visitas al superviviente
+            namedJdbcTemplate.update("DELETE FROM clientes_metricas WHERE cliente_id IN (:duplicados)", params);
+            namedJdbcTemplate.update("DELETE FROM clientes WHERE id IN (:duplicados)", params);
+        });
+
+        cacheEstadisticas.invalidarTenant(tenantId);
+        logger.info("Clientes {} fusionados en {} (tenant {})", duplicados, superviviente, tenantId);
+    }
+
+    public boolean existeIndiceUnico() {
+        Boolean existe = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_indexes WHERE indexname = ? AND schemaname = current_schema())",
+                Boolean.class, INDICE_UNICO);
+        return Boolean.TRUE.equals(existe);
+    }
+}
@@ -0,0 +1,399 @@
+package com.peluqueria.recepcionista_virtual.service;
+
+import com.peluqueria.recepcionista_virtual.dto.EventoDashboard;
+import com.peluqueria.recepcionista_virtual.model.Cita;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Array;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 🔥 MAPA DE DEMANDA DÍA×HORA POR TENANT
+ *
+ * Matriz 7×24 (lunes 0:00 = celda 0) con el peso de las citas CONFIRMADA/COMPLETADA.
+ * Se mantiene en memoria como double[] y se actualiza con cada cambio de cita, sin
+ * volver a agrupar el histórico. Los pesos decaen con vida media configurable para
+ * que los patrones recientes cuenten más que los de hace un año.
+ *
+ * Cada cita pesa 0.5^(edad / vida media), con la edad medida desde su fecha de creación
+ * (inmutable): al quitarla se resta exactamente lo que vale ahora lo que se sumó, sin
+ * guardar nada por cita. Los cambios llegan por EventoDashboard y por los eventos de
+ * cancelación y restauración de los cierres.
+ *
+ * La primera vez que se usa un tenant se carga de demanda_horaria o, si no existe,
+ * se calcula una sola vez desde citas. Los mapas modificados se guardan periódicamente.
+ */
+@Service
+public class DemandaHorariaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DemandaHorariaService.class);
+
+    public static final int DIAS = 7;
+    public static final int HORAS = 24;
+    private static final int CELDAS = DIAS * HORAS;
+
+    private static final Set<String> ESTADOS_CONTADOS = Set.of("CONFIRMADA", "COMPLETADA");
+
+    // Por debajo de este peso una franja se considera sin demanda
+    private static final double PESO_MINIMO = 0.01;
+
+    // Cálculo de pesos de demanda_horaria (1: decaimiento desde el momento de contarla)
+    private static final int VERSION_PESOS = 2;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${demanda.vida-media-dias:60}")
+    private double vidaMediaDias;
+
+    private final Map<String, MapaTenant> mapas = new ConcurrentHashMap<>();
+
+    // ========================================
+    // CONSULTAS
+    // ========================================
+
+    /**
+     * Copia de la matriz con el decaimiento aplicado hasta ahora
+     */
+    public double[] getDemanda(String tenantId) {
+        return obtenerMapa(tenantId).copiar(vidaMediaMs());
+    }
+
+    /**
+     * Peso de la franja (día de la semana, hora) de una fecha, entre 0 y 1
+     * respecto a la franja más demandada del tenant
+     */
+    public double getDemandaRelativa(String tenantId, LocalDateTime fechaHora) {
+        double[] demanda = getDemanda(tenantId);
+        double maximo = 0;
+        for (double peso : demanda) {
+            maximo = Math.max(maximo, peso);
+        }
+        return maximo > 0 ? demanda[celda(fechaHora)] / maximo : 0.0;
+    }
+
+    /**
+     * Demanda por hora (sumando todos los días), de mayor a menor
+     */
+    public List<Map<String, Object>> getHorasPico(String tenantId) {
+        double[] demanda = getDemanda(tenantId);
+        double[] porHora = new double[HORAS];
+        for (int i = 0; i < CELDAS; i++) {
+            porHora[i % HORAS] += demanda[i];
+        }
+
+        List<Map<String, Object>> horas = new ArrayList<>();
+        for (int h = 0; h < HORAS; h++) {
+            if (porHora[h] >= PESO_MINIMO) {
+                Map<String, Object> hora = new HashMap<>();
+                hora.put("hora", h + ":00");
+                hora.put("totalReservas", Math.round(porHora[h]));
+                horas.add(hora);
+            }
+        }
+        horas.sort((a, b) -> Long.compare((Long) b.get("totalReservas"), (Long) a.get("totalReservas")));
+        return horas;
+    }
+
+    /**
+     * Franja día×hora con más demanda, o null si no hay datos
+     */
+    public Map<String, Object> getFranjaPico(String tenantId) {
+        double[] demanda = getDemanda(tenantId);
+        int mejor = -1;
+        for (int i = 0; i < CELDAS; i++) {
+            if (demanda[i] >= PESO_MINIMO && (mejor < 0 || demanda[i] > demanda[mejor])) {
+                mejor = i;
+            }
+        }
+        if (mejor < 0) {
+            return null;
+        }
+
+        Map<String, Object> franja = new HashMap<>();
+        franja.put("dia", DayOfWeek.of(mejor / HORAS + 1).getDisplayName(TextStyle.FULL, new Locale("es", "ES")));
+        franja.put("hora", (mejor % HORAS) + ":00");
+        franja.put("demanda", Math.round(demanda[mejor]));
+        return franja;
+    }
+
+    /**
+     * Matriz redondeada [día][hora] para pintar el mapa de calor en el frontend
+     */
+    public long[][] getMapaCalor(String tenantId) {
+        double[] demanda = getDemanda(tenantId);
+        long[][] mapa = new long[DIAS][HORAS];
+        for (int i = 0; i < CELDAS; i++) {
+            mapa[i / HORAS][i % HORAS] = Math.round(demanda[i]);
+        }
+        return mapa;
+    }
+
+    // ========================================
+    // ACTUALIZACIÓN INCREMENTAL
+    // ========================================
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCambioCita(EventoDashboard evento) {
+        if (!EventoDashboard.CANAL_CITAS.equals(evento.canal()) || evento.tenantId() == null) {
+            return;
+        }
+
+        Map<String, Object> datos = evento.datos();
+        boolean esNueva = "creada".equals(evento.tipo());
+        if (!esNueva && !datos.containsKey("estadoAnterior")) {
+            return; // sin estado previo no se puede calcular el delta
+        }
+
+        try {
+            LocalDateTime actual = parsear(datos.get("fechaHora"));
+            aplicarCambio(evento.tenantId(),
+                    !esNueva && cuenta(datos.get("estadoAnterior")), parsear(datos.get("fechaHoraAnterior")),
+                    cuenta(datos.get("estado")), actual,
+                    epoca(parsear(datos.get("fechaCreacion")), actual));
+        } catch (Exception e) {
+            logger.warn("No se pudo actualizar la demanda del tenant {}: {}", evento.tenantId(), e.getMessage());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCitaCanceladaPorCierre(HorarioEspecialService.CitaCanceladaPorCierreEvent evento) {
+        Cita cita = evento.getCita();
+        if (evento.getEstadoAnterior() == null) {
+            return;
+        }
+        try {
+            aplicarCambio(evento.getTenantId(), cuenta(evento.getEstadoAnterior()), cita.getFechaHora(),
+                    false, null, epoca(cita.getFechaCreacion(), cita.getFechaHora()));
+        } catch (Exception e) {
+            logger.warn("No se pudo actualizar la demanda del tenant {}: {}", evento.getTenantId(), e.getMessage());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCitaRestaurada(HorarioEspecialService.CitaRestauradaEvent evento) {
+        Cita cita = evento.getCita();
+        if (evento.getEstadoAnterior() == null) {
+            return; // sin estado previo no se puede calcular el delta
+        }
+        try {
+            aplicarCambio(evento.getTenantId(), cuenta(evento.getEstadoAnterior()), cita.getFechaHora(),
+                    cuenta(cita.getEstado()), cita.getFechaHora(), epoca(cita.getFechaCreacion(), cita.getFechaHora()));
+        } catch (Exception e) {
+            logger.warn("No se pudo actualizar la demanda del tenant {}: {}", evento.getTenantId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Resta el peso de la cita en su franja anterior (si contaba) y lo suma en la actual
+     * (si cuenta). epocaMs: desde cuándo decae el peso de la cita
+     */
+    private void aplicarCambio(String tenantId, boolean contabaAntes, LocalDateTime anterior,
+                               boolean cuentaAhora, LocalDateTime actual, long epocaMs) {
+        if (contabaAntes && cuentaAhora && anterior != null && actual != null
+                && celda(anterior) == celda(actual)) {
+            return;
+        }
+
+        MapaTenant mapa = obtenerMapa(tenantId);
+        if (contabaAntes && anterior != null) {
+            mapa.sumar(celda(anterior), -1, epocaMs, vidaMediaMs());
+        }
+        if (cuentaAhora && actual != null) {
+            mapa.sumar(celda(actual), 1, epocaMs, vidaMediaMs());
+        }
+    }
+
+    // ========================================
+    // PERSISTENCIA
+    // ========================================
+
+    @Scheduled(fixedDelayString = "${demanda.persistencia-ms:300000}")
+    public void persistirCambios() {
+        for (Map.Entry<String, MapaTenant> entrada : mapas.entrySet()) {
+            MapaTenant mapa = entrada.getValue();
+            double[] pesos;
+            long referencia;
+            synchronized (mapa) {
+                if (!mapa.sucio) {
+                    continue;
+                }
+                pesos = mapa.pesos.clone();
+                referencia = mapa.referenciaMs;
+                mapa.sucio = false;
+            }
+
+            try {
+                guardar(entrada.getKey(), pesos, referencia);
+            } catch (Exception e) {
+                synchronized (mapa) {
+                    mapa.sucio = true;
+                }
+                logger.warn("Error guardando demanda del tenant {}: {}", entrada.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        persistirCambios();
+    }
+
+    private MapaTenant obtenerMapa(String tenantId) {
+        MapaTenant mapa = mapas.get(tenantId);
+        if (mapa != null) {
+            return mapa;
+        }
+        // La carga consulta la BD: fuera de computeIfAbsent para no bloquear el mapa
+        MapaTenant cargado = cargar(tenantId);
+        MapaTenant existente = mapas.putIfAbsent(tenantId, cargado);
+        return existente != null ? existente : cargado;
+    }
+
+    private MapaTenant cargar(String tenantId) {
+        List<MapaTenant> guardados = jdbcTemplate.query(
+                "SELECT pesos, referencia FROM demanda_horaria WHERE tenant_id = ? AND version = ?",
+                (rs, i) -> {
+                    Array array = rs.getArray("pesos");
+                    Object[] valores = (Object[]) array.getArray();
+                    double[] pesos = new double[CELDAS];
+                    for (int c = 0; c < CELDAS && c < valores.length; c++) {
+                        pesos[c] = valores[c] != null ? ((Number) valores[c]).doubleValue() : 0.0;
+                    }
+                    return new MapaTenant(pesos, rs.getTimestamp("referencia").getTime());
+                },
+                tenantId, VERSION_PESOS);
+        if (!guardados.isEmpty()) {
+            return guardados.get(0);
+        }
+
+        // Primera vez: una única agrupación del histórico, ya con el decaimiento aplicado
+        // (misma época que epoca(): creación o, si falta, la propia fecha de la cita)
+        double[] pesos = new double[CELDAS];
+        jdbcTemplate.query(
+                "SELECT (EXTRACT(ISODOW FROM fecha_hora)::int - 1) * 24 + EXTRACT(HOUR FROM fecha_hora)::int AS celda, " +
+                        "SUM(power(0.5, EXTRACT(EPOCH FROM (now() - COALESCE(fecha_creacion, fecha_hora))) " +
+                        "/ 86400.0 / ?)) AS peso " +
+                        "FROM citas WHERE tenant_id = ? AND estado IN ('CONFIRMADA', 'COMPLETADA') " +
+                        "AND fecha_hora IS NOT NULL GROUP BY 1",
+                rs -> {
+                    pesos[rs.getInt("celda")] = rs.getDouble("peso");
+                },
+                vidaMediaDias, tenantId);
+
+        MapaTenant mapa = new MapaTenant(pesos, System.currentTimeMillis());
+        mapa.sucio = true;
+        logger.info("Mapa de demanda inicializado desde citas para tenant {}", tenantId);
+        return mapa;
+    }
+
+    private void guardar(String tenantId, double[] pesos, long referenciaMs) {
+        Double[] valores = new Double[pesos.length];
+        for (int i = 0; i < pesos.length; i++) {
+            valores[i] = pesos[i];
+        }
+        jdbcTemplate.update(
+                "INSERT INTO demanda_horaria (tenant_id, pesos, referencia, version) VALUES (?, ?, ?, ?) " +
+                        "ON CONFLICT (tenant_id) DO UPDATE SET pesos = EXCLUDED.pesos, " +
+                        "referencia = EXCLUDED.referencia, version = EXCLUDED.version",
+                ps -> {
+                    ps.setString(1, tenantId);
+                    ps.setArray(2, ps.getConnection().createArrayOf("float8", valores));
+                    ps.setTimestamp(3, new Timestamp(referenciaMs));
+                    ps.setInt(4, VERSION_PESOS);
+                });
+    }
+
+    // ========================================
+    // AUXILIARES
+    // ========================================
+
+    private static int celda(LocalDateTime fechaHora) {
+        return (fechaHora.getDayOfWeek().getValue() - 1) * HORAS + fechaHora.getHour();
+    }
+
+    private static boolean cuenta(Object estado) {
+        return estado != null && ESTADOS_CONTADOS.contains(estado.toString());
+    }
+
+    private static LocalDateTime parsear(Object valor) {
+        return valor != null ? LocalDateTime.parse(valor.toString()) : null;
+    }
+
+    /**
+     * Momento desde el que decae el peso de una cita: su creación (no cambia al moverla)
+     */
+    private static long epoca(LocalDateTime fechaCreacion, LocalDateTime fechaHora) {
+        LocalDateTime referencia = fechaCreacion != null ? fechaCreacion : fechaHora;
+        return referencia != null
+                ? referencia.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : System.currentTimeMillis();
+    }
+
+    private long vidaMediaMs() {
+        return (long) (vidaMediaDias * 86_400_000L);
+    }
+
+    /**
+     * Pesos de un tenant valorados en referenciaMs. El decaimiento se aplica de forma
+     * perezosa (un multiplicador para las 168 celdas) al leer o al sumar.
+     */
+    private static final class MapaTenant {
+        private final double[] pesos;
+        private long referenciaMs;
+        private boolean sucio;
+
+        private MapaTenant(double[] pesos, long referenciaMs) {
+            this.pesos = pesos;
+            this.referenciaMs = referenciaMs;
+        }
+
+        /**
+         * Suma (signo 1) o resta (-1) el peso actual de una cita que decae desde epocaMs
+         */
+        synchronized void sumar(int celda, int signo, long epocaMs, long vidaMediaMs) {
+            decaer(vidaMediaMs);
+            double peso = vidaMediaMs > 0 ? Math.pow(0.5, (double) (referenciaMs - epocaMs) / vidaMediaMs) : 1.0;
+            // max(0): solo absorbe el redondeo de coma flotante
+            pesos[celda] = Math.max(0.0, pesos[celda] + signo * peso);
+            sucio = true;
+        }
+
+        synchronized double[] copiar(long vidaMediaMs) {
+            decaer(vidaMediaMs);
+            return pesos.clone();
+        }
+
+        private void decaer(long vidaMediaMs) {
+            long ahora = System.currentTimeMillis();
+            long transcurrido = ahora - referenciaMs;
+            if (transcurrido <= 0 || vidaMediaMs <= 0) {
+                return;
+            }
+            double factor = Math.pow(0.5, (double) transcurrido / vidaMediaMs);
+            for (int i = 0; i < pesos.length; i++) {
+                pesos[i] *= factor;
+            }
+            referenciaMs = ahora;
+        }
+    }
+}
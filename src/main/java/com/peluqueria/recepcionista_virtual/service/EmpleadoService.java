@@ -19,6 +19,7 @@ public class EmpleadoService {
     @Autowired
     private TenantRepository tenantRepository;
 
+    @Transactional(readOnly = true)
     public List<EmpleadoDTO> getEmpleadosByTenantId(String tenantId) {
         List<Empleado> empleados = empleadoRepository.findByTenantIdAndActivoTrue(tenantId);
         return empleados.stream()
@@ -26,6 +27,12 @@ public class EmpleadoService {
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
+    public long countEmpleadosActivos(String tenantId) {
+        Long total = empleadoRepository.countActivosByTenantId(tenantId);
+        return total != null ? total : 0L;
+    }
+
     public EmpleadoDTO createEmpleado(String tenantId, EmpleadoDTO empleadoDTO) {
         Tenant tenant = tenantRepository.findById(tenantId)
                 .orElseThrow(() -> new RuntimeException("Tenant no encontrado"));
@@ -90,6 +97,7 @@ public class EmpleadoService {
         empleadoRepository.save(empleado);
     }
 
+    @Transactional(readOnly = true)
     public EmpleadoDTO getEmpleadoById(String empleadoId) {
         Empleado empleado = empleadoRepository.findById(empleadoId)
                 .orElseThrow(() -> new RuntimeException("Empleado no encontrado"));
@@ -0,0 +1,238 @@
+package com.peluqueria.recepcionista_virtual.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.peluqueria.recepcionista_virtual.model.Cita;
+import com.peluqueria.recepcionista_virtual.model.ConversacionIA;
+import com.peluqueria.recepcionista_virtual.model.EstadoCita;
+import com.peluqueria.recepcionista_virtual.model.LogLlamada;
+import com.peluqueria.recepcionista_virtual.repository.CitaRepository;
+import com.peluqueria.recepcionista_virtual.repository.ConversacionIARepository;
+import com.peluqueria.recepcionista_virtual.repository.LogLlamadaRepository;
+import com.peluqueria.recepcionista_virtual.util.CeldaCsv;
+import com.peluqueria.recepcionista_virtual.util.RangoFechas;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.Temporal;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 📤 EXPORTACIÓN DE HISTÓRICO EN STREAMING (CSV / NDJSON)
+ *
+ * Las filas se leen con cursor (fetch size en el repositorio) y se escriben directamente
+ * en la respuesta; cada LOTE filas se vacía el contexto de persistencia y se hace flush,
+ * así la memoria no depende del número de filas exportadas.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ExportacionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportacionService.class);
+
+    private static final int LOTE = 500;
+
+    public enum Formato {
+        CSV, NDJSON;
+
+        public static Formato desde(String valor) {
+            return valor == null ? CSV : Formato.valueOf(valor.trim().toUpperCase());
+        }
+
+        public String contentType() {
+            return this == CSV ? "text/csv; charset=UTF-8" : "application/x-ndjson";
+        }
+
+        public String extension() {
+            return this == CSV ? "csv" : "ndjson";
+        }
+    }
+
+    private record Columna<T>(String nombre, Function<T, Object> valor) {
+    }
+
+    private static final List<Columna<Cita>> COLUMNAS_CITAS = List.of(
+            new Columna<>("id", Cita::getId),
+            new Columna<>("fechaHora", Cita::getFechaHora),
+            new Columna<>("estado", Cita::getEstado),
+            new Columna<>("cliente", c -> c.getCliente().getNombre()),
+            new Columna<>("telefono", c -> c.getCliente().getTelefono()),
+            new Columna<>("servicio", c -> c.getServicio().getNombre()),
+            new Columna<>("empleado", c -> c.getEmpleado() != null ? c.getEmpleado().getNombre() : null),
+            new Columna<>("duracionMinutos", Cita::getDuracionMinutos),
+            new Columna<>("precio", Cita::getPrecio),
+            new Columna<>("origen", Cita::getOrigen),
+            new Columna<>("notas", Cita::getNotas)
+    );
+
+    private static final List<Columna<LogLlamada>> COLUMNAS_LLAMADAS = List.of(
+            new Columna<>("id", LogLlamada::getId),
+            new Columna<>("callSid", LogLlamada::getCallSid),
+            new Columna<>("fechaInicio", LogLlamada::getFechaInicio),
+            new Columna<>("fechaFin", LogLlamada::getFechaFin),
+            new Columna<>("direccion", LogLlamada::getDireccion),
+            new Columna<>("estado", LogLlamada::getEstado),
+            new Columna<>("numeroOrigen", LogLlamada::getNumeroOrigen),
+            new Columna<>("numeroDestino", LogLlamada::getNumeroDestino),
+            new Columna<>("duracionSegundos", LogLlamada::getDuracionSegundos),
+            new Columna<>("costo", LogLlamada::getCosto),
+            new Columna<>("moneda", LogLlamada::getMoneda),
+            new Columna<>("citaCreadaId", LogLlamada::getCitaCreadaId)
+    );
+
+    private static final List<Columna<ConversacionIA>> COLUMNAS_CONVERSACIONES = List.of(
+            new Columna<>("id", ConversacionIA::getId),
+            new Columna<>("timestamp", ConversacionIA::getTimestamp),
+            new Columna<>("canal", ConversacionIA::getCanal),
+            new Columna<>("tipo", ConversacionIA::getTipo),
+            new Columna<>("numeroTelefono", ConversacionIA::getNumeroTelefono),
+            new Columna<>("callSid", ConversacionIA::getCallSid),
+            new Columna<>("intencionDetectada", ConversacionIA::getIntencionDetectada),
+            new Columna<>("accionEjecutada", ConversacionIA::getAccionEjecutada),
+            new Columna<>("estado", ConversacionIA::getEstado),
+            new Columna<>("exitoso", ConversacionIA::getExitoso),
+            new Columna<>("tokensUsados", ConversacionIA::getTokensUsados),
+            new Columna<>("mensajeCliente", ConversacionIA::getMensajeCliente),
+            new Columna<>("respuestaIA", ConversacionIA::getRespuestaIA)
+    );
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private LogLlamadaRepository logLlamadaRepository;
+
+    @Autowired
+    private ConversacionIARepository conversacionIARepository;
+
+    public long exportarCitas(String tenantId, LocalDate desde, LocalDate hasta, EstadoCita estado,
+                              Formato formato, OutputStream salida) throws IOException {
+        try (Stream<Cita> citas = citaRepository.streamParaExportar(
+                tenantId, inicio(desde), fin(hasta), estado)) {
+            return escribir(citas, COLUMNAS_CITAS, formato, salida);
+        }
+    }
+
+    public long exportarLlamadas(String tenantId, LocalDate desde, LocalDate hasta, String estado,
+                                 Formato formato, OutputStream salida) throws IOException {
+        try (Stream<LogLlamada> llamadas = logLlamadaRepository.streamParaExportar(
+                tenantId, inicio(desde), fin(hasta), estado)) {
+            return escribir(llamadas, COLUMNAS_LLAMADAS, formato, salida);
+        }
+    }
+
+    public long exportarConversaciones(String tenantId, LocalDate desde, LocalDate hasta, String estado,
+                                       Formato formato, OutputStream salida) throws IOException {
+        try (Stream<ConversacionIA> conversaciones = conversacionIARepository.streamParaExportar(
+                tenantId, inicio(desde), fin(hasta), estado)) {
+            return escribir(conversaciones, COLUMNAS_CONVERSACIONES, formato, salida);
+        }
+    }
+
+    // ========================================
+    // ESCRITURA
+    // ========================================
+
+    private <T> long escribir(Stream<T> filas, List<Columna<T>> columnas, Formato formato,
+                              OutputStream salida) throws IOException {
+        long total = 0;
+        Iterator<T> iterador = filas.iterator();
+
+        if (formato == Formato.CSV) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8));
+            writer.write('\uFEFF'); // BOM: Excel abre el UTF-8 con tildes correctamente
+            writer.write(String.join(",", columnas.stream().map(Columna::nombre).toList()));
+            writer.write("\r\n");
+
+            while (iterador.hasNext()) {
+                T fila = iterador.next();
+                for (int i = 0; i < columnas.size(); i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    writer.write(CeldaCsv.escribir(valor(columnas.get(i), fila)));
+                }
+                writer.write("\r\n");
+                total = siguienteFila(total, writer::flush);
+            }
+            writer.flush();
+        } else {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(salida);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+            while (iterador.hasNext()) {
+                T fila = iterador.next();
+                generator.writeStartObject();
+                for (Columna<T> columna : columnas) {
+                    generator.writeObjectField(columna.nombre(), valor(columna, fila));
+                }
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+                total = siguienteFila(total, generator::flush);
+            }
+            generator.close();
+        }
+
+        logger.info("Exportación {} completada: {} filas", formato, total);
+        return total;
+    }
+
+    private long siguienteFila(long total, Flush flush) throws IOException {
+        long filas = total + 1;
+        if (filas % LOTE == 0) {
+            // Las entidades ya escritas no se vuelven a usar: fuera del contexto
+            entityManager.clear();
+            flush.run();
+        }
+        return filas;
+    }
+
+    @FunctionalInterface
+    private interface Flush {
+        void run() throws IOException;
+    }
+
+    /**
+     * Fechas y enums como texto para que CSV y NDJSON tengan el mismo contenido
+     */
+    private static <T> Object valor(Columna<T> columna, T fila) {
+        Object valor = columna.valor().apply(fila);
+        if (valor instanceof Temporal || valor instanceof Enum<?>) {
+            return valor.toString();
+        }
+        return valor;
+    }
+
+    private static LocalDateTime inicio(LocalDate desde) {
+        return (desde != null ? desde : RangoFechas.INICIO_HISTORICO).atStartOfDay();
+    }
+
+    /**
+     * Sin "hasta" no hay límite superior: el histórico completo incluye las citas futuras
+     */
+    private static LocalDateTime fin(LocalDate hasta) {
+        return hasta != null ? hasta.plusDays(1).atStartOfDay() : RangoFechas.FIN_HISTORICO.atStartOfDay();
+    }
+}
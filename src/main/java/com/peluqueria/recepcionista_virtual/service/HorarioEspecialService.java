@@ -4,11 +4,9 @@ import com.peluqueria.recepcionista_virtual.dto.*;
 import com.peluqueria.recepcionista_virtual.model.*;
 import com.peluqueria.recepcionista_virtual.repository.CitaRepository;
 import com.peluqueria.recepcionista_virtual.repository.HorarioEspecialRepository;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import com.peluqueria.recepcionista_virtual.repository.TenantRepository;
+import com.peluqueria.recepcionista_virtual.service.IndiceCierresService.CierreIndexado;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -20,6 +18,7 @@ import org.slf4j.LoggerFactory;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -36,6 +35,16 @@ public class HorarioEspecialService {
 
     private static final Logger logger = LoggerFactory.getLogger(HorarioEspecialService.class);
 
+    // Estados que cancela un cierre (mismos que findActivasEnRango)
+    private static final Set<EstadoCita> ESTADOS_ACTIVOS =
+            EnumSet.of(EstadoCita.CONFIRMADA, EstadoCita.EN_PROGRESO, EstadoCita.PENDIENTE);
+
+    // Ids de una vista previa por consulta IN
+    private static final int LOTE_IDS_VISTA_PREVIA = 500;
+
+    // Días hacia delante en los que se cancelan/restauran citas de un cierre recurrente
+    static final int HORIZONTE_RECURRENTES_DIAS = 365;
+
     @Autowired
     private HorarioEspecialRepository horarioEspecialRepository;
 
@@ -51,6 +60,12 @@ public class HorarioEspecialService {
     @Autowired
     private ApplicationEventPublisher eventPublisher;
 
+    @Autowired
+    private IndiceCierresService indiceCierres;
+
+    @Autowired
+    private VistaPreviaCierreService vistaPreviaCierre;
+
     // Inyectar cuando esté listo
     // @Autowired
     // private OpenAIService openAIService;
@@ -58,8 +73,6 @@ public class HorarioEspecialService {
     // @Autowired
     // private UsuarioService usuarioService;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
-
     // ========================================
     // METODO CRITICO PARA LA IA - CORREGIDO
     // ========================================
@@ -86,8 +99,10 @@ public class HorarioEspecialService {
             // 1. Validar que la fecha no sea pasada
             validarFechaNoRetroactiva(fecha, tenantId);
 
-            // 2. Buscar todos los cierres que afecten esta fecha
-            List<HorarioEspecial> cierres = horarioEspecialRepository.findCierresParaFecha(tenantId, fecha);
+            // 2. Buscar los cierres de esta fecha que afecten al salón, al empleado o al servicio
+            //    (índice en memoria del tenant, sin consulta a BD)
+            List<CierreIndexado> cierres = indiceCierres.cierresAplicables(
+                    tenantId, fecha, empleadoId, servicioId);
 
             if (cierres.isEmpty()) {
                 logger.debug("No hay cierres para la fecha {}", fecha);
@@ -95,7 +110,7 @@ public class HorarioEspecialService {
             }
 
             // 3. Evaluar cada cierre en orden de prioridad
-            for (HorarioEspecial cierre : cierres) {
+            for (CierreIndexado cierre : cierres) {
                 DisponibilidadResult resultado = evaluarCierre(cierre, hora, empleadoId, servicioId);
 
                 if (!resultado.isDisponible()) {
@@ -109,9 +124,9 @@ public class HorarioEspecialService {
                 }
 
                 // Si es horario reducido, actualizar el resultado pero continuar verificando
-                if (cierre.getTipoCierre() == TipoCierre.HORARIO_REDUCIDO) {
-                    resultado.setHorarioDisponibleInicio(cierre.getHorarioInicio());
-                    resultado.setHorarioDisponibleFin(cierre.getHorarioFin());
+                if (cierre.tipoCierre() == TipoCierre.HORARIO_REDUCIDO) {
+                    resultado.setHorarioDisponibleInicio(cierre.horarioInicio());
+                    resultado.setHorarioDisponibleFin(cierre.horarioFin());
                 }
             }
 
@@ -157,6 +172,7 @@ public class HorarioEspecialService {
             cierre.setCreadoPor(usuarioId != null ? usuarioId : "sistema_emergencia");
 
             HorarioEspecial guardado = horarioEspecialRepository.save(cierre);
+            eventPublisher.publishEvent(EventoDashboard.deCierre(guardado, "creado"));
 
             // Cancelar citas afectadas inmediatamente en la misma transacción
             cancelarCitasAfectadasInmediatamente(tenantId, fecha, fecha, motivo, guardado.getId());
@@ -173,13 +189,34 @@ public class HorarioEspecialService {
         }
     }
 
+    /**
+     * Vista previa del impacto de un cierre: totales, primera página de citas y un token
+     * con el que confirmar ese mismo cierre (ver crearCierreConVerificacion)
+     */
+    public Map<String, Object> previsualizarCierre(String tenantId, HorarioEspecialDTO dto) {
+        validarTenantIdRequerido(tenantId);
+        validarDatosCierre(dto);
+        validarFechasNoRetroactivas(dto.getFechaInicio(), dto.getFechaFin(), tenantId);
+
+        HorarioEspecial horario = mapearDTOToEntity(dto, tenantId, null);
+        return vistaPreviaCierre.previsualizar(tenantId, huella(horario), ocurrenciasAfectadas(horario));
+    }
+
+    @Transactional(isolation = Isolation.SERIALIZABLE)
+    public Object crearCierreConVerificacion(String tenantId, HorarioEspecialDTO dto,
+                                             boolean forzarCierre, String usuarioId) {
+        return crearCierreConVerificacion(tenantId, dto, forzarCierre, usuarioId, null);
+    }
+
     /**
      * METODO CRITICO CORREGIDO: Crear cierre con verificacion completa
      * CORREGIDO: Transacción serializable para evitar race conditions
+     * Con el token de una vista previa del mismo cierre se confirma sin pedir forzarCierre:
+     * se cancelan las citas de la vista previa más las creadas o movidas al rango después
      */
     @Transactional(isolation = Isolation.SERIALIZABLE)
     public Object crearCierreConVerificacion(String tenantId, HorarioEspecialDTO dto,
-                                             boolean forzarCierre, String usuarioId) {
+                                             boolean forzarCierre, String usuarioId, String tokenVistaPrevia) {
         logger.info("Creando cierre con verificacion - Tenant: {}, Forzar: {}, Usuario: {}",
                 tenantId, forzarCierre, usuarioId);
 
@@ -191,10 +228,23 @@ public class HorarioEspecialService {
             validarPermisosCierre(tenantId, usuarioId, dto.getTipoCierre());
             validarSolapamientoCierres(tenantId, dto.getFechaInicio(), dto.getFechaFin(), null);
 
-            // Verificar citas existentes DENTRO de la transacción
-            ResultadoVerificacionCitas verificacion = verificarCitasExistentes(
-                    tenantId, dto.getFechaInicio(), dto.getFechaFin()
-            );
+            // Verificar citas existentes DENTRO de la transacción (en todas las ocurrencias
+            // del horizonte si el cierre es recurrente)
+            HorarioEspecial horario = mapearDTOToEntity(dto, tenantId, usuarioId);
+            List<HorarioEspecial> ocurrencias = ocurrenciasAfectadas(horario);
+
+            VistaPreviaCierreService.VistaPrevia vistaPrevia =
+                    vistaPreviaCierre.consumir(tenantId, tokenVistaPrevia, huella(horario));
+            if (vistaPrevia != null) {
+                HorarioEspecial guardado = horarioEspecialRepository.save(horario);
+                eventPublisher.publishEvent(EventoDashboard.deCierre(guardado, "creado"));
+                cancelarCitasDeVistaPrevia(tenantId, vistaPrevia, ocurrencias, dto.getMotivo(), guardado.getId());
+
+                logger.info("Cierre creado exitosamente con vista previa: {}", guardado.getId());
+                return guardado;
+            }
+
+            ResultadoVerificacionCitas verificacion = verificarCitasExistentes(tenantId, ocurrencias);
 
             if (verificacion.isRequiereConfirmacion() && !forzarCierre) {
                 logger.info("Cierre requiere confirmacion: {} citas afectadas",
@@ -203,15 +253,17 @@ public class HorarioEspecialService {
             }
 
             // Crear el cierre
-            HorarioEspecial horario = mapearDTOToEntity(dto, tenantId, usuarioId);
             HorarioEspecial guardado = horarioEspecialRepository.save(horario);
+            eventPublisher.publishEvent(EventoDashboard.deCierre(guardado, "creado"));
 
             // Cancelar citas afectadas inmediatamente en la MISMA transacción
             if (forzarCierre || !verificacion.isRequiereConfirmacion()) {
-                cancelarCitasAfectadasInmediatamente(
-                        tenantId, dto.getFechaInicio(), dto.getFechaFin(),
-                        dto.getMotivo(), guardado.getId()
-                );
+                for (HorarioEspecial ocurrencia : ocurrencias) {
+                    cancelarCitasAfectadasInmediatamente(
+                            tenantId, ocurrencia.getFechaInicio(), ocurrencia.getFechaFin(),
+                            dto.getMotivo(), guardado.getId()
+                    );
+                }
             }
 
             logger.info("Cierre creado exitosamente: {}", guardado.getId());
@@ -256,9 +308,12 @@ public class HorarioEspecialService {
             // BD COMPATIBLE: Usar motivo para tracking de eliminación
             horario.setMotivo(horario.getMotivo() + " [ELIMINADO POR: " + usuarioId + "]");
             horarioEspecialRepository.save(horario);
+            eventPublisher.publishEvent(EventoDashboard.deCierre(horario, "eliminado"));
 
             // 2. Restaurar citas que fueron canceladas por este cierre
-            restaurarCitasCanceladas(tenantId, horario, usuarioId);
+            for (HorarioEspecial ocurrencia : ocurrenciasAfectadas(horario)) {
+                restaurarCitasCanceladas(tenantId, ocurrencia, usuarioId);
+            }
 
             logger.info("Cierre eliminado exitosamente: {}", cierreId);
 
@@ -330,6 +385,20 @@ public class HorarioEspecialService {
         }
     }
 
+    /**
+     * Ocurrencias cuyas citas se cancelan o restauran: el propio cierre si es puntual, o
+     * las ocurrencias desde hoy hasta el horizonte si es recurrente
+     */
+    private List<HorarioEspecial> ocurrenciasAfectadas(HorarioEspecial cierre) {
+        if (!cierre.esRecurrente()) {
+            return List.of(cierre);
+        }
+        LocalDate hoy = LocalDate.now();
+        return cierre.iniciosOcurrenciasEntre(hoy, hoy.plusDays(HORIZONTE_RECURRENTES_DIAS)).stream()
+                .map(cierre::ocurrencia)
+                .collect(Collectors.toList());
+    }
+
     /**
      * VALIDACION DE PERMISOS: Cierres de emergencia
      */
@@ -386,14 +455,7 @@ public class HorarioEspecialService {
             logger.info("Cancelando {} citas afectadas por cierre {}", citasAfectadas.size(), cierreId);
 
             for (Cita cita : citasAfectadas) {
-                // Cancelar cita inmediatamente
-                cita.setEstado(EstadoCita.CANCELADA);
-                cita.setNotas(String.format("Cancelada por cierre del salon: %s [Cierre ID: %s]",
-                        motivo, cierreId));
-                citaRepository.save(cita);
-
-                // Programar notificación para después del commit de la transacción
-                eventPublisher.publishEvent(new CitaCanceladaPorCierreEvent(cita, motivo, tenantId));
+                cancelarCitaPorCierre(tenantId, cita, motivo, cierreId);
             }
 
         } catch (Exception e) {
@@ -402,6 +464,69 @@ public class HorarioEspecialService {
         }
     }
 
+    /**
+     * Cancela las citas de la vista previa que siguen activas y dentro de alguna ocurrencia,
+     * más el delta: las activas del rango creadas o modificadas desde la vista previa
+     * (reservadas o movidas al rango después). Todo en el primario, en esta transacción
+     */
+    private void cancelarCitasDeVistaPrevia(String tenantId, VistaPreviaCierreService.VistaPrevia vistaPrevia,
+                                            List<HorarioEspecial> ocurrencias, String motivo, String cierreId) {
+        Map<String, Cita> aCancelar = new LinkedHashMap<>();
+
+        List<String> ids = vistaPrevia.getCitaIds();
+        for (int i = 0; i < ids.size(); i += LOTE_IDS_VISTA_PREVIA) {
+            for (Cita cita : citaRepository.findByIdInOrderByFechaHora(
+                    ids.subList(i, Math.min(ids.size(), i + LOTE_IDS_VISTA_PREVIA)))) {
+                if (ESTADOS_ACTIVOS.contains(cita.getEstado()) && dentroDeOcurrencia(cita, ocurrencias)) {
+                    aCancelar.put(cita.getId(), cita);
+                }
+            }
+        }
+        int deVistaPrevia = aCancelar.size();
+
+        // Margen por si los relojes de las instancias no coinciden al segundo
+        LocalDateTime cambiadasDesde = vistaPrevia.getCreada().minusMinutes(1);
+        for (HorarioEspecial ocurrencia : ocurrencias) {
+            for (Cita cita : citaRepository.findActivasEnRangoCambiadasDesde(tenantId,
+                    ocurrencia.getFechaInicio().atStartOfDay(), ocurrencia.getFechaFin().plusDays(1).atStartOfDay(),
+                    cambiadasDesde)) {
+                aCancelar.putIfAbsent(cita.getId(), cita);
+            }
+        }
+
+        logger.info("Cancelando {} citas afectadas por cierre {} ({} de la vista previa {}, {} nuevas o movidas)",
+                aCancelar.size(), cierreId, deVistaPrevia, vistaPrevia.getToken(), aCancelar.size() - deVistaPrevia);
+
+        for (Cita cita : aCancelar.values()) {
+            cancelarCitaPorCierre(tenantId, cita, motivo, cierreId);
+        }
+    }
+
+    private static boolean dentroDeOcurrencia(Cita cita, List<HorarioEspecial> ocurrencias) {
+        LocalDate dia = cita.getFechaHora().toLocalDate();
+        return ocurrencias.stream().anyMatch(o -> !dia.isBefore(o.getFechaInicio()) && !dia.isAfter(o.getFechaFin()));
+    }
+
+    private void cancelarCitaPorCierre(String tenantId, Cita cita, String motivo, String cierreId) {
+        // Cancelar cita inmediatamente
+        EstadoCita estadoAnterior = cita.getEstado();
+        cita.setEstado(EstadoCita.CANCELADA);
+        cita.setNotas(String.format("Cancelada por cierre del salon: %s [Cierre ID: %s]",
+                motivo, cierreId));
+        citaRepository.save(cita);
+
+        // Programar notificación para después del commit de la transacción
+        eventPublisher.publishEvent(new CitaCanceladaPorCierreEvent(cita, motivo, tenantId, estadoAnterior));
+    }
+
+    /**
+     * Fechas y recurrencia del cierre: lo que decide qué citas afecta
+     */
+    private static String huella(HorarioEspecial cierre) {
+        return cierre.getFechaInicio() + "|" + cierre.getFechaFin() + "|" + cierre.getRecurrencia() + "|"
+                + cierre.getRecurrenciaIntervalo() + "|" + cierre.getRecurrenciaHasta();
+    }
+
     /**
      * NUEVO: Restaurar citas canceladas al eliminar cierre
      * BD COMPATIBLE: Busca por patrón en notas (sin query específica)
@@ -432,12 +557,13 @@ public class HorarioEspecialService {
                 // Solo restaurar si aún está en el futuro
                 if (cita.getFechaHora().isAfter(LocalDateTime.now())) {
                     // BD COMPATIBLE: Usar estado CONFIRMADA según schema
+                    EstadoCita estadoAnterior = cita.getEstado();
                     cita.setEstado(EstadoCita.CONFIRMADA);
                     cita.setNotas(String.format("Restaurada - cierre cancelado por %s", usuarioId));
                     citaRepository.save(cita);
 
                     // Programar notificación de restauración
-                    eventPublisher.publishEvent(new CitaRestauradaEvent(cita, tenantId));
+                    eventPublisher.publishEvent(new CitaRestauradaEvent(cita, tenantId, estadoAnterior));
                 }
             }
 
@@ -462,22 +588,17 @@ public class HorarioEspecialService {
         horario.setMensajePersonalizado(dto.getMensajePersonalizado());
         horario.setNotificarClientesExistentes(dto.getNotificarClientesExistentes());
         horario.setCreadoPor(usuarioId != null ? usuarioId : "sistema");
+        horario.setRecurrencia(dto.getRecurrencia());
+        horario.setRecurrenciaIntervalo(dto.getRecurrenciaIntervalo() != null ? dto.getRecurrenciaIntervalo() : 1);
+        horario.setRecurrenciaHasta(dto.getRecurrenciaHasta());
 
-        // CORREGIDO: Manejo seguro de JSON con propagación de errores
+        // Listas JSONB: se guardan tal cual, sin serializar a mano
         if (dto.getEmpleadosAfectados() != null && !dto.getEmpleadosAfectados().isEmpty()) {
-            try {
-                horario.setEmpleadosAfectados(objectMapper.writeValueAsString(dto.getEmpleadosAfectados()));
-            } catch (JsonProcessingException e) {
-                throw new IllegalArgumentException("Error procesando lista de empleados afectados: " + e.getMessage(), e);
-            }
+            horario.setEmpleadosAfectados(new ArrayList<>(dto.getEmpleadosAfectados()));
         }
 
         if (dto.getServiciosAfectados() != null && !dto.getServiciosAfectados().isEmpty()) {
-            try {
-                horario.setServiciosAfectados(objectMapper.writeValueAsString(dto.getServiciosAfectados()));
-            } catch (JsonProcessingException e) {
-                throw new IllegalArgumentException("Error procesando lista de servicios afectados: " + e.getMessage(), e);
-            }
+            horario.setServiciosAfectados(new ArrayList<>(dto.getServiciosAfectados()));
         }
 
         return horario;
@@ -493,7 +614,9 @@ public class HorarioEspecialService {
         // BD COMPATIBLE: No hay campo actualizado_por, usar creado_por para tracking
         existente.setCreadoPor(usuarioId + "_actualizado");
 
-        return horarioEspecialRepository.save(existente);
+        HorarioEspecial guardado = horarioEspecialRepository.save(existente);
+        eventPublisher.publishEvent(EventoDashboard.deCierre(guardado, "actualizado"));
+        return guardado;
     }
 
     // ========================================
@@ -552,16 +675,19 @@ public class HorarioEspecialService {
         private final Cita cita;
         private final String motivo;
         private final String tenantId;
+        private final EstadoCita estadoAnterior;
 
-        public CitaCanceladaPorCierreEvent(Cita cita, String motivo, String tenantId) {
+        public CitaCanceladaPorCierreEvent(Cita cita, String motivo, String tenantId, EstadoCita estadoAnterior) {
             this.cita = cita;
             this.motivo = motivo;
             this.tenantId = tenantId;
+            this.estadoAnterior = estadoAnterior;
         }
 
         public Cita getCita() { return cita; }
         public String getMotivo() { return motivo; }
         public String getTenantId() { return tenantId; }
+        public EstadoCita getEstadoAnterior() { return estadoAnterior; }
     }
 
     /**
@@ -570,14 +696,25 @@ public class HorarioEspecialService {
     public static class CitaRestauradaEvent {
         private final Cita cita;
         private final String tenantId;
+        private final EstadoCita estadoAnterior;
 
+        /**
+         * Sin estado previo (la reprogramación, que publica además su EventoDashboard)
+         * los agregados incrementales ignoran el evento
+         */
         public CitaRestauradaEvent(Cita cita, String tenantId) {
+            this(cita, tenantId, null);
+        }
+
+        public CitaRestauradaEvent(Cita cita, String tenantId, EstadoCita estadoAnterior) {
             this.cita = cita;
             this.tenantId = tenantId;
+            this.estadoAnterior = estadoAnterior;
         }
 
         public Cita getCita() { return cita; }
         public String getTenantId() { return tenantId; }
+        public EstadoCita getEstadoAnterior() { return estadoAnterior; }
     }
 
     // ========================================
@@ -588,20 +725,19 @@ public class HorarioEspecialService {
      * Evaluar un cierre especifico contra una solicitud de cita
      * ZERO HARDCODING: Usa mensajes de BD o retorna null para que OpenAI genere
      */
-    private DisponibilidadResult evaluarCierre(HorarioEspecial cierre,
+    private DisponibilidadResult evaluarCierre(CierreIndexado cierre,
                                                LocalTime hora,
                                                String empleadoId,
                                                String servicioId) {
 
-        logger.debug("Evaluando cierre: {} - {}", cierre.getTipoCierre(), cierre.getMotivo());
+        logger.debug("Evaluando cierre: {} - {}", cierre.tipoCierre(), cierre.motivo());
 
-        switch (cierre.getTipoCierre()) {
+        switch (cierre.tipoCierre()) {
             case CERRADO_COMPLETO:
                 return DisponibilidadResult.noDisponible(obtenerMensajeDinamico(cierre));
 
             case HORARIO_REDUCIDO:
-                if (hora.isBefore(cierre.getHorarioInicio()) ||
-                        hora.isAfter(cierre.getHorarioFin())) {
+                if (cierre.bloquea(hora, empleadoId, servicioId)) {
 
                     // ZERO HARDCODING: Generar mensaje dinamico
                     String mensaje = generarMensajeHorarioReducido(cierre);
@@ -610,13 +746,13 @@ public class HorarioEspecialService {
                 break;
 
             case EMPLEADO_AUSENTE:
-                if (empleadoId != null && esEmpleadoAfectado(cierre.getEmpleadosAfectados(), empleadoId)) {
+                if (cierre.afectaEmpleado(empleadoId)) {
                     return DisponibilidadResult.noDisponible(obtenerMensajeDinamico(cierre));
                 }
                 break;
 
             case SERVICIO_NO_DISPONIBLE:
-                if (servicioId != null && esServicioAfectado(cierre.getServiciosAfectados(), servicioId)) {
+                if (cierre.afectaServicio(servicioId)) {
                     return DisponibilidadResult.noDisponible(obtenerMensajeDinamico(cierre));
                 }
                 break;
@@ -634,9 +770,9 @@ public class HorarioEspecialService {
      * 1. Si hay mensaje personalizado en BD -> usarlo
      * 2. Si no hay mensaje -> generar con OpenAI (futuro) o mensaje basico
      */
-    private String obtenerMensajeDinamico(HorarioEspecial cierre) {
+    private String obtenerMensajeDinamico(CierreIndexado cierre) {
         // 1. Usar mensaje personalizado si existe
-        String mensajePersonalizado = cierre.obtenerMensajeParaIA();
+        String mensajePersonalizado = cierre.mensajePersonalizado();
         if (mensajePersonalizado != null && !mensajePersonalizado.trim().isEmpty()) {
             return mensajePersonalizado;
         }
@@ -650,12 +786,12 @@ public class HorarioEspecialService {
      * Generar mensaje basico sin hardcoding de textos especificos
      * ZERO HARDCODING: No contiene textos fijos como "Lo siento, estamos cerrados"
      */
-    private String generarMensajeBasico(HorarioEspecial cierre) {
+    private String generarMensajeBasico(CierreIndexado cierre) {
         StringBuilder mensaje = new StringBuilder();
 
         // Base del mensaje sin texto hardcodeado
-        if (cierre.getMotivo() != null && !cierre.getMotivo().trim().isEmpty()) {
-            mensaje.append(cierre.getMotivo());
+        if (cierre.motivo() != null && !cierre.motivo().trim().isEmpty()) {
+            mensaje.append(cierre.motivo());
         } else {
             mensaje.append("No disponible");
         }
@@ -669,22 +805,22 @@ public class HorarioEspecialService {
     /**
      * Generar mensaje para horario reducido sin hardcoding
      */
-    private String generarMensajeHorarioReducido(HorarioEspecial cierre) {
-        if (cierre.getMensajePersonalizado() != null && !cierre.getMensajePersonalizado().trim().isEmpty()) {
-            return cierre.getMensajePersonalizado();
+    private String generarMensajeHorarioReducido(CierreIndexado cierre) {
+        if (cierre.mensajePersonalizado() != null && !cierre.mensajePersonalizado().trim().isEmpty()) {
+            return cierre.mensajePersonalizado();
         }
 
         // Mensaje basico sin hardcoding
         StringBuilder mensaje = new StringBuilder();
-        if (cierre.getHorarioInicio() != null && cierre.getHorarioFin() != null) {
+        if (cierre.horarioInicio() != null && cierre.horarioFin() != null) {
             mensaje.append("Horario especial: ")
-                    .append(cierre.getHorarioInicio())
+                    .append(cierre.horarioInicio())
                     .append(" a ")
-                    .append(cierre.getHorarioFin());
+                    .append(cierre.horarioFin());
         }
 
-        if (cierre.getMotivo() != null) {
-            mensaje.append(" - ").append(cierre.getMotivo());
+        if (cierre.motivo() != null) {
+            mensaje.append(" - ").append(cierre.motivo());
         }
 
         return mensaje.toString();
@@ -695,8 +831,7 @@ public class HorarioEspecialService {
         LocalDate fechaBusqueda = fechaOriginal.plusDays(1);
 
         for (int i = 0; i < diasBuscar && alternativas.size() < 3; i++) {
-            Boolean disponible = horarioEspecialRepository.isFechaDisponible(tenantId, fechaBusqueda);
-            if (Boolean.TRUE.equals(disponible)) {
+            if (!indiceCierres.diaCerrado(tenantId, fechaBusqueda)) {
                 alternativas.add(fechaBusqueda);
             }
             fechaBusqueda = fechaBusqueda.plusDays(1);
@@ -718,46 +853,42 @@ public class HorarioEspecialService {
                 throw new IllegalArgumentException("Hora de inicio no puede ser posterior a la de fin");
             }
         }
-    }
-
-    private boolean esEmpleadoAfectado(String empleadosAfectadosJson, String empleadoId) {
-        if (empleadosAfectadosJson == null || empleadoId == null) {
-            return false;
-        }
-
-        try {
-            List<String> empleados = objectMapper.readValue(empleadosAfectadosJson, new TypeReference<List<String>>() {});
-            return empleados.contains(empleadoId);
-        } catch (Exception e) {
-            logger.error("Error deserializando empleados afectados", e);
-            return empleadosAfectadosJson.contains(empleadoId);
-        }
-    }
-
-    private boolean esServicioAfectado(String serviciosAfectadosJson, String servicioId) {
-        if (serviciosAfectadosJson == null || servicioId == null) {
-            return false;
-        }
 
-        try {
-            List<String> servicios = objectMapper.readValue(serviciosAfectadosJson, new TypeReference<List<String>>() {});
-            return servicios.contains(servicioId);
-        } catch (Exception e) {
-            logger.error("Error deserializando servicios afectados", e);
-            return serviciosAfectadosJson.contains(servicioId);
+        if (dto.getRecurrencia() != null) {
+            int intervalo = dto.getRecurrenciaIntervalo() != null ? dto.getRecurrenciaIntervalo() : 1;
+            if (intervalo < 1) {
+                throw new IllegalArgumentException("El intervalo de la recurrencia debe ser al menos 1");
+            }
+            long duracion = ChronoUnit.DAYS.between(dto.getFechaInicio(), dto.getFechaFin());
+            if (duracion >= dto.getRecurrencia().periodoMinimoDias(intervalo)) {
+                throw new IllegalArgumentException("Cada ocurrencia debe terminar antes de que empiece la siguiente");
+            }
+            if (dto.getRecurrenciaHasta() != null && dto.getRecurrenciaHasta().isBefore(dto.getFechaInicio())) {
+                throw new IllegalArgumentException("El fin de la recurrencia no puede ser anterior a la fecha de inicio");
+            }
         }
     }
 
     public ResultadoVerificacionCitas verificarCitasExistentes(String tenantId,
                                                                LocalDate fechaInicio,
                                                                LocalDate fechaFin) {
-        try {
-            logger.info("Verificando citas existentes para cierre - Tenant: {}, Fechas: {} a {}",
-                    tenantId, fechaInicio, fechaFin);
+        return verificarCitasExistentes(tenantId,
+                List.of(new HorarioEspecial(tenantId, fechaInicio, fechaFin, null, null)));
+    }
 
-            List<Cita> citasAfectadas = citaRepository.findCitasEnRangoFechas(
-                    tenantId, fechaInicio, fechaFin
-            );
+    /**
+     * Citas afectadas por un conjunto de ocurrencias (una si el cierre es puntual)
+     */
+    private ResultadoVerificacionCitas verificarCitasExistentes(String tenantId, List<HorarioEspecial> ocurrencias) {
+        try {
+            List<Cita> citasAfectadas = new ArrayList<>();
+            for (HorarioEspecial ocurrencia : ocurrencias) {
+                logger.info("Verificando citas existentes para cierre - Tenant: {}, Fechas: {} a {}",
+                        tenantId, ocurrencia.getFechaInicio(), ocurrencia.getFechaFin());
+                citasAfectadas.addAll(citaRepository.findCitasEnRangoFechas(
+                        tenantId, ocurrencia.getFechaInicio(), ocurrencia.getFechaFin()
+                ));
+            }
 
             if (citasAfectadas.isEmpty()) {
                 logger.debug("No hay citas afectadas en el rango de fechas");
@@ -804,9 +935,20 @@ public class HorarioEspecialService {
     public List<HorarioEspecial> obtenerCierresProximos(String tenantId, int dias) {
         validarTenantIdRequerido(tenantId);
 
-        LocalDate fechaLimite = LocalDate.now().plusDays(dias);
-
-        return horarioEspecialRepository.findCierresProximos(tenantId, fechaLimite);
+        LocalDate hoy = LocalDate.now();
+        LocalDate fechaLimite = hoy.plusDays(dias);
+
+        // Puntuales de BD + ocurrencias de los recurrentes que empiezan en la ventana
+        List<HorarioEspecial> cierres = new ArrayList<>(
+                horarioEspecialRepository.findCierresProximos(tenantId, fechaLimite));
+        for (HorarioEspecial regla : horarioEspecialRepository.findRecurrentes(tenantId, fechaLimite)) {
+            regla.iniciosOcurrenciasEntre(hoy, fechaLimite).stream()
+                    .filter(inicio -> !inicio.isBefore(hoy))
+                    .map(regla::ocurrencia)
+                    .forEach(cierres::add);
+        }
+        cierres.sort(Comparator.comparing(HorarioEspecial::getFechaInicio));
+        return cierres;
     }
 
     /**
@@ -824,10 +966,16 @@ public class HorarioEspecialService {
             LocalDate inicioMes = LocalDate.of(año, mes, 1);
             LocalDate finMes = inicioMes.plusMonths(1).minusDays(1);
 
-            // Usar método existente del repository
-            List<HorarioEspecial> cierres = horarioEspecialRepository.findCierresEnRango(
+            // Puntuales del mes + ocurrencias de los recurrentes que se solapan con él
+            List<HorarioEspecial> cierres = new ArrayList<>(horarioEspecialRepository.findCierresEnRango(
                     tenantId, inicioMes, finMes
-            );
+            ));
+            for (HorarioEspecial regla : horarioEspecialRepository.findRecurrentes(tenantId, finMes)) {
+                regla.iniciosOcurrenciasEntre(inicioMes, finMes).stream()
+                        .map(regla::ocurrencia)
+                        .forEach(cierres::add);
+            }
+            cierres.sort(Comparator.comparing(HorarioEspecial::getFechaInicio));
 
             return cierres.stream()
                     .map(cierre -> {
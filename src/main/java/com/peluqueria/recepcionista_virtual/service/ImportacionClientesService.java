@@ -0,0 +1,676 @@
+package com.peluqueria.recepcionista_virtual.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.peluqueria.recepcionista_virtual.model.UuidV7Generator;
+import com.peluqueria.recepcionista_virtual.repository.TenantRepository;
+import com.peluqueria.recepcionista_virtual.util.TelefonoNormalizador;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * 📥 IMPORTACIÓN MASIVA DE CLIENTES (CSV / JSON)
+ *
+ * El archivo se lee en streaming y se procesa en segundo plano por lotes de LOTE filas:
+ * cada fila se valida y su teléfono se normaliza a E.164, los repetidos dentro del lote
+ * se fusionan en memoria y el lote se guarda con un único batch de
+ * INSERT ... ON CONFLICT (telefono_norm, tenant_id) DO UPDATE. Los clientes sin teléfono
+ * se identifican por nombre y email y solo se insertan si no existen ya.
+ *
+ * El progreso y el informe de errores por fila se consultan con getImportacion().
+ */
+@Service
+public class ImportacionClientesService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportacionClientesService.class);
+
+    private static final int LOTE = 1000;
+
+    // Errores guardados por importación (el total se cuenta siempre)
+    private static final int MAX_ERRORES_INFORME = 10000;
+
+    private static final int LONGITUD_MAXIMA = 255;
+
+    // Mismo nombre que ponen las llamadas a los clientes sin nombre
+    private static final String NOMBRE_PROVISIONAL = "Cliente";
+
+    // Las importaciones terminadas se pueden consultar durante este tiempo
+    private static final long RETENCION_MS = 60 * 60 * 1000L;
+
+    private static final Pattern EMAIL = Pattern.compile("^[^@\\s]+@[^@\\s]+\\.[^@\\s]+$");
+
+    // Nombres de columna aceptados (en minúsculas, sin tildes)
+    private static final Map<String, String> COLUMNAS = Map.ofEntries(
+            Map.entry("nombre", "nombre"), Map.entry("name", "nombre"), Map.entry("cliente", "nombre"),
+            Map.entry("nombre completo", "nombre"),
+            Map.entry("telefono", "telefono"), Map.entry("phone", "telefono"), Map.entry("movil", "telefono"),
+            Map.entry("celular", "telefono"), Map.entry("tel", "telefono"),
+            Map.entry("email", "email"), Map.entry("correo", "email"), Map.entry("e-mail", "email"),
+            Map.entry("notas", "notas"), Map.entry("observaciones", "notas"), Map.entry("notes", "notas")
+    );
+
+    private static final String SQL_UPSERT =
+            "INSERT INTO clientes (id, tenant_id, nombre, telefono, telefono_norm, email, notas, fecha_registro) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (telefono_norm, tenant_id) DO UPDATE SET " +
+            "  nombre = CASE WHEN EXCLUDED.nombre <> '" + NOMBRE_PROVISIONAL + "' " +
+            "    THEN EXCLUDED.nombre ELSE clientes.nombre END, " +
+            "  email = COALESCE(EXCLUDED.email, clientes.email), " +
+            "  notas = COALESCE(EXCLUDED.notas, clientes.notas)";
+
+    // Sin teléfono no hay clave única: es el mismo cliente si coinciden nombre y email
+    // (sin distinguir mayúsculas), así reimportar el mismo archivo no lo duplica
+    private static final String SQL_INSERTAR_SIN_TELEFONO =
+            "INSERT INTO clientes (id, tenant_id, nombre, telefono, telefono_norm, email, notas, fecha_registro) " +
+            "SELECT ?, ?, ?, NULL, NULL, ?, ?, ? WHERE NOT EXISTS (" +
+            "  SELECT 1 FROM clientes c WHERE c.tenant_id = ? AND c.telefono_norm IS NULL " +
+            "  AND lower(c.nombre) = lower(?) AND lower(coalesce(c.email, '')) = lower(coalesce(?, '')))";
+
+    public enum Formato {
+        CSV, JSON;
+
+        /**
+         * Formato indicado o, si no hay, el de la extensión del archivo (CSV por defecto)
+         */
+        public static Formato desde(String valor, String nombreArchivo) {
+            if (valor != null && !valor.isBlank()) {
+                return Formato.valueOf(valor.trim().toUpperCase());
+            }
+            String nombre = nombreArchivo != null ? nombreArchivo.toLowerCase(Locale.ROOT) : "";
+            return nombre.endsWith(".json") || nombre.endsWith(".ndjson") ? JSON : CSV;
+        }
+    }
+
+    public enum EstadoImportacion {
+        EN_CURSO, COMPLETADA, FALLIDA
+    }
+
+    public record ErrorFila(long fila, String motivo, String valor) {
+    }
+
+    /**
+     * Fila leída del archivo (campos ya recortados; null si vacíos)
+     */
+    private record FilaCliente(long fila, String nombre, String telefono, String telefonoNorm,
+                               String email, String notas) {
+
+        FilaCliente fusionar(FilaCliente posterior) {
+            return new FilaCliente(posterior.fila,
+                    posterior.nombre != null ? posterior.nombre : nombre,
+                    posterior.telefono != null ? posterior.telefono : telefono,
+                    telefonoNorm,
+                    posterior.email != null ? posterior.email : email,
+                    posterior.notas != null ? posterior.notas : notas);
+        }
+    }
+
+    /**
+     * Estado de una importación, actualizado por el hilo que la procesa
+     */
+    public static final class Importacion {
+        private final String id = UuidV7Generator.generar();
+        private final String tenantId;
+        private final Formato formato;
+        private final long bytesTotales;
+        private final LocalDateTime iniciada = LocalDateTime.now();
+
+        private final AtomicLong bytesLeidos = new AtomicLong();
+        private final AtomicLong filasLeidas = new AtomicLong();
+        private final AtomicLong guardados = new AtomicLong();
+        private final AtomicLong yaExistentes = new AtomicLong();
+        private final AtomicLong duplicadosEnArchivo = new AtomicLong();
+        private final AtomicLong totalErrores = new AtomicLong();
+        private final List<ErrorFila> errores = new ArrayList<>();
+
+        private volatile EstadoImportacion estado = EstadoImportacion.EN_CURSO;
+        private volatile String mensaje;
+        private volatile LocalDateTime finalizada;
+
+        private Importacion(String tenantId, Formato formato, long bytesTotales) {
+            this.tenantId = tenantId;
+            this.formato = formato;
+            this.bytesTotales = bytesTotales;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getTenantId() {
+            return tenantId;
+        }
+
+        public EstadoImportacion getEstado() {
+            return estado;
+        }
+
+        private void error(long fila, String motivo, String valor) {
+            totalErrores.incrementAndGet();
+            synchronized (errores) {
+                if (errores.size() < MAX_ERRORES_INFORME) {
+                    errores.add(new ErrorFila(fila, motivo, valor));
+                }
+            }
+        }
+
+        public List<ErrorFila> getErrores() {
+            synchronized (errores) {
+                return new ArrayList<>(errores);
+            }
+        }
+
+        public Map<String, Object> resumen() {
+            Map<String, Object> resumen = new LinkedHashMap<>();
+            resumen.put("id", id);
+            resumen.put("estado", estado);
+            resumen.put("formato", formato);
+            resumen.put("porcentaje", estado == EstadoImportacion.COMPLETADA ? 100
+                    : bytesTotales > 0 ? Math.min(99, bytesLeidos.get() * 100 / bytesTotales) : 0);
+            resumen.put("filasLeidas", filasLeidas.get());
+            resumen.put("guardados", guardados.get());
+            resumen.put("yaExistentes", yaExistentes.get());
+            resumen.put("duplicadosEnArchivo", duplicadosEnArchivo.get());
+            resumen.put("errores", totalErrores.get());
+            resumen.put("iniciada", iniciada.toString());
+            resumen.put("finalizada", finalizada != null ? finalizada.toString() : null);
+            resumen.put("mensaje", mensaje);
+            return resumen;
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TenantRepository tenantRepository;
+
+    @Autowired
+    private DeduplicacionClientesService deduplicacionClientesService;
+
+    @Autowired
+    private CacheEstadisticasService cacheEstadisticas;
+
+    @Value("${clientes.importacion.hilos:1}")
+    private int hilos;
+
+    private final Map<String, Importacion> importaciones = new ConcurrentHashMap<>();
+
+    // tenantId -> id de su importación en curso (una por tenant)
+    private final Map<String, String> enCursoPorTenant = new ConcurrentHashMap<>();
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        // Un hilo por defecto: cada importación ocupa una conexión mientras guarda un lote
+        AtomicInteger contador = new AtomicInteger();
+        executor = new ThreadPoolExecutor(hilos, hilos, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(20),
+                r -> {
+                    Thread t = new Thread(r, "importacion-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ========================================
+    // API
+    // ========================================
+
+    /**
+     * Encola la importación del archivo (que pasa a ser de este servicio y se borra al
+     * terminar) y devuelve su estado inicial.
+     * NoSuchElementException si el tenant no existe, IllegalStateException si ya tiene una
+     * importación en curso y RejectedExecutionException si la cola está llena
+     */
+    public Importacion iniciar(String tenantId, Path archivo, Formato formato) throws IOException {
+        if (!tenantRepository.existsById(tenantId)) {
+            Files.deleteIfExists(archivo);
+            throw new NoSuchElementException("Tenant no encontrado");
+        }
+        Importacion importacion = new Importacion(tenantId, formato, Files.size(archivo));
+        if (enCursoPorTenant.putIfAbsent(tenantId, importacion.id) != null) {
+            Files.deleteIfExists(archivo);
+            throw new IllegalStateException("Ya hay una importación de clientes en curso para este salón");
+        }
+
+        importaciones.put(importacion.id, importacion);
+        try {
+            executor.execute(() -> procesar(importacion, archivo));
+        } catch (RejectedExecutionException e) {
+            importaciones.remove(importacion.id);
+            enCursoPorTenant.remove(tenantId, importacion.id);
+            Files.deleteIfExists(archivo);
+            throw new RejectedExecutionException("Demasiadas importaciones en cola, inténtelo más tarde");
+        }
+
+        logger.info("Importación de clientes {} encolada para tenant {} ({} bytes, {})",
+                importacion.id, tenantId, importacion.bytesTotales, formato);
+        return importacion;
+    }
+
+    /**
+     * Importación del tenant, o null si no existe o es de otro tenant
+     */
+    public Importacion getImportacion(String tenantId, String id) {
+        Importacion importacion = importaciones.get(id);
+        return importacion != null && importacion.tenantId.equals(tenantId) ? importacion : null;
+    }
+
+    @Scheduled(fixedDelay = RETENCION_MS)
+    public void purgarTerminadas() {
+        LocalDateTime limite = LocalDateTime.now().minusNanos(RETENCION_MS * 1_000_000);
+        importaciones.values().removeIf(i -> i.finalizada != null && i.finalizada.isBefore(limite));
+    }
+
+    // ========================================
+    // PROCESAMIENTO
+    // ========================================
+
+    private void procesar(Importacion importacion, Path archivo) {
+        long inicio = System.currentTimeMillis();
+        try (InputStream entrada = new ContadorBytes(Files.newInputStream(archivo), importacion.bytesLeidos)) {
+            prepararIndiceUnico();
+
+            Iterator<Map<String, String>> filas = importacion.formato == Formato.JSON
+                    ? filasJson(entrada)
+                    : filasCsv(new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8)));
+
+            // Clave: teléfono normalizado (o nombre y email, si no tiene teléfono)
+            Map<String, FilaCliente> lote = new LinkedHashMap<>();
+            long numeroFila = 0;
+            while (filas.hasNext()) {
+                numeroFila++;
+                importacion.filasLeidas.incrementAndGet();
+
+                FilaCliente fila = validar(importacion, numeroFila, filas.next());
+                if (fila == null) {
+                    continue;
+                }
+
+                String clave = fila.telefonoNorm != null ? fila.telefonoNorm : claveSinTelefono(fila);
+                FilaCliente anterior = lote.get(clave);
+                if (anterior != null) {
+                    importacion.duplicadosEnArchivo.incrementAndGet();
+                    lote.put(clave, anterior.fusionar(fila));
+                } else {
+                    lote.put(clave, fila);
+                }
+
+                if (lote.size() >= LOTE) {
+                    guardarLote(importacion, lote.values());
+                    lote.clear();
+                }
+            }
+            guardarLote(importacion, lote.values());
+
+            importacion.estado = EstadoImportacion.COMPLETADA;
+            logger.info("Importación {} completada en {} ms: {} filas, {} guardados, {} ya existentes, {} errores",
+                    importacion.id, System.currentTimeMillis() - inicio, importacion.filasLeidas.get(),
+                    importacion.guardados.get(), importacion.yaExistentes.get(), importacion.totalErrores.get());
+
+        } catch (Exception e) {
+            importacion.estado = EstadoImportacion.FALLIDA;
+            importacion.mensaje = e.getMessage();
+            logger.error("Importación de clientes {} fallida: {}", importacion.id, e.getMessage());
+        } finally {
+            importacion.finalizada = LocalDateTime.now();
+            enCursoPorTenant.remove(importacion.tenantId, importacion.id);
+            cacheEstadisticas.invalidarTenant(importacion.tenantId);
+            try {
+                Files.deleteIfExists(archivo);
+            } catch (IOException e) {
+                logger.warn("No se pudo borrar el archivo temporal {}: {}", archivo, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * ON CONFLICT necesita el índice único (telefono_norm, tenant_id); si aún no existe,
+     * la deduplicación lo crea tras fusionar los clientes repetidos
+     */
+    private void prepararIndiceUnico() {
+        if (!deduplicacionClientesService.existeIndiceUnico()) {
+            deduplicacionClientesService.deduplicar();
+            if (!deduplicacionClientesService.existeIndiceUnico()) {
+                throw new IllegalStateException("No se pudo crear el índice único de teléfonos de clientes");
+            }
+        }
+    }
+
+    private FilaCliente validar(Importacion importacion, long numeroFila, Map<String, String> campos) {
+        String nombre = limpiar(campos.get("nombre"));
+        String telefono = limpiar(campos.get("telefono"));
+        String email = limpiar(campos.get("email"));
+        String notas = limpiar(campos.get("notas"));
+
+        if (nombre == null && telefono == null) {
+            importacion.error(numeroFila, "Fila sin nombre ni teléfono", null);
+            return null;
+        }
+
+        String telefonoNorm = TelefonoNormalizador.normalizar(telefono);
+        if (telefono != null && telefonoNorm == null) {
+            importacion.error(numeroFila, "Teléfono no válido", telefono);
+            return null;
+        }
+        if (email != null && !EMAIL.matcher(email).matches()) {
+            importacion.error(numeroFila, "Email no válido", email);
+            return null;
+        }
+        for (String valor : new String[]{nombre, telefono, email, notas}) {
+            if (valor != null && valor.length() > LONGITUD_MAXIMA) {
+                importacion.error(numeroFila, "Campo de más de " + LONGITUD_MAXIMA + " caracteres",
+                        valor.substring(0, 50) + "...");
+                return null;
+            }
+        }
+
+        return new FilaCliente(numeroFila, nombre != null ? nombre : NOMBRE_PROVISIONAL,
+                telefono, telefonoNorm, email, notas);
+    }
+
+    private static String claveSinTelefono(FilaCliente fila) {
+        return "sin-telefono:" + fila.nombre.toLowerCase(Locale.ROOT) + "|"
+                + (fila.email != null ? fila.email.toLowerCase(Locale.ROOT) : "");
+    }
+
+    /**
+     * Las filas con teléfono van por el upsert y las que no lo tienen por el insert
+     * condicionado a nombre y email
+     */
+    private void guardarLote(Importacion importacion, Collection<FilaCliente> lote) {
+        List<FilaCliente> conTelefono = new ArrayList<>(lote.size());
+        List<FilaCliente> sinTelefono = new ArrayList<>();
+        for (FilaCliente fila : lote) {
+            (fila.telefonoNorm != null ? conTelefono : sinTelefono).add(fila);
+        }
+        guardar(importacion, SQL_UPSERT, conTelefono);
+        guardar(importacion, SQL_INSERTAR_SIN_TELEFONO, sinTelefono);
+    }
+
+    /**
+     * Un batch por lote en una transacción; si falla, se reintenta fila a fila para
+     * guardar las válidas y anotar en el informe las que fallan. Se cuentan las filas que
+     * cada sentencia escribió: las que el WHERE NOT EXISTS descarta van a yaExistentes
+     */
+    private void guardar(Importacion importacion, String sql, List<FilaCliente> lote) {
+        if (lote.isEmpty()) {
+            return;
+        }
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> parametros = new ArrayList<>(lote.size());
+        for (FilaCliente fila : lote) {
+            parametros.add(parametros(importacion.tenantId, fila, ahora));
+        }
+
+        try {
+            int[] filas = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(sql, parametros));
+            for (int escritas : filas) {
+                contar(importacion, escritas);
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Lote de importación {} rechazado, reintentando fila a fila: {}",
+                    importacion.id, e.getMostSpecificCause().getMessage());
+            for (FilaCliente fila : lote) {
+                try {
+                    contar(importacion, jdbcTemplate.update(sql, parametros(importacion.tenantId, fila, ahora)));
+                } catch (DataAccessException ex) {
+                    importacion.error(fila.fila, "Error al guardar: " + ex.getMostSpecificCause().getMessage(),
+                            fila.telefono != null ? fila.telefono : fila.nombre);
+                }
+            }
+        }
+    }
+
+    /**
+     * SUCCESS_NO_INFO (el driver no informa, p. ej. con reWriteBatchedInserts) cuenta como guardada
+     */
+    private static void contar(Importacion importacion, int escritas) {
+        if (escritas > 0 || escritas == Statement.SUCCESS_NO_INFO) {
+            importacion.guardados.incrementAndGet();
+        } else {
+            importacion.yaExistentes.incrementAndGet();
+        }
+    }
+
+    private static Object[] parametros(String tenantId, FilaCliente fila, Timestamp ahora) {
+        if (fila.telefonoNorm == null) {
+            return new Object[]{UuidV7Generator.generar(), tenantId, fila.nombre, fila.email, fila.notas, ahora,
+                    tenantId, fila.nombre, fila.email};
+        }
+        return new Object[]{UuidV7Generator.generar(), tenantId, fila.nombre, fila.telefono,
+                fila.telefonoNorm, fila.email, fila.notas, ahora};
+    }
+
+    // ========================================
+    // LECTURA
+    // ========================================
+
+    /**
+     * Array JSON de objetos o NDJSON (un objeto por línea)
+     */
+    private Iterator<Map<String, String>> filasJson(InputStream entrada) throws IOException {
+        MappingIterator<Map<String, Object>> objetos = objectMapper.readerForMapOf(Object.class).readValues(entrada);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return objetos.hasNext();
+            }
+
+            @Override
+            public Map<String, String> next() {
+                Map<String, String> campos = new LinkedHashMap<>();
+                objetos.next().forEach((clave, valor) -> {
+                    String columna = COLUMNAS.get(normalizarColumna(clave));
+                    if (columna != null && valor != null) {
+                        campos.put(columna, valor.toString());
+                    }
+                });
+                return campos;
+            }
+        };
+    }
+
+    /**
+     * CSV con cabecera; separador ',' o ';' (el de la cabecera), comillas dobles con ""
+     * como escape y saltos de línea dentro de campos entrecomillados
+     */
+    private Iterator<Map<String, String>> filasCsv(BufferedReader reader) throws IOException {
+        reader.mark(1);
+        if (reader.read() != '\uFEFF') { // BOM de Excel
+            reader.reset();
+        }
+
+        String cabecera = reader.readLine();
+        if (cabecera == null) {
+            return new ArrayList<Map<String, String>>().iterator();
+        }
+        char separador = cabecera.indexOf(';') >= 0 && cabecera.indexOf(',') < 0 ? ';' : ',';
+
+        List<String> nombres = leerRegistroCsv(new StringReader(cabecera), separador);
+        String[] columnas = new String[nombres.size()];
+        for (int i = 0; i < nombres.size(); i++) {
+            columnas[i] = COLUMNAS.get(normalizarColumna(nombres.get(i)));
+        }
+        if (!List.of(columnas).contains("nombre") && !List.of(columnas).contains("telefono")) {
+            throw new IllegalArgumentException("La cabecera del CSV debe incluir una columna nombre o telefono");
+        }
+
+        return new Iterator<>() {
+            private List<String> siguiente = leer();
+
+            private List<String> leer() {
+                try {
+                    List<String> registro;
+                    do {
+                        registro = leerRegistroCsv(reader, separador);
+                    } while (registro != null && registro.size() == 1 && registro.get(0).isEmpty());
+                    return registro;
+                } catch (IOException e) {
+                    throw new IllegalStateException("Error leyendo el CSV: " + e.getMessage(), e);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return siguiente != null;
+            }
+
+            @Override
+            public Map<String, String> next() {
+                if (siguiente == null) {
+                    throw new NoSuchElementException();
+                }
+                Map<String, String> campos = new LinkedHashMap<>();
+                for (int i = 0; i < columnas.length && i < siguiente.size(); i++) {
+                    if (columnas[i] != null) {
+                        campos.put(columnas[i], siguiente.get(i));
+                    }
+                }
+                siguiente = leer();
+                return campos;
+            }
+        };
+    }
+
+    /**
+     * Un registro CSV (puede ocupar varias líneas), o null al final del archivo
+     */
+    private static List<String> leerRegistroCsv(Reader reader, char separador) throws IOException {
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        boolean leido = false;
+
+        int c;
+        while ((c = reader.read()) != -1) {
+            leido = true;
+            if (entreComillas) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        campo.append('"');
+                    } else {
+                        reader.reset();
+                        entreComillas = false;
+                    }
+                } else {
+                    campo.append((char) c);
+                }
+            } else if (c == '"' && campo.length() == 0) {
+                entreComillas = true;
+            } else if (c == separador) {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                campo.append((char) c);
+            }
+        }
+
+        if (!leido) {
+            return null;
+        }
+        campos.add(campo.toString());
+        return campos;
+    }
+
+    private static String normalizarColumna(String nombre) {
+        return Normalizer.normalize(nombre.trim(), Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT)
+                .replace('_', ' ');
+    }
+
+    private static String limpiar(String valor) {
+        if (valor == null) {
+            return null;
+        }
+        String limpio = valor.trim();
+        return limpio.isEmpty() ? null : limpio;
+    }
+
+    /**
+     * Cuenta los bytes leídos del archivo para calcular el porcentaje de progreso
+     */
+    private static final class ContadorBytes extends FilterInputStream {
+        private final AtomicLong contador;
+
+        private ContadorBytes(InputStream entrada, AtomicLong contador) {
+            super(entrada);
+            this.contador = contador;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                contador.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                contador.addAndGet(n);
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.peluqueria.recepcionista_virtual.service;
+
+import com.peluqueria.recepcionista_virtual.dto.EventoDashboard;
+import com.peluqueria.recepcionista_virtual.model.HorarioEspecial;
+import com.peluqueria.recepcionista_virtual.model.TipoCierre;
+import com.peluqueria.recepcionista_virtual.repository.HorarioEspecialRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 📅 ÍNDICE EN MEMORIA DE CIERRES VIGENTES POR TENANT
+ *
+ * Cada tenant tiene una instantánea inmutable de sus cierres activos (desde ayer en
+ * adelante) partida en tramos de días: los límites de los tramos son los inicios y
+ * los días siguientes a los fines de cada cierre, y cada tramo guarda los cierres que
+ * lo cubren. "¿Qué bloquea esta fecha?" es una búsqueda binaria sobre los límites.
+ *
+ * Los cierres recurrentes se guardan como reglas y se expanden al consultar, mes a
+ * mes: la primera consulta de un mes genera los tramos de las ocurrencias de ese mes.
+ *
+ * La instantánea se reconstruye al confirmarse la creación, modificación o
+ * eliminación de un cierre, y como máximo cada indice-cierres.ttl-ms por si el cambio
+ * se hizo desde otra instancia.
+ */
+@Service
+public class IndiceCierresService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndiceCierresService.class);
+
+    /**
+     * Copia inmutable de un cierre, segura de compartir entre hilos
+     */
+    public record CierreIndexado(String id, TipoCierre tipoCierre, LocalDate fechaInicio, LocalDate fechaFin,
+                                 LocalTime horarioInicio, LocalTime horarioFin,
+                                 Set<String> empleadosAfectados, Set<String> serviciosAfectados,
+                                 String motivo, String mensajePersonalizado) {
+
+        static CierreIndexado desde(HorarioEspecial h) {
+            return new CierreIndexado(h.getId(), h.getTipoCierre(), h.getFechaInicio(), h.getFechaFin(),
+                    h.getHorarioInicio(), h.getHorarioFin(),
+                    h.getEmpleadosAfectados() != null ? Set.copyOf(h.getEmpleadosAfectados()) : Set.of(),
+                    h.getServiciosAfectados() != null ? Set.copyOf(h.getServiciosAfectados()) : Set.of(),
+                    h.getMotivo(), h.getMensajePersonalizado());
+        }
+
+        public boolean afectaEmpleado(String empleadoId) {
+            return empleadoId != null && empleadosAfectados.contains(empleadoId);
+        }
+
+        public boolean afectaServicio(String servicioId) {
+            return servicioId != null && serviciosAfectados.contains(servicioId);
+        }
+
+        /**
+         * Mismo criterio que findCierresAplicables: los de todo el salón siempre, los de
+         * empleado/servicio solo si lo incluyen en su lista
+         */
+        public boolean aplicaA(String empleadoId, String servicioId) {
+            return switch (tipoCierre) {
+                case EMPLEADO_AUSENTE -> afectaEmpleado(empleadoId);
+                case SERVICIO_NO_DISPONIBLE -> afectaServicio(servicioId);
+                default -> true;
+            };
+        }
+
+        /**
+         * Si impide una cita a esa hora con ese empleado y servicio (ya dentro de sus fechas)
+         */
+        public boolean bloquea(LocalTime hora, String empleadoId, String servicioId) {
+            return switch (tipoCierre) {
+                case CERRADO_COMPLETO, SOLO_EMERGENCIAS -> true;
+                case HORARIO_REDUCIDO -> horarioInicio != null && horarioFin != null
+                        && (hora.isBefore(horarioInicio) || hora.isAfter(horarioFin));
+                case EMPLEADO_AUSENTE -> afectaEmpleado(empleadoId);
+                case SERVICIO_NO_DISPONIBLE -> afectaServicio(servicioId);
+            };
+        }
+    }
+
+    /**
+     * Tramos de días de un conjunto de cierres. limites[i] es el primer día (epoch day)
+     * del tramo i, que llega hasta limites[i + 1] - 1
+     */
+    private static final class Tramos {
+        private final long[] limites;
+        private final List<List<CierreIndexado>> cierres;
+
+        private Tramos(List<CierreIndexado> lista) {
+            TreeSet<Long> puntos = new TreeSet<>();
+            for (CierreIndexado cierre : lista) {
+                puntos.add(cierre.fechaInicio().toEpochDay());
+                puntos.add(cierre.fechaFin().toEpochDay() + 1);
+            }
+            limites = puntos.stream().mapToLong(Long::longValue).toArray();
+
+            List<List<CierreIndexado>> porTramo = new ArrayList<>(limites.length);
+            for (int i = 0; i < limites.length; i++) {
+                porTramo.add(new ArrayList<>());
+            }
+            for (CierreIndexado cierre : lista) {
+                int desde = Arrays.binarySearch(limites, cierre.fechaInicio().toEpochDay());
+                int hasta = Arrays.binarySearch(limites, cierre.fechaFin().toEpochDay() + 1);
+                for (int i = desde; i < hasta; i++) {
+                    porTramo.get(i).add(cierre);
+                }
+            }
+            cierres = porTramo.stream().map(List::copyOf).toList();
+        }
+
+        List<CierreIndexado> cierresEn(LocalDate fecha) {
+            int i = Arrays.binarySearch(limites, fecha.toEpochDay());
+            if (i < 0) {
+                i = -i - 2; // tramo que empieza antes de la fecha
+            }
+            return i >= 0 ? cierres.get(i) : List.of();
+        }
+    }
+
+    /**
+     * Instantánea de un tenant: tramos de los cierres puntuales y reglas recurrentes con
+     * sus tramos ya expandidos por mes
+     */
+    private static final class IndiceTenant {
+        private final Tramos puntuales;
+        private final List<HorarioEspecial> reglas;
+        private final Map<YearMonth, Tramos> recurrentesPorMes = new ConcurrentHashMap<>();
+        private final int numeroCierres;
+        private final long construido = System.currentTimeMillis();
+
+        private IndiceTenant(List<HorarioEspecial> cierres) {
+            puntuales = new Tramos(cierres.stream()
+                    .filter(c -> !c.esRecurrente())
+                    .map(CierreIndexado::desde)
+                    .sorted(ORDEN)
+                    .toList());
+            // Copias sin persistir: la entidad puede seguir en el contexto de quien la cargó
+            reglas = cierres.stream()
+                    .filter(HorarioEspecial::esRecurrente)
+                    .map(c -> c.ocurrencia(c.getFechaInicio()))
+                    .toList();
+            numeroCierres = cierres.size();
+        }
+
+        List<CierreIndexado> cierresEn(LocalDate fecha) {
+            List<CierreIndexado> fijos = puntuales.cierresEn(fecha);
+            if (reglas.isEmpty()) {
+                return fijos;
+            }
+            List<CierreIndexado> recurrentes = recurrentesPorMes
+                    .computeIfAbsent(YearMonth.from(fecha), this::expandir)
+                    .cierresEn(fecha);
+            if (recurrentes.isEmpty()) {
+                return fijos;
+            }
+            List<CierreIndexado> todos = new ArrayList<>(fijos);
+            todos.addAll(recurrentes);
+            todos.sort(ORDEN);
+            return todos;
+        }
+
+        private Tramos expandir(YearMonth mes) {
+            LocalDate desde = mes.atDay(1);
+            LocalDate hasta = mes.atEndOfMonth();
+            List<CierreIndexado> ocurrencias = new ArrayList<>();
+            for (HorarioEspecial regla : reglas) {
+                for (LocalDate inicio : regla.iniciosOcurrenciasEntre(desde, hasta)) {
+                    ocurrencias.add(CierreIndexado.desde(regla.ocurrencia(inicio)));
+                }
+            }
+            return new Tramos(ocurrencias);
+        }
+    }
+
+    // Mismo orden que ORDER BY tipo_cierre en las consultas (texto del enum)
+    private static final Comparator<CierreIndexado> ORDEN = Comparator
+            .comparing((CierreIndexado c) -> c.tipoCierre().name())
+            .thenComparing(CierreIndexado::fechaInicio);
+
+    @Autowired
+    private HorarioEspecialRepository horarioEspecialRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${indice-cierres.ttl-ms:300000}")
+    private long ttlMs;
+
+    private final Map<String, IndiceTenant> indices = new ConcurrentHashMap<>();
+
+    // ========================================
+    // CONSULTAS
+    // ========================================
+
+    /**
+     * Cierres de la fecha que afectan al salón, al empleado o al servicio
+     */
+    public List<CierreIndexado> cierresAplicables(String tenantId, LocalDate fecha,
+                                                  String empleadoId, String servicioId) {
+        return indice(tenantId).cierresEn(fecha).stream()
+                .filter(c -> c.aplicaA(empleadoId, servicioId))
+                .toList();
+    }
+
+    /**
+     * Cierres que impiden una cita en esa fecha y hora con ese empleado y servicio
+     */
+    public List<CierreIndexado> bloqueos(String tenantId, LocalDateTime fechaHora,
+                                         String empleadoId, String servicioId) {
+        LocalTime hora = fechaHora.toLocalTime();
+        return indice(tenantId).cierresEn(fechaHora.toLocalDate()).stream()
+                .filter(c -> c.bloquea(hora, empleadoId, servicioId))
+                .toList();
+    }
+
+    /**
+     * Todos los cierres de la fecha, sin filtrar: para quien evalúa muchas horas,
+     * empleados y servicios del mismo día con CierreIndexado.bloquea
+     */
+    public List<CierreIndexado> cierresDelDia(String tenantId, LocalDate fecha) {
+        return indice(tenantId).cierresEn(fecha);
+    }
+
+    /**
+     * Si hay un cierre completo ese día
+     */
+    public boolean diaCerrado(String tenantId, LocalDate fecha) {
+        return indice(tenantId).cierresEn(fecha).stream()
+                .anyMatch(c -> c.tipoCierre() == TipoCierre.CERRADO_COMPLETO);
+    }
+
+    // ========================================
+    // CONSTRUCCIÓN E INVALIDACIÓN
+    // ========================================
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEvento(EventoDashboard evento) {
+        if (EventoDashboard.CANAL_CIERRES.equals(evento.canal())) {
+            reconstruir(evento.tenantId());
+        }
+    }
+
+    public void reconstruir(String tenantId) {
+        try {
+            indices.put(tenantId, construir(tenantId));
+        } catch (Exception e) {
+            // La siguiente consulta lo volverá a intentar
+            indices.remove(tenantId);
+            logger.error("Error reconstruyendo el índice de cierres del tenant {}: {}", tenantId, e.getMessage());
+        }
+    }
+
+    private IndiceTenant indice(String tenantId) {
+        IndiceTenant actual = indices.get(tenantId);
+        if (actual != null && System.currentTimeMillis() - actual.construido < ttlMs) {
+            return actual;
+        }
+        return indices.compute(tenantId, (id, previo) ->
+                previo != null && previo != actual ? previo : construir(id));
+    }
+
+    private IndiceTenant construir(String tenantId) {
+        // Transacción no readOnly: tras el commit de un cierre se lee del primario, que ya lo
+        // tiene (la réplica podría ir por detrás). Dentro de otra transacción se une a ella.
+        List<HorarioEspecial> cierres = transactionTemplate.execute(status ->
+                horarioEspecialRepository.findVigentes(tenantId, LocalDate.now().minusDays(1)));
+
+        IndiceTenant indice = new IndiceTenant(cierres);
+        logger.debug("Índice de cierres del tenant {}: {} cierres ({} recurrentes), {} tramos puntuales",
+                tenantId, indice.numeroCierres, indice.reglas.size(), indice.puntuales.limites.length);
+        return indice;
+    }
+}
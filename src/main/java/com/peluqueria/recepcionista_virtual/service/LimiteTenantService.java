@@ -0,0 +1,300 @@
+package com.peluqueria.recepcionista_virtual.service;
+
+import com.peluqueria.recepcionista_virtual.model.ConfiguracionTenant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 🚦 LÍMITES DE USO POR TENANT
+ *
+ * Cada tenant tiene, para la API y para las llamadas a OpenAI por separado:
+ *
+ * - Un cubo de tokens (ritmo por minuto + ráfaga) sin bloqueos: el estado es un par
+ *   inmutable tokens/instante que se reemplaza con compareAndSet
+ * - Un compartimento (bulkhead) que limita las peticiones en curso a la vez, para que
+ *   un tenant no acapare el pool de conexiones ni la cuota de OpenAI. Por defecto es
+ *   menor que el pool primario (3 conexiones), así siempre queda alguna para los demás
+ *
+ * Además hay un tope global de peticiones de API en curso entre todos los tenants
+ * (limites.global.concurrentes): por encima se responde 429 en lugar de dejar hilos
+ * esperando conexión hasta el timeout de Hikari.
+ *
+ * Los límites salen de configuracion_tenant (limite_*) o, si no están, del plan del
+ * tenant (limites.planes.<plan>.* en application.yml). Se releen cada limites.recarga-ms.
+ */
+@Service
+public class LimiteTenantService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LimiteTenantService.class);
+
+    public enum Recurso {
+        API, IA
+    }
+
+    /**
+     * Resultado de pedir paso: si se concede hay que cerrarlo al terminar (libera el hueco
+     * del compartimento); si no, reintentarEnSegundos indica cuándo volver a probar
+     */
+    public static final class Permiso implements AutoCloseable {
+        private final AtomicInteger enCurso;
+        private final AtomicInteger enCursoGlobal;
+        private final long reintentarEnSegundos;
+        private final String motivo;
+        private final AtomicBoolean cerrado = new AtomicBoolean();
+
+        private Permiso(AtomicInteger enCurso, AtomicInteger enCursoGlobal, long reintentarEnSegundos, String motivo) {
+            this.enCurso = enCurso;
+            this.enCursoGlobal = enCursoGlobal;
+            this.reintentarEnSegundos = reintentarEnSegundos;
+            this.motivo = motivo;
+        }
+
+        private static Permiso concedido(AtomicInteger enCurso, AtomicInteger enCursoGlobal) {
+            return new Permiso(enCurso, enCursoGlobal, 0, null);
+        }
+
+        private static Permiso denegado(long reintentarEnSegundos, String motivo) {
+            return new Permiso(null, null, Math.max(1, reintentarEnSegundos), motivo);
+        }
+
+        public boolean isConcedido() {
+            return motivo == null;
+        }
+
+        public long getReintentarEnSegundos() {
+            return reintentarEnSegundos;
+        }
+
+        public String getMotivo() {
+            return motivo;
+        }
+
+        @Override
+        public void close() {
+            if (cerrado.compareAndSet(false, true)) {
+                if (enCurso != null) {
+                    enCurso.decrementAndGet();
+                }
+                if (enCursoGlobal != null) {
+                    enCursoGlobal.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private record Limites(int peticionesPorMinuto, int rafaga, int concurrentes,
+                           int iaPorMinuto, int iaConcurrentes) {
+    }
+
+    /**
+     * Cubo de tokens sin bloqueos
+     */
+    private static final class Cubo {
+        private record Estado(double tokens, long nanos) {
+        }
+
+        private final double capacidad;
+        private final double tokensPorNano;
+        private final AtomicReference<Estado> estado;
+
+        private Cubo(int capacidad, int porMinuto) {
+            this.capacidad = Math.max(1, capacidad);
+            this.tokensPorNano = Math.max(1, porMinuto) / 60_000_000_000.0;
+            this.estado = new AtomicReference<>(new Estado(this.capacidad, System.nanoTime()));
+        }
+
+        /**
+         * Consume un token; devuelve 0 si lo había o los nanos que faltan para el siguiente
+         */
+        private long consumir() {
+            while (true) {
+                Estado actual = estado.get();
+                long ahora = Math.max(actual.nanos(), System.nanoTime());
+                double tokens = Math.min(capacidad, actual.tokens() + (ahora - actual.nanos()) * tokensPorNano);
+                if (tokens < 1) {
+                    return (long) Math.ceil((1 - tokens) / tokensPorNano);
+                }
+                if (estado.compareAndSet(actual, new Estado(tokens - 1, ahora))) {
+                    return 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Cubos y contadores de un tenant. Los contadores en curso se conservan al recargar
+     * los límites para que los permisos ya concedidos se liberen en el mismo sitio.
+     */
+    private static final class EstadoTenant {
+        private final Limites limites;
+        private final Cubo api;
+        private final Cubo ia;
+        private final AtomicInteger apiEnCurso;
+        private final AtomicInteger iaEnCurso;
+        private final long cargado = System.currentTimeMillis();
+
+        private EstadoTenant(Limites limites, EstadoTenant previo) {
+            this.limites = limites;
+            boolean mismos = previo != null && previo.limites.equals(limites);
+            this.api = mismos ? previo.api : new Cubo(limites.rafaga(), limites.peticionesPorMinuto());
+            // Ráfaga de IA: lo equivalente a 10 segundos de ritmo
+            this.ia = mismos ? previo.ia : new Cubo(Math.max(1, limites.iaPorMinuto() / 6), limites.iaPorMinuto());
+            this.apiEnCurso = previo != null ? previo.apiEnCurso : new AtomicInteger();
+            this.iaEnCurso = previo != null ? previo.iaEnCurso : new AtomicInteger();
+        }
+    }
+
+    @Autowired
+    private TenantConfigService tenantConfigService;
+
+    @Autowired
+    private Environment env;
+
+    @Value("${limites.habilitado:true}")
+    private boolean habilitado;
+
+    @Value("${limites.recarga-ms:300000}")
+    private long recargaMs;
+
+    @Value("${limites.global.concurrentes:6}")
+    private int globalConcurrentes;
+
+    private final Map<String, EstadoTenant> tenants = new ConcurrentHashMap<>();
+
+    // Peticiones de API en curso de todos los tenants
+    private final AtomicInteger apiEnCursoGlobal = new AtomicInteger();
+
+    /**
+     * Pide paso para una petición del tenant. Primero los compartimentos (del tenant y, en
+     * la API, el global) y después el cubo, para no gastar un token en una petición que se
+     * va a rechazar.
+     */
+    public Permiso adquirir(String tenantId, Recurso recurso) {
+        if (!habilitado || tenantId == null) {
+            return Permiso.concedido(null, null);
+        }
+
+        EstadoTenant estado = estado(tenantId);
+        AtomicInteger enCurso = recurso == Recurso.IA ? estado.iaEnCurso : estado.apiEnCurso;
+        int maximo = recurso == Recurso.IA ? estado.limites.iaConcurrentes() : estado.limites.concurrentes();
+        Cubo cubo = recurso == Recurso.IA ? estado.ia : estado.api;
+
+        if (!ocupar(enCurso, maximo)) {
+            logger.debug("Tenant {} con {} peticiones {} en curso (máximo {})", tenantId, enCurso.get(), recurso, maximo);
+            return Permiso.denegado(1, "Demasiadas peticiones simultáneas");
+        }
+
+        AtomicInteger global = recurso == Recurso.API ? apiEnCursoGlobal : null;
+        if (global != null && !ocupar(global, globalConcurrentes)) {
+            enCurso.decrementAndGet();
+            logger.debug("{} peticiones de API en curso en total (máximo {}), rechazada la del tenant {}",
+                    global.get(), globalConcurrentes, tenantId);
+            return Permiso.denegado(1, "Servicio saturado, demasiadas peticiones simultáneas");
+        }
+
+        long espera = cubo.consumir();
+        if (espera > 0) {
+            enCurso.decrementAndGet();
+            if (global != null) {
+                global.decrementAndGet();
+            }
+            logger.debug("Tenant {} sin tokens de {} (siguiente en {} ms)", tenantId, recurso, espera / 1_000_000);
+            return Permiso.denegado((espera + 999_999_999L) / 1_000_000_000L, "Límite de peticiones por minuto superado");
+        }
+        return Permiso.concedido(enCurso, global);
+    }
+
+    /**
+     * Solo el ritmo por minuto, sin ocupar hueco en los compartimentos ni en el tope
+     * global: para las llamadas de voz, que pasan casi todo el tiempo esperando a OpenAI
+     * (limitado aparte con Recurso.IA) y no deben quitar sitio a la API ni ser rechazadas
+     * porque otros salones tengan llamadas en curso
+     */
+    public Permiso comprobarRitmo(String tenantId, Recurso recurso) {
+        if (!habilitado || tenantId == null) {
+            return Permiso.concedido(null, null);
+        }
+        EstadoTenant estado = estado(tenantId);
+        long espera = (recurso == Recurso.IA ? estado.ia : estado.api).consumir();
+        if (espera > 0) {
+            logger.debug("Tenant {} sin tokens de {} (siguiente en {} ms)", tenantId, recurso, espera / 1_000_000);
+            return Permiso.denegado((espera + 999_999_999L) / 1_000_000_000L, "Límite de peticiones por minuto superado");
+        }
+        return Permiso.concedido(null, null);
+    }
+
+    /**
+     * Suma uno al contador si no ha llegado al máximo
+     */
+    private static boolean ocupar(AtomicInteger enCurso, int maximo) {
+        int actuales;
+        do {
+            actuales = enCurso.get();
+            if (actuales >= maximo) {
+                return false;
+            }
+        } while (!enCurso.compareAndSet(actuales, actuales + 1));
+        return true;
+    }
+
+    /**
+     * Olvida los límites del tenant para releerlos en la siguiente petición (cambio de plan)
+     */
+    public void recargar(String tenantId) {
+        tenants.computeIfPresent(tenantId, (id, previo) -> new EstadoTenant(leerLimites(id), previo));
+    }
+
+    private EstadoTenant estado(String tenantId) {
+        EstadoTenant actual = tenants.get(tenantId);
+        if (actual != null && System.currentTimeMillis() - actual.cargado < recargaMs) {
+            return actual;
+        }
+        return tenants.compute(tenantId, (id, previo) ->
+                previo != null && previo != actual ? previo : new EstadoTenant(leerLimites(id), previo));
+    }
+
+    /**
+     * Override del tenant, si no el de su plan, si no el valor por defecto
+     */
+    private Limites leerLimites(String tenantId) {
+        Map<String, String> config;
+        try {
+            config = tenantConfigService.obtenerConfiguracion(tenantId);
+        } catch (Exception e) {
+            logger.warn("No se pudo leer la configuración de límites del tenant {}: {}", tenantId, e.getMessage());
+            config = Map.of();
+        }
+        String plan = config.get(ConfiguracionTenant.Claves.PLAN);
+        String prefijoPlan = plan != null ? "limites.planes." + plan.trim().toLowerCase() + "." : null;
+
+        return new Limites(
+                limite(config, ConfiguracionTenant.Claves.LIMITE_PETICIONES_MINUTO, prefijoPlan, "peticiones-por-minuto", 300),
+                limite(config, ConfiguracionTenant.Claves.LIMITE_RAFAGA, prefijoPlan, "rafaga", 60),
+                limite(config, ConfiguracionTenant.Claves.LIMITE_CONCURRENTES, prefijoPlan, "concurrentes", 2),
+                limite(config, ConfiguracionTenant.Claves.LIMITE_IA_MINUTO, prefijoPlan, "ia-por-minuto", 60),
+                limite(config, ConfiguracionTenant.Claves.LIMITE_IA_CONCURRENTES, prefijoPlan, "ia-concurrentes", 2));
+    }
+
+    private int limite(Map<String, String> config, String clave, String prefijoPlan, String propiedad, int porDefecto) {
+        String override = config.get(clave);
+        if (override != null) {
+            try {
+                return Math.max(1, Integer.parseInt(override.trim()));
+            } catch (NumberFormatException e) {
+                logger.warn("{} inválido: {}", clave, override);
+            }
+        }
+        int general = env.getProperty("limites.por-defecto." + propiedad, Integer.class, porDefecto);
+        return prefijoPlan != null ? env.getProperty(prefijoPlan + propiedad, Integer.class, general) : general;
+    }
+}
@@ -1,26 +1,43 @@
 package com.peluqueria.recepcionista_virtual.service;
 
+import com.peluqueria.recepcionista_virtual.dto.EventoDashboard;
 import com.peluqueria.recepcionista_virtual.model.LogLlamada;
+import com.peluqueria.recepcionista_virtual.model.UuidV7Generator;
 import com.peluqueria.recepcionista_virtual.repository.LogLlamadaRepository;
+import com.peluqueria.recepcionista_virtual.util.RangoFechas;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.math.BigDecimal;
 
 @Service
 @Transactional
 public class LogLlamadaService {
 
+    /**
+     * Las actualizaciones llegan durante o justo después de la llamada:
+     * se busca primero en esta ventana para no recorrer particiones antiguas
+     */
+    private static final int VENTANA_LLAMADA_ACTIVA_DIAS = 2;
+
     @Autowired
     private LogLlamadaRepository logLlamadaRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     /**
      * Obtener todas las llamadas de un tenant específico
      */
+    @Transactional(readOnly = true)
     public List<LogLlamada> getLlamadasByTenantId(String tenantId) {
         return logLlamadaRepository.findByTenantIdOrderByFechaInicioDesc(tenantId);
     }
@@ -28,6 +45,7 @@ public class LogLlamadaService {
     /**
      * Obtener llamadas de un tenant con paginación
      */
+    @Transactional(readOnly = true)
     public Page<LogLlamada> getLlamadasByTenantId(String tenantId, Pageable pageable) {
         return logLlamadaRepository.findByTenantIdOrderByFechaInicioDesc(tenantId, pageable);
     }
@@ -35,6 +53,7 @@ public class LogLlamadaService {
     /**
      * Obtener llamada por CallSid
      */
+    @Transactional(readOnly = true)
     public LogLlamada getLlamadaByCallSid(String callSid, String tenantId) {
         return logLlamadaRepository.findByCallSidAndTenantId(callSid, tenantId);
     }
@@ -42,6 +61,7 @@ public class LogLlamadaService {
     /**
      * Obtener llamadas por estado - CORREGIDO: usar String
      */
+    @Transactional(readOnly = true)
     public List<LogLlamada> getLlamadasByEstado(String tenantId, String estado) {
         return logLlamadaRepository.findByTenantIdAndEstadoOrderByFechaInicioDesc(tenantId, estado);
     }
@@ -49,6 +69,7 @@ public class LogLlamadaService {
     /**
      * Obtener llamadas por dirección (entrantes/salientes) - CORREGIDO: usar String
      */
+    @Transactional(readOnly = true)
     public List<LogLlamada> getLlamadasByDireccion(String tenantId, String direccion) {
         return logLlamadaRepository.findByTenantIdAndDireccionOrderByFechaInicioDesc(tenantId, direccion);
     }
@@ -56,6 +77,7 @@ public class LogLlamadaService {
     /**
      * Obtener llamadas en un rango de fechas
      */
+    @Transactional(readOnly = true)
     public List<LogLlamada> getLlamadasByFecha(
             String tenantId,
             LocalDateTime fechaInicio,
@@ -67,6 +89,7 @@ public class LogLlamadaService {
     /**
      * Obtener llamadas por número de origen
      */
+    @Transactional(readOnly = true)
     public List<LogLlamada> getLlamadasByNumeroOrigen(String tenantId, String numeroOrigen) {
         return logLlamadaRepository.findByTenantIdAndNumeroOrigenOrderByFechaInicioDesc(tenantId, numeroOrigen);
     }
@@ -90,32 +113,41 @@ public class LogLlamadaService {
         logLlamada.setFechaInicio(LocalDateTime.now());
         logLlamada.setEstado("INICIADA");    // String directo
 
-        return logLlamadaRepository.save(logLlamada);
+        LogLlamada guardada = logLlamadaRepository.save(logLlamada);
+        eventPublisher.publishEvent(EventoDashboard.deLlamada(guardada, "iniciada"));
+        return guardada;
     }
 
     /**
      * Guardar o actualizar llamada
      */
     public LogLlamada guardarLlamada(LogLlamada logLlamada) {
+        // El constructor ya asigna un UuidV7: la novedad se decide contra la BD
         if (logLlamada.getId() == null) {
-            logLlamada.setId(java.util.UUID.randomUUID().toString());
+            logLlamada.setId(UuidV7Generator.generar());
         }
-        return logLlamadaRepository.save(logLlamada);
+        boolean nueva = !logLlamadaRepository.existsById(logLlamada.getId());
+        LogLlamada guardada = logLlamadaRepository.save(logLlamada);
+        eventPublisher.publishEvent(EventoDashboard.deLlamada(guardada, nueva ? "iniciada" : "actualizada"));
+        return guardada;
     }
 
     /**
      * Actualizar estado de llamada - CORREGIDO: usar String para estado
      */
     public LogLlamada actualizarEstado(String callSid, String tenantId, String nuevoEstado) {
-        LogLlamada llamada = logLlamadaRepository.findByCallSidAndTenantId(callSid, tenantId);
+        LogLlamada llamada = buscarLlamadaReciente(callSid, tenantId);
         if (llamada != null) {
             llamada.setEstado(nuevoEstado);  // String directo
-            if ("COMPLETADA".equals(nuevoEstado) ||
+            boolean terminal = "COMPLETADA".equals(nuevoEstado) ||
                     "FALLIDA".equals(nuevoEstado) ||
-                    "ABANDONADA".equals(nuevoEstado)) {
+                    "ABANDONADA".equals(nuevoEstado);
+            if (terminal) {
                 llamada.finalizarLlamada();
             }
-            return logLlamadaRepository.save(llamada);
+            LogLlamada guardada = logLlamadaRepository.save(llamada);
+            eventPublisher.publishEvent(EventoDashboard.deLlamada(guardada, terminal ? "finalizada" : "actualizada"));
+            return guardada;
         }
         return null;
     }
@@ -124,10 +156,12 @@ public class LogLlamadaService {
      * Finalizar llamada
      */
     public LogLlamada finalizarLlamada(String callSid, String tenantId) {
-        LogLlamada llamada = logLlamadaRepository.findByCallSidAndTenantId(callSid, tenantId);
+        LogLlamada llamada = buscarLlamadaReciente(callSid, tenantId);
         if (llamada != null) {
             llamada.finalizarLlamada();
-            return logLlamadaRepository.save(llamada);
+            LogLlamada guardada = logLlamadaRepository.save(llamada);
+            eventPublisher.publishEvent(EventoDashboard.deLlamada(guardada, "finalizada"));
+            return guardada;
         }
         return null;
     }
@@ -136,7 +170,7 @@ public class LogLlamadaService {
      * Agregar transcripción a la llamada
      */
     public LogLlamada agregarTranscripcion(String callSid, String tenantId, String transcripcion) {
-        LogLlamada llamada = logLlamadaRepository.findByCallSidAndTenantId(callSid, tenantId);
+        LogLlamada llamada = buscarLlamadaReciente(callSid, tenantId);
         if (llamada != null) {
             llamada.setTranscripcion(transcripcion);
             return logLlamadaRepository.save(llamada);
@@ -148,7 +182,7 @@ public class LogLlamadaService {
      * Vincular llamada con cita creada - CORREGIDO: usar String para citaId
      */
     public LogLlamada vincularConCita(String callSid, String tenantId, String citaId) {
-        LogLlamada llamada = logLlamadaRepository.findByCallSidAndTenantId(callSid, tenantId);
+        LogLlamada llamada = buscarLlamadaReciente(callSid, tenantId);
         if (llamada != null) {
             llamada.setCitaCreadaId(citaId);  // String directo
             return logLlamadaRepository.save(llamada);
@@ -156,25 +190,42 @@ public class LogLlamadaService {
         return null;
     }
 
+    /**
+     * Busca la llamada en las particiones recientes y, si no aparece, en todo el histórico
+     */
+    private LogLlamada buscarLlamadaReciente(String callSid, String tenantId) {
+        LogLlamada llamada = logLlamadaRepository.findByCallSidAndTenantIdAndFechaInicioAfter(
+                callSid, tenantId, LocalDateTime.now().minusDays(VENTANA_LLAMADA_ACTIVA_DIAS));
+        if (llamada == null) {
+            llamada = logLlamadaRepository.findByCallSidAndTenantId(callSid, tenantId);
+        }
+        return llamada;
+    }
+
     /**
      * Estadísticas de llamadas por tenant
      */
+    @Transactional(readOnly = true)
     public Long getTotalLlamadas(String tenantId) {
         return logLlamadaRepository.countByTenantId(tenantId);
     }
 
+    @Transactional(readOnly = true)
     public Long getLlamadasEntrantes(String tenantId) {
         return logLlamadaRepository.countByTenantIdAndDireccion(tenantId, "entrante");
     }
 
+    @Transactional(readOnly = true)
     public Long getLlamadasSalientes(String tenantId) {
         return logLlamadaRepository.countByTenantIdAndDireccion(tenantId, "saliente");
     }
 
+    @Transactional(readOnly = true)
     public Long getLlamadasCompletadas(String tenantId) {
         return logLlamadaRepository.countByTenantIdAndEstado(tenantId, "COMPLETADA");
     }
 
+    @Transactional(readOnly = true)
     public Long getLlamadasConCitaCreada(String tenantId) {
         return logLlamadaRepository.countByTenantIdAndCitaCreadaIdIsNotNull(tenantId);
     }
@@ -182,28 +233,53 @@ public class LogLlamadaService {
     /**
      * Calcular costo total de llamadas por tenant
      */
+    @Transactional(readOnly = true)
     public BigDecimal getCostoTotalLlamadas(String tenantId) {
-        List<LogLlamada> llamadas = logLlamadaRepository.findByTenantId(tenantId);
-        return llamadas.stream()
-                .filter(llamada -> llamada.getCosto() != null)
-                .map(LogLlamada::getCosto)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return logLlamadaRepository.sumCostoByTenantId(tenantId);
     }
 
     /**
      * Obtener duración total de llamadas por tenant (en segundos)
      */
+    @Transactional(readOnly = true)
     public Long getDuracionTotalLlamadas(String tenantId) {
-        List<LogLlamada> llamadas = logLlamadaRepository.findByTenantId(tenantId);
-        return llamadas.stream()
-                .filter(llamada -> llamada.getDuracionSegundos() != null)
-                .mapToLong(LogLlamada::getDuracionSegundos)
-                .sum();
+        return logLlamadaRepository.sumDuracionByTenantId(tenantId);
+    }
+
+    /**
+     * Estadísticas de /stats para el rango [desde, hasta] (días incluidos), leídas del
+     * agregado diario llamadas_diarias. Sin fechas cubre todo el histórico.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getEstadisticas(String tenantId, LocalDate desde, LocalDate hasta) {
+        LocalDate inicio = desde != null ? desde : RangoFechas.INICIO_HISTORICO;
+        LocalDate fin = hasta != null ? hasta : LocalDate.now();
+
+        List<Object[]> filas = logLlamadaRepository.agregarEstadisticas(tenantId, inicio, fin);
+        Object[] fila = filas.isEmpty() ? new Object[8] : filas.get(0);
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalLlamadas", aLong(fila[0]));
+        stats.put("llamadasEntrantes", aLong(fila[1]));
+        stats.put("llamadasSalientes", aLong(fila[2]));
+        stats.put("llamadasCompletadas", aLong(fila[3]));
+        stats.put("llamadasConCita", aLong(fila[4]));
+        stats.put("costoTotal", fila[5] instanceof BigDecimal costo ? costo : BigDecimal.ZERO);
+        stats.put("duracionTotalSegundos", aLong(fila[6]));
+        stats.put("duracionMediaSegundos", fila[7] != null ? ((Number) fila[7]).doubleValue() : 0.0);
+        stats.put("desde", inicio.toString());
+        stats.put("hasta", fin.toString());
+        return stats;
+    }
+
+    private static long aLong(Object valor) {
+        return valor != null ? ((Number) valor).longValue() : 0L;
     }
 
     /**
      * Buscar llamada por ID (verificando tenant) - CORREGIDO: usar String como en el modelo
      */
+    @Transactional(readOnly = true)
     public LogLlamada getLlamadaById(String id, String tenantId) {
         return logLlamadaRepository.findByIdAndTenantId(id, tenantId);
     }
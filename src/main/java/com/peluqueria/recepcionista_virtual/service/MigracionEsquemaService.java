@@ -0,0 +1,477 @@
+package com.peluqueria.recepcionista_virtual.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Ajustes de esquema que ddl-auto=update no sabe aplicar: cambios de tipo de
+ * columnas existentes e índices especiales de Postgres (GIN, expresiones).
+ *
+ * Todas las operaciones son idempotentes y se ejecutan al arrancar.
+ */
+@Service
+public class MigracionEsquemaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MigracionEsquemaService.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void aplicarMigraciones() {
+        ejecutar("horarios_especiales JSONB", this::migrarListasAfectadosAJsonb);
+        ejecutar("estadisticas_diarias", this::instalarAgregadoDiarioCitas);
+        ejecutar("llamadas_diarias", this::instalarAgregadoDiarioLlamadas);
+        ejecutar("conversaciones_diarias", this::instalarAgregadoDiarioConversaciones);
+        ejecutar("demanda_horaria", this::crearTablaDemandaHoraria);
+        ejecutar("clientes_metricas", this::instalarMetricasClientes);
+        ejecutar("busqueda de clientes", this::indexarBusquedaClientes);
+    }
+
+    /**
+     * empleados_afectados / servicios_afectados: TEXT con JSON -> JSONB con índice GIN
+     */
+    private void migrarListasAfectadosAJsonb() {
+        for (String columna : List.of("empleados_afectados", "servicios_afectados")) {
+            String tipo = tipoColumna("horarios_especiales", columna);
+            if (tipo != null && !"jsonb".equals(tipo)) {
+                jdbcTemplate.execute(String.format(
+                        "ALTER TABLE horarios_especiales ALTER COLUMN %s TYPE jsonb " +
+                                "USING CASE WHEN %s IS NULL OR btrim(%s) = '' THEN NULL ELSE %s::jsonb END",
+                        columna, columna, columna, columna));
+                logger.info("Columna horarios_especiales.{} convertida de {} a jsonb", columna, tipo);
+            }
+
+            // jsonb_path_ops: índice más compacto, suficiente para el operador @>
+            jdbcTemplate.execute(String.format(
+                    "CREATE INDEX IF NOT EXISTS idx_horarios_especiales_%s ON horarios_especiales " +
+                            "USING GIN (%s jsonb_path_ops)",
+                    columna, columna));
+        }
+    }
+
+    /**
+     * Trigger que mantiene estadisticas_diarias en la misma transacción que la cita.
+     * Cada cambio resta la fila antigua de su grupo y suma la nueva (upsert por clave).
+     * La primera vez se reconstruye el agregado completo bajo bloqueo de citas.
+     */
+    private void instalarAgregadoDiarioCitas() {
+        jdbcTemplate.execute(
+                "CREATE OR REPLACE FUNCTION fn_citas_estadisticas_diarias() RETURNS trigger AS $$ " +
+                "BEGIN " +
+                "  IF TG_OP IN ('UPDATE', 'DELETE') AND OLD.fecha_hora IS NOT NULL THEN " +
+                "    INSERT INTO estadisticas_diarias AS e " +
+                "      (tenant_id, fecha, empleado_id, servicio_id, estado, num_citas, minutos, ingresos) " +
+                "    VALUES (OLD.tenant_id, OLD.fecha_hora::date, COALESCE(OLD.empleado_id, ''), OLD.servicio_id, " +
+                "      COALESCE(OLD.estado, 'PENDIENTE'), -1, -COALESCE(OLD.duracion_minutos, 0), -COALESCE(OLD.precio, 0)) " +
+                "    ON CONFLICT (tenant_id, fecha, empleado_id, servicio_id, estado) DO UPDATE SET " +
+                "      num_citas = e.num_citas + EXCLUDED.num_citas, " +
+                "      minutos = e.minutos + EXCLUDED.minutos, " +
+                "      ingresos = e.ingresos + EXCLUDED.ingresos; " +
+                "  END IF; " +
+                "  IF TG_OP IN ('INSERT', 'UPDATE') AND NEW.fecha_hora IS NOT NULL THEN " +
+                "    INSERT INTO estadisticas_diarias AS e " +
+                "      (tenant_id, fecha, empleado_id, servicio_id, estado, num_citas, minutos, ingresos) " +
+                "    VALUES (NEW.tenant_id, NEW.fecha_hora::date, COALESCE(NEW.empleado_id, ''), NEW.servicio_id, " +
+                "      COALESCE(NEW.estado, 'PENDIENTE'), 1, COALESCE(NEW.duracion_minutos, 0), COALESCE(NEW.precio, 0)) " +
+                "    ON CONFLICT (tenant_id, fecha, empleado_id, servicio_id, estado) DO UPDATE SET " +
+                "      num_citas = e.num_citas + EXCLUDED.num_citas, " +
+                "      minutos = e.minutos + EXCLUDED.minutos, " +
+                "      ingresos = e.ingresos + EXCLUDED.ingresos; " +
+                "  END IF; " +
+                "  RETURN NULL; " +
+                "END $$ LANGUAGE plpgsql");
+
+        Boolean instalado = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_trigger WHERE tgname = 'trg_citas_estadisticas_diarias')",
+                Boolean.class);
+        if (Boolean.TRUE.equals(instalado)) {
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // Sin escrituras concurrentes en citas mientras se reconstruye y se crea el trigger
+            jdbcTemplate.execute("LOCK TABLE citas IN SHARE ROW EXCLUSIVE MODE");
+            jdbcTemplate.execute("DELETE FROM estadisticas_diarias");
+            jdbcTemplate.execute(
+                    "INSERT INTO estadisticas_diarias " +
+                            "(tenant_id, fecha, empleado_id, servicio_id, estado, num_citas, minutos, ingresos) " +
+                            "SELECT tenant_id, fecha_hora::date, COALESCE(empleado_id, ''), servicio_id, " +
+                            "COALESCE(estado, 'PENDIENTE'), COUNT(*), COALESCE(SUM(duracion_minutos), 0), " +
+                            "COALESCE(SUM(precio), 0) " +
+                            "FROM citas WHERE fecha_hora IS NOT NULL " +
+                            "GROUP BY 1, 2, 3, 4, 5");
+
+            jdbcTemplate.execute(
+                    "CREATE TRIGGER trg_citas_estadisticas_diarias " +
+                            "AFTER INSERT OR DELETE ON citas " +
+                            "FOR EACH ROW EXECUTE FUNCTION fn_citas_estadisticas_diarias()");
+            // Hibernate reescribe todas las columnas en cada UPDATE: solo actuar si cambia algo agregado
+            jdbcTemplate.execute(
+                    "CREATE TRIGGER trg_citas_estadisticas_diarias_upd " +
+                            "AFTER UPDATE ON citas FOR EACH ROW " +
+                            "WHEN ((OLD.tenant_id, OLD.fecha_hora, OLD.empleado_id, OLD.servicio_id, OLD.estado, " +
+                            "OLD.duracion_minutos, OLD.precio) IS DISTINCT FROM " +
+                            "(NEW.tenant_id, NEW.fecha_hora, NEW.empleado_id, NEW.servicio_id, NEW.estado, " +
+                            "NEW.duracion_minutos, NEW.precio)) " +
+                            "EXECUTE FUNCTION fn_citas_estadisticas_diarias()");
+        });
+
+        logger.info("Agregado estadisticas_diarias reconstruido y trigger instalado");
+    }
+
+    /**
+     * Agregado diario de logs_llamadas por (tenant, día, dirección, estado, con cita) para
+     * /api/logs/llamadas/stats, mantenido por trigger igual que estadisticas_diarias.
+     * num_con_duracion cuenta las llamadas con duración (la media las ignora, como AVG).
+     * Al archivar o eliminar particiones por retención no se dispara el trigger: el
+     * agregado conserva esos meses
+     */
+    private void instalarAgregadoDiarioLlamadas() {
+        jdbcTemplate.execute(
+                "CREATE TABLE IF NOT EXISTS llamadas_diarias (" +
+                        "tenant_id VARCHAR(255) NOT NULL, " +
+                        "fecha DATE NOT NULL, " +
+                        "direccion VARCHAR(255) NOT NULL, " +
+                        "estado VARCHAR(255) NOT NULL, " +
+                        "con_cita BOOLEAN NOT NULL, " +
+                        "num_llamadas BIGINT NOT NULL DEFAULT 0, " +
+                        "costo NUMERIC(16, 4) NOT NULL DEFAULT 0, " +
+                        "duracion_segundos BIGINT NOT NULL DEFAULT 0, " +
+                        "num_con_duracion BIGINT NOT NULL DEFAULT 0, " +
+                        "PRIMARY KEY (tenant_id, fecha, direccion, estado, con_cita))");
+
+        jdbcTemplate.execute(
+                "CREATE OR REPLACE FUNCTION fn_logs_llamadas_diarias() RETURNS trigger AS $$ " +
+                "BEGIN " +
+                "  IF TG_OP IN ('UPDATE', 'DELETE') THEN " +
+                "    INSERT INTO llamadas_diarias AS e (tenant_id, fecha, direccion, estado, con_cita, " +
+                "      num_llamadas, costo, duracion_segundos, num_con_duracion) " +
+                "    VALUES (OLD.tenant_id, OLD.fecha_inicio::date, COALESCE(OLD.direccion, ''), OLD.estado, " +
+                "      OLD.cita_creada_id IS NOT NULL, -1, -COALESCE(OLD.costo, 0), -COALESCE(OLD.duracion_segundos, 0), " +
+                "      CASE WHEN OLD.duracion_segundos IS NULL THEN 0 ELSE -1 END) " +
+                "    ON CONFLICT (tenant_id, fecha, direccion, estado, con_cita) DO UPDATE SET " +
+                "      num_llamadas = e.num_llamadas + EXCLUDED.num_llamadas, " +
+                "      costo = e.costo + EXCLUDED.costo, " +
+                "      duracion_segundos = e.duracion_segundos + EXCLUDED.duracion_segundos, " +
+                "      num_con_duracion = e.num_con_duracion + EXCLUDED.num_con_duracion; " +
+                "  END IF; " +
+                "  IF TG_OP IN ('INSERT', 'UPDATE') THEN " +
+                "    INSERT INTO llamadas_diarias AS e (tenant_id, fecha, direccion, estado, con_cita, " +
+                "      num_llamadas, costo, duracion_segundos, num_con_duracion) " +
+                "    VALUES (NEW.tenant_id, NEW.fecha_inicio::date, COALESCE(NEW.direccion, ''), NEW.estado, " +
+                "      NEW.cita_creada_id IS NOT NULL, 1, COALESCE(NEW.costo, 0), COALESCE(NEW.duracion_segundos, 0), " +
+                "      CASE WHEN NEW.duracion_segundos IS NULL THEN 0 ELSE 1 END) " +
+                "    ON CONFLICT (tenant_id, fecha, direccion, estado, con_cita) DO UPDATE SET " +
+                "      num_llamadas = e.num_llamadas + EXCLUDED.num_llamadas, " +
+                "      costo = e.costo + EXCLUDED.costo, " +
+                "      duracion_segundos = e.duracion_segundos + EXCLUDED.duracion_segundos, " +
+                "      num_con_duracion = e.num_con_duracion + EXCLUDED.num_con_duracion; " +
+                "  END IF; " +
+                "  RETURN NULL; " +
+                "END $$ LANGUAGE plpgsql");
+
+        instalarTriggerAgregado("logs_llamadas", "trg_logs_llamadas_diarias", "fn_logs_llamadas_diarias",
+                List.of("tenant_id", "fecha_inicio", "direccion", "estado", "cita_creada_id IS NOT NULL",
+                        "costo", "duracion_segundos"),
+                "DELETE FROM llamadas_diarias",
+                "INSERT INTO llamadas_diarias (tenant_id, fecha, direccion, estado, con_cita, " +
+                        "num_llamadas, costo, duracion_segundos, num_con_duracion) " +
+                        "SELECT tenant_id, fecha_inicio::date, COALESCE(direccion, ''), estado, " +
+                        "cita_creada_id IS NOT NULL, COUNT(*), COALESCE(SUM(costo), 0), " +
+                        "COALESCE(SUM(duracion_segundos), 0), COUNT(duracion_segundos) " +
+                        "FROM logs_llamadas GROUP BY 1, 2, 3, 4, 5");
+    }
+
+    /**
+     * Agregado diario de conversaciones_ia por (tenant, día, canal, exitosa) para
+     * /api/conversaciones/stats; mismas reglas que llamadas_diarias
+     */
+    private void instalarAgregadoDiarioConversaciones() {
+        jdbcTemplate.execute(
+                "CREATE TABLE IF NOT EXISTS conversaciones_diarias (" +
+                        "tenant_id VARCHAR(255) NOT NULL, " +
+                        "fecha DATE NOT NULL, " +
+                        "canal VARCHAR(255) NOT NULL, " +
+                        "exitosa BOOLEAN NOT NULL, " +
+                        "num_conversaciones BIGINT NOT NULL DEFAULT 0, " +
+                        "tokens BIGINT NOT NULL DEFAULT 0, " +
+                        "PRIMARY KEY (tenant_id, fecha, canal, exitosa))");
+
+        jdbcTemplate.execute(
+                "CREATE OR REPLACE FUNCTION fn_conversaciones_ia_diarias() RETURNS trigger AS $$ " +
+                "BEGIN " +
+                "  IF TG_OP IN ('UPDATE', 'DELETE') THEN " +
+                "    INSERT INTO conversaciones_diarias AS e (tenant_id, fecha, canal, exitosa, num_conversaciones, tokens) " +
+                "    VALUES (OLD.tenant_id, OLD.\"timestamp\"::date, OLD.canal, COALESCE(OLD.exitoso, false), " +
+                "      -1, -COALESCE(OLD.tokens_usados, 0)) " +
+                "    ON CONFLICT (tenant_id, fecha, canal, exitosa) DO UPDATE SET " +
+                "      num_conversaciones = e.num_conversaciones + EXCLUDED.num_conversaciones, " +
+                "      tokens = e.tokens + EXCLUDED.tokens; " +
+                "  END IF; " +
+                "  IF TG_OP IN ('INSERT', 'UPDATE') THEN " +
+                "    INSERT INTO conversaciones_diarias AS e (tenant_id, fecha, canal, exitosa, num_conversaciones, tokens) " +
+                "    VALUES (NEW.tenant_id, NEW.\"timestamp\"::date, NEW.canal, COALESCE(NEW.exitoso, false), " +
+                "      1, COALESCE(NEW.tokens_usados, 0)) " +
+                "    ON CONFLICT (tenant_id, fecha, canal, exitosa) DO UPDATE SET " +
+                "      num_conversaciones = e.num_conversaciones + EXCLUDED.num_conversaciones, " +
+                "      tokens = e.tokens + EXCLUDED.tokens; " +
+                "  END IF; " +
+                "  RETURN NULL; " +
+                "END $$ LANGUAGE plpgsql");
+
+        instalarTriggerAgregado("conversaciones_ia", "trg_conversaciones_ia_diarias", "fn_conversaciones_ia_diarias",
+                List.of("tenant_id", "\"timestamp\"", "canal", "exitoso", "tokens_usados"),
+                "DELETE FROM conversaciones_diarias",
+                "INSERT INTO conversaciones_diarias (tenant_id, fecha, canal, exitosa, num_conversaciones, tokens) " +
+                        "SELECT tenant_id, \"timestamp\"::date, canal, COALESCE(exitoso, false), COUNT(*), " +
+                        "COALESCE(SUM(tokens_usados), 0) " +
+                        "FROM conversaciones_ia GROUP BY 1, 2, 3, 4");
+    }
+
+    /**
+     * Si la tabla no tiene aún el trigger del agregado (primera vez, o tabla recreada),
+     * reconstruye el agregado bajo bloqueo e instala los triggers de alta/baja y de
+     * modificación (este solo cuando cambian las columnas agregadas)
+     */
+    private void instalarTriggerAgregado(String tabla, String trigger, String funcion, List<String> columnas,
+                                         String vaciar, String reconstruir) {
+        Boolean instalado = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_trigger WHERE tgname = ? AND tgrelid = to_regclass(?))",
+                Boolean.class, trigger, tabla);
+        if (Boolean.TRUE.equals(instalado)) {
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("LOCK TABLE " + tabla + " IN SHARE ROW EXCLUSIVE MODE");
+            jdbcTemplate.execute(vaciar);
+            jdbcTemplate.execute(reconstruir);
+
+            jdbcTemplate.execute(String.format(
+                    "CREATE TRIGGER %s AFTER INSERT OR DELETE ON %s FOR EACH ROW EXECUTE FUNCTION %s()",
+                    trigger, tabla, funcion));
+            jdbcTemplate.execute(String.format(
+                    "CREATE TRIGGER %s_upd AFTER UPDATE ON %s FOR EACH ROW " +
+                            "WHEN ((OLD.%s) IS DISTINCT FROM (NEW.%s)) EXECUTE FUNCTION %s()",
+                    trigger, tabla, String.join(", OLD.", columnas), String.join(", NEW.", columnas), funcion));
+        });
+
+        logger.info("Agregado de {} reconstruido y trigger {} instalado", tabla, trigger);
+    }
+
+    /**
+     * Mapa de demanda día×hora de DemandaHorariaService: un float8[168] por tenant
+     */
+    private void crearTablaDemandaHoraria() {
+        jdbcTemplate.execute(
+                "CREATE TABLE IF NOT EXISTS demanda_horaria (" +
+                        "tenant_id VARCHAR(255) PRIMARY KEY, " +
+                        "pesos DOUBLE PRECISION[] NOT NULL, " +
+                        "referencia TIMESTAMP NOT NULL)");
+        // Versión del cálculo de pesos: las filas de otra versión se recalculan desde citas
+        jdbcTemplate.execute("ALTER TABLE demanda_horaria ADD COLUMN IF NOT EXISTS version INT NOT NULL DEFAULT 1");
+    }
+
+    /**
+     * Trigger que mantiene clientes_metricas (agregado por cliente) con cada cambio de cita.
+     * Resta la fila antigua y suma la nueva; primera/última visita y última reserva solo se
+     * recalculan desde citas cuando se quita justo la fecha extrema. La primera vez se
+     * reconstruye el agregado completo bajo bloqueo de citas.
+     */
+    private void instalarMetricasClientes() {
+        jdbcTemplate.execute(
+                "CREATE OR REPLACE FUNCTION fn_clientes_metricas_aplicar(p_cliente VARCHAR, p_tenant VARCHAR, " +
+                "    p_fecha TIMESTAMP, p_precio NUMERIC, p_servicio VARCHAR, p_empleado VARCHAR, " +
+                "    p_estado VARCHAR, p_signo INT) RETURNS void AS $$ " +
+                "DECLARE " +
+                "  m clientes_metricas%ROWTYPE; " +
+                "  n INT; " +
+                "BEGIN " +
+                "  IF p_cliente IS NULL OR p_fecha IS NULL OR COALESCE(p_estado, 'PENDIENTE') = 'CANCELADA' THEN " +
+                "    RETURN; " +
+                "  END IF; " +
+                "  INSERT INTO clientes_metricas (cliente_id, tenant_id, num_visitas, gasto_total, servicios, empleados) " +
+                "    VALUES (p_cliente, p_tenant, 0, 0, '{}', '{}') ON CONFLICT (cliente_id) DO NOTHING; " +
+                "  SELECT * INTO m FROM clientes_metricas WHERE cliente_id = p_cliente FOR UPDATE; " +
+                "  IF p_signo > 0 THEN " +
+                "    m.ultima_reserva := GREATEST(m.ultima_reserva, p_fecha); " +
+                "  ELSIF m.ultima_reserva = p_fecha THEN " +
+                "    SELECT MAX(fecha_hora) INTO m.ultima_reserva FROM citas " +
+                "      WHERE cliente_id = p_cliente AND estado <> 'CANCELADA'; " +
+                "  END IF; " +
+                "  IF p_estado = 'COMPLETADA' THEN " +
+                "    m.num_visitas := m.num_visitas + p_signo; " +
+                "    m.gasto_total := m.gasto_total + p_signo * COALESCE(p_precio, 0); " +
+                "    IF p_servicio IS NOT NULL THEN " +
+                "      n := COALESCE((m.servicios ->> p_servicio)::int, 0) + p_signo; " +
+                "      m.servicios := CASE WHEN n > 0 THEN jsonb_set(m.servicios, ARRAY[p_servicio], to_jsonb(n)) " +
+                "                          ELSE m.servicios - p_servicio END; " +
+                "    END IF; " +
+                "    IF p_empleado IS NOT NULL THEN " +
+                "      n := COALESCE((m.empleados ->> p_empleado)::int, 0) + p_signo; " +
+                "      m.empleados := CASE WHEN n > 0 THEN jsonb_set(m.empleados, ARRAY[p_empleado], to_jsonb(n)) " +
+                "                          ELSE m.empleados - p_empleado END; " +
+                "    END IF; " +
+                "    IF p_signo > 0 THEN " +
+                "      m.primera_visita := LEAST(m.primera_visita, p_fecha); " +
+                "      m.ultima_visita := GREATEST(m.ultima_visita, p_fecha); " +
+                "    ELSIF p_fecha = m.primera_visita OR p_fecha = m.ultima_visita THEN " +
+                "      SELECT MIN(fecha_hora), MAX(fecha_hora) INTO m.primera_visita, m.ultima_visita FROM citas " +
+                "        WHERE cliente_id = p_cliente AND estado = 'COMPLETADA'; " +
+                "    END IF; " +
+                "    SELECT key INTO m.servicio_preferido_id FROM jsonb_each_text(m.servicios) " +
+                "      ORDER BY value::int DESC, key LIMIT 1; " +
+                "    SELECT key INTO m.empleado_preferido_id FROM jsonb_each_text(m.empleados) " +
+                "      ORDER BY value::int DESC, key LIMIT 1; " +
+                "  END IF; " +
+                "  UPDATE clientes_metricas SET num_visitas = m.num_visitas, primera_visita = m.primera_visita, " +
+                "    ultima_visita = m.ultima_visita, gasto_total = m.gasto_total, servicios = m.servicios, " +
+                "    empleados = m.empleados, servicio_preferido_id = m.servicio_preferido_id, " +
+                "    empleado_preferido_id = m.empleado_preferido_id, ultima_reserva = m.ultima_reserva " +
+                "  WHERE cliente_id = p_cliente; " +
+                "END $$ LANGUAGE plpgsql");
+
+        jdbcTemplate.execute(
+                "CREATE OR REPLACE FUNCTION fn_citas_clientes_metricas() RETURNS trigger AS $$ " +
+                "BEGIN " +
+                "  IF TG_OP IN ('UPDATE', 'DELETE') THEN " +
+                "    PERFORM fn_clientes_metricas_aplicar(OLD.cliente_id, OLD.tenant_id, OLD.fecha_hora, OLD.precio, " +
+                "      OLD.servicio_id, OLD.empleado_id, OLD.estado, -1); " +
+                "  END IF; " +
+                "  IF TG_OP IN ('INSERT', 'UPDATE') THEN " +
+                "    PERFORM fn_clientes_metricas_aplicar(NEW.cliente_id, NEW.tenant_id, NEW.fecha_hora, NEW.precio, " +
+                "      NEW.servicio_id, NEW.empleado_id, NEW.estado, 1); " +
+                "  END IF; " +
+                "  RETURN NULL; " +
+                "END $$ LANGUAGE plpgsql");
+
+        Boolean instalado = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_trigger WHERE tgname = 'trg_citas_clientes_metricas')",
+                Boolean.class);
+        if (Boolean.TRUE.equals(instalado)) {
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("LOCK TABLE citas IN SHARE ROW EXCLUSIVE MODE");
+            jdbcTemplate.execute("DELETE FROM clientes_metricas");
+            jdbcTemplate.execute(
+                    "WITH base AS ( " +
+                            "  SELECT cliente_id, tenant_id, fecha_hora, precio, servicio_id, empleado_id, estado " +
+                            "  FROM citas " +
+                            "  WHERE cliente_id IS NOT NULL AND fecha_hora IS NOT NULL AND estado <> 'CANCELADA' " +
+                            "), serv AS ( " +
+                            "  SELECT cliente_id, jsonb_object_agg(servicio_id, n) AS recuento, " +
+                            "         (array_agg(servicio_id ORDER BY n DESC, servicio_id))[1] AS preferido " +
+                            "  FROM (SELECT cliente_id, servicio_id, COUNT(*) AS n FROM base " +
+                            "        WHERE estado = 'COMPLETADA' AND servicio_id IS NOT NULL GROUP BY 1, 2) s " +
+                            "  GROUP BY cliente_id " +
+                            "), emp AS ( " +
+                            "  SELECT cliente_id, jsonb_object_agg(empleado_id, n) AS recuento, " +
+                            "         (array_agg(empleado_id ORDER BY n DESC, empleado_id))[1] AS preferido " +
+                            "  FROM (SELECT cliente_id, empleado_id, COUNT(*) AS n FROM base " +
+                            "        WHERE estado = 'COMPLETADA' AND empleado_id IS NOT NULL GROUP BY 1, 2) e " +
+                            "  GROUP BY cliente_id " +
+                            ") " +
+                            "INSERT INTO clientes_metricas (cliente_id, tenant_id, num_visitas, primera_visita, " +
+                            "  ultima_visita, gasto_total, servicios, empleados, servicio_preferido_id, " +
+                            "  empleado_preferido_id, ultima_reserva) " +
+                            "SELECT b.cliente_id, MIN(b.tenant_id), " +
+                            "  COUNT(*) FILTER (WHERE b.estado = 'COMPLETADA'), " +
+                            "  MIN(b.fecha_hora) FILTER (WHERE b.estado = 'COMPLETADA'), " +
+                            "  MAX(b.fecha_hora) FILTER (WHERE b.estado = 'COMPLETADA'), " +
+                            "  COALESCE(SUM(b.precio) FILTER (WHERE b.estado = 'COMPLETADA'), 0), " +
+                            "  COALESCE(s.recuento, '{}'), COALESCE(e.recuento, '{}'), s.preferido, e.preferido, " +
+                            "  MAX(b.fecha_hora) " +
+                            "FROM base b " +
+                            "LEFT JOIN serv s ON s.cliente_id = b.cliente_id " +
+                            "LEFT JOIN emp e ON e.cliente_id = b.cliente_id " +
+                            "GROUP BY b.cliente_id, s.recuento, s.preferido, e.recuento, e.preferido");
+
+            jdbcTemplate.execute(
+                    "CREATE TRIGGER trg_citas_clientes_metricas " +
+                            "AFTER INSERT OR DELETE ON citas " +
+                            "FOR EACH ROW EXECUTE FUNCTION fn_citas_clientes_metricas()");
+            jdbcTemplate.execute(
+                    "CREATE TRIGGER trg_citas_clientes_metricas_upd " +
+                            "AFTER UPDATE ON citas FOR EACH ROW " +
+                            "WHEN ((OLD.cliente_id, OLD.tenant_id, OLD.fecha_hora, OLD.estado, OLD.precio, " +
+                            "OLD.servicio_id, OLD.empleado_id) IS DISTINCT FROM " +
+                            "(NEW.cliente_id, NEW.tenant_id, NEW.fecha_hora, NEW.estado, NEW.precio, " +
+                            "NEW.servicio_id, NEW.empleado_id)) " +
+                            "EXECUTE FUNCTION fn_citas_clientes_metricas()");
+        });
+
+        logger.info("Agregado clientes_metricas reconstruido y trigger instalado");
+    }
+
+    /**
+     * Búsqueda de clientes sin tildes: f_unaccent (IMMUTABLE, usable en índices),
+     * GIN trigram por tenant para subcadenas y btree de prefijo para términos cortos.
+     * Si no se puede instalar unaccent se usa translate() con las vocales acentuadas.
+     */
+    private void indexarBusquedaClientes() {
+        boolean conUnaccent = true;
+        try {
+            jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS unaccent");
+        } catch (Exception e) {
+            conUnaccent = false;
+            logger.warn("Extensión unaccent no disponible, se usa translate(): {}", e.getMessage());
+        }
+
+        jdbcTemplate.execute(conUnaccent
+                ? "CREATE OR REPLACE FUNCTION f_unaccent(text) RETURNS text AS " +
+                  "$$ SELECT public.unaccent('public.unaccent'::regdictionary, $1) $$ " +
+                  "LANGUAGE sql IMMUTABLE PARALLEL SAFE STRICT"
+                : "CREATE OR REPLACE FUNCTION f_unaccent(text) RETURNS text AS " +
+                  "$$ SELECT translate($1, 'áàäâéèëêíìïîóòöôúùüûñçÁÀÄÂÉÈËÊÍÌÏÎÓÒÖÔÚÙÜÛÑÇ', " +
+                  "'aaaaeeeeiiiioooouuuuncAAAAEEEEIIIIOOOOUUUUNC') $$ " +
+                  "LANGUAGE sql IMMUTABLE PARALLEL SAFE STRICT");
+
+        // Búsqueda por teléfono en crudo de los clientes aún sin telefono_norm (se vacía
+        // cuando la deduplicación termina de normalizarlos)
+        jdbcTemplate.execute(
+                "CREATE INDEX IF NOT EXISTS idx_clientes_telefono_sin_norm ON clientes (telefono) " +
+                        "WHERE telefono_norm IS NULL");
+
+        jdbcTemplate.execute(
+                "CREATE INDEX IF NOT EXISTS idx_clientes_nombre_prefijo ON clientes " +
+                        "(tenant_id, lower(f_unaccent(nombre)) text_pattern_ops)");
+
+        // btree_gin permite tenant_id dentro del mismo índice GIN
+        jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+        jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS btree_gin");
+        jdbcTemplate.execute(
+                "CREATE INDEX IF NOT EXISTS idx_clientes_busqueda_trgm ON clientes USING GIN " +
+                        "(tenant_id, (lower(f_unaccent(coalesce(nombre, '') || ' ' || coalesce(email, '') " +
+                        "|| ' ' || coalesce(telefono, '')))) gin_trgm_ops)");
+    }
+
+    private String tipoColumna(String tabla, String columna) {
+        List<String> tipos = jdbcTemplate.queryForList(
+                "SELECT data_type FROM information_schema.columns " +
+                        "WHERE table_name = ? AND column_name = ? AND table_schema = current_schema()",
+                String.class, tabla, columna);
+        return tipos.isEmpty() ? null : tipos.get(0);
+    }
+
+    private void ejecutar(String nombre, Runnable migracion) {
+        try {
+            migracion.run();
+        } catch (Exception e) {
+            logger.error("Error aplicando migración {}: {}", nombre, e.getMessage());
+        }
+    }
+}
@@ -44,6 +44,9 @@ public class OpenAIService {
     @Autowired
     private HorarioEspecialService horarioEspecialService;
 
+    @Autowired
+    private LimiteTenantService limiteTenantService;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     /**
@@ -87,15 +90,24 @@ public class OpenAIService {
 
             logger.debug("Enviando request a OpenAI: {}", requestBody);
 
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    "https://api.openai.com/v1/chat/completions",
-                    HttpMethod.POST,
-                    new HttpEntity<>(requestBody, headers),
-                    Map.class
-            );
+            // Límite de IA del tenant: la cuota de OpenAI es compartida
+            try (LimiteTenantService.Permiso permiso =
+                         limiteTenantService.adquirir(tenantId, LimiteTenantService.Recurso.IA)) {
+                if (!permiso.isConcedido()) {
+                    logger.warn("Límite de IA alcanzado para tenant {}: {}", tenantId, permiso.getMotivo());
+                    return crearRespuestaError(permiso.getMotivo());
+                }
 
-            // 5. PROCESAR RESPUESTA Y EXTRAER DATOS ESTRUCTURADOS
-            return parsearRespuestaGPT(response);
+                ResponseEntity<Map> response = restTemplate.exchange(
+                        "https://api.openai.com/v1/chat/completions",
+                        HttpMethod.POST,
+                        new HttpEntity<>(requestBody, headers),
+                        Map.class
+                );
+
+                // 5. PROCESAR RESPUESTA Y EXTRAER DATOS ESTRUCTURADOS
+                return parsearRespuestaGPT(response);
+            }
 
         } catch (Exception e) {
             logger.error("Error en OpenAI para tenant {}: {}", tenantId, e.getMessage(), e);
@@ -501,7 +513,7 @@ public class OpenAIService {
                     fechaHora.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm"))
             );
 
-            String respuesta = llamarOpenAI(prompt, "gpt-4", 0.3);
+            String respuesta = llamarOpenAI(tenantId, prompt, "gpt-4", 0.3);
             logger.debug("Análisis IA generado para conflicto: {}", respuesta.substring(0, Math.min(100, respuesta.length())));
 
             return respuesta;
@@ -534,7 +546,7 @@ public class OpenAIService {
                     traducirContextoError(contextoError)
             );
 
-            String respuesta = llamarOpenAI(prompt, "gpt-4", 0.7);
+            String respuesta = llamarOpenAI(tenantId, prompt, "gpt-4", 0.7);
             logger.debug("Mensaje de error IA generado: {}", respuesta);
 
             return respuesta;
@@ -571,7 +583,7 @@ public class OpenAIService {
                     tenant.getDiasLaborables() != null ? tenant.getDiasLaborables() : "L-S"
             );
 
-            String respuestaIA = llamarOpenAI(prompt, "gpt-4", 0.3);
+            String respuestaIA = llamarOpenAI(tenantId, prompt, "gpt-4", 0.3);
             List<LocalDateTime> fechas = parsearFechasAlternativas(respuestaIA);
 
             logger.debug("IA sugirió {} alternativas para {}", fechas.size(), fechaDeseada);
@@ -612,7 +624,7 @@ public class OpenAIService {
                     resumenEstadistico
             );
 
-            return llamarOpenAI(prompt, "gpt-4", 0.5);
+            return llamarOpenAI(tenantId, prompt, "gpt-4", 0.5);
 
         } catch (Exception e) {
             logger.error("Error analizando patrones con IA: {}", e.getMessage());
@@ -624,16 +636,17 @@ public class OpenAIService {
      * CEREBRO OPENAI: Generar recomendaciones personalizadas por cliente
      */
     public String generarRecomendacionesCliente(String tenantId, Cliente cliente,
-                                                List<Cita> historialCitas) {
+                                                MetricaCliente metricas) {
         try {
             Tenant tenant = tenantRepository.findById(tenantId).orElse(null);
             if (tenant == null) return "Recomendaciones no disponibles";
 
+            int numVisitas = metricas != null ? metricas.getNumVisitas() : 0;
             if (apiKey == null || apiKey.equals("sk-dummy") || apiKey.startsWith("sk-proj-tu-clave")) {
-                return generarRecomendacionesMock(cliente.getNombre(), historialCitas.size());
+                return generarRecomendacionesMock(cliente.getNombre(), numVisitas);
             }
 
-            String historialResumen = crearResumenHistorialCliente(historialCitas);
+            String historialResumen = crearResumenHistorialCliente(metricas);
 
             String prompt = String.format(
                     "Para %s en %s, cliente: %s. Historial: %s. " +
@@ -646,7 +659,7 @@ public class OpenAIService {
                     historialResumen
             );
 
-            return llamarOpenAI(prompt, "gpt-4", 0.8);
+            return llamarOpenAI(tenantId, prompt, "gpt-4", 0.8);
 
         } catch (Exception e) {
             logger.error("Error generando recomendaciones cliente: {}", e.getMessage());
@@ -781,22 +794,25 @@ public class OpenAIService {
         );
     }
 
-    private String crearResumenHistorialCliente(List<Cita> historial) {
-        if (historial.isEmpty()) return "Cliente nuevo";
-
-        Map<String, Integer> serviciosCliente = new HashMap<>();
-        for (Cita cita : historial) {
-            String servicio = cita.getServicio() != null ? cita.getServicio().getNombre() : "Sin servicio";
-            serviciosCliente.put(servicio, serviciosCliente.getOrDefault(servicio, 0) + 1);
-        }
+    private String crearResumenHistorialCliente(MetricaCliente metricas) {
+        if (metricas == null || metricas.getNumVisitas() == 0) return "Cliente nuevo";
 
-        String servicioFavorito = serviciosCliente.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse("Ninguno");
+        String servicioFavorito = metricas.getServicioPreferidoId() != null
+                ? servicioRepository.findById(metricas.getServicioPreferidoId())
+                        .map(Servicio::getNombre).orElse("Ninguno")
+                : "Ninguno";
 
-        return String.format("%d visitas, servicio preferido: %s",
-                historial.size(), servicioFavorito);
+        StringBuilder resumen = new StringBuilder(String.format("%d visitas, servicio preferido: %s",
+                metricas.getNumVisitas(), servicioFavorito));
+        if (metricas.getIntervaloMedioDias() != null) {
+            resumen.append(String.format(", cada %.0f días de media", metricas.getIntervaloMedioDias()));
+        }
+        if (metricas.getUltimaVisita() != null) {
+            resumen.append(", última visita el ")
+                    .append(metricas.getUltimaVisita().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")));
+        }
+        resumen.append(String.format(", gasto medio %s€", metricas.getGastoMedio()));
+        return resumen.toString();
     }
 
     private String generarAnalisisPatronesMock(int numCitas) {
@@ -822,12 +838,13 @@ public class OpenAIService {
     /**
      * Método principal para llamar a la API de OpenAI
      *
+     * @param tenantId Tenant que hace la llamada (límite de IA por tenant)
      * @param prompt El prompt a enviar
      * @param model El modelo a usar (ej: "gpt-4", "gpt-3.5-turbo")
      * @param temperature Temperatura para creatividad (0.0 - 1.0)
      * @return Respuesta de OpenAI o mensaje de fallback
      */
-    private String llamarOpenAI(String prompt, String model, double temperature) {
+    private String llamarOpenAI(String tenantId, String prompt, String model, double temperature) {
         try {
             // Validar API Key
             if (apiKey == null || apiKey.equals("sk-dummy") || apiKey.startsWith("sk-proj-tu-clave")) {
@@ -852,13 +869,21 @@ public class OpenAIService {
 
             logger.debug("Enviando request a OpenAI - Modelo: {}, Temperature: {}", model, temperature);
 
-            // Hacer llamada a OpenAI
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    "https://api.openai.com/v1/chat/completions",
-                    HttpMethod.POST,
-                    new HttpEntity<>(requestBody, headers),
-                    Map.class
-            );
+            // Hacer llamada a OpenAI (dentro del límite de IA del tenant)
+            ResponseEntity<Map> response;
+            try (LimiteTenantService.Permiso permiso =
+                         limiteTenantService.adquirir(tenantId, LimiteTenantService.Recurso.IA)) {
+                if (!permiso.isConcedido()) {
+                    logger.warn("Límite de IA alcanzado para tenant {}: {}", tenantId, permiso.getMotivo());
+                    return generarRespuestaFallback(prompt);
+                }
+                response = restTemplate.exchange(
+                        "https://api.openai.com/v1/chat/completions",
+                        HttpMethod.POST,
+                        new HttpEntity<>(requestBody, headers),
+                        Map.class
+                );
+            }
 
             // Procesar respuesta
             Map<String, Object> responseBody = response.getBody();
@@ -0,0 +1,361 @@
+package com.peluqueria.recepcionista_virtual.service;
+
+import com.peluqueria.recepcionista_virtual.model.ConfiguracionTenant;
+import com.peluqueria.recepcionista_virtual.model.Tenant;
+import com.peluqueria.recepcionista_virtual.repository.TenantRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Particionado mensual por rango de fecha y retención de las tablas de alto volumen
+ * (conversaciones_ia por timestamp, logs_llamadas por fecha_inicio).
+ *
+ * - Crea por adelantado las particiones de los próximos meses.
+ * - Migración opcional (database.particionado.migrar) de la tabla plana a particionada.
+ * - Retención por plan del tenant: las particiones más antiguas que la retención máxima
+ *   se archivan (schema "archivo") o se eliminan; los tenants con planes más cortos
+ *   se purgan con DELETE acotado a las particiones viejas.
+ */
+@Service
+public class ParticionamientoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParticionamientoService.class);
+
+    private static final DateTimeFormatter SUFIJO_MES = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final String SCHEMA_ARCHIVO = "archivo";
+
+    /** Tabla -> columna de particionado */
+    static final Map<String, String> TABLAS_PARTICIONADAS = new LinkedHashMap<>();
+
+    static {
+        TABLAS_PARTICIONADAS.put("conversaciones_ia", "timestamp");
+        TABLAS_PARTICIONADAS.put("logs_llamadas", "fecha_inicio");
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TenantRepository tenantRepository;
+
+    @Autowired
+    private TenantConfigService tenantConfigService;
+
+    @Autowired
+    private Environment env;
+
+    @Value("${database.particionado.migrar:false}")
+    private boolean migrarTablasExistentes;
+
+    @Value("${database.particionado.meses-adelantados:3}")
+    private int mesesAdelantados;
+
+    @Value("${database.retencion.archivar:true}")
+    private boolean archivarParticiones;
+
+    @Value("${database.retencion.meses-por-defecto:12}")
+    private int mesesRetencionPorDefecto;
+
+    // ========================================
+    // MANTENIMIENTO DE PARTICIONES
+    // ========================================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void alArrancar() {
+        mantenerParticiones();
+    }
+
+    /**
+     * Garantiza que existan las particiones del mes actual y los siguientes
+     */
+    @Scheduled(cron = "${database.particionado.cron:0 0 3 * * *}")
+    public void mantenerParticiones() {
+        for (Map.Entry<String, String> tabla : TABLAS_PARTICIONADAS.entrySet()) {
+            try {
+                if (!estaParticionada(tabla.getKey())) {
+                    if (!migrarTablasExistentes) {
+                        logger.debug("Tabla {} sin particionar (database.particionado.migrar=false)", tabla.getKey());
+                        continue;
+                    }
+                    migrarATablaParticionada(tabla.getKey(), tabla.getValue());
+                }
+
+                YearMonth actual = YearMonth.now();
+                for (int i = 0; i <= mesesAdelantados; i++) {
+                    crearParticionSiNoExiste(tabla.getKey(), tabla.getValue(), actual.plusMonths(i));
+                }
+            } catch (Exception e) {
+                logger.error("Error manteniendo particiones de {}: {}", tabla.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private boolean estaParticionada(String tabla) {
+        Boolean particionada = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table pt " +
+                        "JOIN pg_class c ON c.oid = pt.partrelid " +
+                        "WHERE c.relname = ? AND pg_table_is_visible(c.oid))",
+                Boolean.class, tabla);
+        return Boolean.TRUE.equals(particionada);
+    }
+
+    /**
+     * Crea la partición del mes. Si ya hay filas de ese mes en la partición DEFAULT, Postgres
+     * rechazaría la nueva partición: se sacan a una tabla temporal en la misma transacción
+     * y se reinsertan después de crearla
+     */
+    private void crearParticionSiNoExiste(String tabla, String columna, YearMonth mes) {
+        String particion = nombreParticion(tabla, mes);
+        if (existeTabla(particion)) {
+            return;
+        }
+        String porDefecto = tabla + "_default";
+        String rango = String.format("\"%s\" >= '%s' AND \"%s\" < '%s'",
+                columna, mes.atDay(1), columna, mes.plusMonths(1).atDay(1));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            boolean moverDesdeDefault = existeTabla(porDefecto);
+            if (moverDesdeDefault) {
+                jdbcTemplate.execute(String.format(
+                        "CREATE TEMP TABLE tmp_%s (LIKE %s) ON COMMIT DROP", particion, porDefecto));
+                jdbcTemplate.execute(String.format(
+                        "WITH movidas AS (DELETE FROM %s WHERE %s RETURNING *) INSERT INTO tmp_%s SELECT * FROM movidas",
+                        porDefecto, rango, particion));
+            }
+            jdbcTemplate.execute(String.format(
+                    "CREATE TABLE IF NOT EXISTS %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+                    particion, tabla, mes.atDay(1), mes.plusMonths(1).atDay(1)));
+            if (moverDesdeDefault) {
+                int movidas = jdbcTemplate.update(String.format(
+                        "INSERT INTO %s SELECT * FROM tmp_%s", tabla, particion));
+                if (movidas > 0) {
+                    logger.info("{} filas movidas de {} a {}", movidas, porDefecto, particion);
+                }
+            }
+        });
+    }
+
+    private boolean existeTabla(String nombre) {
+        return jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, nombre);
+    }
+
+    /**
+     * Convierte una tabla plana en particionada copiando los datos existentes.
+     * La PK pasa a ser (id, columna) porque Postgres exige la clave de partición en ella.
+     *
+     * LIKE ... INCLUDING ALL copia defaults, checks, identidad y comentarios; los índices
+     * se excluyen (el único de la PK antigua no lleva la clave de partición) y se recrean,
+     * junto con las FKs y los triggers (agregados diarios), con sus nombres originales tras
+     * copiar los datos y borrar la tabla antigua. Las
+     * particiones mensuales se crean antes que la DEFAULT para que ninguna fila migrada
+     * acabe en ella.
+     */
+    private void migrarATablaParticionada(String tabla, String columna) {
+        logger.info("Migrando {} a particionado mensual por {}", tabla, columna);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            String legacy = tabla + "_legacy";
+            jdbcTemplate.execute(String.format("ALTER TABLE %s RENAME TO %s", tabla, legacy));
+            jdbcTemplate.execute(String.format(
+                    "CREATE TABLE %s (LIKE %s INCLUDING ALL EXCLUDING INDEXES) PARTITION BY RANGE (\"%s\")",
+                    tabla, legacy, columna));
+            jdbcTemplate.execute(String.format(
+                    "ALTER TABLE %s ADD CONSTRAINT %s_part_pkey PRIMARY KEY (id, \"%s\")",
+                    tabla, tabla, columna));
+
+            // Índices no únicos y FKs de la tabla antigua (los únicos no admiten particionado sin la columna)
+            List<String> indices = jdbcTemplate.queryForList(
+                    "SELECT pg_get_indexdef(i.indexrelid) FROM pg_index i " +
+                            "JOIN pg_class c ON c.oid = i.indrelid " +
+                            "WHERE c.relname = ? AND pg_table_is_visible(c.oid) AND NOT i.indisunique",
+                    String.class, legacy);
+            List<Map<String, Object>> fks = jdbcTemplate.queryForList(
+                    "SELECT con.conname AS nombre, pg_get_constraintdef(con.oid) AS definicion " +
+                            "FROM pg_constraint con JOIN pg_class c ON c.oid = con.conrelid " +
+                            "WHERE c.relname = ? AND pg_table_is_visible(c.oid) AND con.contype = 'f'",
+                    legacy);
+            List<String> triggers = jdbcTemplate.queryForList(
+                    "SELECT pg_get_triggerdef(t.oid) FROM pg_trigger t " +
+                            "WHERE t.tgrelid = to_regclass(?) AND NOT t.tgisinternal",
+                    String.class, legacy);
+
+            LocalDateTime minimo = jdbcTemplate.queryForObject(
+                    String.format("SELECT MIN(\"%s\") FROM %s", columna, legacy), LocalDateTime.class);
+            YearMonth desde = minimo != null ? YearMonth.from(minimo) : YearMonth.now();
+            for (YearMonth mes = desde; !mes.isAfter(YearMonth.now().plusMonths(mesesAdelantados)); mes = mes.plusMonths(1)) {
+                crearParticionSiNoExiste(tabla, columna, mes);
+            }
+            jdbcTemplate.execute(String.format(
+                    "CREATE TABLE IF NOT EXISTS %s_default PARTITION OF %s DEFAULT", tabla, tabla));
+
+            jdbcTemplate.execute(String.format("INSERT INTO %s SELECT * FROM %s", tabla, legacy));
+            jdbcTemplate.execute(String.format("DROP TABLE %s", legacy));
+
+            for (String indice : indices) {
+                jdbcTemplate.execute(indice
+                        .replaceFirst("^CREATE INDEX ", "CREATE INDEX IF NOT EXISTS ")
+                        .replaceFirst(" ON (\\S+\\.)?" + legacy + " ", " ON " + tabla + " "));
+            }
+            jdbcTemplate.execute(String.format(
+                    "CREATE INDEX IF NOT EXISTS idx_%s_tenant_%s ON %s (tenant_id, \"%s\" DESC)",
+                    tabla, columna, tabla, columna));
+            for (Map<String, Object> fk : fks) {
+                jdbcTemplate.execute(String.format("ALTER TABLE %s ADD CONSTRAINT %s %s",
+                        tabla, fk.get("nombre"), fk.get("definicion")));
+            }
+            // Después de copiar: las filas movidas ya están en los agregados
+            for (String trigger : triggers) {
+                jdbcTemplate.execute(trigger.replaceFirst(" ON (\\S+\\.)?" + legacy + " ", " ON " + tabla + " "));
+            }
+            logger.info("{}: {} índices, {} FKs y {} triggers recreados",
+                    tabla, indices.size(), fks.size(), triggers.size());
+        });
+
+        logger.info("Tabla {} migrada a particionado mensual", tabla);
+    }
+
+    // ========================================
+    // RETENCIÓN POR PLAN
+    // ========================================
+
+    @Scheduled(cron = "${database.retencion.cron:0 30 3 * * *}")
+    public void aplicarRetencion() {
+        Map<String, Integer> retencionPorTenant = calcularRetencionPorTenant();
+        int retencionMaxima = retencionPorTenant.values().stream()
+                .mapToInt(Integer::intValue)
+                .max()
+                .orElse(mesesRetencionPorDefecto);
+        retencionMaxima = Math.max(retencionMaxima, mesesRetencionPorDefecto);
+
+        for (Map.Entry<String, String> tabla : TABLAS_PARTICIONADAS.entrySet()) {
+            try {
+                if (estaParticionada(tabla.getKey())) {
+                    retirarParticionesAntiguas(tabla.getKey(), YearMonth.now().minusMonths(retencionMaxima));
+                }
+                purgarTenantsConRetencionCorta(tabla.getKey(), tabla.getValue(), retencionPorTenant, retencionMaxima);
+            } catch (Exception e) {
+                logger.error("Error aplicando retención en {}: {}", tabla.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Meses de retención de cada tenant: override explícito o el de su plan
+     */
+    private Map<String, Integer> calcularRetencionPorTenant() {
+        Map<String, Integer> retencion = new HashMap<>();
+
+        for (Tenant tenant : tenantRepository.findAll()) {
+            String override = tenantConfigService.obtenerValor(tenant.getId(),
+                    ConfiguracionTenant.Claves.RETENCION_MESES, null);
+            Integer meses = null;
+            if (override != null) {
+                try {
+                    meses = Integer.parseInt(override.trim());
+                } catch (NumberFormatException e) {
+                    logger.warn("retencion_meses inválido para tenant {}: {}", tenant.getId(), override);
+                }
+            }
+            if (meses == null) {
+                String plan = tenantConfigService.obtenerValor(tenant.getId(),
+                        ConfiguracionTenant.Claves.PLAN, null);
+                meses = plan != null
+                        ? env.getProperty("database.retencion.meses-por-plan." + plan.trim().toLowerCase(),
+                        Integer.class, mesesRetencionPorDefecto)
+                        : mesesRetencionPorDefecto;
+            }
+            retencion.put(tenant.getId(), meses);
+        }
+
+        return retencion;
+    }
+
+    /**
+     * Separa (y archiva) o elimina las particiones cuyo mes termina antes del límite
+     */
+    private void retirarParticionesAntiguas(String tabla, YearMonth limite) {
+        List<String> particiones = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i " +
+                        "JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "JOIN pg_class p ON p.oid = i.inhparent " +
+                        "WHERE p.relname = ? AND pg_table_is_visible(p.oid)",
+                String.class, tabla);
+
+        String prefijo = tabla + "_p";
+        for (String particion : particiones) {
+            if (!particion.startsWith(prefijo)) {
+                continue; // default u otras particiones manuales
+            }
+
+            YearMonth mes;
+            try {
+                mes = YearMonth.parse(particion.substring(prefijo.length()), SUFIJO_MES);
+            } catch (Exception e) {
+                continue;
+            }
+
+            if (!mes.isBefore(limite)) {
+                continue;
+            }
+
+            if (archivarParticiones) {
+                jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS " + SCHEMA_ARCHIVO);
+                jdbcTemplate.execute(String.format("ALTER TABLE %s DETACH PARTITION %s", tabla, particion));
+                jdbcTemplate.execute(String.format("ALTER TABLE %s SET SCHEMA %s", particion, SCHEMA_ARCHIVO));
+                logger.info("Partición {} archivada en schema {}", particion, SCHEMA_ARCHIVO);
+            } else {
+                jdbcTemplate.execute(String.format("DROP TABLE %s", particion));
+                logger.info("Partición {} eliminada por retención", particion);
+            }
+        }
+    }
+
+    /**
+     * Los tenants con retención menor que la máxima se purgan fila a fila;
+     * el filtro por fecha limita el DELETE a las particiones antiguas.
+     */
+    private void purgarTenantsConRetencionCorta(String tabla, String columna,
+                                                Map<String, Integer> retencionPorTenant,
+                                                int retencionMaxima) {
+        for (Map.Entry<String, Integer> entry : retencionPorTenant.entrySet()) {
+            if (entry.getValue() >= retencionMaxima) {
+                continue;
+            }
+
+            LocalDate limite = YearMonth.now().minusMonths(entry.getValue()).atDay(1);
+            int borradas = jdbcTemplate.update(String.format(
+                            "DELETE FROM %s WHERE tenant_id = ? AND \"%s\" < ?", tabla, columna),
+                    entry.getKey(), limite.atStartOfDay());
+
+            if (borradas > 0) {
+                logger.info("Retención: {} filas de {} eliminadas para tenant {} (anteriores a {})",
+                        borradas, tabla, entry.getKey(), limite);
+            }
+        }
+    }
+
+    static String nombreParticion(String tabla, YearMonth mes) {
+        return tabla + "_p" + mes.format(SUFIJO_MES);
+    }
+}
@@ -0,0 +1,610 @@
+package com.peluqueria.recepcionista_virtual.service;
+
+import com.peluqueria.recepcionista_virtual.dto.EventoDashboard;
+import com.peluqueria.recepcionista_virtual.model.Cita;
+import com.peluqueria.recepcionista_virtual.model.Empleado;
+import com.peluqueria.recepcionista_virtual.model.EmpleadoServicio;
+import com.peluqueria.recepcionista_virtual.model.EstadoCita;
+import com.peluqueria.recepcionista_virtual.model.HorarioEspecial;
+import com.peluqueria.recepcionista_virtual.model.TipoCierre;
+import com.peluqueria.recepcionista_virtual.repository.CitaRepository;
+import com.peluqueria.recepcionista_virtual.repository.EmpleadoRepository;
+import com.peluqueria.recepcionista_virtual.repository.EmpleadoServicioRepository;
+import com.peluqueria.recepcionista_virtual.repository.HorarioEspecialRepository;
+import com.peluqueria.recepcionista_virtual.service.IndiceCierresService.CierreIndexado;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 🔁 REPROGRAMACIÓN DE CITAS CANCELADAS POR UN CIERRE
+ *
+ * Propone para cada cita cancelada por un cierre el hueco libre más cercano a su hora
+ * original con un empleado que pueda hacer el servicio (empleados_servicios; si el
+ * servicio no tiene habilidades configuradas vale cualquier empleado activo).
+ *
+ * Empleados, habilidades, ocupación y cierres de la ventana de búsqueda se cargan una
+ * sola vez; las citas se asignan en orden cronológico sobre una rejilla de franjas por
+ * empleado y día, y cada hueco asignado se marca ocupado para que no se proponga a
+ * otra cita. La propuesta queda guardada bajo un token hasta que se aprueba (todas o
+ * algunas citas) o se descarta; mientras tanto las citas siguen canceladas.
+ */
+@Service
+public class ReprogramacionCierreService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReprogramacionCierreService.class);
+
+    private static final int MINUTOS_DIA = 24 * 60;
+
+    // Días de la semana en el formato de Empleado.diasTrabajo ("L,M,X,J,V")
+    private static final String DIAS_CORTOS = "LMXJVSD";
+
+    /**
+     * Nuevo hueco propuesto para una cita
+     */
+    public record Movimiento(String citaId, String clienteId, String clienteNombre,
+                             String servicioId, String servicioNombre,
+                             LocalDateTime fechaOriginal, String empleadoOriginalId,
+                             LocalDateTime nuevaFechaHora, String empleadoId, String empleadoNombre,
+                             int duracionMinutos) {
+
+        long minutosDesplazada() {
+            return Math.abs(ChronoUnit.MINUTES.between(fechaOriginal, nuevaFechaHora));
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> datos = new LinkedHashMap<>();
+            datos.put("citaId", citaId);
+            datos.put("clienteNombre", clienteNombre);
+            datos.put("servicio", servicioNombre);
+            datos.put("fechaOriginal", fechaOriginal.toString());
+            datos.put("nuevaFechaHora", nuevaFechaHora.toString());
+            datos.put("empleadoId", empleadoId);
+            datos.put("empleadoNombre", empleadoNombre);
+            datos.put("mismoEmpleado", empleadoId.equals(empleadoOriginalId));
+            datos.put("minutosDesplazada", minutosDesplazada());
+            return datos;
+        }
+    }
+
+    /**
+     * Resultado guardado bajo el token, pendiente de aprobación
+     */
+    public static final class Propuesta {
+        private final String token = UUID.randomUUID().toString();
+        private final String tenantId;
+        private final String cierreId;
+        private final List<Movimiento> movimientos;
+        private final List<Map<String, Object>> sinHueco;
+        private final long milisegundos;
+        private final LocalDateTime creada = LocalDateTime.now();
+        private final LocalDateTime expira;
+
+        private Propuesta(String tenantId, String cierreId, List<Movimiento> movimientos,
+                          List<Map<String, Object>> sinHueco, long milisegundos, LocalDateTime expira) {
+            this.tenantId = tenantId;
+            this.cierreId = cierreId;
+            this.movimientos = movimientos;
+            this.sinHueco = sinHueco;
+            this.milisegundos = milisegundos;
+            this.expira = expira;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public Map<String, Object> resumen() {
+            Map<String, Object> datos = new LinkedHashMap<>();
+            datos.put("token", token);
+            datos.put("cierreId", cierreId);
+            datos.put("creada", creada.toString());
+            datos.put("expira", expira.toString());
+            datos.put("citas", movimientos.size() + sinHueco.size());
+            datos.put("reprogramables", movimientos.size());
+            datos.put("sinHueco", sinHueco.size());
+            datos.put("milisegundos", milisegundos);
+            datos.put("movimientos", movimientos.stream().map(Movimiento::toMap).collect(Collectors.toList()));
+            datos.put("citasSinHueco", sinHueco);
+            return datos;
+        }
+
+        private boolean caducada() {
+            return LocalDateTime.now().isAfter(expira);
+        }
+    }
+
+    /**
+     * Franjas ocupadas de un empleado, una BitSet por día (bit i = minutos [i·paso, (i+1)·paso))
+     */
+    private static final class Agenda {
+        private final String empleadoId;
+        private final String nombre;
+        private final String diasTrabajo;
+        private final int entrada;
+        private final int salida;
+        private final Map<Long, BitSet> ocupado = new HashMap<>();
+
+        private Agenda(Empleado empleado, int apertura, int cierre) {
+            this.empleadoId = empleado.getId();
+            this.nombre = empleado.getNombre();
+            this.diasTrabajo = empleado.getDiasTrabajo();
+            this.entrada = Math.max(apertura, minutoDelDia(empleado.getHoraEntrada(), apertura));
+            this.salida = Math.min(cierre, minutoDelDia(empleado.getHoraSalida(), cierre));
+        }
+
+        private boolean trabaja(LocalDate fecha) {
+            if (diasTrabajo == null || diasTrabajo.isBlank()) {
+                return true; // Sin restricción específica
+            }
+            return diasTrabajo.indexOf(DIAS_CORTOS.charAt(fecha.getDayOfWeek().getValue() - 1)) >= 0;
+        }
+
+        private boolean libre(long dia, int franja, int franjas) {
+            BitSet franjasDia = ocupado.get(dia);
+            if (franjasDia == null) {
+                return true;
+            }
+            int siguiente = franjasDia.nextSetBit(franja);
+            return siguiente < 0 || siguiente >= franja + franjas;
+        }
+
+        private void ocupar(long dia, int desdeMinuto, int hastaMinuto, int paso) {
+            int desde = Math.max(0, desdeMinuto / paso);
+            int hasta = Math.min(MINUTOS_DIA / paso + 1, (hastaMinuto + paso - 1) / paso);
+            if (hasta > desde) {
+                ocupado.computeIfAbsent(dia, d -> new BitSet()).set(desde, hasta);
+            }
+        }
+    }
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private EmpleadoRepository empleadoRepository;
+
+    @Autowired
+    private EmpleadoServicioRepository empleadoServicioRepository;
+
+    @Autowired
+    private HorarioEspecialRepository horarioEspecialRepository;
+
+    @Autowired
+    private IndiceCierresService indiceCierres;
+
+    @Autowired
+    private TenantConfigService tenantConfigService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${cierres.reprogramacion.dias-busqueda:14}")
+    private int diasBusqueda;
+
+    @Value("${cierres.reprogramacion.paso-minutos:15}")
+    private int pasoMinutos;
+
+    @Value("${cierres.reprogramacion.ttl-horas:24}")
+    private long ttlHoras;
+
+    private final Map<String, Propuesta> propuestas = new ConcurrentHashMap<>();
+
+    // ========================================
+    // PROPUESTA
+    // ========================================
+
+    /**
+     * Calcula los huecos para las citas futuras canceladas por el cierre y guarda la
+     * propuesta bajo un token nuevo. Transacción no readOnly: se llama justo después de
+     * crear el cierre y la réplica podría no tener aún las citas canceladas.
+     */
+    @Transactional
+    public Propuesta proponer(String tenantId, String cierreId) {
+        HorarioEspecial cierre = horarioEspecialRepository.findByTenantIdAndIdAndActivo(tenantId, cierreId, true)
+                .orElseThrow(() -> new RuntimeException("Cierre no encontrado: " + cierreId));
+
+        long inicio = System.currentTimeMillis();
+        LocalDateTime ahora = LocalDateTime.now();
+        LocalDateTime hastaCierre = cierre.esRecurrente()
+                ? LocalDate.now().plusDays(HorarioEspecialService.HORIZONTE_RECURRENTES_DIAS + 1).atStartOfDay()
+                : cierre.getFechaFin().plusDays(1).atStartOfDay();
+
+        List<Cita> citas = citaRepository.findCitasCanceladasPorCierre(tenantId,
+                        cierre.getFechaInicio().atStartOfDay(), hastaCierre, cierreId).stream()
+                .filter(c -> c.getFechaHora().isAfter(ahora))
+                .sorted(Comparator.comparing(Cita::getFechaHora).thenComparing(Cita::getId))
+                .collect(Collectors.toList());
+
+        List<Movimiento> movimientos = new ArrayList<>();
+        List<Map<String, Object>> sinHueco = new ArrayList<>();
+
+        if (!citas.isEmpty()) {
+            Rejilla rejilla = new Rejilla(tenantId, ahora,
+                    citas.get(0).getFechaHora().toLocalDate(),
+                    citas.get(citas.size() - 1).getFechaHora().toLocalDate());
+
+            for (Cita cita : citas) {
+                Movimiento movimiento = rejilla.asignar(cita);
+                if (movimiento != null) {
+                    movimientos.add(movimiento);
+                } else {
+                    Map<String, Object> datos = new LinkedHashMap<>();
+                    datos.put("citaId", cita.getId());
+                    datos.put("clienteNombre", cita.getCliente() != null ? cita.getCliente().getNombre() : "Cliente");
+                    datos.put("fechaOriginal", cita.getFechaHora().toString());
+                    datos.put("motivo", String.format("Sin hueco compatible a menos de %d días", diasBusqueda));
+                    sinHueco.add(datos);
+                }
+            }
+        }
+
+        long milisegundos = System.currentTimeMillis() - inicio;
+        Propuesta propuesta = new Propuesta(tenantId, cierreId, List.copyOf(movimientos), List.copyOf(sinHueco),
+                milisegundos, LocalDateTime.now().plusHours(ttlHoras));
+        propuestas.put(propuesta.token, propuesta);
+
+        logger.info("Reprogramación del cierre {} (tenant {}): {} de {} citas con hueco en {} ms (token {})",
+                cierreId, tenantId, movimientos.size(), citas.size(), milisegundos, propuesta.token);
+        return propuesta;
+    }
+
+    /**
+     * Propuesta pendiente del token (null si no existe, es de otro tenant o caducó)
+     */
+    public Propuesta getPropuesta(String tenantId, String token) {
+        Propuesta propuesta = propuestas.get(token);
+        if (propuesta == null || !propuesta.tenantId.equals(tenantId) || propuesta.caducada()) {
+            return null;
+        }
+        return propuesta;
+    }
+
+    // ========================================
+    // APROBACIÓN
+    // ========================================
+
+    /**
+     * Aplica los movimientos de la propuesta (solo los de citaIds si se indican): cada cita
+     * vuelve a CONFIRMADA en su nuevo hueco si sigue cancelada por el cierre y el hueco
+     * sigue libre. La propuesta se consume; las citas no aprobadas quedan canceladas.
+     */
+    @Transactional
+    public Map<String, Object> aprobar(String tenantId, String token, Collection<String> citaIds) {
+        Propuesta propuesta = getPropuesta(tenantId, token);
+        if (propuesta == null || propuestas.remove(token) == null) {
+            return null;
+        }
+
+        Set<String> elegidas = citaIds != null && !citaIds.isEmpty() ? new HashSet<>(citaIds) : null;
+        List<String> reprogramadas = new ArrayList<>();
+        List<Map<String, Object>> conflictos = new ArrayList<>();
+
+        for (Movimiento movimiento : propuesta.movimientos) {
+            if (elegidas != null && !elegidas.contains(movimiento.citaId())) {
+                continue;
+            }
+            String conflicto = aplicar(tenantId, propuesta.cierreId, movimiento);
+            if (conflicto == null) {
+                reprogramadas.add(movimiento.citaId());
+            } else {
+                conflictos.add(Map.of("citaId", movimiento.citaId(), "motivo", conflicto));
+            }
+        }
+
+        logger.info("Reprogramación {} aprobada (tenant {}): {} citas movidas, {} conflictos",
+                token, tenantId, reprogramadas.size(), conflictos.size());
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("reprogramadas", reprogramadas.size());
+        resultado.put("citaIds", reprogramadas);
+        resultado.put("conflictos", conflictos);
+        return resultado;
+    }
+
+    /**
+     * Descarta la propuesta: las citas quedan canceladas
+     */
+    public boolean descartar(String tenantId, String token) {
+        return getPropuesta(tenantId, token) != null && propuestas.remove(token) != null;
+    }
+
+    @Scheduled(fixedDelay = 300000)
+    public void purgarCaducadas() {
+        propuestas.values().removeIf(Propuesta::caducada);
+    }
+
+    /**
+     * Mueve la cita a su nuevo hueco; devuelve el motivo si ya no se puede
+     */
+    private String aplicar(String tenantId, String cierreId, Movimiento movimiento) {
+        Cita cita = citaRepository.findCitaByIdAndTenant(movimiento.citaId(), tenantId).orElse(null);
+        if (cita == null || cita.getEstado() != EstadoCita.CANCELADA || cita.getNotas() == null
+                || !cita.getNotas().contains("[Cierre ID: " + cierreId + "]")) {
+            return "La cita ya no está cancelada por este cierre";
+        }
+
+        LocalDateTime inicio = movimiento.nuevaFechaHora();
+        LocalDateTime fin = inicio.plusMinutes(movimiento.duracionMinutos());
+        if (!inicio.isAfter(LocalDateTime.now())) {
+            return "El nuevo horario ya ha pasado";
+        }
+
+        boolean ocupado = citaRepository.findByEmpleadoIdAndFechaHoraBetween(movimiento.empleadoId(),
+                        inicio.toLocalDate().atStartOfDay(), fin).stream()
+                .filter(c -> !c.getId().equals(cita.getId()))
+                .filter(c -> c.getEstado() == EstadoCita.CONFIRMADA || c.getEstado() == EstadoCita.EN_PROGRESO
+                        || c.getEstado() == EstadoCita.PENDIENTE)
+                .anyMatch(c -> c.getFechaHora().isBefore(fin)
+                        && c.getFechaHora().plusMinutes(duracion(c)).isAfter(inicio));
+        if (ocupado) {
+            return "El hueco propuesto ya está ocupado";
+        }
+        if (!indiceCierres.bloqueos(tenantId, inicio, movimiento.empleadoId(), movimiento.servicioId()).isEmpty()) {
+            return "El hueco propuesto está afectado por un cierre";
+        }
+
+        Empleado empleado = empleadoRepository.findById(movimiento.empleadoId()).orElse(null);
+        if (empleado == null || !Boolean.TRUE.equals(empleado.getActivo())) {
+            return "El empleado propuesto ya no está disponible";
+        }
+
+        EstadoCita estadoAnterior = cita.getEstado();
+        LocalDateTime fechaHoraAnterior = cita.getFechaHora();
+        cita.setFechaHora(inicio);
+        cita.setEmpleado(empleado);
+        cita.setEstado(EstadoCita.CONFIRMADA);
+        cita.setNotas(String.format("Reprogramada por cierre del salon: %s -> %s [Reprogramada por cierre: %s]",
+                movimiento.fechaOriginal(), inicio, cierreId));
+        citaRepository.save(cita);
+
+        // Aviso al cliente y, como cualquier cambio de cita, al dashboard, la demanda y el riesgo
+        eventPublisher.publishEvent(new HorarioEspecialService.CitaRestauradaEvent(cita, tenantId));
+        eventPublisher.publishEvent(EventoDashboard.deCita(cita, "actualizada", estadoAnterior, fechaHoraAnterior));
+        return null;
+    }
+
+    // ========================================
+    // REJILLA DE DISPONIBILIDAD
+    // ========================================
+
+    /**
+     * Disponibilidad del tenant en la ventana de búsqueda, cargada una vez por propuesta
+     */
+    private final class Rejilla {
+        private final String tenantId;
+        private final LocalDateTime ahora;
+        private final LocalDate desde;
+        private final LocalDate hasta;
+        private final int paso = Math.max(5, pasoMinutos);
+        private final List<Agenda> agendas = new ArrayList<>();
+        private final Map<String, Agenda> agendaPorEmpleado = new HashMap<>();
+        private final Map<String, Map<String, EmpleadoServicio>> habilidades = new HashMap<>();
+        private final Map<LocalDate, List<CierreIndexado>> cierresPorDia = new HashMap<>();
+        private final Map<String, List<LocalDateTime[]>> reservasCliente = new HashMap<>();
+
+        private Rejilla(String tenantId, LocalDateTime ahora, LocalDate primera, LocalDate ultima) {
+            this.tenantId = tenantId;
+            this.ahora = ahora;
+            this.desde = primera.minusDays(diasBusqueda).isBefore(ahora.toLocalDate())
+                    ? ahora.toLocalDate() : primera.minusDays(diasBusqueda);
+            this.hasta = ultima.plusDays(diasBusqueda);
+
+            int apertura = minutoDelDia(configuracion("hora_apertura", "09:00"), 9 * 60);
+            int cierre = minutoDelDia(configuracion("hora_cierre", "20:00"), 20 * 60);
+
+            for (Empleado empleado : empleadoRepository.findByTenantIdAndActivoTrue(tenantId)) {
+                Agenda agenda = new Agenda(empleado, apertura, cierre);
+                agendas.add(agenda);
+                agendaPorEmpleado.put(agenda.empleadoId, agenda);
+            }
+            for (EmpleadoServicio habilidad : empleadoServicioRepository.findDisponiblesByTenant(tenantId)) {
+                habilidades.computeIfAbsent(habilidad.getServicioId(), s -> new HashMap<>())
+                        .put(habilidad.getEmpleadoId(), habilidad);
+            }
+            for (Object[] fila : citaRepository.findOcupacionEmpleados(tenantId,
+                    desde.atStartOfDay(), hasta.plusDays(1).atStartOfDay())) {
+                Agenda agenda = agendaPorEmpleado.get((String) fila[0]);
+                if (agenda != null) {
+                    LocalDateTime fechaHora = (LocalDateTime) fila[1];
+                    int minuto = fechaHora.getHour() * 60 + fechaHora.getMinute();
+                    int duracion = fila[2] != null ? (Integer) fila[2] : fila[3] != null ? (Integer) fila[3] : 60;
+                    agenda.ocupar(fechaHora.toLocalDate().toEpochDay(), minuto, minuto + duracion, paso);
+                }
+            }
+        }
+
+        /**
+         * Hueco libre más cercano a la hora original; lo reserva para que ninguna otra
+         * cita de la propuesta lo reciba
+         */
+        private Movimiento asignar(Cita cita) {
+            String servicioId = cita.getServicio() != null ? cita.getServicio().getId() : null;
+            String empleadoOriginal = cita.getEmpleado() != null ? cita.getEmpleado().getId() : null;
+            String clienteId = cita.getCliente() != null ? cita.getCliente().getId() : null;
+            int duracionBase = duracion(cita);
+            List<Agenda> candidatos = candidatos(servicioId, empleadoOriginal);
+
+            LocalDate origen = cita.getFechaHora().toLocalDate();
+            int minutoOrigen = cita.getFechaHora().getHour() * 60 + cita.getFechaHora().getMinute();
+
+            Agenda mejorAgenda = null;
+            LocalDateTime mejorInicio = null;
+            int mejorDuracion = 0;
+            long mejorDistancia = Long.MAX_VALUE;
+
+            for (int k = 0; k <= diasBusqueda; k++) {
+                // Cualquier hueco a k días está a más de (k - 1) días de la hora original
+                if (mejorAgenda != null && (k - 1L) * MINUTOS_DIA >= mejorDistancia) {
+                    break;
+                }
+                for (int signo : k == 0 ? new int[]{1} : new int[]{1, -1}) {
+                    LocalDate fecha = origen.plusDays((long) signo * k);
+                    if (fecha.isBefore(desde) || fecha.isAfter(hasta)) {
+                        continue;
+                    }
+                    List<CierreIndexado> cierres = cierresDelDia(fecha);
+                    if (cierres.stream().anyMatch(c -> c.tipoCierre() == TipoCierre.CERRADO_COMPLETO
+                            || c.tipoCierre() == TipoCierre.SOLO_EMERGENCIAS)) {
+                        continue;
+                    }
+                    long dia = fecha.toEpochDay();
+                    long desplazamientoDia = (long) signo * k * MINUTOS_DIA - minutoOrigen;
+
+                    for (Agenda agenda : candidatos) {
+                        if (!agenda.trabaja(fecha)) {
+                            continue;
+                        }
+                        int duracion = duracionBase + tiempoExtra(servicioId, agenda.empleadoId);
+                        int franjas = (duracion + paso - 1) / paso;
+                        int primera = (agenda.entrada + paso - 1) / paso;
+                        int ultima = (agenda.salida - duracion) / paso;
+
+                        for (int franja = primera; franja <= ultima; franja++) {
+                            long distancia = Math.abs(desplazamientoDia + (long) franja * paso);
+                            if (distancia >= mejorDistancia || !agenda.libre(dia, franja, franjas)) {
+                                continue;
+                            }
+                            LocalDateTime inicio = fecha.atStartOfDay().plusMinutes((long) franja * paso);
+                            if (!inicio.isAfter(ahora)
+                                    || bloqueado(cierres, inicio, duracion, agenda.empleadoId, servicioId)
+                                    || clienteOcupado(clienteId, inicio, duracion)) {
+                                continue;
+                            }
+                            mejorAgenda = agenda;
+                            mejorInicio = inicio;
+                            mejorDuracion = duracion;
+                            mejorDistancia = distancia;
+                        }
+                    }
+                }
+            }
+
+            if (mejorAgenda == null) {
+                return null;
+            }
+
+            int minutoInicio = mejorInicio.getHour() * 60 + mejorInicio.getMinute();
+            mejorAgenda.ocupar(mejorInicio.toLocalDate().toEpochDay(), minutoInicio, minutoInicio + mejorDuracion, paso);
+            if (clienteId != null) {
+                reservasCliente.computeIfAbsent(clienteId, c -> new ArrayList<>())
+                        .add(new LocalDateTime[]{mejorInicio, mejorInicio.plusMinutes(mejorDuracion)});
+            }
+
+            return new Movimiento(cita.getId(), clienteId,
+                    cita.getCliente() != null ? cita.getCliente().getNombre() : "Cliente",
+                    servicioId, cita.getServicio() != null ? cita.getServicio().getNombre() : "Servicio",
+                    cita.getFechaHora(), empleadoOriginal,
+                    mejorInicio, mejorAgenda.empleadoId, mejorAgenda.nombre, mejorDuracion);
+        }
+
+        /**
+         * Empleados que pueden hacer el servicio: los de empleados_servicios si el servicio
+         * tiene alguno configurado (por prioridad), si no todos. El original va primero
+         * para que gane en caso de empate.
+         */
+        private List<Agenda> candidatos(String servicioId, String empleadoOriginal) {
+            Map<String, EmpleadoServicio> autorizados = servicioId != null ? habilidades.get(servicioId) : null;
+            List<Agenda> lista = new ArrayList<>();
+            for (Agenda agenda : agendas) {
+                if (autorizados == null || autorizados.containsKey(agenda.empleadoId)) {
+                    lista.add(agenda);
+                }
+            }
+            lista.sort(Comparator
+                    .comparing((Agenda a) -> !a.empleadoId.equals(empleadoOriginal))
+                    .thenComparing(a -> autorizados != null && autorizados.get(a.empleadoId).getPrioridad() != null
+                            ? -autorizados.get(a.empleadoId).getPrioridad() : 0));
+            return lista;
+        }
+
+        private int tiempoExtra(String servicioId, String empleadoId) {
+            Map<String, EmpleadoServicio> autorizados = servicioId != null ? habilidades.get(servicioId) : null;
+            EmpleadoServicio habilidad = autorizados != null ? autorizados.get(empleadoId) : null;
+            return habilidad != null && habilidad.getTiempoExtraMinutos() != null
+                    ? Math.max(0, habilidad.getTiempoExtraMinutos()) : 0;
+        }
+
+        private List<CierreIndexado> cierresDelDia(LocalDate fecha) {
+            return cierresPorDia.computeIfAbsent(fecha, f -> indiceCierres.cierresDelDia(tenantId, f));
+        }
+
+        private boolean bloqueado(List<CierreIndexado> cierres, LocalDateTime inicio, int duracion,
+                                  String empleadoId, String servicioId) {
+            if (cierres.isEmpty()) {
+                return false;
+            }
+            LocalTime horaInicio = inicio.toLocalTime();
+            LocalTime horaFin = horaInicio.plusMinutes(duracion);
+            return cierres.stream().anyMatch(c -> c.bloquea(horaInicio, empleadoId, servicioId)
+                    || c.bloquea(horaFin, empleadoId, servicioId));
+        }
+
+        private boolean clienteOcupado(String clienteId, LocalDateTime inicio, int duracion) {
+            List<LocalDateTime[]> reservas = clienteId != null ? reservasCliente.get(clienteId) : null;
+            if (reservas == null) {
+                return false;
+            }
+            LocalDateTime fin = inicio.plusMinutes(duracion);
+            return reservas.stream().anyMatch(r -> r[0].isBefore(fin) && r[1].isAfter(inicio));
+        }
+
+        private String configuracion(String clave, String porDefecto) {
+            try {
+                return tenantConfigService.obtenerValor(tenantId, clave, porDefecto);
+            } catch (Exception e) {
+                return porDefecto;
+            }
+        }
+    }
+
+    // ========================================
+    // AUXILIARES
+    // ========================================
+
+    private static int duracion(Cita cita) {
+        if (cita.getDuracionMinutos() != null && cita.getDuracionMinutos() > 0) {
+            return cita.getDuracionMinutos();
+        }
+        if (cita.getServicio() != null && cita.getServicio().getDuracionMinutos() != null) {
+            return cita.getServicio().getDuracionMinutos();
+        }
+        return 60;
+    }
+
+    private static int minutoDelDia(String hora, int porDefecto) {
+        if (hora == null || hora.isBlank()) {
+            return porDefecto;
+        }
+        try {
+            LocalTime valor = LocalTime.parse(hora.trim());
+            return valor.getHour() * 60 + valor.getMinute();
+        } catch (DateTimeParseException e) {
+            return porDefecto;
+        }
+    }
+}
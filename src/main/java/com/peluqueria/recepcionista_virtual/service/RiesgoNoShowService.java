@@ -0,0 +1,299 @@
+package com.peluqueria.recepcionista_virtual.service;
+
+import com.peluqueria.recepcionista_virtual.dto.EventoDashboard;
+import com.peluqueria.recepcionista_virtual.model.RiesgoNoShow;
+import com.peluqueria.recepcionista_virtual.model.Tenant;
+import com.peluqueria.recepcionista_virtual.repository.RiesgoNoShowRepository;
+import com.peluqueria.recepcionista_virtual.repository.TenantRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 🎯 PUNTUACIÓN DE RIESGO DE NO-SHOW POR LOTES
+ *
+ * Cada intervalo se puntúan todas las citas PENDIENTE/CONFIRMADA de los próximos
+ * días de todos los tenants activos (fork-join sobre tenants). Por tenant, una sola
+ * consulta obtiene cada cita con el historial de su cliente; la puntuación se calcula
+ * aquí y se guarda en riesgos_no_show, de donde el dashboard la lee directamente.
+ *
+ * Factores: incumplimientos previos del cliente, antelación de la reserva, hora del día
+ * y si la cita está confirmada con recordatorio enviado.
+ */
+@Service
+public class RiesgoNoShowService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RiesgoNoShowService.class);
+
+    public static final String NIVEL_ALTO = "ALTO";
+    public static final String NIVEL_MEDIO = "MEDIO";
+    public static final String NIVEL_BAJO = "BAJO";
+
+    private static final double UMBRAL_ALTO = 0.5;
+    private static final double UMBRAL_MEDIO = 0.25;
+
+    // Suavizado del historial: un cliente sin citas previas parte de TASA_PREVIA
+    private static final double TASA_PREVIA = 0.1;
+    private static final double PESO_PREVIO = 3.0;
+
+    // Pesos del modelo logístico (iniciales, a ajustar con los no-shows reales)
+    private static final double SESGO = -3.0;
+    private static final double PESO_HISTORIAL = 4.0;
+    private static final double PESO_ANTELACION = 1.0;
+    private static final double PESO_HORA_EXTREMA = 0.4;
+    private static final double PESO_SIN_CONFIRMAR = 0.8;
+    private static final double PESO_CON_RECORDATORIO = -0.6;
+    private static final double PESO_CLIENTE_NUEVO = 0.5;
+
+    // Más de 30 días de antelación ya no aumenta el riesgo
+    private static final double ANTELACION_MAXIMA_DIAS = 30.0;
+
+    // Cancelaciones por cierre del salón: no son responsabilidad del cliente
+    private static final String MARCA_CIERRE = "%[Cierre ID: %";
+
+    private static final String SQL_CARACTERISTICAS =
+            "WITH proximas AS ( " +
+            "  SELECT c.id, c.cliente_id, c.fecha_hora, c.fecha_creacion, c.estado, c.recordatorio_enviado " +
+            "  FROM citas c " +
+            "  WHERE c.tenant_id = ? AND c.estado IN ('PENDIENTE', 'CONFIRMADA') " +
+            "    AND c.fecha_hora > ? AND c.fecha_hora <= ? " +
+            "), historial AS ( " +
+            "  SELECT h.cliente_id, " +
+            "         COUNT(*) AS total, " +
+            "         COUNT(*) FILTER (WHERE h.estado = 'CANCELADA') AS canceladas, " +
+            "         COUNT(*) FILTER (WHERE h.estado = 'NO_ASISTIO') AS no_asistidas " +
+            "  FROM citas h " +
+            "  WHERE h.tenant_id = ? AND h.fecha_hora <= ? " +
+            "    AND h.cliente_id IN (SELECT cliente_id FROM proximas) " +
+            "    AND NOT (h.estado = 'CANCELADA' AND COALESCE(h.notas, '') LIKE ?) " +
+            "  GROUP BY h.cliente_id " +
+            ") " +
+            "SELECT p.id, p.cliente_id, cl.nombre AS cliente_nombre, p.fecha_hora, p.fecha_creacion, " +
+            "       p.estado, p.recordatorio_enviado, " +
+            "       COALESCE(hi.total, 0) AS total, COALESCE(hi.canceladas, 0) AS canceladas, " +
+            "       COALESCE(hi.no_asistidas, 0) AS no_asistidas " +
+            "FROM proximas p " +
+            "LEFT JOIN clientes cl ON cl.id = p.cliente_id " +
+            "LEFT JOIN historial hi ON hi.cliente_id = p.cliente_id";
+
+    private static final String SQL_UPSERT =
+            "INSERT INTO riesgos_no_show " +
+            "  (cita_id, tenant_id, cliente_id, cliente_nombre, fecha_hora, puntuacion, nivel, factores, calculado_en) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (cita_id) DO UPDATE SET " +
+            "  cliente_id = EXCLUDED.cliente_id, cliente_nombre = EXCLUDED.cliente_nombre, " +
+            "  fecha_hora = EXCLUDED.fecha_hora, puntuacion = EXCLUDED.puntuacion, nivel = EXCLUDED.nivel, " +
+            "  factores = EXCLUDED.factores, calculado_en = EXCLUDED.calculado_en";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TenantRepository tenantRepository;
+
+    @Autowired
+    private RiesgoNoShowRepository riesgoNoShowRepository;
+
+    @Autowired
+    private CacheEstadisticasService cacheEstadisticas;
+
+    @Value("${riesgo-no-show.horizonte-dias:14}")
+    private int horizonteDias;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Paralelismo bajo a propósito: cada tenant ocupa una conexión del pool de Hikari
+     * mientras se puntúa y hay que dejar conexiones libres para las peticiones
+     */
+    public RiesgoNoShowService(@Value("${riesgo-no-show.paralelismo:2}") int paralelismo) {
+        this.pool = new ForkJoinPool(Math.max(1, paralelismo));
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        pool.shutdownNow();
+    }
+
+    // ========================================
+    // CONSULTAS
+    // ========================================
+
+    /**
+     * Citas puntuadas entre ahora y ahora + horas, de mayor a menor riesgo
+     */
+    public List<RiesgoNoShow> getRiesgosProximos(String tenantId, int horas) {
+        LocalDateTime ahora = LocalDateTime.now();
+        return riesgoNoShowRepository.findByTenantIdAndFechaHoraBetweenOrderByPuntuacionDesc(
+                tenantId, ahora, ahora.plusHours(horas));
+    }
+
+    // ========================================
+    // CÁLCULO PROGRAMADO
+    // ========================================
+
+    @Scheduled(fixedDelayString = "${riesgo-no-show.intervalo-ms:900000}",
+            initialDelayString = "${riesgo-no-show.retraso-inicial-ms:60000}")
+    public void puntuarTodos() {
+        List<Tenant> tenants = tenantRepository.findByActivo(true);
+        long inicio = System.currentTimeMillis();
+        AtomicInteger citas = new AtomicInteger();
+
+        try {
+            pool.submit(() -> tenants.parallelStream().forEach(tenant -> {
+                try {
+                    citas.addAndGet(puntuarTenant(tenant.getId()));
+                } catch (Exception e) {
+                    logger.error("Error puntuando riesgo de no-show del tenant {}: {}", tenant.getId(), e.getMessage());
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("Error en la puntuación de riesgo de no-show: {}", e.getMessage());
+        }
+
+        logger.info("Riesgo de no-show: {} citas de {} tenants puntuadas en {} ms",
+                citas.get(), tenants.size(), System.currentTimeMillis() - inicio);
+    }
+
+    /**
+     * Puntúa las próximas citas de un tenant y borra las puntuaciones que ya no
+     * corresponden a una cita pendiente (pasadas, canceladas o fuera del horizonte)
+     */
+    public int puntuarTenant(String tenantId) {
+        LocalDateTime ahora = LocalDateTime.now();
+        Timestamp calculadoEn = Timestamp.valueOf(ahora);
+
+        Integer puntuadas = transactionTemplate.execute(status -> {
+            List<Object[]> filas = jdbcTemplate.query(SQL_CARACTERISTICAS,
+                    (rs, n) -> puntuar(rs, tenantId, ahora, calculadoEn),
+                    tenantId, Timestamp.valueOf(ahora), Timestamp.valueOf(ahora.plusDays(horizonteDias)),
+                    tenantId, Timestamp.valueOf(ahora), MARCA_CIERRE);
+
+            if (!filas.isEmpty()) {
+                jdbcTemplate.batchUpdate(SQL_UPSERT, filas);
+            }
+            jdbcTemplate.update("DELETE FROM riesgos_no_show WHERE tenant_id = ? AND calculado_en < ?",
+                    tenantId, calculadoEn);
+            return filas.size();
+        });
+
+        cacheEstadisticas.invalidarTenant(tenantId);
+        return puntuadas != null ? puntuadas : 0;
+    }
+
+    /**
+     * Una cita que deja de estar pendiente no debe seguir en el dashboard hasta el siguiente ciclo
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCambioCita(EventoDashboard evento) {
+        if (!EventoDashboard.CANAL_CITAS.equals(evento.canal()) || evento.entidadId() == null) {
+            return;
+        }
+        Object estado = evento.datos() != null ? evento.datos().get("estado") : null;
+        if (estado == null || "PENDIENTE".equals(estado.toString()) || "CONFIRMADA".equals(estado.toString())) {
+            return;
+        }
+        quitarCita(evento.entidadId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCitaCanceladaPorCierre(HorarioEspecialService.CitaCanceladaPorCierreEvent evento) {
+        quitarCita(evento.getCita().getId());
+    }
+
+    private void quitarCita(String citaId) {
+        try {
+            jdbcTemplate.update("DELETE FROM riesgos_no_show WHERE cita_id = ?", citaId);
+        } catch (Exception e) {
+            logger.warn("No se pudo quitar el riesgo de no-show de la cita {}: {}", citaId, e.getMessage());
+        }
+    }
+
+    // ========================================
+    // MODELO
+    // ========================================
+
+    private Object[] puntuar(ResultSet rs, String tenantId, LocalDateTime ahora,
+                             Timestamp calculadoEn) throws SQLException {
+        LocalDateTime fechaHora = rs.getTimestamp("fecha_hora").toLocalDateTime();
+        Timestamp creacion = rs.getTimestamp("fecha_creacion");
+        long total = rs.getLong("total");
+        long canceladas = rs.getLong("canceladas");
+        long noAsistidas = rs.getLong("no_asistidas");
+        boolean confirmada = "CONFIRMADA".equals(rs.getString("estado"));
+        boolean recordatorio = rs.getBoolean("recordatorio_enviado");
+
+        // Un no-show pesa el doble que una cancelación (que al menos libera el hueco)
+        double incumplimientos = noAsistidas + 0.5 * canceladas;
+        double tasaHistorial = (incumplimientos + TASA_PREVIA * PESO_PREVIO) / (total + PESO_PREVIO);
+
+        double antelacionDias = Duration.between(
+                creacion != null ? creacion.toLocalDateTime() : ahora, fechaHora).toHours() / 24.0;
+        double antelacion = Math.min(Math.max(antelacionDias, 0), ANTELACION_MAXIMA_DIAS) / ANTELACION_MAXIMA_DIAS;
+
+        int hora = fechaHora.getHour();
+        boolean horaExtrema = hora < 10 || hora >= 19;
+        boolean conRecordatorio = confirmada && recordatorio;
+
+        double z = SESGO
+                + PESO_HISTORIAL * tasaHistorial
+                + PESO_ANTELACION * antelacion
+                + (horaExtrema ? PESO_HORA_EXTREMA : 0)
+                + (confirmada ? 0 : PESO_SIN_CONFIRMAR)
+                + (conRecordatorio ? PESO_CON_RECORDATORIO : 0)
+                + (total == 0 ? PESO_CLIENTE_NUEVO : 0);
+        double puntuacion = Math.round(1000.0 / (1 + Math.exp(-z))) / 1000.0;
+
+        List<String> factores = new ArrayList<>();
+        if (noAsistidas > 0 || canceladas > 0) {
+            factores.add(String.format("%d no-shows y %d cancelaciones en %d citas", noAsistidas, canceladas, total));
+        }
+        if (total == 0) {
+            factores.add("cliente nuevo");
+        }
+        if (antelacionDias >= 14) {
+            factores.add(String.format("reservada con %d días de antelación", Math.round(antelacionDias)));
+        }
+        if (horaExtrema) {
+            factores.add("primera o última hora");
+        }
+        if (!confirmada) {
+            factores.add("sin confirmar");
+        } else if (!recordatorio) {
+            factores.add("sin recordatorio enviado");
+        }
+
+        String nivel = puntuacion >= UMBRAL_ALTO ? NIVEL_ALTO
+                : puntuacion >= UMBRAL_MEDIO ? NIVEL_MEDIO : NIVEL_BAJO;
+
+        String resumen = String.join("; ", factores);
+        return new Object[]{
+                rs.getString("id"), tenantId, rs.getString("cliente_id"), rs.getString("cliente_nombre"),
+                Timestamp.valueOf(fechaHora), puntuacion, nivel,
+                resumen.length() > 500 ? resumen.substring(0, 500) : resumen, calculadoEn
+        };
+    }
+}
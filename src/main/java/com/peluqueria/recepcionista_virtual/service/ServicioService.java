@@ -19,6 +19,7 @@ public class ServicioService {
     @Autowired
     private TenantRepository tenantRepository;
 
+    @Transactional(readOnly = true)
     public List<ServicioDTO> getServiciosByTenantId(String tenantId) {
         List<Servicio> servicios = servicioRepository.findActivosByTenantId(tenantId);
         return servicios.stream()
@@ -26,6 +27,12 @@ public class ServicioService {
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
+    public long countServiciosActivos(String tenantId) {
+        Long total = servicioRepository.countActivosByTenantId(tenantId);
+        return total != null ? total : 0L;
+    }
+
     public ServicioDTO createServicio(String tenantId, ServicioDTO servicioDTO) {
         Tenant tenant = tenantRepository.findById(tenantId)
                 .orElseThrow(() -> new RuntimeException("Tenant no encontrado"));
@@ -75,6 +82,7 @@ public class ServicioService {
         servicioRepository.save(servicio);
     }
 
+    @Transactional(readOnly = true)
     public ServicioDTO getServicioById(String servicioId) {
         Servicio servicio = servicioRepository.findById(servicioId)
                 .orElseThrow(() -> new RuntimeException("Servicio no encontrado"));
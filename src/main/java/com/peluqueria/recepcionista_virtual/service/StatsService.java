@@ -1,16 +1,24 @@
 package com.peluqueria.recepcionista_virtual.service;
 
+import com.peluqueria.recepcionista_virtual.dto.DashboardKpis;
 import com.peluqueria.recepcionista_virtual.model.Cita;
+import com.peluqueria.recepcionista_virtual.model.RiesgoNoShow;
 import com.peluqueria.recepcionista_virtual.repository.CitaRepository;
 import com.peluqueria.recepcionista_virtual.repository.ClienteRepository;
 import com.peluqueria.recepcionista_virtual.repository.ServicioRepository;
 import com.peluqueria.recepcionista_virtual.repository.EmpleadoRepository;
+import com.peluqueria.recepcionista_virtual.repository.EstadisticaDiariaRepository;
+import com.peluqueria.recepcionista_virtual.repository.MetricaClienteRepository;
 import com.peluqueria.recepcionista_virtual.model.EstadoCita;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -28,10 +36,37 @@ import java.math.RoundingMode;
  * ✅ ROI demostrable y métricas de productividad
  */
 @Service
+@Transactional(readOnly = true)
 public class StatsService {
 
     private static final Logger logger = LoggerFactory.getLogger(StatsService.class);
 
+    // Ventana de las alertas de no-show
+    private static final int HORAS_RIESGO_NO_SHOW = 24;
+
+    private static final String SQL_DASHBOARD_KPIS =
+            "WITH nuevos AS ( " +
+            "  SELECT COUNT(DISTINCT c.cliente_id) FILTER (WHERE c.fecha_hora >= :inicioDia " +
+            "           AND cl.fecha_registro >= :inicioDia) AS hoy, " +
+            "         COUNT(DISTINCT c.cliente_id) AS semana " +
+            "  FROM citas c JOIN clientes cl ON cl.id = c.cliente_id " +
+            "  WHERE c.tenant_id = :tenantId " +
+            "    AND c.fecha_hora BETWEEN :inicioSemanaHora AND :finDia " +
+            "    AND cl.fecha_registro BETWEEN :inicioSemanaHora AND :finDia " +
+            ") " +
+            "SELECT " +
+            "  COALESCE(SUM(e.num_citas) FILTER (WHERE e.fecha = :hoy), 0) AS citas_hoy, " +
+            "  COALESCE(SUM(e.num_citas) FILTER (WHERE e.fecha >= :inicioSemana), 0) AS citas_semana, " +
+            "  COALESCE(SUM(e.num_citas), 0) AS citas_mes, " +
+            "  COALESCE(SUM(e.ingresos) FILTER (WHERE e.estado = 'COMPLETADA' AND e.fecha = :hoy), 0) AS ingresos_dia, " +
+            "  COALESCE(SUM(e.ingresos) FILTER (WHERE e.estado = 'COMPLETADA' AND e.fecha >= :inicioSemana), 0) AS ingresos_semana, " +
+            "  COALESCE(SUM(e.ingresos) FILTER (WHERE e.estado = 'COMPLETADA'), 0) AS ingresos_mes, " +
+            "  COALESCE(SUM(e.num_citas) FILTER (WHERE e.estado = 'CANCELADA'), 0) AS canceladas_mes, " +
+            "  (SELECT hoy FROM nuevos) AS clientes_nuevos_hoy, " +
+            "  (SELECT semana FROM nuevos) AS clientes_nuevos_semana " +
+            "FROM estadisticas_diarias e " +
+            "WHERE e.tenant_id = :tenantId AND e.fecha BETWEEN :inicioMes AND :hoy";
+
     @Autowired
     private CitaRepository citaRepository;
 
@@ -44,6 +79,24 @@ public class StatsService {
     @Autowired
     private EmpleadoRepository empleadoRepository;
 
+    @Autowired
+    private EstadisticaDiariaRepository estadisticaDiariaRepository;
+
+    @Autowired
+    private MetricaClienteRepository metricaClienteRepository;
+
+    @Autowired
+    private DemandaHorariaService demandaHorariaService;
+
+    @Autowired
+    private RiesgoNoShowService riesgoNoShowService;
+
+    @Autowired
+    private CacheEstadisticasService cacheEstadisticas;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
     @Autowired
     private OpenAIService openAIService;
 
@@ -59,37 +112,7 @@ public class StatsService {
                 return createDefaultStats();
             }
 
-            logger.info("StatsService v2.0: Calculando stats básicas para tenant {}", tenantId);
-
-            LocalDateTime now = LocalDateTime.now();
-            LocalDateTime startOfDay = now.withHour(0).withMinute(0).withSecond(0);
-            LocalDateTime endOfDay = now.withHour(23).withMinute(59).withSecond(59);
-
-            // Usar métodos premium del repository
-            long citasHoy = citaRepository.countByTenantIdAndFechaHoraBetween(
-                    tenantId, startOfDay, endOfDay
-            );
-
-            Double ingresosDia = citaRepository.calcularIngresosByTenantIdAndFechaHora(
-                    tenantId, startOfDay, endOfDay
-            );
-
-            long clientesNuevos = citaRepository.countClientesNuevosConCita(
-                    tenantId, startOfDay, endOfDay
-            );
-
-            Map<String, Object> stats = new HashMap<>();
-            stats.put("citasHoy", citasHoy);
-            stats.put("ingresosMes", ingresosDia != null ? ingresosDia : 0.0);
-            stats.put("clientesNuevos", clientesNuevos);
-            stats.put("tasaCancelacion", calculateCancellationRate(tenantId));
-            stats.put("tenantId", tenantId);
-            stats.put("version", "v2.0_premium");
-            stats.put("calculatedAt", now.toString());
-
-            logger.info("Stats básicas calculadas exitosamente para tenant {} - citasHoy: {}",
-                    tenantId, citasHoy);
-            return stats;
+            return cacheEstadisticas.obtener(tenantId, "basicas", () -> calcularStatsByTenant(tenantId));
 
         } catch (Exception e) {
             logger.error("Error en getStatsByTenant para tenant {}: {}", tenantId, e.getMessage(), e);
@@ -97,8 +120,28 @@ public class StatsService {
         }
     }
 
+    private Map<String, Object> calcularStatsByTenant(String tenantId) {
+        logger.info("StatsService v2.0: Calculando stats básicas para tenant {}", tenantId);
+
+        LocalDateTime now = LocalDateTime.now();
+        DashboardKpis kpis = getDashboardKpis(tenantId);
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("citasHoy", kpis.citasHoy());
+        stats.put("ingresosMes", kpis.ingresosDia().doubleValue());
+        stats.put("clientesNuevos", kpis.clientesNuevosHoy());
+        stats.put("tasaCancelacion", kpis.tasaCancelacion());
+        stats.put("tenantId", tenantId);
+        stats.put("version", "v2.0_premium");
+        stats.put("calculatedAt", now.toString());
+
+        logger.info("Stats básicas calculadas exitosamente para tenant {} - citasHoy: {}",
+                tenantId, kpis.citasHoy());
+        return stats;
+    }
+
     /**
-     * 📈 DASHBOARD STATS EXTENDIDAS - Usando repositorios premium
+     * 📈 DASHBOARD STATS EXTENDIDAS - Una sola consulta sobre el agregado diario
      */
     public Map<String, Object> getDashboardStats(String tenantId) {
         try {
@@ -106,70 +149,91 @@ public class StatsService {
                 return createDefaultDashboardStats();
             }
 
-            logger.info("StatsService v2.0: Calculando dashboard stats premium para tenant {}", tenantId);
+            return obtenerDashboardStats(tenantId);
 
-            Map<String, Object> stats = new HashMap<>();
-            LocalDateTime now = LocalDateTime.now();
-
-            // Rangos de tiempo
-            LocalDateTime startOfDay = now.withHour(0).withMinute(0).withSecond(0);
-            LocalDateTime endOfDay = now.withHour(23).withMinute(59).withSecond(59);
-            LocalDateTime startOfWeek = now.minusDays(7);
-            LocalDateTime startOfMonth = now.minusDays(30);
-
-            // 🔥 USAR MÉTODOS PREMIUM DEL REPOSITORY
-            long citasHoy = citaRepository.countByTenantIdAndFechaHoraBetween(
-                    tenantId, startOfDay, endOfDay
-            );
-            long citasSemana = citaRepository.countByTenantIdAndFechaHoraBetween(
-                    tenantId, startOfWeek, endOfDay
-            );
-            long citasMes = citaRepository.countByTenantIdAndFechaHoraBetween(
-                    tenantId, startOfMonth, endOfDay
-            );
-
-            // 💰 INGRESOS REALES DESDE BD
-            Double ingresosDia = citaRepository.calcularIngresosByTenantIdAndFechaHora(
-                    tenantId, startOfDay, endOfDay
-            );
-            Double ingresosSemana = citaRepository.calcularIngresosByTenantIdAndFechaHora(
-                    tenantId, startOfWeek, endOfDay
-            );
-            Double ingresosMes = citaRepository.calcularIngresosByTenantIdAndFechaHora(
-                    tenantId, startOfMonth, endOfDay
-            );
+        } catch (Exception e) {
+            logger.error("Error en getDashboardStats: {}", e.getMessage(), e);
+            return createDefaultDashboardStats();
+        }
+    }
 
-            // 👥 CLIENTES REALES
-            long clientesNuevos = citaRepository.countClientesNuevosConCita(
-                    tenantId, startOfWeek, endOfDay
-            );
+    /**
+     * Igual que getDashboardStats pero propaga los errores: el overview usa entonces el
+     * último valor correcto en lugar de unas estadísticas a cero
+     */
+    public Map<String, Object> obtenerDashboardStats(String tenantId) {
+        return cacheEstadisticas.obtener(tenantId, "dashboard", () -> calcularDashboardStats(tenantId));
+    }
 
-            // Estadísticas principales
-            stats.put("citasHoy", citasHoy);
-            stats.put("citasSemana", citasSemana);
-            stats.put("citasMes", citasMes);
-            stats.put("ingresosDia", ingresosDia != null ? ingresosDia : 0.0);
-            stats.put("ingresosSemana", ingresosSemana != null ? ingresosSemana : 0.0);
-            stats.put("ingresosMes", ingresosMes != null ? ingresosMes : 0.0);
-            stats.put("clientesNuevos", clientesNuevos);
+    private Map<String, Object> calcularDashboardStats(String tenantId) {
+        logger.info("StatsService v2.0: Calculando dashboard stats premium para tenant {}", tenantId);
 
-            // Métricas adicionales estimadas (mejorables con más datos)
-            stats.put("llamadasTotal", citasMes * 2);
-            stats.put("llamadasHoy", Math.max(citasHoy, 1));
-            stats.put("tasaCancelacion", calculateCancellationRate(tenantId));
+        DashboardKpis kpis = getDashboardKpis(tenantId);
+        Map<String, Object> stats = new HashMap<>();
 
-            // Metadata
-            stats.put("tenantId", tenantId);
-            stats.put("type", "dashboard_premium");
-            stats.put("version", "v2.0");
+        // Estadísticas principales
+        stats.put("citasHoy", kpis.citasHoy());
+        stats.put("citasSemana", kpis.citasSemana());
+        stats.put("citasMes", kpis.citasMes());
+        stats.put("ingresosDia", kpis.ingresosDia().doubleValue());
+        stats.put("ingresosSemana", kpis.ingresosSemana().doubleValue());
+        stats.put("ingresosMes", kpis.ingresosMes().doubleValue());
+        stats.put("clientesNuevos", kpis.clientesNuevosSemana());
+
+        // Métricas adicionales estimadas (mejorables con más datos)
+        stats.put("llamadasTotal", kpis.citasMes() * 2);
+        stats.put("llamadasHoy", Math.max(kpis.citasHoy(), 1));
+        stats.put("tasaCancelacion", kpis.tasaCancelacion());
+
+        // Metadata
+        stats.put("tenantId", tenantId);
+        stats.put("type", "dashboard_premium");
+        stats.put("version", "v2.0");
+
+        logger.info("Dashboard stats premium calculadas para tenant {}", tenantId);
+        return stats;
+    }
 
-            logger.info("Dashboard stats premium calculadas para tenant {}", tenantId);
-            return stats;
+    /**
+     * 📊 KPIs DEL DASHBOARD EN UN SOLO VIAJE A BD
+     *
+     * Un único SELECT con FILTER sobre las filas de estadisticas_diarias de los últimos
+     * 30 días (hoy / semana / mes, ingresos y cancelaciones) y un CTE para los clientes
+     * nuevos con cita (COUNT DISTINCT, no sumable por día).
+     */
+    public DashboardKpis getDashboardKpis(String tenantId) {
+        return cacheEstadisticas.obtener(tenantId, "kpis", () -> consultarDashboardKpis(tenantId));
+    }
 
-        } catch (Exception e) {
-            logger.error("Error en getDashboardStats: {}", e.getMessage(), e);
-            return createDefaultDashboardStats();
-        }
+    private DashboardKpis consultarDashboardKpis(String tenantId) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate hoy = now.toLocalDate();
+        LocalDateTime inicioDia = hoy.atStartOfDay();
+        LocalDateTime finDia = hoy.atTime(23, 59, 59);
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("tenantId", tenantId)
+                .addValue("hoy", hoy)
+                .addValue("inicioSemana", hoy.minusDays(7))
+                .addValue("inicioMes", hoy.minusDays(30))
+                .addValue("inicioDia", inicioDia)
+                .addValue("inicioSemanaHora", now.minusDays(7))
+                .addValue("finDia", finDia);
+
+        DashboardKpis kpis = namedJdbcTemplate.queryForObject(SQL_DASHBOARD_KPIS, params, (rs, rowNum) ->
+                new DashboardKpis(
+                        rs.getLong("citas_hoy"),
+                        rs.getLong("citas_semana"),
+                        rs.getLong("citas_mes"),
+                        rs.getBigDecimal("ingresos_dia"),
+                        rs.getBigDecimal("ingresos_semana"),
+                        rs.getBigDecimal("ingresos_mes"),
+                        rs.getLong("canceladas_mes"),
+                        rs.getLong("clientes_nuevos_hoy"),
+                        rs.getLong("clientes_nuevos_semana")
+                ));
+
+        return kpis != null ? kpis : DashboardKpis.vacio();
     }
 
     // ===== ANALYTICS PREMIUM - NUEVAS FUNCIONALIDADES =====
@@ -179,31 +243,35 @@ public class StatsService {
      */
     public Map<String, Object> getServiciosPopulares(String tenantId) {
         try {
-            logger.info("Calculando servicios populares para tenant {}", tenantId);
+            return cacheEstadisticas.obtener(tenantId, "serviciosPopulares", () -> calcularServiciosPopulares(tenantId));
 
-            List<Object[]> serviciosData = citaRepository.findServiciosMasPopulares(tenantId);
-
-            List<Map<String, Object>> servicios = new ArrayList<>();
-            Double totalIngresos = 0.0;
+        } catch (Exception e) {
+            logger.error("Error calculando servicios populares: {}", e.getMessage(), e);
+            return new HashMap<>();
+        }
+    }
 
-            for (Object[] row : serviciosData) {
-                Map<String, Object> servicio = new HashMap<>();
-                servicio.put("nombre", row[0]);
-                servicio.put("totalCitas", row[1]);
-                servicios.add(servicio);
-            }
+    private Map<String, Object> calcularServiciosPopulares(String tenantId) {
+        logger.info("Calculando servicios populares para tenant {}", tenantId);
 
-            Map<String, Object> result = new HashMap<>();
-            result.put("servicios", servicios);
-            result.put("totalServicios", servicios.size());
-            result.put("tenantId", tenantId);
+        List<Object[]> serviciosData = estadisticaDiariaRepository.findServiciosMasPopulares(tenantId);
 
-            return result;
+        List<Map<String, Object>> servicios = new ArrayList<>();
+        Double totalIngresos = 0.0;
 
-        } catch (Exception e) {
-            logger.error("Error calculando servicios populares: {}", e.getMessage(), e);
-            return new HashMap<>();
+        for (Object[] row : serviciosData) {
+            Map<String, Object> servicio = new HashMap<>();
+            servicio.put("nombre", row[0]);
+            servicio.put("totalCitas", row[1]);
+            servicios.add(servicio);
         }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("servicios", servicios);
+        result.put("totalServicios", servicios.size());
+        result.put("tenantId", tenantId);
+
+        return result;
     }
 
     /**
@@ -211,30 +279,34 @@ public class StatsService {
      */
     public Map<String, Object> getEmpleadosProductivos(String tenantId) {
         try {
-            logger.info("Calculando empleados productivos para tenant {}", tenantId);
-
-            List<Object[]> empleadosData = citaRepository.findEmpleadosMasProductivos(tenantId);
+            return cacheEstadisticas.obtener(tenantId, "empleadosProductivos", () -> calcularEmpleadosProductivos(tenantId));
 
-            List<Map<String, Object>> empleados = new ArrayList<>();
+        } catch (Exception e) {
+            logger.error("Error calculando empleados productivos: {}", e.getMessage(), e);
+            return new HashMap<>();
+        }
+    }
 
-            for (Object[] row : empleadosData) {
-                Map<String, Object> empleado = new HashMap<>();
-                empleado.put("nombre", row[0]);
-                empleado.put("totalCitas", row[1]);
-                empleados.add(empleado);
-            }
+    private Map<String, Object> calcularEmpleadosProductivos(String tenantId) {
+        logger.info("Calculando empleados productivos para tenant {}", tenantId);
 
-            Map<String, Object> result = new HashMap<>();
-            result.put("empleados", empleados);
-            result.put("totalEmpleados", empleados.size());
-            result.put("tenantId", tenantId);
+        List<Object[]> empleadosData = estadisticaDiariaRepository.findEmpleadosMasProductivos(tenantId);
 
-            return result;
+        List<Map<String, Object>> empleados = new ArrayList<>();
 
-        } catch (Exception e) {
-            logger.error("Error calculando empleados productivos: {}", e.getMessage(), e);
-            return new HashMap<>();
+        for (Object[] row : empleadosData) {
+            Map<String, Object> empleado = new HashMap<>();
+            empleado.put("nombre", row[0]);
+            empleado.put("totalCitas", row[1]);
+            empleados.add(empleado);
         }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("empleados", empleados);
+        result.put("totalEmpleados", empleados.size());
+        result.put("tenantId", tenantId);
+
+        return result;
     }
 
     /**
@@ -242,72 +314,79 @@ public class StatsService {
      */
     public Map<String, Object> getHorasPico(String tenantId) {
         try {
-            logger.info("Calculando horas pico para tenant {}", tenantId);
+            return cacheEstadisticas.obtener(tenantId, "horasPico", () -> calcularHorasPico(tenantId));
 
-            List<Object[]> horasData = citaRepository.findHorasPicoReservas(tenantId);
+        } catch (Exception e) {
+            logger.error("Error calculando horas pico: {}", e.getMessage(), e);
+            return new HashMap<>();
+        }
+    }
 
-            List<Map<String, Object>> horas = new ArrayList<>();
+    private Map<String, Object> calcularHorasPico(String tenantId) {
+        logger.info("Calculando horas pico para tenant {}", tenantId);
 
-            for (Object[] row : horasData) {
-                Map<String, Object> hora = new HashMap<>();
-                hora.put("hora", row[0] + ":00");
-                hora.put("totalReservas", row[1]);
-                horas.add(hora);
-            }
+        // Mapa día×hora mantenido en memoria (sin agrupar el histórico en cada llamada)
+        List<Map<String, Object>> horas = demandaHorariaService.getHorasPico(tenantId);
+        Map<String, Object> franjaPico = demandaHorariaService.getFranjaPico(tenantId);
 
-            Map<String, Object> result = new HashMap<>();
-            result.put("horasPico", horas);
-            result.put("recomendacionIA", generateStaffingRecommendation(horas));
-            result.put("tenantId", tenantId);
+        Map<String, Object> result = new HashMap<>();
+        result.put("horasPico", horas);
+        result.put("franjaPico", franjaPico);
+        result.put("mapaCalor", demandaHorariaService.getMapaCalor(tenantId));
+        result.put("recomendacionIA", generateStaffingRecommendation(horas, franjaPico));
+        result.put("tenantId", tenantId);
+
+        return result;
+    }
 
-            return result;
+    /**
+     * 🎯 RIESGO DE NO-SHOW - Citas de las próximas 24h ordenadas por riesgo
+     */
+    public Map<String, Object> getRiesgoNoShow(String tenantId) {
+        try {
+            return cacheEstadisticas.obtener(tenantId, "riesgoNoShow", () -> calcularRiesgoNoShow(tenantId));
 
         } catch (Exception e) {
-            logger.error("Error calculando horas pico: {}", e.getMessage(), e);
+            logger.error("Error obteniendo riesgo de no-show: {}", e.getMessage(), e);
             return new HashMap<>();
         }
     }
 
+    private Map<String, Object> calcularRiesgoNoShow(String tenantId) {
+        // Puntuaciones ya calculadas por RiesgoNoShowService: solo lectura
+        List<RiesgoNoShow> riesgos = riesgoNoShowService.getRiesgosProximos(tenantId, HORAS_RIESGO_NO_SHOW);
+
+        List<Map<String, Object>> citas = new ArrayList<>();
+        Map<String, Long> porNivel = new HashMap<>();
+        for (RiesgoNoShow riesgo : riesgos) {
+            porNivel.merge(riesgo.getNivel(), 1L, Long::sum);
+
+            Map<String, Object> cita = new HashMap<>();
+            cita.put("citaId", riesgo.getCitaId());
+            cita.put("clienteId", riesgo.getClienteId());
+            cita.put("clienteNombre", riesgo.getClienteNombre());
+            cita.put("fechaHora", riesgo.getFechaHora().toString());
+            cita.put("puntuacion", riesgo.getPuntuacion());
+            cita.put("nivel", riesgo.getNivel());
+            cita.put("factores", riesgo.getFactores());
+            citas.add(cita);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("citas", citas);
+        result.put("porNivel", porNivel);
+        result.put("horas", HORAS_RIESGO_NO_SHOW);
+        result.put("calculadoEn", riesgos.isEmpty() ? null : riesgos.get(0).getCalculadoEn().toString());
+        result.put("tenantId", tenantId);
+        return result;
+    }
+
     /**
      * 👑 CLIENTES VIP - Análisis de valor
      */
     public Map<String, Object> getClientesVIP(String tenantId) {
         try {
-            logger.info("Calculando clientes VIP para tenant {}", tenantId);
-
-            List<Object[]> clientesData = citaRepository.findClientesFrecuentes(tenantId, 3);
-
-            List<Map<String, Object>> clientes = new ArrayList<>();
-            Double totalVIP = 0.0;
-
-            for (Object[] row : clientesData) {
-                Map<String, Object> cliente = new HashMap<>();
-                cliente.put("id", row[0]);
-                cliente.put("nombre", row[1]);
-                cliente.put("totalCitas", row[2]);
-                cliente.put("gastoPromedio", row[3]);
-
-                // Calcular LTV estimado
-                Object gastoProm = row[3];
-                Object totalCitas = row[2];
-                if (gastoProm instanceof Number && totalCitas instanceof Number) {
-                    double ltv = ((Number) gastoProm).doubleValue() *
-                            ((Number) totalCitas).doubleValue() * 2; // Factor proyección
-                    cliente.put("ltvEstimado", Math.round(ltv * 100.0) / 100.0);
-                    totalVIP += ltv;
-                }
-
-                clientes.add(cliente);
-            }
-
-            Map<String, Object> result = new HashMap<>();
-            result.put("clientesVIP", clientes);
-            result.put("totalClientesVIP", clientes.size());
-            result.put("valorTotalVIP", Math.round(totalVIP * 100.0) / 100.0);
-            result.put("recomendacionIA", generateVIPStrategy(clientes));
-            result.put("tenantId", tenantId);
-
-            return result;
+            return cacheEstadisticas.obtener(tenantId, "clientesVIP", () -> calcularClientesVIP(tenantId));
 
         } catch (Exception e) {
             logger.error("Error calculando clientes VIP: {}", e.getMessage(), e);
@@ -315,39 +394,82 @@ public class StatsService {
         }
     }
 
+    private Map<String, Object> calcularClientesVIP(String tenantId) {
+        logger.info("Calculando clientes VIP para tenant {}", tenantId);
+
+        // Agregado por cliente mantenido por trigger: sin agrupar el histórico de citas
+        List<Object[]> clientesData = metricaClienteRepository.findClientesFrecuentes(tenantId, 3);
+
+        List<Map<String, Object>> clientes = new ArrayList<>();
+        Double totalVIP = 0.0;
+
+        for (Object[] row : clientesData) {
+            Map<String, Object> cliente = new HashMap<>();
+            cliente.put("id", row[0]);
+            cliente.put("nombre", row[1]);
+            cliente.put("totalCitas", row[2]);
+            cliente.put("gastoPromedio", row[3]);
+
+            // Calcular LTV estimado
+            Object gastoProm = row[3];
+            Object totalCitas = row[2];
+            if (gastoProm instanceof Number && totalCitas instanceof Number) {
+                double ltv = ((Number) gastoProm).doubleValue() *
+                        ((Number) totalCitas).doubleValue() * 2; // Factor proyección
+                cliente.put("ltvEstimado", Math.round(ltv * 100.0) / 100.0);
+                totalVIP += ltv;
+            }
+
+            clientes.add(cliente);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("clientesVIP", clientes);
+        result.put("totalClientesVIP", clientes.size());
+        result.put("valorTotalVIP", Math.round(totalVIP * 100.0) / 100.0);
+        result.put("recomendacionIA", generateVIPStrategy(clientes));
+        result.put("tenantId", tenantId);
+
+        return result;
+    }
+
     /**
      * 📊 ANÁLISIS COMPLETO PREMIUM - Dashboard ejecutivo
      */
     public Map<String, Object> getAnalisisCompleto(String tenantId) {
         try {
-            logger.info("Generando análisis completo premium para tenant {}", tenantId);
+            return cacheEstadisticas.obtener(tenantId, "analisisCompleto", () -> calcularAnalisisCompleto(tenantId));
 
-            Map<String, Object> analisis = new HashMap<>();
+        } catch (Exception e) {
+            logger.error("Error generando análisis completo: {}", e.getMessage(), e);
+            return new HashMap<>();
+        }
+    }
 
-            // Consolidar todas las métricas premium
-            analisis.put("resumenGeneral", getDashboardStats(tenantId));
-            analisis.put("serviciosPopulares", getServiciosPopulares(tenantId));
-            analisis.put("empleadosProductivos", getEmpleadosProductivos(tenantId));
-            analisis.put("horasPico", getHorasPico(tenantId));
-            analisis.put("clientesVIP", getClientesVIP(tenantId));
+    private Map<String, Object> calcularAnalisisCompleto(String tenantId) {
+        logger.info("Generando análisis completo premium para tenant {}", tenantId);
 
-            // Métricas avanzadas
-            analisis.put("prediccionIngresos", generateRevenuePrediccion(tenantId));
-            analisis.put("recomendacionesIA", generateBusinessRecommendations(tenantId));
-            analisis.put("alertas", generateSmartAlerts(tenantId));
+        Map<String, Object> analisis = new HashMap<>();
 
-            // Metadata
-            analisis.put("generadoEn", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-            analisis.put("version", "premium_v2.0");
-            analisis.put("tenantId", tenantId);
+        // Consolidar todas las métricas premium
+        analisis.put("resumenGeneral", getDashboardStats(tenantId));
+        analisis.put("serviciosPopulares", getServiciosPopulares(tenantId));
+        analisis.put("empleadosProductivos", getEmpleadosProductivos(tenantId));
+        analisis.put("horasPico", getHorasPico(tenantId));
+        analisis.put("clientesVIP", getClientesVIP(tenantId));
 
-            logger.info("Análisis completo premium generado exitosamente para tenant {}", tenantId);
-            return analisis;
+        // Métricas avanzadas
+        analisis.put("prediccionIngresos", generateRevenuePrediccion(tenantId));
+        analisis.put("recomendacionesIA", generateBusinessRecommendations(tenantId));
+        analisis.put("alertas", generateSmartAlerts(tenantId));
 
-        } catch (Exception e) {
-            logger.error("Error generando análisis completo: {}", e.getMessage(), e);
-            return new HashMap<>();
-        }
+        // Metadata
+        analisis.put("generadoEn", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        analisis.put("version", "premium_v2.0");
+        analisis.put("tenantId", tenantId);
+
+        logger.info("Análisis completo premium generado exitosamente para tenant {}", tenantId);
+        return analisis;
     }
 
     // ===== MÉTODOS AUXILIARES Y IA =====
@@ -357,11 +479,10 @@ public class StatsService {
      */
     private Map<String, Object> generateRevenuePrediccion(String tenantId) {
         try {
-            LocalDateTime now = LocalDateTime.now();
-            LocalDateTime inicio30dias = now.minusDays(30);
+            LocalDate hoy = LocalDate.now();
 
-            Double ingresos30dias = citaRepository.calcularIngresosByTenantIdAndFechaHora(
-                    tenantId, inicio30dias, now
+            Double ingresos30dias = estadisticaDiariaRepository.sumarIngresosCompletadas(
+                    tenantId, hoy.minusDays(30), hoy
             );
 
             Map<String, Object> prediccion = new HashMap<>();
@@ -399,8 +520,8 @@ public class StatsService {
 
         try {
             // Análisis de servicios para recomendaciones
-            List<Object[]> servicios = citaRepository.findServiciosMasPopulares(tenantId);
-            List<Object[]> empleados = citaRepository.findEmpleadosMasProductivos(tenantId);
+            List<Object[]> servicios = estadisticaDiariaRepository.findServiciosMasPopulares(tenantId);
+            List<Object[]> empleados = estadisticaDiariaRepository.findEmpleadosMasProductivos(tenantId);
 
             if (!servicios.isEmpty()) {
                 Object servicioTop = servicios.get(0)[0];
@@ -429,17 +550,37 @@ public class StatsService {
         List<Map<String, Object>> alertas = new ArrayList<>();
 
         try {
-            LocalDateTime ahora = LocalDateTime.now();
-            LocalDateTime limite24h = ahora.plusDays(1);
+            // Citas en riesgo de no-show (puntuaciones precalculadas)
+            List<RiesgoNoShow> riesgos = riesgoNoShowService.getRiesgosProximos(tenantId, HORAS_RIESGO_NO_SHOW);
+            List<RiesgoNoShow> riesgoAlto = riesgos.stream()
+                    .filter(r -> RiesgoNoShowService.NIVEL_ALTO.equals(r.getNivel()))
+                    .toList();
+            long riesgoMedio = riesgos.stream()
+                    .filter(r -> RiesgoNoShowService.NIVEL_MEDIO.equals(r.getNivel()))
+                    .count();
+
+            if (!riesgoAlto.isEmpty() || riesgoMedio > 0) {
+                List<Map<String, Object>> citas = new ArrayList<>();
+                for (RiesgoNoShow riesgo : riesgoAlto.subList(0, Math.min(5, riesgoAlto.size()))) {
+                    Map<String, Object> cita = new HashMap<>();
+                    cita.put("citaId", riesgo.getCitaId());
+                    cita.put("clienteNombre", riesgo.getClienteNombre());
+                    cita.put("fechaHora", riesgo.getFechaHora().toString());
+                    cita.put("puntuacion", riesgo.getPuntuacion());
+                    cita.put("factores", riesgo.getFactores());
+                    citas.add(cita);
+                }
 
-            // Citas en riesgo de no-show
-            List<Cita> citasRiesgo = citaRepository.findCitasEnRiesgoDeNoShow(tenantId, limite24h);
-            if (!citasRiesgo.isEmpty()) {
                 Map<String, Object> alerta = new HashMap<>();
                 alerta.put("tipo", "no_show_risk");
-                alerta.put("prioridad", "alta");
-                alerta.put("mensaje", citasRiesgo.size() + " citas mañana necesitan recordatorio");
-                alerta.put("accion", "Enviar SMS recordatorio automático");
+                alerta.put("prioridad", riesgoAlto.isEmpty() ? "media" : "alta");
+                alerta.put("mensaje", riesgoAlto.isEmpty()
+                        ? riesgoMedio + " citas en las próximas 24h con riesgo medio de no-show"
+                        : riesgoAlto.size() + " citas en las próximas 24h con riesgo alto de no-show");
+                alerta.put("accion", riesgoAlto.isEmpty()
+                        ? "Enviar SMS recordatorio automático"
+                        : "Llamar para confirmar y enviar SMS recordatorio");
+                alerta.put("citas", citas);
                 alertas.add(alerta);
             }
 
@@ -465,15 +606,21 @@ public class StatsService {
     /**
      * 👥 RECOMENDACIÓN STAFFING
      */
-    private String generateStaffingRecommendation(List<Map<String, Object>> horas) {
+    private String generateStaffingRecommendation(List<Map<String, Object>> horas,
+                                                  Map<String, Object> franjaPico) {
         if (horas.isEmpty()) {
             return "Datos insuficientes para recomendación de personal";
         }
 
         // Encontrar hora pico
         Map<String, Object> horaPico = horas.get(0);
-        return "Reforzar personal en " + horaPico.get("hora") +
+        String recomendacion = "Reforzar personal en " + horaPico.get("hora") +
                 " (pico de " + horaPico.get("totalReservas") + " reservas)";
+
+        if (franjaPico != null) {
+            recomendacion += ", especialmente los " + franjaPico.get("dia") + " a las " + franjaPico.get("hora");
+        }
+        return recomendacion;
     }
 
     /**
@@ -493,8 +640,8 @@ public class StatsService {
      */
     private double calculateCancellationRate(String tenantId) {
         try {
-            LocalDateTime hace30dias = LocalDateTime.now().minusDays(30);
-            List<Object[]> tasaData = citaRepository.calcularTasaCancelacion(tenantId, hace30dias);
+            LocalDate hace30dias = LocalDate.now().minusDays(30);
+            List<Object[]> tasaData = estadisticaDiariaRepository.calcularTasaCancelacion(tenantId, hace30dias);
 
             if (!tasaData.isEmpty()) {
                 Object[] row = tasaData.get(0);
@@ -4,6 +4,7 @@ import com.peluqueria.recepcionista_virtual.model.ConfiguracionTenant;
 import com.peluqueria.recepcionista_virtual.model.Tenant;
 import com.peluqueria.recepcionista_virtual.repository.ConfiguracionTenantRepository;
 import com.peluqueria.recepcionista_virtual.repository.TenantRepository;
+import com.peluqueria.recepcionista_virtual.util.TelefonoNormalizador;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,6 +18,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 public class TenantConfigService {
@@ -124,18 +127,20 @@ public class TenantConfigService {
      * Encuentra el tenant por número de teléfono
      */
     public String findTenantByPhoneNumber(String phoneNumber) {
-        // Normalizar el número (quitar espacios, guiones, etc.)
-        String normalizedNumber = phoneNumber.replaceAll("[^0-9+]", "");
-
-        // Buscar en la configuración de todos los tenants
-        List<Tenant> tenants = tenantRepository.findByActivo(true);
-
-        for (Tenant tenant : tenants) {
-            String tenantPhone = obtenerValor(tenant.getId(),
-                    ConfiguracionTenant.Claves.NUMERO_TWILIO, "");
-
-            if (normalizedNumber.equals(tenantPhone.replaceAll("[^0-9+]", ""))) {
-                return tenant.getId();
+        // Normalizar el número a E.164
+        String normalizedNumber = TelefonoNormalizador.normalizar(phoneNumber);
+
+        if (normalizedNumber != null) {
+            // Números Twilio de todos los tenants en una sola consulta
+            Set<String> activos = tenantRepository.findByActivo(true).stream()
+                    .map(Tenant::getId)
+                    .collect(Collectors.toSet());
+
+            for (ConfiguracionTenant config : configRepository.findByClave(ConfiguracionTenant.Claves.NUMERO_TWILIO)) {
+                if (activos.contains(config.getTenantId())
+                        && normalizedNumber.equals(TelefonoNormalizador.normalizar(config.getValor()))) {
+                    return config.getTenantId();
+                }
             }
         }
 
@@ -0,0 +1,211 @@
+package com.peluqueria.recepcionista_virtual.service;
+
+import com.peluqueria.recepcionista_virtual.model.Cita;
+import com.peluqueria.recepcionista_virtual.model.HorarioEspecial;
+import com.peluqueria.recepcionista_virtual.repository.CitaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 🔍 VISTA PREVIA DEL IMPACTO DE UN CIERRE
+ *
+ * Recorre en streaming las citas activas de las fechas del cierre (solo id, fecha,
+ * estado, empleado y cliente, sin cargar entidades), devuelve los totales agregados y
+ * la primera página de citas, y guarda los ids afectados bajo un token de vida corta.
+ * El token solo autoriza a confirmar ese cierre: al confirmar se cancelan esos ids (si
+ * siguen activos y en el rango) más el delta de citas creadas o modificadas en el rango
+ * desde la vista previa, sin volver a recorrer todas las citas de las ocurrencias.
+ */
+@Service
+public class VistaPreviaCierreService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VistaPreviaCierreService.class);
+
+    public static final int TAMANO_PAGINA = 20;
+
+    private static final int TAMANO_PAGINA_MAXIMO = 100;
+
+    /**
+     * Resultado guardado bajo el token. huella identifica las fechas (y recurrencia) del
+     * cierre previsualizado: un token solo vale para confirmar ese mismo cierre
+     */
+    public static final class VistaPrevia {
+        private final String token = UUID.randomUUID().toString();
+        private final String tenantId;
+        private final String huella;
+        private final List<String> citaIds;
+        private final LocalDateTime creada;
+        private final LocalDateTime expira;
+
+        private VistaPrevia(String tenantId, String huella, List<String> citaIds,
+                            LocalDateTime creada, LocalDateTime expira) {
+            this.tenantId = tenantId;
+            this.huella = huella;
+            this.citaIds = citaIds;
+            this.creada = creada;
+            this.expira = expira;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public List<String> getCitaIds() {
+            return citaIds;
+        }
+
+        /**
+         * Instante anterior a la lectura de las citas: lo cambiado desde entonces es el delta
+         */
+        public LocalDateTime getCreada() {
+            return creada;
+        }
+
+        private boolean caducada() {
+            return LocalDateTime.now().isAfter(expira);
+        }
+    }
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Value("${cierres.vista-previa.ttl-segundos:600}")
+    private long ttlSegundos;
+
+    private final Map<String, VistaPrevia> vistasPrevias = new ConcurrentHashMap<>();
+
+    /**
+     * Calcula el impacto de las ocurrencias del cierre y lo guarda bajo un token nuevo.
+     * Lee del primario (sin readOnly): en la réplica podrían faltar citas recién creadas
+     */
+    @Transactional
+    public Map<String, Object> previsualizar(String tenantId, String huella, List<HorarioEspecial> ocurrencias) {
+        LocalDateTime creada = LocalDateTime.now();
+        List<String> ids = new ArrayList<>();
+        Set<String> clientes = new HashSet<>();
+        Map<String, Long> porEstado = new TreeMap<>();
+        Map<LocalDate, Long> porDia = new TreeMap<>();
+        Map<String, Long> porEmpleado = new HashMap<>();
+        LocalDateTime primera = null;
+        LocalDateTime ultima = null;
+
+        for (HorarioEspecial ocurrencia : ocurrencias) {
+            try (Stream<Object[]> filas = citaRepository.streamImpactoCierre(tenantId,
+                    ocurrencia.getFechaInicio().atStartOfDay(), ocurrencia.getFechaFin().plusDays(1).atStartOfDay())) {
+                for (Object[] fila : (Iterable<Object[]>) filas::iterator) {
+                    LocalDateTime fechaHora = (LocalDateTime) fila[1];
+                    ids.add((String) fila[0]);
+                    porEstado.merge(fila[2].toString(), 1L, Long::sum);
+                    porDia.merge(fechaHora.toLocalDate(), 1L, Long::sum);
+                    porEmpleado.merge(fila[3] != null ? (String) fila[3] : "sin_asignar", 1L, Long::sum);
+                    clientes.add((String) fila[4]);
+                    primera = primera == null || fechaHora.isBefore(primera) ? fechaHora : primera;
+                    ultima = ultima == null || fechaHora.isAfter(ultima) ? fechaHora : ultima;
+                }
+            }
+        }
+
+        VistaPrevia vistaPrevia = new VistaPrevia(tenantId, huella, List.copyOf(ids),
+                creada, LocalDateTime.now().plusSeconds(ttlSegundos));
+        vistasPrevias.put(vistaPrevia.token, vistaPrevia);
+
+        logger.info("Vista previa de cierre para tenant {}: {} citas afectadas (token {})",
+                tenantId, ids.size(), vistaPrevia.token);
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("token", vistaPrevia.token);
+        resultado.put("expira", vistaPrevia.expira.toString());
+        resultado.put("requiereConfirmacion", !ids.isEmpty());
+        resultado.put("citasAfectadas", ids.size());
+        resultado.put("clientesAfectados", clientes.size());
+        resultado.put("primeraCita", primera != null ? primera.toString() : null);
+        resultado.put("ultimaCita", ultima != null ? ultima.toString() : null);
+        resultado.put("porEstado", porEstado);
+        resultado.put("porDia", porDia.entrySet().stream()
+                .collect(Collectors.toMap(e -> e.getKey().toString(), Map.Entry::getValue,
+                        (a, b) -> a, LinkedHashMap::new)));
+        resultado.put("porEmpleado", porEmpleado);
+        resultado.put("citas", cargarPagina(ids, 0, TAMANO_PAGINA));
+        resultado.put("tamanoPagina", TAMANO_PAGINA);
+        return resultado;
+    }
+
+    /**
+     * Página de las citas afectadas de una vista previa (null si el token no es válido)
+     */
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getPagina(String tenantId, String token, int pagina, int tamano) {
+        VistaPrevia vistaPrevia = vistasPrevias.get(token);
+        if (vistaPrevia == null || !vistaPrevia.tenantId.equals(tenantId) || vistaPrevia.caducada()) {
+            return null;
+        }
+        return cargarPagina(vistaPrevia.citaIds, Math.max(0, pagina),
+                Math.min(Math.max(1, tamano), TAMANO_PAGINA_MAXIMO));
+    }
+
+    /**
+     * Retira la vista previa del token si es del tenant, no ha caducado y corresponde al
+     * mismo cierre; si no, null y el cierre se verifica de nuevo contra la BD
+     */
+    public VistaPrevia consumir(String tenantId, String token, String huella) {
+        if (token == null) {
+            return null;
+        }
+        VistaPrevia vistaPrevia = vistasPrevias.remove(token);
+        if (vistaPrevia == null || !vistaPrevia.tenantId.equals(tenantId)
+                || !vistaPrevia.huella.equals(huella) || vistaPrevia.caducada()) {
+            logger.info("Token de vista previa {} no válido para este cierre, se verificará de nuevo", token);
+            return null;
+        }
+        return vistaPrevia;
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void purgarCaducadas() {
+        vistasPrevias.values().removeIf(VistaPrevia::caducada);
+    }
+
+    /**
+     * Mismo formato que las citas de ResultadoVerificacionCitas
+     */
+    private List<Map<String, Object>> cargarPagina(List<String> ids, int pagina, int tamano) {
+        int desde = pagina * tamano;
+        if (desde >= ids.size()) {
+            return List.of();
+        }
+        List<Cita> citas = citaRepository.findByIdInOrderByFechaHora(
+                ids.subList(desde, Math.min(ids.size(), desde + tamano)));
+
+        return citas.stream()
+                .map(cita -> {
+                    Map<String, Object> citaData = new HashMap<>();
+                    citaData.put("id", cita.getId());
+                    citaData.put("clienteNombre", cita.getCliente() != null ? cita.getCliente().getNombre() : "Cliente");
+                    citaData.put("servicio", cita.getServicio() != null ? cita.getServicio().getNombre() : "Servicio");
+                    citaData.put("fechaHora", cita.getFechaHora().toString());
+                    citaData.put("estado", cita.getEstado().toString());
+                    return citaData;
+                })
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,46 @@
+package com.peluqueria.recepcionista_virtual.util;
+
+import java.util.regex.Pattern;
+
+/**
+ * 📄 CELDAS CSV PARA EXCEL
+ *
+ * Entrecomilla los valores con comas, comillas o saltos de línea y neutraliza la
+ * inyección de fórmulas: un texto que empieza por = + - @ tabulador o retorno de
+ * carro (un nombre de cliente "=HYPERLINK(...)", una nota "+cmd|...") se escribe
+ * precedido de ' para que la hoja de cálculo lo muestre como texto y no lo evalúe.
+ * Los números no se tocan, así un importe negativo sigue siendo un número, y tampoco
+ * los textos que solo tienen dígitos, espacios, paréntesis y puntos tras un signo: un
+ * teléfono E.164 (+34600111222) sale tal cual y se puede volver a importar.
+ */
+public final class CeldaCsv {
+
+    // Teléfonos y números escritos como texto: sin letras no pueden llamar a funciones
+    private static final Pattern NUMERICO = Pattern.compile("^[+-]?[\\d\\s().]+$");
+
+    private CeldaCsv() {
+    }
+
+    public static String escribir(Object valor) {
+        if (valor == null) {
+            return "";
+        }
+        String texto = valor.toString();
+        if (!(valor instanceof Number) && empiezaPorFormula(texto) && !NUMERICO.matcher(texto).matches()) {
+            texto = "'" + texto;
+        }
+        if (texto.indexOf(',') >= 0 || texto.indexOf('"') >= 0 || texto.indexOf('\n') >= 0 || texto.indexOf('\r') >= 0) {
+            return '"' + texto.replace("\"", "\"\"") + '"';
+        }
+        return texto;
+    }
+
+    private static boolean empiezaPorFormula(String texto) {
+        if (texto.isEmpty()) {
+            return false;
+        }
+        char primero = texto.charAt(0);
+        return primero == '=' || primero == '+' || primero == '-' || primero == '@'
+                || primero == '\t' || primero == '\r';
+    }
+}
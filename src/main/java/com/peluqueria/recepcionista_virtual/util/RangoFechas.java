@@ -0,0 +1,21 @@
+package com.peluqueria.recepcionista_virtual.util;
+
+import java.time.LocalDate;
+
+/**
+ * 📅 LÍMITES DE LOS RANGOS DE FECHAS
+ *
+ * Estadísticas, búsquedas y exportaciones sin "desde" cubren todo el histórico:
+ * se usa una fecha anterior a cualquier dato en lugar de LocalDate.MIN, que las
+ * columnas timestamp de Postgres no admiten. Del mismo modo, sin "hasta" se usa una
+ * fecha posterior a cualquier cita futura.
+ */
+public final class RangoFechas {
+
+    public static final LocalDate INICIO_HISTORICO = LocalDate.of(2000, 1, 1);
+
+    public static final LocalDate FIN_HISTORICO = LocalDate.of(9999, 1, 1);
+
+    private RangoFechas() {
+    }
+}
@@ -0,0 +1,98 @@
+package com.peluqueria.recepcionista_virtual.util;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 📞 NORMALIZACIÓN DE TELÉFONOS A E.164 (+<país><número>)
+ *
+ * "+34 600 11 22 33", "0034600112233", "600-112-233" y "whatsapp:+34600112233"
+ * dan todos "+34600112233". Un solo recorrido sin expresiones regulares: se usa
+ * en cada llamada entrante y al guardar clientes.
+ */
+public final class TelefonoNormalizador {
+
+    // Los números sin prefijo internacional se consideran españoles
+    public static final String PREFIJO_PAIS_POR_DEFECTO = "34";
+
+    // Longitud máxima de un número nacional (España: 9 dígitos)
+    private static final int MAX_DIGITOS_NACIONAL = 9;
+
+    // Sin prefijo internacional se exige un número español completo: "123" no es un teléfono
+    private static final int MIN_DIGITOS_NACIONAL = 9;
+
+    // Con prefijo internacional: país y número, como mínimo 7 dígitos (los planes más cortos)
+    private static final int MIN_DIGITOS_E164 = 7;
+
+    // E.164: como mucho 15 dígitos
+    private static final int MAX_DIGITOS_E164 = 15;
+
+    private TelefonoNormalizador() {
+    }
+
+    /**
+     * Teléfono en formato E.164, o null si no contiene dígitos o no es válido
+     */
+    public static String normalizar(String telefono) {
+        if (telefono == null) {
+            return null;
+        }
+
+        StringBuilder digitos = new StringBuilder(16);
+        boolean internacional = false;
+        for (int i = 0; i < telefono.length(); i++) {
+            char c = telefono.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digitos.append(c);
+            } else if (c == '+' && digitos.length() == 0) {
+                internacional = true;
+            }
+        }
+
+        if (digitos.length() == 0) {
+            return null;
+        }
+
+        // 00 como prefijo internacional
+        if (!internacional && digitos.length() > MAX_DIGITOS_NACIONAL
+                && digitos.charAt(0) == '0' && digitos.charAt(1) == '0') {
+            digitos.delete(0, 2);
+            internacional = true;
+        }
+
+        if (!internacional && digitos.length() <= MAX_DIGITOS_NACIONAL) {
+            if (digitos.length() < MIN_DIGITOS_NACIONAL) {
+                return null;
+            }
+            digitos.insert(0, PREFIJO_PAIS_POR_DEFECTO);
+        }
+
+        if (digitos.length() < MIN_DIGITOS_E164 || digitos.length() > MAX_DIGITOS_E164) {
+            return null;
+        }
+        return digitos.insert(0, '+').toString();
+    }
+
+    /**
+     * Formas en que puede estar guardado en crudo un teléfono ya normalizado: el propio
+     * texto recibido, E.164 con y sin "+", con "00" y, si es español, solo el número
+     * nacional. Sirve para encontrar clientes aún sin telefono_norm
+     */
+    public static List<String> variantes(String telefono, String telefonoNorm) {
+        Set<String> variantes = new LinkedHashSet<>();
+        if (telefono != null && !telefono.isBlank()) {
+            variantes.add(telefono.trim());
+        }
+        if (telefonoNorm != null) {
+            String digitos = telefonoNorm.substring(1);
+            variantes.add(telefonoNorm);
+            variantes.add(digitos);
+            variantes.add("00" + digitos);
+            if (digitos.startsWith(PREFIJO_PAIS_POR_DEFECTO)) {
+                variantes.add(digitos.substring(PREFIJO_PAIS_POR_DEFECTO.length()));
+            }
+        }
+        return List.copyOf(variantes);
+    }
+}
@@ -0,0 +1,141 @@
+package com.peluqueria.recepcionista_virtual.service;
+
+import com.peluqueria.recepcionista_virtual.dto.CitaDTO;
+import com.peluqueria.recepcionista_virtual.model.Cita;
+import com.peluqueria.recepcionista_virtual.model.Cliente;
+import com.peluqueria.recepcionista_virtual.model.EstadoCita;
+import com.peluqueria.recepcionista_virtual.model.Servicio;
+import com.peluqueria.recepcionista_virtual.model.Tenant;
+import com.peluqueria.recepcionista_virtual.repository.CitaRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.domain.Page;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 🔎 buscarCitas filtra en SQL: Hibernate solo carga las citas que devuelve
+ *
+ * Se siembran citas de otro tenant, de otros días y de otros estados; si algún filtro
+ * se aplicara en memoria, el número de entidades Cita cargadas superaría al de filas
+ * devueltas.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+class CitaServiceBuscarCitasTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    private static final LocalDate DIA = LocalDate.of(2030, 3, 12);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    private CitaService citaService;
+
+    private Statistics estadisticas;
+
+    private String tenantId;
+
+    @BeforeEach
+    void preparar() {
+        citaService = new CitaService();
+        ReflectionTestUtils.setField(citaService, "citaRepository", citaRepository);
+        estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        Tenant tenant = sembrarTenant("Salón Centro");
+        Tenant otroTenant = sembrarTenant("Salón Norte");
+        tenantId = tenant.getId();
+
+        // Tenant buscado: 3 días x 4 citas por estado
+        for (int dia = -1; dia <= 1; dia++) {
+            for (EstadoCita estado : new EstadoCita[]{EstadoCita.CONFIRMADA, EstadoCita.CANCELADA, EstadoCita.PENDIENTE}) {
+                sembrarCitas(tenant, DIA.plusDays(dia), estado, 4);
+            }
+        }
+        // Mismo día y estado, otro tenant
+        sembrarCitas(otroTenant, DIA, EstadoCita.CONFIRMADA, 10);
+
+        entityManager.flush();
+        entityManager.clear();
+        estadisticas.clear();
+    }
+
+    @Test
+    void cargaSoloLasCitasDelTenantDiaYEstado() {
+        Page<CitaDTO> pagina = citaService.buscarCitas(tenantId, DIA, EstadoCita.CONFIRMADA, 0, 50);
+
+        assertEquals(4, pagina.getNumberOfElements());
+        assertEquals(4, pagina.getTotalElements());
+        assertTrue(pagina.getContent().stream().allMatch(c -> c.getEstado() == EstadoCita.CONFIRMADA
+                && c.getFechaHora().toLocalDate().equals(DIA) && tenantId.equals(c.getTenantId())));
+        assertEquals(pagina.getNumberOfElements(), citasCargadas());
+    }
+
+    @Test
+    void lasPaginasSeRecortanEnSql() {
+        Page<CitaDTO> pagina = citaService.buscarCitas(tenantId, null, null, 1, 5);
+
+        assertEquals(5, pagina.getNumberOfElements());
+        assertEquals(36, pagina.getTotalElements());
+        assertEquals(pagina.getNumberOfElements(), citasCargadas());
+    }
+
+    private long citasCargadas() {
+        return estadisticas.getEntityStatistics(Cita.class.getName()).getLoadCount();
+    }
+
+    private Tenant sembrarTenant(String nombre) {
+        Tenant tenant = new Tenant();
+        tenant.setNombrePeluqueria(nombre);
+        return entityManager.persist(tenant);
+    }
+
+    private void sembrarCitas(Tenant tenant, LocalDate dia, EstadoCita estado, int cantidad) {
+        Cliente cliente = new Cliente();
+        cliente.setTenant(tenant);
+        cliente.setNombre("Cliente " + dia + " " + estado);
+        entityManager.persist(cliente);
+
+        Servicio servicio = new Servicio("Corte", 30, new BigDecimal("15.00"));
+        servicio.setTenant(tenant);
+        entityManager.persist(servicio);
+
+        for (int i = 0; i < cantidad; i++) {
+            Cita cita = new Cita();
+            cita.setTenant(tenant);
+            cita.setCliente(cliente);
+            cita.setServicio(servicio);
+            cita.setFechaHora(dia.atTime(9 + i, 0));
+            cita.setDuracionMinutos(30);
+            cita.setPrecio(servicio.getPrecio());
+            cita.setEstado(estado);
+            entityManager.persist(cita);
+        }
+    }
+}
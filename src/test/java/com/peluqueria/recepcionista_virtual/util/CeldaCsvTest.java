@@ -0,0 +1,33 @@
+package com.peluqueria.recepcionista_virtual.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CeldaCsvTest {
+
+    @Test
+    void losTelefonosSalenSinTocar() {
+        assertEquals("+34600111222", CeldaCsv.escribir("+34600111222"));
+        assertEquals("+34 (600) 11.22.33", CeldaCsv.escribir("+34 (600) 11.22.33"));
+        assertEquals("-15", CeldaCsv.escribir("-15"));
+        assertEquals("-15.50", CeldaCsv.escribir(new BigDecimal("-15.50")));
+    }
+
+    @Test
+    void lasFormulasSeNeutralizan() {
+        assertEquals("\"'=HYPERLINK(\"\"http://x\"\",\"\"ver\"\")\"",
+                CeldaCsv.escribir("=HYPERLINK(\"http://x\",\"ver\")"));
+        assertEquals("'+cmd|' /C calc'!A0", CeldaCsv.escribir("+cmd|' /C calc'!A0"));
+        assertEquals("'-2+3", CeldaCsv.escribir("-2+3"));
+        assertEquals("'@SUM(A1)", CeldaCsv.escribir("@SUM(A1)"));
+    }
+
+    @Test
+    void entrecomillaComasYComillas() {
+        assertEquals("\"García, Ana\"", CeldaCsv.escribir("García, Ana"));
+        assertEquals("", CeldaCsv.escribir(null));
+    }
+}